@@ -0,0 +1,311 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.benchmark;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.datamodel.FeatureStatus;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.featuredata.IonTimeSeries;
+import io.github.mzmine.datamodel.featuredata.impl.SimpleIonTimeSeries;
+import io.github.mzmine.datamodel.features.ModularFeature;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import io.github.mzmine.datamodel.impl.SimpleDataPoint;
+import io.github.mzmine.datamodel.impl.SimpleScan;
+import io.github.mzmine.datamodel.impl.masslist.ScanPointerMassList;
+import io.github.mzmine.datamodel.impl.masslist.SimpleMassList;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import io.github.mzmine.util.DataPointSorter;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import javafx.scene.paint.Color;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Creates reproducible synthetic LC-MS data for benchmarks: compounds with gaussian elution
+ * profiles, MS1 scans in centroid or profile mode with mass lists, spectra for similarity
+ * scoring, ion time series and feature lists. All data is kept in RAM to measure the processing
+ * and not the disk.
+ */
+public class SyntheticDataGenerator {
+
+  /**
+   * Relative m/z error of detected signals
+   */
+  private static final double MZ_ERROR_PPM = 2;
+  /**
+   * Resolution used to create profile mode peaks
+   */
+  private static final double RESOLUTION = 60_000;
+  private static final int PROFILE_POINTS_PER_PEAK = 9;
+  private static final double MIN_SIGNAL_INTENSITY = 100;
+
+  private final Random rand;
+
+  public SyntheticDataGenerator(long seed) {
+    rand = new Random(seed);
+  }
+
+  /**
+   * @param fwhm full width at half maximum in minutes
+   */
+  public record Compound(double mz, float rt, double height, float fwhm) {
+
+    float sigma() {
+      return fwhm / 2.355f;
+    }
+
+    double intensityAt(float rt) {
+      final double delta = (rt - this.rt) / sigma();
+      return height * Math.exp(-0.5 * delta * delta);
+    }
+  }
+
+  /**
+   * @return compounds sorted by retention time
+   */
+  public List<Compound> createCompounds(int numCompounds, float maxRt) {
+    List<Compound> compounds = new ArrayList<>(numCompounds);
+    for (int i = 0; i < numCompounds; i++) {
+      final double mz = 100 + rand.nextDouble() * 900;
+      final float rt = 0.5f + rand.nextFloat() * (maxRt - 1f);
+      final double height = Math.pow(10, 4 + rand.nextDouble() * 3);
+      final float fwhm = 0.05f + rand.nextFloat() * 0.15f;
+      compounds.add(new Compound(mz, rt, height, fwhm));
+    }
+    compounds.sort(Comparator.comparingDouble(Compound::rt));
+    return compounds;
+  }
+
+  /**
+   * Copy of the compounds with a random retention time shift and a fraction of missing compounds
+   * to simulate different samples of the same study.
+   */
+  public List<Compound> createSample(List<Compound> compounds, float maxRtShift,
+      double fractionMissing) {
+    List<Compound> sample = new ArrayList<>(compounds.size());
+    for (Compound c : compounds) {
+      if (rand.nextDouble() < fractionMissing) {
+        continue;
+      }
+      final float shift = (rand.nextFloat() * 2f - 1f) * maxRtShift;
+      final double height = c.height() * (0.5 + rand.nextDouble());
+      sample.add(new Compound(c.mz(), c.rt() + shift, height, c.fwhm()));
+    }
+    sample.sort(Comparator.comparingDouble(Compound::rt));
+    return sample;
+  }
+
+  /**
+   * Creates a raw data file with MS1 scans and mass lists. Centroid scans point to their own data
+   * as mass list, profile scans get the centroid signals as mass list.
+   *
+   * @param compounds    compounds sorted by retention time
+   * @param noisePerScan number of random noise signals in each scan
+   */
+  public RawDataFile createRawDataFile(String name, List<Compound> compounds, int numScans,
+      float maxRt, MassSpectrumType type, int noisePerScan) throws IOException {
+    final RawDataFile file = new RawDataFileImpl(name, null, null, Color.BLACK);
+    final float[] compoundRts = new float[compounds.size()];
+    float maxSigma = 0;
+    for (int i = 0; i < compounds.size(); i++) {
+      compoundRts[i] = compounds.get(i).rt();
+      maxSigma = Math.max(maxSigma, compounds.get(i).sigma());
+    }
+
+    final double[] mzs = new double[compounds.size() + noisePerScan];
+    final double[] intensities = new double[mzs.length];
+    for (int s = 0; s < numScans; s++) {
+      final float rt = maxRt * s / Math.max(1, numScans - 1);
+      int n = 0;
+      // compounds eluting in this scan
+      int first = Arrays.binarySearch(compoundRts, rt - 4 * maxSigma);
+      first = first < 0 ? -first - 1 : first;
+      for (int i = first; i < compounds.size() && compoundRts[i] <= rt + 4 * maxSigma; i++) {
+        final Compound c = compounds.get(i);
+        final double intensity = c.intensityAt(rt);
+        if (intensity < MIN_SIGNAL_INTENSITY) {
+          continue;
+        }
+        mzs[n] = c.mz() * (1 + rand.nextGaussian() * MZ_ERROR_PPM * 1E-6);
+        intensities[n] = intensity;
+        n++;
+      }
+      for (int i = 0; i < noisePerScan; i++) {
+        mzs[n] = 50 + rand.nextDouble() * 1050;
+        intensities[n] = Math.pow(10, 1.5 + rand.nextDouble() * 1.5);
+        n++;
+      }
+      final double[][] centroids = sortByMz(mzs, intensities, n);
+
+      final Scan scan;
+      if (type == MassSpectrumType.PROFILE) {
+        final double[][] profile = toProfile(centroids[0], centroids[1]);
+        scan = new SimpleScan(file, s + 1, 1, rt, null, profile[0], profile[1], type,
+            PolarityType.POSITIVE, "", Range.closed(50d, 1100d));
+        scan.addMassList(new SimpleMassList(null, centroids[0], centroids[1]));
+      } else {
+        scan = new SimpleScan(file, s + 1, 1, rt, null, centroids[0], centroids[1],
+            MassSpectrumType.CENTROIDED, PolarityType.POSITIVE, "", Range.closed(50d, 1100d));
+        scan.addMassList(new ScanPointerMassList(scan));
+      }
+      file.addScan(scan);
+    }
+    return file;
+  }
+
+  private static double[][] sortByMz(double[] mzs, double[] intensities, int n) {
+    final int[] order = new int[n];
+    for (int i = 0; i < n; i++) {
+      order[i] = i;
+    }
+    IntArrays.quickSort(order, (a, b) -> Double.compare(mzs[a], mzs[b]));
+    final double[] sortedMzs = new double[n];
+    final double[] sortedIntensities = new double[n];
+    for (int i = 0; i < n; i++) {
+      sortedMzs[i] = mzs[order[i]];
+      sortedIntensities[i] = intensities[order[i]];
+    }
+    return new double[][]{sortedMzs, sortedIntensities};
+  }
+
+  /**
+   * Expands each centroid to a gaussian m/z profile
+   */
+  private static double[][] toProfile(double[] mzs, double[] intensities) {
+    final int half = PROFILE_POINTS_PER_PEAK / 2;
+    final double[] profileMzs = new double[mzs.length * PROFILE_POINTS_PER_PEAK];
+    final double[] profileIntensities = new double[profileMzs.length];
+    int n = 0;
+    for (int i = 0; i < mzs.length; i++) {
+      final double sigma = mzs[i] / RESOLUTION / 2.355;
+      for (int k = -half; k <= half; k++) {
+        final double step = k * 0.75;
+        profileMzs[n] = mzs[i] + step * sigma;
+        profileIntensities[n] = intensities[i] * Math.exp(-0.5 * step * step);
+        n++;
+      }
+    }
+    return sortByMz(profileMzs, profileIntensities, n);
+  }
+
+  /**
+   * @return a fragment spectrum sorted by m/z
+   */
+  public DataPoint[] createSpectrum(int numSignals, double maxMz) {
+    final DataPoint[] dps = new DataPoint[numSignals];
+    for (int i = 0; i < numSignals; i++) {
+      dps[i] = new SimpleDataPoint(50 + rand.nextDouble() * (maxMz - 50),
+          Math.pow(10, 2 + rand.nextDouble() * 4));
+    }
+    Arrays.sort(dps, DataPointSorter.DEFAULT_MZ_ASCENDING);
+    return dps;
+  }
+
+  /**
+   * A similar spectrum that shares a fraction of the signals with small m/z and intensity errors
+   * and replaces the others by random signals.
+   *
+   * @return a fragment spectrum sorted by m/z
+   */
+  public DataPoint[] createSimilarSpectrum(DataPoint[] spectrum, double fractionShared,
+      double maxMz) {
+    final DataPoint[] dps = new DataPoint[spectrum.length];
+    for (int i = 0; i < spectrum.length; i++) {
+      final DataPoint dp = spectrum[i];
+      if (rand.nextDouble() < fractionShared) {
+        dps[i] = new SimpleDataPoint(dp.getMZ() * (1 + rand.nextGaussian() * MZ_ERROR_PPM * 1E-6),
+            dp.getIntensity() * (0.7 + rand.nextDouble() * 0.6));
+      } else {
+        dps[i] = new SimpleDataPoint(50 + rand.nextDouble() * (maxMz - 50),
+            Math.pow(10, 2 + rand.nextDouble() * 4));
+      }
+    }
+    Arrays.sort(dps, DataPointSorter.DEFAULT_MZ_ASCENDING);
+    return dps;
+  }
+
+  /**
+   * @return the extracted ion chromatogram of a compound from the MS1 scans of a file or null if
+   * the compound is detected in less than 3 scans
+   */
+  @Nullable
+  public static IonTimeSeries<Scan> createIonTimeSeries(@NotNull RawDataFile file,
+      @NotNull Compound compound) {
+    final List<Scan> scans = file.getScans();
+    final float minRt = compound.rt() - 3 * compound.sigma();
+    final float maxRt = compound.rt() + 3 * compound.sigma();
+    int first = 0;
+    while (first < scans.size() && scans.get(first).getRetentionTime() < minRt) {
+      first++;
+    }
+    int last = first;
+    while (last < scans.size() && scans.get(last).getRetentionTime() <= maxRt) {
+      last++;
+    }
+    if (last - first < 3) {
+      return null;
+    }
+    final List<Scan> subList = scans.subList(first, last);
+    final double[] mzs = new double[subList.size()];
+    final double[] intensities = new double[subList.size()];
+    for (int i = 0; i < subList.size(); i++) {
+      mzs[i] = compound.mz();
+      intensities[i] = compound.intensityAt(subList.get(i).getRetentionTime());
+    }
+    return new SimpleIonTimeSeries(null, mzs, intensities, subList);
+  }
+
+  /**
+   * Creates a feature list with one row per compound that elutes in at least 3 scans of the file
+   */
+  public static ModularFeatureList createFeatureList(String name, RawDataFile file,
+      List<Compound> compounds) {
+    final ModularFeatureList flist = new ModularFeatureList(name, null, file);
+    flist.setSelectedScans(file, file.getScans());
+    int id = 1;
+    for (Compound compound : compounds) {
+      final IonTimeSeries<Scan> series = createIonTimeSeries(file, compound);
+      if (series == null) {
+        continue;
+      }
+      final ModularFeature feature = new ModularFeature(flist, file, series,
+          FeatureStatus.DETECTED);
+      flist.addRow(new ModularFeatureListRow(flist, id++, feature));
+    }
+    return flist;
+  }
+}
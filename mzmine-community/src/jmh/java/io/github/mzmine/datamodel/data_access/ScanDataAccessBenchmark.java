@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.datamodel.data_access;
+
+import io.github.mzmine.benchmark.SyntheticDataGenerator;
+import io.github.mzmine.datamodel.MassList;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.data_access.EfficientDataAccess.ScanDataType;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loop over all data points of all scans of a synthetic data file with {@link ScanDataAccess}
+ * compared to copying the data of each scan or mass list into new arrays.
+ * <p>
+ * Run with gradlew :mzmine-community:jmh -Pjmh.includes=ScanDataAccessBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "-Xmx8g"})
+public class ScanDataAccessBenchmark {
+
+  @Param({"RAW", "MASS_LIST"})
+  public ScanDataType dataType;
+
+  @Param({"2000"})
+  public int numScans;
+
+  @Param({"2000"})
+  public int numCompounds;
+
+  private RawDataFile file;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    final SyntheticDataGenerator generator = new SyntheticDataGenerator(42);
+    final var compounds = generator.createCompounds(numCompounds, 15);
+    file = generator.createRawDataFile("access", compounds, numScans, 15,
+        MassSpectrumType.PROFILE, 200);
+  }
+
+  @Benchmark
+  public double scanDataAccess() {
+    final ScanDataAccess access = EfficientDataAccess.of(file, dataType);
+    double sum = 0;
+    while (access.hasNextScan()) {
+      access.nextScan();
+      for (int i = 0; i < access.getNumberOfDataPoints(); i++) {
+        sum += access.getMzValue(i) * access.getIntensityValue(i);
+      }
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public double copyToNewArrays() {
+    double sum = 0;
+    for (Scan scan : file.getScans()) {
+      final double[] mzs;
+      final double[] intensities;
+      if (dataType == ScanDataType.RAW) {
+        mzs = scan.getMzValues(new double[scan.getNumberOfDataPoints()]);
+        intensities = scan.getIntensityValues(new double[scan.getNumberOfDataPoints()]);
+      } else {
+        final MassList masses = scan.getMassList();
+        mzs = masses.getMzValues(new double[masses.getNumberOfDataPoints()]);
+        intensities = masses.getIntensityValues(new double[masses.getNumberOfDataPoints()]);
+      }
+      for (int i = 0; i < mzs.length; i++) {
+        sum += mzs[i] * intensities[i];
+      }
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.align_join;
+
+import io.github.mzmine.benchmark.SyntheticDataGenerator;
+import io.github.mzmine.benchmark.SyntheticDataGenerator.Compound;
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.parameters.parametertypes.OriginalFeatureListHandlingParameter.OriginalFeatureListOption;
+import io.github.mzmine.parameters.parametertypes.selectors.FeatureListsSelection;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance.Unit;
+import io.github.mzmine.project.impl.MZmineProjectImpl;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link JoinAlignerTask} on synthetic feature lists of the same compounds with retention time
+ * shifts and missing compounds per sample. The original feature lists are kept so that they can be
+ * aligned again in the next invocation.
+ * <p>
+ * Run with gradlew :mzmine-community:jmh -Pjmh.includes=JoinAlignerBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "-Xmx8g"})
+public class JoinAlignerBenchmark {
+
+  @Param({"10", "50"})
+  public int numSamples;
+
+  @Param({"5000"})
+  public int numCompounds;
+
+  private List<RawDataFile> files;
+  private ParameterSet parameters;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    final SyntheticDataGenerator generator = new SyntheticDataGenerator(42);
+    final List<Compound> compounds = generator.createCompounds(numCompounds, 15);
+
+    files = new ArrayList<>(numSamples);
+    final ModularFeatureList[] flists = new ModularFeatureList[numSamples];
+    for (int i = 0; i < numSamples; i++) {
+      final List<Compound> sample = generator.createSample(compounds, 0.05f, 0.2);
+      final RawDataFile file = generator.createRawDataFile("sample_" + i, sample, 1000, 15,
+          MassSpectrumType.CENTROIDED, 0);
+      files.add(file);
+      flists[i] = SyntheticDataGenerator.createFeatureList("sample_" + i, file, sample);
+    }
+
+    parameters = new JoinAlignerParameters().cloneParameterSet();
+    parameters.setParameter(JoinAlignerParameters.peakLists, new FeatureListsSelection(flists));
+    parameters.setParameter(JoinAlignerParameters.peakListName, "aligned");
+    parameters.setParameter(JoinAlignerParameters.MZTolerance, new MZTolerance(0.002, 5));
+    parameters.setParameter(JoinAlignerParameters.MZWeight, 3d);
+    parameters.setParameter(JoinAlignerParameters.RTTolerance, new RTTolerance(0.1f, Unit.MINUTES));
+    parameters.setParameter(JoinAlignerParameters.RTWeight, 1d);
+    parameters.setParameter(JoinAlignerParameters.mobilityTolerance, false);
+    parameters.setParameter(JoinAlignerParameters.SameChargeRequired, false);
+    parameters.setParameter(JoinAlignerParameters.SameIDRequired, false);
+    parameters.setParameter(JoinAlignerParameters.compareIsotopePattern, false);
+    parameters.setParameter(JoinAlignerParameters.compareSpectraSimilarity, false);
+    parameters.setParameter(JoinAlignerParameters.handleOriginal, OriginalFeatureListOption.KEEP);
+  }
+
+  @Benchmark
+  public int align() {
+    final MZmineProject project = new MZmineProjectImpl();
+    files.forEach(project::addFile);
+    final var task = new JoinAlignerTask(project, null, Instant.now(), parameters,
+        JoinAlignerModule.class);
+    task.run();
+    return project.getCurrentFeatureLists().getFirst().getNumberOfRows();
+  }
+}
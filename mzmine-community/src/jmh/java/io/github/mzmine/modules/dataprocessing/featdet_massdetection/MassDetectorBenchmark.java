@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.featdet_massdetection;
+
+import io.github.mzmine.benchmark.SyntheticDataGenerator;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.auto.AutoMassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.centroid.CentroidMassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.exactmass.ExactMassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.factor_of_lowest.FactorOfLowestMassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.localmaxima.LocalMaxMassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.recursive.RecursiveMassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.wavelet.WaveletMassDetector;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Mass detection on all scans of a synthetic data file for each {@link MassDetectors} algorithm.
+ * The centroid detector runs on centroid data, all others on profile data.
+ * <p>
+ * Run with gradlew :mzmine-community:jmh -Pjmh.includes=MassDetectorBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "-Xmx8g"})
+public class MassDetectorBenchmark {
+
+  private static final double NOISE_LEVEL = 500;
+
+  @Param({"CENTROID", "EXACT", "LOCAL_MAX", "RECURSIVE", "WAVELET", "FACTOR_OF_LOWEST", "AUTO"})
+  public String detectorName;
+
+  @Param({"1000"})
+  public int numScans;
+
+  @Param({"2000"})
+  public int numCompounds;
+
+  private RawDataFile file;
+  private MassDetector detector;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    // names of the MassDetectors enum, which is not used as it requires the mzmine core
+    detector = switch (detectorName) {
+      case "CENTROID" -> new CentroidMassDetector(NOISE_LEVEL);
+      case "EXACT" -> new ExactMassDetector(NOISE_LEVEL);
+      case "LOCAL_MAX" -> new LocalMaxMassDetector(NOISE_LEVEL);
+      case "RECURSIVE" -> new RecursiveMassDetector(NOISE_LEVEL, 0.0001, 0.1);
+      case "WAVELET" -> new WaveletMassDetector(NOISE_LEVEL, 3, 0.3);
+      case "FACTOR_OF_LOWEST" -> new FactorOfLowestMassDetector(3);
+      case "AUTO" -> new AutoMassDetector(NOISE_LEVEL);
+      default -> throw new IllegalArgumentException("Unknown mass detector " + detectorName);
+    };
+
+    final MassSpectrumType spectrumType = detectorName.equals("CENTROID")
+        ? MassSpectrumType.CENTROIDED : MassSpectrumType.PROFILE;
+    final SyntheticDataGenerator generator = new SyntheticDataGenerator(42);
+    final var compounds = generator.createCompounds(numCompounds, 15);
+    file = generator.createRawDataFile("massdetection", compounds, numScans, 15, spectrumType,
+        200);
+  }
+
+  @Benchmark
+  public long detectMasses() {
+    long signals = 0;
+    for (Scan scan : file.getScans()) {
+      signals += detector.getMassValues(scan)[0].length;
+    }
+    return signals;
+  }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.group_spectral_networking;
+
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.datamodel.features.correlation.SpectralSimilarity;
+import io.github.mzmine.datamodel.impl.SimpleDataPoint;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.DataPointSorter;
+import io.github.mzmine.util.collections.StreamUtils;
+import io.github.mzmine.util.scans.similarity.Weights;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * All-vs-all modified cosine of the data point based pair stream compared to the
+ * {@link PackedSpectralNetworkingScorer} on synthetic spectra. Spectra are created from compound
+ * families with shared fragments and modifications that shift a part of the fragments by the
+ * precursor delta.
+ * <p>
+ * Run with gradlew :mzmine-community:jmh -Pjmh.includes=SpectralNetworkingBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "-Xmx8g"})
+public class SpectralNetworkingBenchmark {
+
+  private static final double[] MODIFICATIONS = {0, 14.01565, 15.99491, 18.01056, 2.01565,
+      42.01056, 162.05282};
+
+  private final MZTolerance mzTol = new MZTolerance(0.005, 10);
+  private final int minMatch = 4;
+  private final double minCosine = 0.7;
+
+  @Param({"10000", "50000"})
+  public int numSpectra;
+
+  @Param({"50"})
+  public double maxMzDelta;
+
+  private double[] precursorMzs;
+  private List<DataPoint[]> spectra;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    final Random rand = new Random(42);
+    final int numFamilies = Math.max(1, numSpectra / 20);
+    final double[][] familyFragments = new double[numFamilies][];
+    final double[] familyPrecursors = new double[numFamilies];
+    for (int f = 0; f < numFamilies; f++) {
+      familyPrecursors[f] = 150 + rand.nextDouble() * 850;
+      familyFragments[f] = new double[10 + rand.nextInt(40)];
+      for (int k = 0; k < familyFragments[f].length; k++) {
+        familyFragments[f][k] = 50 + rand.nextDouble() * (familyPrecursors[f] - 60);
+      }
+    }
+
+    record Spectrum(double precursorMz, DataPoint[] data) {
+
+    }
+    List<Spectrum> list = new ArrayList<>(numSpectra);
+    for (int i = 0; i < numSpectra; i++) {
+      final int f = rand.nextInt(numFamilies);
+      final double modification = MODIFICATIONS[rand.nextInt(MODIFICATIONS.length)];
+      final double precursorMz = familyPrecursors[f] + modification;
+      List<DataPoint> dps = new ArrayList<>();
+      for (double fragment : familyFragments[f]) {
+        if (rand.nextDouble() < 0.2) {
+          continue;
+        }
+        // part of the fragments carry the modification
+        final double mz = (rand.nextBoolean() ? fragment : fragment + modification)
+                          + rand.nextGaussian() * 0.001;
+        dps.add(new SimpleDataPoint(mz, Math.pow(10, 2 + rand.nextDouble() * 4)));
+      }
+      // noise
+      final int noise = rand.nextInt(15);
+      for (int k = 0; k < noise; k++) {
+        dps.add(new SimpleDataPoint(50 + rand.nextDouble() * (precursorMz - 50),
+            Math.pow(10, 2 + rand.nextDouble() * 2)));
+      }
+      DataPoint[] data = dps.toArray(DataPoint[]::new);
+      Arrays.sort(data, DataPointSorter.DEFAULT_INTENSITY);
+      list.add(new Spectrum(precursorMz, data));
+    }
+    list.sort((a, b) -> Double.compare(a.precursorMz(), b.precursorMz()));
+
+    precursorMzs = list.stream().mapToDouble(Spectrum::precursorMz).toArray();
+    spectra = list.stream().map(Spectrum::data).toList();
+  }
+
+  @Benchmark
+  public long dataPointPairs() {
+    final List<Integer> indices = new ArrayList<>(numSpectra);
+    for (int i = 0; i < numSpectra; i++) {
+      indices.add(i);
+    }
+    final LongAdder edges = new LongAdder();
+    StreamUtils.processPairs(indices, null, true,
+        (first, later) -> maxMzDelta < precursorMzs[later] - precursorMzs[first], pair -> {
+          final int a = pair.left();
+          final int b = pair.right();
+          SpectralSimilarity sim = SpectralNetworkingTask.createMS2SimModificationAware(mzTol,
+              spectra.get(a), spectra.get(b), minMatch, SpectralNetworkingTask.SIZE_OVERLAP,
+              precursorMzs[a], precursorMzs[b]);
+          if (sim != null && sim.cosine() >= minCosine) {
+            edges.increment();
+          }
+        });
+    return edges.sum();
+  }
+
+  @Benchmark
+  public long packedScorer() {
+    final LongAdder edges = new LongAdder();
+    var scorer = new PackedSpectralNetworkingScorer(precursorMzs, spectra, mzTol, Weights.SQRT,
+        minMatch, minCosine, maxMzDelta, 0);
+    scorer.scoreAll(null, null, (a, b, similarity) -> edges.increment());
+    return edges.sum();
+  }
+
+  @Benchmark
+  public long packedScorerTop6Prefilter() {
+    final LongAdder edges = new LongAdder();
+    var scorer = new PackedSpectralNetworkingScorer(precursorMzs, spectra, mzTol, Weights.SQRT,
+        minMatch, minCosine, maxMzDelta, 6);
+    scorer.scoreAll(null, null, (a, b, similarity) -> edges.increment());
+    return edges.sum();
+  }
+}
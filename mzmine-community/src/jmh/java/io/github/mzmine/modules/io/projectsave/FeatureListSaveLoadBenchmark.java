@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.projectsave;
+
+import io.github.mzmine.benchmark.SyntheticDataGenerator;
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.modules.io.projectload.version_3_0.FeatureListLoadTask;
+import io.github.mzmine.project.impl.MZmineProjectImpl;
+import io.github.mzmine.util.files.FileAndPathUtil;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Saving and loading of a synthetic feature list as it is done during project save and load. Uses
+ * the XML or the binary feature list format. Saving the raw data files is not covered because
+ * this requires imported files on disk.
+ * <p>
+ * Run with gradlew :mzmine-community:jmh -Pjmh.includes=FeatureListSaveLoadBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "-Xmx8g"})
+public class FeatureListSaveLoadBenchmark {
+
+  @Param({"false", "true"})
+  public boolean binary;
+
+  @Param({"10000"})
+  public int numCompounds;
+
+  private RawDataFile file;
+  private ModularFeatureList flist;
+  private File savedFile;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    final SyntheticDataGenerator generator = new SyntheticDataGenerator(42);
+    final var compounds = generator.createCompounds(numCompounds, 15);
+    file = generator.createRawDataFile("saveload", compounds, 2000, 15,
+        MassSpectrumType.CENTROIDED, 0);
+    flist = SyntheticDataGenerator.createFeatureList("saveload", file, compounds);
+
+    savedFile = FileAndPathUtil.createTempFile("mzmine_benchmark_flist", ".zip");
+    save(savedFile);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    savedFile.delete();
+  }
+
+  private void save(File target) throws IOException {
+    try (var zos = new ZipOutputStream(new FileOutputStream(target))) {
+      new FeatureListSaveTask(flist, zos, binary).run();
+    }
+  }
+
+  @Benchmark
+  public long saveFeatureList() throws IOException {
+    final File target = FileAndPathUtil.createTempFile("mzmine_benchmark_flist", ".zip");
+    try {
+      save(target);
+      return target.length();
+    } finally {
+      target.delete();
+    }
+  }
+
+  @Benchmark
+  public int loadFeatureList() throws IOException {
+    final MZmineProject project = new MZmineProjectImpl();
+    project.addFile(file);
+    try (var zip = new ZipFile(savedFile)) {
+      new FeatureListLoadTask(null, project, zip).run();
+    }
+    return project.getCurrentFeatureLists().getFirst().getNumberOfRows();
+  }
+}
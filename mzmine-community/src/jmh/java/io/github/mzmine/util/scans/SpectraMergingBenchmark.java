@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.scans;
+
+import io.github.mzmine.benchmark.SyntheticDataGenerator;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.MergedMassSpectrum;
+import io.github.mzmine.datamodel.MergedMassSpectrum.MergingType;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.scans.SpectraMerging.IntensityMergingType;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Merging of consecutive centroid scans of a synthetic data file, similar to the merging of MS1
+ * spectra across a chromatographic feature. Scans are merged based on their mass lists.
+ * <p>
+ * Run with gradlew :mzmine-community:jmh -Pjmh.includes=SpectraMergingBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "-Xmx8g"})
+public class SpectraMergingBenchmark {
+
+  private final MZTolerance mzTol = SpectraMerging.defaultMs1MergeTol;
+
+  @Param({"5", "50"})
+  public int spectraPerMerge;
+
+  @Param({"SUMMED", "MAXIMUM"})
+  public IntensityMergingType intensityMergingType;
+
+  @Param({"1000"})
+  public int numScans;
+
+  private List<List<Scan>> groups;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    final SyntheticDataGenerator generator = new SyntheticDataGenerator(42);
+    final var compounds = generator.createCompounds(2000, 15);
+    final var file = generator.createRawDataFile("merging", compounds, numScans, 15,
+        MassSpectrumType.CENTROIDED, 300);
+    final List<Scan> scans = file.getScans();
+    groups = new ArrayList<>();
+    for (int i = 0; i + spectraPerMerge <= scans.size(); i += spectraPerMerge) {
+      groups.add(scans.subList(i, i + spectraPerMerge));
+    }
+  }
+
+  @Benchmark
+  public long mergeSpectra() {
+    long signals = 0;
+    for (List<Scan> group : groups) {
+      final MergedMassSpectrum merged = SpectraMerging.mergeSpectra(group, mzTol,
+          intensityMergingType, MergingType.ALL_ENERGIES, SpectraMerging.DEFAULT_CENTER_FUNCTION,
+          null);
+      signals += merged.getNumberOfDataPoints();
+    }
+    return signals;
+  }
+
+  @Benchmark
+  public long mergeMzsAndIntensities() {
+    long signals = 0;
+    for (List<Scan> group : groups) {
+      signals += SpectraMerging.calculatedMergedMzsAndIntensities(group, mzTol,
+          intensityMergingType, SpectraMerging.DEFAULT_CENTER_FUNCTION, null, null, null)[0].length;
+    }
+    return signals;
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.scans.similarity.impl.cosine;
+
+import io.github.mzmine.benchmark.SyntheticDataGenerator;
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.scans.similarity.HandleUnmatchedSignalOptions;
+import io.github.mzmine.util.scans.similarity.SpectralSimilarity;
+import io.github.mzmine.util.scans.similarity.Weights;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link WeightedCosineSpectralSimilarity} on pairs of synthetic spectra that share a part of
+ * their signals. Compares the data point based alignment to the array based overload that uses the
+ * packed cosine kernel.
+ * <p>
+ * Run with gradlew :mzmine-community:jmh -Pjmh.includes=WeightedCosineSimilarityBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "-Xmx8g"})
+public class WeightedCosineSimilarityBenchmark {
+
+  private final MZTolerance mzTol = new MZTolerance(0.005, 10);
+  private final WeightedCosineSpectralSimilarity similarity = new WeightedCosineSpectralSimilarity();
+
+  @Param({"20", "200"})
+  public int signalsPerSpectrum;
+
+  @Param({"10000"})
+  public int numPairs;
+
+  private ParameterSet parameters;
+  private List<DataPoint[][]> pairs;
+  private List<double[][]> arrayPairs;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    parameters = new WeightedCosineSpectralSimilarityParameters().cloneParameterSet();
+    parameters.setParameter(WeightedCosineSpectralSimilarityParameters.weight, Weights.SQRT);
+    parameters.setParameter(WeightedCosineSpectralSimilarityParameters.minCosine, 0d);
+    parameters.setParameter(WeightedCosineSpectralSimilarityParameters.handleUnmatched,
+        HandleUnmatchedSignalOptions.KEEP_ALL_AND_MATCH_TO_ZERO);
+
+    final SyntheticDataGenerator generator = new SyntheticDataGenerator(42);
+    pairs = new ArrayList<>(numPairs);
+    arrayPairs = new ArrayList<>(numPairs);
+    for (int i = 0; i < numPairs; i++) {
+      final DataPoint[] library = generator.createSpectrum(signalsPerSpectrum, 800);
+      final DataPoint[] query = generator.createSimilarSpectrum(library, 0.6, 800);
+      pairs.add(new DataPoint[][]{library, query});
+      arrayPairs.add(new double[][]{mzs(library), intensities(library), mzs(query),
+          intensities(query)});
+    }
+  }
+
+  private static double[] mzs(DataPoint[] dps) {
+    return Arrays.stream(dps).mapToDouble(DataPoint::getMZ).toArray();
+  }
+
+  private static double[] intensities(DataPoint[] dps) {
+    return Arrays.stream(dps).mapToDouble(DataPoint::getIntensity).toArray();
+  }
+
+  @Benchmark
+  public double dataPoints() {
+    double sum = 0;
+    for (DataPoint[][] pair : pairs) {
+      SpectralSimilarity sim = similarity.getSimilarity(parameters, mzTol, 2, pair[0], pair[1]);
+      if (sim != null) {
+        sum += sim.getScore();
+      }
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public double arrays() {
+    double sum = 0;
+    for (double[][] pair : arrayPairs) {
+      SpectralSimilarity sim = similarity.getSimilarity(parameters, mzTol, 2, pair[0], pair[1],
+          pair[2], pair[3]);
+      if (sim != null) {
+        sum += sim.getScore();
+      }
+    }
+    return sum;
+  }
+}
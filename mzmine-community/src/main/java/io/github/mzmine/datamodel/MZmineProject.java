@@ -103,6 +103,11 @@ public interface MZmineProject {
    */
   void addFile(@NotNull RawDataFile newFile);
 
+  /**
+   * Adds a new RawDataFile to the project at the index or at the end if the index is out of bounds.
+   */
+  void addFile(int index, @NotNull RawDataFile newFile);
+
   /**
    * Removes a RawDataFile from the project.
    */
@@ -43,7 +43,7 @@ import java.util.concurrent.ConcurrentHashMap;
  *
  * @author Robin Schmid (https://github.com/robinschmid)
  */
-public class CachedFeatureDataAccess {
+public class CachedFeatureDataAccess implements FeatureDataCache {
 
   protected final Map<Feature, double[]> intensityMap;
   protected final Map<Feature, double[]> mzMap;
@@ -99,6 +99,7 @@ public class CachedFeatureDataAccess {
    * @param f feature
    * @return the intensity array of this feature
    */
+  @Override
   public double[] getIntensityValues(Feature f) {
     assert f != null;
     return intensityMap.computeIfAbsent(f, feature -> feature.getFeatureData()
@@ -111,6 +112,7 @@ public class CachedFeatureDataAccess {
    * @param f feature
    * @return the m/z array of this feature
    */
+  @Override
   public double[] getMzValues(Feature f) {
     assert f != null;
     return mzMap.computeIfAbsent(f, feature -> feature.getFeatureData()
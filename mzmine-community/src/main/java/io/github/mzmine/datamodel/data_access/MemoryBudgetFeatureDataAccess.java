@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.datamodel.data_access;
+
+import io.github.mzmine.datamodel.FeatureStatus;
+import io.github.mzmine.datamodel.features.Feature;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Thread-safe feature data cache with a memory budget. Every feature of the provided rows gets a
+ * fixed index. Intensity and m/z arrays are loaded lazily on first access and stored in slots by
+ * feature index, so lookups are lock-free. Once the cached arrays exceed the byte budget, arrays
+ * that were not accessed recently are evicted (clock approximation of LRU) and are reloaded from
+ * the feature data (usually memory mapped) on the next access.
+ * <p>
+ * Features that are not part of the provided rows are not cached.
+ */
+public class MemoryBudgetFeatureDataAccess implements FeatureDataCache {
+
+  private final Object2IntOpenHashMap<Feature> featureIndex;
+  private final int numFeatures;
+  // slots [0, numFeatures) hold intensities, [numFeatures, 2*numFeatures) m/z values
+  private final AtomicReferenceArray<double[]> slots;
+  private final AtomicIntegerArray recentlyUsed;
+  private final AtomicLong cachedBytes = new AtomicLong(0);
+  private final long maxBytes;
+
+  private final ReentrantLock evictionLock = new ReentrantLock();
+  // guarded by evictionLock
+  private int clockHand = 0;
+
+  /**
+   * @param rows     all features of these rows are cached
+   * @param maxBytes maximum bytes of cached arrays
+   */
+  public MemoryBudgetFeatureDataAccess(FeatureListRow[] rows, long maxBytes) {
+    this.maxBytes = maxBytes;
+    featureIndex = new Object2IntOpenHashMap<>();
+    featureIndex.defaultReturnValue(-1);
+    for (FeatureListRow row : rows) {
+      for (Feature feature : row.getFeatures()) {
+        if (feature != null && !feature.getFeatureStatus().equals(FeatureStatus.UNKNOWN)) {
+          featureIndex.putIfAbsent(feature, featureIndex.size());
+        }
+      }
+    }
+    numFeatures = featureIndex.size();
+    slots = new AtomicReferenceArray<>(numFeatures * 2);
+    recentlyUsed = new AtomicIntegerArray(numFeatures * 2);
+  }
+
+  @Override
+  public double[] getIntensityValues(Feature f) {
+    assert f != null;
+    final int index = featureIndex.getInt(f);
+    if (index < 0) {
+      return loadIntensityValues(f);
+    }
+    return getOrLoad(index, f, false);
+  }
+
+  @Override
+  public double[] getMzValues(Feature f) {
+    assert f != null;
+    final int index = featureIndex.getInt(f);
+    if (index < 0) {
+      return loadMzValues(f);
+    }
+    return getOrLoad(numFeatures + index, f, true);
+  }
+
+  /**
+   * @return bytes of all currently cached arrays
+   */
+  public long getCachedBytes() {
+    return cachedBytes.get();
+  }
+
+  private double[] getOrLoad(int slot, Feature f, boolean mz) {
+    double[] values = slots.get(slot);
+    if (values == null) {
+      values = mz ? loadMzValues(f) : loadIntensityValues(f);
+      if (slots.compareAndSet(slot, null, values)) {
+        if (cachedBytes.addAndGet(sizeOf(values)) > maxBytes) {
+          evict();
+        }
+      } else {
+        // loaded by another thread
+        final double[] other = slots.get(slot);
+        if (other != null) {
+          values = other;
+        }
+      }
+    }
+    recentlyUsed.lazySet(slot, 1);
+    return values;
+  }
+
+  /**
+   * Evict arrays until the cache fits into the budget. Only one thread evicts at a time, the others
+   * continue.
+   */
+  private void evict() {
+    if (!evictionLock.tryLock()) {
+      return;
+    }
+    try {
+      final int numSlots = slots.length();
+      // two rounds: first round clears the recently used flags
+      for (int checked = 0; checked < numSlots * 2 && cachedBytes.get() > maxBytes; checked++) {
+        final int slot = clockHand;
+        clockHand = (clockHand + 1) % numSlots;
+        if (recentlyUsed.getAndSet(slot, 0) == 1) {
+          continue;
+        }
+        final double[] removed = slots.getAndSet(slot, null);
+        if (removed != null) {
+          cachedBytes.addAndGet(-sizeOf(removed));
+        }
+      }
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  private static long sizeOf(double[] values) {
+    return (long) values.length * Double.BYTES;
+  }
+
+  private static double[] loadIntensityValues(Feature feature) {
+    return feature.getFeatureData().getIntensityValues(new double[feature.getNumberOfDataPoints()]);
+  }
+
+  private static double[] loadMzValues(Feature feature) {
+    return feature.getFeatureData().getMzValues(new double[feature.getNumberOfDataPoints()]);
+  }
+}
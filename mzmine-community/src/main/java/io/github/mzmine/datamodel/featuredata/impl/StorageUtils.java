@@ -26,7 +26,10 @@
 package io.github.mzmine.datamodel.featuredata.impl;
 
 import io.github.mzmine.datamodel.featuredata.IonSeries;
+import io.github.mzmine.datamodel.featuredata.impl.StoredDoubleValues.DoubleValues;
+import io.github.mzmine.datamodel.featuredata.impl.StoredDoubleValues.FloatValues;
 import io.github.mzmine.datamodel.impl.AbstractStorableSpectrum;
+import io.github.mzmine.main.StoragePrecision;
 import io.github.mzmine.util.DataPointUtils;
 import io.github.mzmine.util.MemoryMapStorage;
 import java.io.IOException;
@@ -47,6 +50,20 @@ import org.jetbrains.annotations.Nullable;
  */
 public class StorageUtils {
 
+  private static volatile StoragePrecision storagePrecision = StoragePrecision.FULL;
+
+  /**
+   * @return the precision of newly stored m/z and intensity values of scans, mass lists and
+   * mobility scans
+   */
+  public static StoragePrecision getStoragePrecision() {
+    return storagePrecision;
+  }
+
+  public static void setStoragePrecision(StoragePrecision precision) {
+    storagePrecision = precision == null ? StoragePrecision.FULL : precision;
+  }
+
   public static <T> List<double[][]> mapTo2dDoubleArrayList(List<T> objects,
       Function<T, double[]> firstDimension, Function<T, double[]> secondDimension) {
     return objects.stream().<double[][]>mapMulti((scan, c) -> {
@@ -215,4 +232,47 @@ public class StorageUtils {
     }
     return buffer;
   }
+
+  /**
+   * Stores spectral m/z values with the current {@link #getStoragePrecision()}.
+   *
+   * @param storage The storage to be used. If null, the values are kept in ram.
+   * @param values  The values to be stored. May be wrapped if values are stored in full
+   *                precision.
+   */
+  @NotNull
+  public static StoredDoubleValues storeMzValues(@Nullable final MemoryMapStorage storage,
+      @NotNull final double[] values) {
+    return storeValues(storage, values, storagePrecision.isReducedMz());
+  }
+
+  /**
+   * Stores spectral intensity values with the current {@link #getStoragePrecision()}.
+   *
+   * @param storage The storage to be used. If null, the values are kept in ram.
+   * @param values  The values to be stored. May be wrapped if values are stored in full
+   *                precision.
+   */
+  @NotNull
+  public static StoredDoubleValues storeIntensityValues(@Nullable final MemoryMapStorage storage,
+      @NotNull final double[] values) {
+    return storeValues(storage, values, storagePrecision.isReducedIntensities());
+  }
+
+  @NotNull
+  private static StoredDoubleValues storeValues(@Nullable final MemoryMapStorage storage,
+      @NotNull final double[] values, boolean reduced) {
+    if (values.length == 0) {
+      return StoredDoubleValues.EMPTY;
+    }
+    if (!reduced) {
+      return new DoubleValues(storeValuesToDoubleBuffer(storage, values));
+    }
+
+    final int[] floatBits = new int[values.length];
+    for (int i = 0; i < values.length; i++) {
+      floatBits[i] = Float.floatToRawIntBits((float) values[i]);
+    }
+    return new FloatValues(storeValuesToIntBuffer(storage, floatBits));
+  }
 }
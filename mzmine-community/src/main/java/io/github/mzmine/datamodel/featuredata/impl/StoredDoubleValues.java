@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.datamodel.featuredata.impl;
+
+import io.github.mzmine.main.StoragePrecision;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Read-only random access to stored double values. Depending on the {@link StoragePrecision}, the
+ * values are stored as doubles or with reduced precision as floats, which halves the size of the
+ * memory mapped temp files. Use {@link StorageUtils#storeMzValues} and
+ * {@link StorageUtils#storeIntensityValues} to create instances.
+ */
+public sealed interface StoredDoubleValues {
+
+  StoredDoubleValues EMPTY = new DoubleValues(DoubleBuffer.wrap(new double[0]));
+
+  /**
+   * @return the number of values
+   */
+  int size();
+
+  double get(int index);
+
+  /**
+   * Copies values into dst.
+   *
+   * @param index  the first value to copy
+   * @param dst    the destination array
+   * @param offset the first index in dst
+   * @param length the number of values to copy
+   */
+  void get(int index, double[] dst, int offset, int length);
+
+  /**
+   * @return the stored buffer if values are stored as doubles, otherwise a decoded copy. Prefer the
+   * other accessors for reduced precision values.
+   */
+  @NotNull DoubleBuffer asDoubleBuffer();
+
+  /**
+   * Full precision values
+   */
+  record DoubleValues(@NotNull DoubleBuffer buffer) implements StoredDoubleValues {
+
+    @Override
+    public int size() {
+      return buffer.limit();
+    }
+
+    @Override
+    public double get(int index) {
+      return buffer.get(index);
+    }
+
+    @Override
+    public void get(int index, double[] dst, int offset, int length) {
+      buffer.get(index, dst, offset, length);
+    }
+
+    @Override
+    public @NotNull DoubleBuffer asDoubleBuffer() {
+      return buffer;
+    }
+  }
+
+  /**
+   * Reduced precision values stored as the raw int bits of floats, because the storage maps int
+   * and double arrays.
+   */
+  record FloatValues(@NotNull IntBuffer floatBits) implements StoredDoubleValues {
+
+    @Override
+    public int size() {
+      return floatBits.limit();
+    }
+
+    @Override
+    public double get(int index) {
+      return Float.intBitsToFloat(floatBits.get(index));
+    }
+
+    @Override
+    public void get(int index, double[] dst, int offset, int length) {
+      for (int i = 0; i < length; i++) {
+        dst[offset + i] = Float.intBitsToFloat(floatBits.get(index + i));
+      }
+    }
+
+    @Override
+    public @NotNull DoubleBuffer asDoubleBuffer() {
+      final double[] values = new double[size()];
+      get(0, values, 0, values.length);
+      return DoubleBuffer.wrap(values);
+    }
+  }
+}
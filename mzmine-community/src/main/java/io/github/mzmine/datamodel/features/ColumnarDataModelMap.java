@@ -0,0 +1,418 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.datamodel.features;
+
+import io.github.mzmine.datamodel.features.types.DataType;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javafx.beans.InvalidationListener;
+import javafx.collections.MapChangeListener;
+import javafx.collections.ObservableMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The value map of a {@link ModularFeatureListRow} or {@link ModularFeature}. Values of numeric
+ * types are stored in the primitive {@link DataModelColumns} of the feature list, all other values
+ * in a small hash map that is only created when needed. Change events are only created if a
+ * listener was added to this map. Once the data model is removed from its feature list, the map is
+ * {@link #release() released} and keeps all values in the hash map.
+ */
+@SuppressWarnings("rawtypes")
+final class ColumnarDataModelMap extends AbstractMap<DataType, Object> implements
+    ObservableMap<DataType, Object> {
+
+  private static final int RELEASED = -1;
+
+  private final @NotNull DataModelColumns columns;
+  // slot in the columns or RELEASED
+  private int slot;
+  private @Nullable Map<DataType, Object> other;
+  private @Nullable List<MapChangeListener<? super DataType, ? super Object>> changeListeners;
+  private @Nullable List<InvalidationListener> invalidationListeners;
+  private @Nullable EntrySet entrySet;
+
+  ColumnarDataModelMap(@NotNull DataModelColumns columns) {
+    this.columns = columns;
+    slot = columns.allocateSlot();
+  }
+
+  /**
+   * Copies all values and listeners to a new map in other columns. Used when data models are
+   * moved to another feature list.
+   */
+  @NotNull ColumnarDataModelMap copyTo(@NotNull DataModelColumns columns) {
+    var copy = new ColumnarDataModelMap(columns);
+    for (Entry<DataType, Object> entry : entrySet()) {
+      copy.put(entry.getKey(), entry.getValue());
+    }
+    if (changeListeners != null) {
+      copy.changeListeners = new CopyOnWriteArrayList<>(changeListeners);
+    }
+    if (invalidationListeners != null) {
+      copy.invalidationListeners = new CopyOnWriteArrayList<>(invalidationListeners);
+    }
+    return copy;
+  }
+
+  /**
+   * Moves the values of the columns into the hash map and releases the slot for other data models.
+   * Called when the data model is removed from its feature list, the map stays usable.
+   */
+  synchronized void release() {
+    if (slot == RELEASED) {
+      return;
+    }
+    for (int c = 0; c < DataModelColumns.numColumns(); c++) {
+      final byte state = columns.getState(c, slot);
+      if (state != DataModelColumns.ABSENT) {
+        if (other == null) {
+          other = new HashMap<>(4);
+        }
+        other.put(DataModelColumns.getColumnType(c),
+            state == DataModelColumns.VALUE ? columns.get(c, slot) : null);
+      }
+    }
+    columns.releaseSlot(slot);
+    slot = RELEASED;
+  }
+
+  /**
+   * @return the column of the key or -1 if the key is not stored in a column
+   */
+  private int columnIndex(Object key) {
+    return slot == RELEASED ? -1 : DataModelColumns.columnIndex(key);
+  }
+
+  private byte state(int column) {
+    return slot == RELEASED ? DataModelColumns.ABSENT : columns.getState(column, slot);
+  }
+
+  @Override
+  public Object get(Object key) {
+    final int column = columnIndex(key);
+    if (column != -1) {
+      final byte state = columns.getState(column, slot);
+      if (state != DataModelColumns.ABSENT) {
+        return state == DataModelColumns.VALUE ? columns.get(column, slot) : null;
+      }
+    }
+    return other == null ? null : other.get(key);
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    final int column = columnIndex(key);
+    if (column != -1 && columns.getState(column, slot) != DataModelColumns.ABSENT) {
+      return true;
+    }
+    return other != null && other.containsKey(key);
+  }
+
+  @Override
+  public Object put(DataType key, Object value) {
+    final boolean existed = containsKey(key);
+    final Object old = existed ? get(key) : null;
+
+    final int column = columnIndex(key);
+    if (column != -1 && DataModelColumns.accepts(column, value)) {
+      columns.set(column, slot, value);
+      if (other != null) {
+        other.remove(key);
+      }
+    } else {
+      // values that do not fit into the column
+      if (column != -1) {
+        columns.remove(column, slot);
+      }
+      if (other == null) {
+        other = new HashMap<>(4);
+      }
+      other.put(key, value);
+      columns.registerOtherType(key);
+    }
+
+    if (hasListeners() && (!existed || !Objects.equals(old, value))) {
+      fireChange(new SimpleChange(key, old, value, true, existed));
+    }
+    return old;
+  }
+
+  @Override
+  public Object remove(Object key) {
+    if (!containsKey(key)) {
+      return null;
+    }
+    final Object old = get(key);
+    final int column = columnIndex(key);
+    if (column != -1) {
+      columns.remove(column, slot);
+    }
+    if (other != null) {
+      other.remove(key);
+    }
+    if (hasListeners()) {
+      fireChange(new SimpleChange((DataType) key, old, null, false, true));
+    }
+    return old;
+  }
+
+  @Override
+  public void clear() {
+    for (Iterator<Entry<DataType, Object>> it = entrySet().iterator(); it.hasNext(); ) {
+      it.next();
+      it.remove();
+    }
+  }
+
+  @Override
+  public @NotNull Set<Entry<DataType, Object>> entrySet() {
+    if (entrySet == null) {
+      entrySet = new EntrySet();
+    }
+    return entrySet;
+  }
+
+  private boolean hasListeners() {
+    return (changeListeners != null && !changeListeners.isEmpty()) || (
+        invalidationListeners != null && !invalidationListeners.isEmpty());
+  }
+
+  private void fireChange(SimpleChange change) {
+    if (invalidationListeners != null) {
+      for (InvalidationListener listener : invalidationListeners) {
+        listener.invalidated(this);
+      }
+    }
+    if (changeListeners != null) {
+      for (MapChangeListener<? super DataType, ? super Object> listener : changeListeners) {
+        listener.onChanged(change);
+      }
+    }
+  }
+
+  @Override
+  public synchronized void addListener(MapChangeListener<? super DataType, ? super Object> listener) {
+    if (changeListeners == null) {
+      changeListeners = new CopyOnWriteArrayList<>();
+    }
+    changeListeners.add(listener);
+  }
+
+  @Override
+  public synchronized void removeListener(
+      MapChangeListener<? super DataType, ? super Object> listener) {
+    if (changeListeners != null) {
+      changeListeners.remove(listener);
+    }
+  }
+
+  @Override
+  public synchronized void addListener(InvalidationListener listener) {
+    if (invalidationListeners == null) {
+      invalidationListeners = new CopyOnWriteArrayList<>();
+    }
+    invalidationListeners.add(listener);
+  }
+
+  @Override
+  public synchronized void removeListener(InvalidationListener listener) {
+    if (invalidationListeners != null) {
+      invalidationListeners.remove(listener);
+    }
+  }
+
+  private class SimpleChange extends MapChangeListener.Change<DataType, Object> {
+
+    private final DataType key;
+    private final Object old;
+    private final Object added;
+    private final boolean wasAdded;
+    private final boolean wasRemoved;
+
+    SimpleChange(DataType key, Object old, Object added, boolean wasAdded, boolean wasRemoved) {
+      super(ColumnarDataModelMap.this);
+      this.key = key;
+      this.old = old;
+      this.added = added;
+      this.wasAdded = wasAdded;
+      this.wasRemoved = wasRemoved;
+    }
+
+    @Override
+    public boolean wasAdded() {
+      return wasAdded;
+    }
+
+    @Override
+    public boolean wasRemoved() {
+      return wasRemoved;
+    }
+
+    @Override
+    public DataType getKey() {
+      return key;
+    }
+
+    @Override
+    public Object getValueAdded() {
+      return added;
+    }
+
+    @Override
+    public Object getValueRemoved() {
+      return old;
+    }
+
+    @Override
+    public String toString() {
+      return wasAdded ? (wasRemoved ? "replaced %s by %s at key %s".formatted(old, added, key)
+          : "added %s at key %s".formatted(added, key)) : "removed %s at key %s".formatted(old, key);
+    }
+  }
+
+  /**
+   * Entries of the columns first, then all other values
+   */
+  private class EntrySet extends AbstractSet<Entry<DataType, Object>> {
+
+    @Override
+    public @NotNull Iterator<Entry<DataType, Object>> iterator() {
+      return new Iterator<>() {
+        // copy of the keys so that values can be changed while iterating
+        private final @Nullable Iterator<DataType> otherIterator =
+            other == null ? null : List.copyOf(other.keySet()).iterator();
+        private int column = -1;
+        private @Nullable DataType lastKey;
+
+        {
+          advanceColumn();
+        }
+
+        private void advanceColumn() {
+          column++;
+          while (column < DataModelColumns.numColumns()
+                 && state(column) == DataModelColumns.ABSENT) {
+            column++;
+          }
+        }
+
+        @Override
+        public boolean hasNext() {
+          return column < DataModelColumns.numColumns() || (otherIterator != null
+                                                            && otherIterator.hasNext());
+        }
+
+        @Override
+        public Entry<DataType, Object> next() {
+          if (column < DataModelColumns.numColumns()) {
+            final DataType key = DataModelColumns.getColumnType(column);
+            advanceColumn();
+            lastKey = key;
+            return new ModelEntry(key);
+          }
+          if (otherIterator == null) {
+            throw new NoSuchElementException();
+          }
+          final DataType key = otherIterator.next();
+          lastKey = key;
+          return new ModelEntry(key);
+        }
+
+        @Override
+        public void remove() {
+          if (lastKey == null) {
+            throw new IllegalStateException();
+          }
+          ColumnarDataModelMap.this.remove(lastKey);
+          lastKey = null;
+        }
+      };
+    }
+
+    @Override
+    public int size() {
+      int size = other == null ? 0 : other.size();
+      for (int c = 0; c < DataModelColumns.numColumns(); c++) {
+        if (state(c) != DataModelColumns.ABSENT) {
+          size++;
+        }
+      }
+      return size;
+    }
+  }
+
+  /**
+   * Entry that reads and writes through to this map
+   */
+  private class ModelEntry implements Entry<DataType, Object> {
+
+    private final DataType key;
+
+    private ModelEntry(DataType key) {
+      this.key = key;
+    }
+
+    @Override
+    public DataType getKey() {
+      return key;
+    }
+
+    @Override
+    public Object getValue() {
+      return get(key);
+    }
+
+    @Override
+    public Object setValue(Object value) {
+      return put(key, value);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Entry<?, ?> e && Objects.equals(key, e.getKey()) && Objects.equals(
+          getValue(), e.getValue());
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(key) ^ Objects.hashCode(getValue());
+    }
+
+    @Override
+    public String toString() {
+      return key + "=" + getValue();
+    }
+  }
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.datamodel.features;
+
+import io.github.mzmine.datamodel.features.types.DataType;
+import io.github.mzmine.datamodel.features.types.DataTypes;
+import io.github.mzmine.datamodel.features.types.numbers.AreaType;
+import io.github.mzmine.datamodel.features.types.numbers.AsymmetryFactorType;
+import io.github.mzmine.datamodel.features.types.numbers.CCSType;
+import io.github.mzmine.datamodel.features.types.numbers.ChargeType;
+import io.github.mzmine.datamodel.features.types.numbers.FwhmType;
+import io.github.mzmine.datamodel.features.types.numbers.HeightType;
+import io.github.mzmine.datamodel.features.types.numbers.IDType;
+import io.github.mzmine.datamodel.features.types.numbers.MZType;
+import io.github.mzmine.datamodel.features.types.numbers.MobilityType;
+import io.github.mzmine.datamodel.features.types.numbers.RTType;
+import io.github.mzmine.datamodel.features.types.numbers.TailingFactorType;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Column oriented storage of the numeric values of all rows or all features of a
+ * {@link ModularFeatureList}. Every data model gets a slot and the values of the supported types
+ * are kept in primitive arrays instead of boxed values in a hash map per row or feature. The
+ * arrays are split into fixed size chunks so that growing the store never moves values that are
+ * written concurrently. Arrays of a column are only created once a value is set, so types that are
+ * not used do not take memory. Chunks and column arrays are published through volatile references
+ * so that other threads never see partially initialized arrays.
+ * <p>
+ * Slots are released when their data model is removed from the feature list or replaced (see
+ * {@link #releaseSlot}) and are reused for new data models. Data models that are never added keep
+ * their slot until the feature list is garbage collected. The feature list is notified once for
+ * every type that is stored, instead of on every value that is set.
+ */
+final class DataModelColumns {
+
+  /**
+   * Column state of a slot. ABSENT is the default of new arrays
+   */
+  static final byte ABSENT = 0;
+  static final byte NULL = 1;
+  static final byte VALUE = 2;
+
+  private static final int CHUNK_BITS = 12;
+  private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+  /**
+   * Types with primitive columns. Only the exact classes are stored in columns, subclasses with
+   * their own unique ID are kept in the map of the data model.
+   */
+  private static final List<Class<? extends DataType<?>>> COLUMN_TYPES = List.of(MZType.class,
+      RTType.class, HeightType.class, AreaType.class, MobilityType.class, CCSType.class,
+      FwhmType.class, TailingFactorType.class, AsymmetryFactorType.class, ChargeType.class,
+      IDType.class);
+  private static final Kind[] KINDS = {Kind.DOUBLE, Kind.FLOAT, Kind.FLOAT, Kind.FLOAT, Kind.FLOAT,
+      Kind.FLOAT, Kind.FLOAT, Kind.FLOAT, Kind.FLOAT, Kind.INT, Kind.INT};
+  private static final ClassValue<Integer> COLUMN_INDEX = new ClassValue<>() {
+    @Override
+    protected Integer computeValue(@NotNull Class<?> type) {
+      return COLUMN_TYPES.indexOf(type);
+    }
+  };
+
+  // adds types to the feature list
+  private final @NotNull Consumer<DataType<?>> onNewType;
+  // types that are not stored in columns and were already passed to onNewType
+  private final Set<DataType<?>> otherTypes = ConcurrentHashMap.newKeySet();
+
+  private volatile Chunk[] chunks = new Chunk[0];
+  private int numSlots;
+  // stack of released slots
+  private int[] freeSlots = new int[0];
+  private int numFreeSlots;
+
+  /**
+   * @param onNewType called when a type is stored for the first time, e.g., to add the type to the
+   *                  feature list
+   */
+  DataModelColumns(@NotNull Consumer<DataType<?>> onNewType) {
+    this.onNewType = onNewType;
+  }
+
+  /**
+   * @return the column index of the type or -1 if this type is not stored in a column
+   */
+  static int columnIndex(@Nullable Object type) {
+    return type instanceof DataType<?> ? COLUMN_INDEX.get(type.getClass()) : -1;
+  }
+
+  /**
+   * @return number of columns that are supported
+   */
+  static int numColumns() {
+    return KINDS.length;
+  }
+
+  /**
+   * Only null and values of the exact boxed type of the column are stored in the column
+   */
+  static boolean accepts(int column, @Nullable Object value) {
+    return value == null || value.getClass() == KINDS[column].boxedType;
+  }
+
+  /**
+   * @return the data type instance of this column
+   */
+  static @NotNull DataType<?> getColumnType(int column) {
+    return DataTypes.get(COLUMN_TYPES.get(column));
+  }
+
+  /**
+   * Notifies about types that are not stored in columns on their first use. Column types are
+   * notified when their column is created.
+   */
+  void registerOtherType(@NotNull DataType<?> type) {
+    if (!otherTypes.contains(type) && otherTypes.add(type)) {
+      onNewType.accept(type);
+    }
+  }
+
+  /**
+   * @return a new slot for a data model, released slots are reused first
+   */
+  synchronized int allocateSlot() {
+    if (numFreeSlots > 0) {
+      return freeSlots[--numFreeSlots];
+    }
+    final int slot = numSlots++;
+    final int chunk = slot >>> CHUNK_BITS;
+    final Chunk[] current = chunks;
+    if (chunk >= current.length || current[chunk] == null) {
+      // create the chunk before the array is published
+      final Chunk[] grown = chunk < current.length ? current.clone()
+          : Arrays.copyOf(current, Math.max(4, current.length * 2));
+      grown[chunk] = new Chunk();
+      chunks = grown;
+    }
+    return slot;
+  }
+
+  /**
+   * Clears all values of the slot and marks it for reuse. The data model must not access the slot
+   * afterward.
+   */
+  synchronized void releaseSlot(int slot) {
+    final Chunk chunk = chunks[slot >>> CHUNK_BITS];
+    final int i = slot & CHUNK_MASK;
+    for (int c = 0; c < KINDS.length; c++) {
+      final Column column = chunk.columns.get(c);
+      if (column != null) {
+        column.states[i] = ABSENT;
+      }
+    }
+    if (numFreeSlots == freeSlots.length) {
+      freeSlots = Arrays.copyOf(freeSlots, Math.max(16, freeSlots.length * 2));
+    }
+    freeSlots[numFreeSlots++] = slot;
+  }
+
+  /**
+   * @return number of slots in use
+   */
+  synchronized int getNumSlots() {
+    return numSlots - numFreeSlots;
+  }
+
+  byte getState(int column, int slot) {
+    final Column col = chunks[slot >>> CHUNK_BITS].columns.get(column);
+    return col == null ? ABSENT : col.states[slot & CHUNK_MASK];
+  }
+
+  /**
+   * @return the boxed value or null if the value is null or absent
+   */
+  @Nullable
+  Object get(int column, int slot) {
+    final Column col = chunks[slot >>> CHUNK_BITS].columns.get(column);
+    final int i = slot & CHUNK_MASK;
+    if (col == null || col.states[i] != VALUE) {
+      return null;
+    }
+    return switch (KINDS[column]) {
+      case DOUBLE -> ((double[]) col.values)[i];
+      case FLOAT -> ((float[]) col.values)[i];
+      case INT -> ((int[]) col.values)[i];
+    };
+  }
+
+  /**
+   * @param value null or a value that is accepted by this column, see {@link #accepts}
+   */
+  void set(int column, int slot, @Nullable Object value) {
+    final Column col = chunks[slot >>> CHUNK_BITS].ensureColumn(column, onNewType);
+    final int i = slot & CHUNK_MASK;
+    if (value != null) {
+      switch (KINDS[column]) {
+        case DOUBLE -> ((double[]) col.values)[i] = (Double) value;
+        case FLOAT -> ((float[]) col.values)[i] = (Float) value;
+        case INT -> ((int[]) col.values)[i] = (Integer) value;
+      }
+      col.states[i] = VALUE;
+    } else {
+      col.states[i] = NULL;
+    }
+  }
+
+  /**
+   * Removes the mapping of this slot
+   */
+  void remove(int column, int slot) {
+    final Column col = chunks[slot >>> CHUNK_BITS].columns.get(column);
+    if (col != null) {
+      col.states[slot & CHUNK_MASK] = ABSENT;
+    }
+  }
+
+  private enum Kind {
+    DOUBLE(Double.class), FLOAT(Float.class), INT(Integer.class);
+
+    private final Class<?> boxedType;
+
+    Kind(Class<?> boxedType) {
+      this.boxedType = boxedType;
+    }
+
+    private Object createArray() {
+      return switch (this) {
+        case DOUBLE -> new double[CHUNK_SIZE];
+        case FLOAT -> new float[CHUNK_SIZE];
+        case INT -> new int[CHUNK_SIZE];
+      };
+    }
+  }
+
+  /**
+   * Primitive values and states of one column in one chunk
+   */
+  private record Column(@NotNull Object values, byte @NotNull [] states) {
+
+  }
+
+  private static final class Chunk {
+
+    // column per type, created on first use and published atomically
+    private final AtomicReferenceArray<Column> columns = new AtomicReferenceArray<>(KINDS.length);
+
+    /**
+     * @param onNewType notified with the type of the column if this call created it
+     */
+    private @NotNull Column ensureColumn(int column, Consumer<DataType<?>> onNewType) {
+      final Column existing = columns.get(column);
+      if (existing != null) {
+        return existing;
+      }
+      final Column created = new Column(KINDS[column].createArray(), new byte[CHUNK_SIZE]);
+      if (columns.compareAndSet(column, null, created)) {
+        onNewType.accept(getColumnType(column));
+        return created;
+      }
+      return columns.get(column);
+    }
+  }
+}
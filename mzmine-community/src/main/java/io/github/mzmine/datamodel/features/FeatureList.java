@@ -99,10 +99,14 @@ public interface FeatureList {
 
   void addFeatureType(@NotNull DataType<?>... types);
 
+  void addFeatureType(@NotNull DataType<?> type);
+
   void addRowType(Collection<DataType> types);
 
   void addRowType(@NotNull DataType<?>... types);
 
+  void addRowType(@NotNull DataType<?> type);
+
   ObservableSet<DataType> getRowTypes();
 
 
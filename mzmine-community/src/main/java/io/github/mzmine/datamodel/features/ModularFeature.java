@@ -64,7 +64,6 @@ import io.github.mzmine.modules.tools.qualityparameters.QualityParameters;
 import io.github.mzmine.util.DataPointUtils;
 import io.github.mzmine.util.FeatureUtils;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -72,7 +71,6 @@ import java.util.Set;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import javafx.collections.FXCollections;
-import javafx.collections.MapChangeListener;
 import javafx.collections.ObservableMap;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -85,7 +83,8 @@ import org.jetbrains.annotations.Nullable;
 public class ModularFeature implements Feature, ModularDataModel {
 
   private static final Logger logger = Logger.getLogger(ModularFeature.class.getName());
-  private final ObservableMap<DataType, Object> map = FXCollections.observableMap(new HashMap<>());
+  // values of this feature, numeric values are stored in the columns of the feature list
+  private ColumnarDataModelMap map;
   // buffert col charts and nodes
   @NotNull
   private ModularFeatureList flist;
@@ -94,13 +93,7 @@ public class ModularFeature implements Feature, ModularDataModel {
 
   public ModularFeature(@NotNull ModularFeatureList flist) {
     this.flist = flist;
-
-    //
-    map.addListener((MapChangeListener<? super DataType, ? super Object>) change -> {
-      if (change.wasAdded()) {
-        flist.addFeatureType(change.getKey());
-      }
-    });
+    map = flist.createFeatureMap();
   }
 
   // NOT TESTED
@@ -430,9 +423,22 @@ public class ModularFeature implements Feature, ModularDataModel {
 
   @Override
   public void setFeatureList(@NotNull FeatureList flist) {
+    if (this.flist != flist) {
+      final ColumnarDataModelMap old = map;
+      map = ((ModularFeatureList) flist).copyFeatureMap(old);
+      old.release();
+    }
     this.flist = (ModularFeatureList) flist;
   }
 
+  /**
+   * Frees the slot of this feature in the columns of the feature list once it was removed. The
+   * values stay accessible.
+   */
+  void releaseValues() {
+    map.release();
+  }
+
   @Override
   public int getNumberOfDataPoints() {
     final IonTimeSeries<? extends Scan> data = getFeatureData();
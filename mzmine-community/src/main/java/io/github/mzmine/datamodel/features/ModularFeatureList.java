@@ -54,10 +54,12 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.DoubleSummaryStatistics;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -115,6 +117,10 @@ public class ModularFeatureList implements FeatureList {
 
   private final R2RNetworkingMaps r2rNetworkingMaps = new R2RNetworkingMaps();
 
+  // primitive storage of numeric row and feature values
+  private final DataModelColumns rowColumns = new DataModelColumns(this::addRowType);
+  private final DataModelColumns featureColumns = new DataModelColumns(this::addFeatureType);
+
   @NotNull
   private String nameProperty = "";
   private String dateCreated;
@@ -365,33 +371,47 @@ public class ModularFeatureList implements FeatureList {
   @Override
   public void addFeatureType(Collection<DataType> types) {
     for (DataType<?> type : types) {
-      if (!hasFeatureType(type)) {
-        synchronized (featureTypes) {
-          featureTypes.add(type);
-        }
-      }
+      addFeatureType(type);
     }
   }
 
   @Override
   public void addFeatureType(@NotNull DataType<?>... types) {
-    addFeatureType(Arrays.asList(types));
+    for (DataType<?> type : types) {
+      addFeatureType(type);
+    }
+  }
+
+  @Override
+  public void addFeatureType(@NotNull DataType<?> type) {
+    if (!hasFeatureType(type)) {
+      synchronized (featureTypes) {
+        featureTypes.add(type);
+      }
+    }
   }
 
   @Override
   public void addRowType(Collection<DataType> types) {
     for (DataType<?> type : types) {
-      if (!hasRowType(type)) {
-        synchronized (rowTypes) {
-          rowTypes.add(type);
-        }
-      }
+      addRowType(type);
     }
   }
 
   @Override
   public void addRowType(@NotNull DataType<?>... types) {
-    addRowType(Arrays.asList(types));
+    for (DataType<?> type : types) {
+      addRowType(type);
+    }
+  }
+
+  @Override
+  public void addRowType(@NotNull DataType<?> type) {
+    if (!hasRowType(type)) {
+      synchronized (rowTypes) {
+        rowTypes.add(type);
+      }
+    }
   }
 
   /**
@@ -498,6 +518,14 @@ public class ModularFeatureList implements FeatureList {
       }
     }
 //    logger.log(Level.FINEST, "SET ALL ROWS");
+    // release the values of rows that are not kept
+    final Set<FeatureListRow> kept = Collections.newSetFromMap(new IdentityHashMap<>());
+    kept.addAll(Arrays.asList(rows));
+    for (FeatureListRow old : featureListRows) {
+      if (!kept.contains(old)) {
+        ((ModularFeatureListRow) old).releaseValues();
+      }
+    }
     featureListRows.clear();
     featureListRows.addAll(rows);
     applyRowBindings();
@@ -592,7 +620,9 @@ public class ModularFeatureList implements FeatureList {
    */
   @Override
   public void removeRow(FeatureListRow row) {
-    featureListRows.remove(row);
+    if (featureListRows.remove(row)) {
+      ((ModularFeatureListRow) row).releaseValues();
+    }
   }
 
   /**
@@ -769,6 +799,36 @@ public class ModularFeatureList implements FeatureList {
     return rowTypeListeners;
   }
 
+  /**
+   * Creates the value map of a new row that keeps numeric values in the row columns of this
+   * feature list
+   */
+  @NotNull ColumnarDataModelMap createRowMap() {
+    return new ColumnarDataModelMap(rowColumns);
+  }
+
+  /**
+   * Creates the value map of a new feature that keeps numeric values in the feature columns of
+   * this feature list
+   */
+  @NotNull ColumnarDataModelMap createFeatureMap() {
+    return new ColumnarDataModelMap(featureColumns);
+  }
+
+  /**
+   * Moves the values of a row from another feature list into the row columns of this list
+   */
+  @NotNull ColumnarDataModelMap copyRowMap(@NotNull ColumnarDataModelMap map) {
+    return map.copyTo(rowColumns);
+  }
+
+  /**
+   * Moves the values of a feature from another feature list into the feature columns of this list
+   */
+  @NotNull ColumnarDataModelMap copyFeatureMap(@NotNull ColumnarDataModelMap map) {
+    return map.copyTo(featureColumns);
+  }
+
   /**
    * create copy of all feature list rows and features
    *
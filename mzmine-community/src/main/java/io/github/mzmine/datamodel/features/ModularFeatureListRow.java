@@ -84,7 +84,6 @@ import java.util.Set;
 import java.util.logging.Logger;
 import java.util.stream.Stream;
 import javafx.collections.FXCollections;
-import javafx.collections.MapChangeListener;
 import javafx.collections.ObservableList;
 import javafx.collections.ObservableMap;
 import org.jetbrains.annotations.NotNull;
@@ -104,10 +103,10 @@ public class ModularFeatureListRow implements FeatureListRow {
 
   private static final Logger logger = Logger.getLogger(ModularFeatureListRow.class.getName());
   /**
-   * this final map is used in the FeaturesType - only ModularFeatureListRow is supposed to change
-   * this map see {@link #addFeature}
+   * this map is used in the FeaturesType - only ModularFeatureListRow is supposed to change this
+   * map see {@link #addFeature}. Numeric values are stored in the columns of the feature list
    */
-  private final ObservableMap<DataType, Object> map = FXCollections.observableMap(new HashMap<>());
+  private ColumnarDataModelMap map;
   private final Map<RawDataFile, ModularFeature> features;
   @NotNull
   private ModularFeatureList flist;
@@ -120,12 +119,7 @@ public class ModularFeatureListRow implements FeatureListRow {
    */
   public ModularFeatureListRow(@NotNull ModularFeatureList flist, int id) {
     this.flist = flist;
-
-    map.addListener((MapChangeListener<? super DataType, ? super Object>) change -> {
-      if (change.wasAdded()) {
-        flist.addRowType(change.getKey());
-      }
-    });
+    map = flist.createRowMap();
 
     // features
     List<RawDataFile> raws = flist.getRawDataFiles();
@@ -255,6 +249,9 @@ public class ModularFeatureListRow implements FeatureListRow {
     ModularFeature oldFeature = features.put(raw, modularFeature);
     modularFeature.setFeatureList(flist);
     modularFeature.setRow(this);
+    if (oldFeature != null && oldFeature != modularFeature) {
+      oldFeature.releaseValues();
+    }
 
     if (!Objects.equals(oldFeature, modularFeature)) {
       // reflect changes by updating all row bindings
@@ -281,7 +278,21 @@ public class ModularFeatureListRow implements FeatureListRow {
 
   @Override
   public void removeFeature(RawDataFile file) {
-    this.features.remove(file);
+    final ModularFeature removed = this.features.remove(file);
+    if (removed != null) {
+      removed.releaseValues();
+    }
+  }
+
+  /**
+   * Frees the slots of this row and its features in the columns of the feature list once the row
+   * was removed. The values stay accessible.
+   */
+  void releaseValues() {
+    map.release();
+    for (ModularFeature feature : features.values()) {
+      feature.releaseValues();
+    }
   }
 
   @Override
@@ -379,6 +390,11 @@ public class ModularFeatureListRow implements FeatureListRow {
       throw new IllegalArgumentException(
           "Cannot set non-modular feature list to modular feature list row.");
     }
+    if (this.flist != flist) {
+      final ColumnarDataModelMap old = map;
+      map = ((ModularFeatureList) flist).copyRowMap(old);
+      old.release();
+    }
     this.flist = (ModularFeatureList) flist;
   }
 
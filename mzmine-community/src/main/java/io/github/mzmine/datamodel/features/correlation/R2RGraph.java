@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.datamodel.features.correlation;
+
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Frozen compressed sparse row (CSR) adjacency structure of row-to-row relationships. Row IDs are
+ * mapped to a dense index, the neighbour row IDs of each row are stored sorted in one int array and
+ * the relationships in a parallel payload array. Every undirected relationship is stored for both
+ * rows. Build the concurrent {@link R2RMap} first and use {@link R2RMap#getGraph()} to freeze it.
+ *
+ * @param <T> the relationship type
+ */
+public class R2RGraph<T> {
+
+  // sorted distinct row IDs
+  private final int[] rowIds;
+  // neighbours of row i are in [offsets[i], offsets[i+1])
+  private final int[] offsets;
+  private final int[] neighborIds;
+  private final Object[] relationships;
+  private final int numEdges;
+
+  private R2RGraph(int[] rowIds, int[] offsets, int[] neighborIds, Object[] relationships,
+      int numEdges) {
+    this.rowIds = rowIds;
+    this.offsets = offsets;
+    this.neighborIds = neighborIds;
+    this.relationships = relationships;
+    this.numEdges = numEdges;
+  }
+
+  /**
+   * @param map keys are undirected keys from {@link R2RMap#toKey(int, int)}
+   */
+  public static <T> @NotNull R2RGraph<T> of(@NotNull Map<Long, T> map) {
+    // snapshot - the map may be concurrent
+    long[] keys = new long[map.size()];
+    Object[] values = new Object[keys.length];
+    int numEdges = 0;
+    for (Entry<Long, T> e : map.entrySet()) {
+      if (numEdges == keys.length) {
+        keys = Arrays.copyOf(keys, keys.length * 2 + 1);
+        values = Arrays.copyOf(values, keys.length);
+      }
+      keys[numEdges] = e.getKey();
+      values[numEdges] = e.getValue();
+      numEdges++;
+    }
+
+    // dense row index
+    final int[] allIds = new int[numEdges * 2];
+    for (int e = 0; e < numEdges; e++) {
+      allIds[e * 2] = R2RMap.getLowerRowId(keys[e]);
+      allIds[e * 2 + 1] = R2RMap.getUpperRowId(keys[e]);
+    }
+    Arrays.sort(allIds);
+    int numRows = 0;
+    for (int i = 0; i < allIds.length; i++) {
+      if (i == 0 || allIds[i] != allIds[i - 1]) {
+        allIds[numRows++] = allIds[i];
+      }
+    }
+    final int[] rowIds = Arrays.copyOf(allIds, numRows);
+
+    // count degrees and fill
+    final int[] offsets = new int[numRows + 1];
+    for (int e = 0; e < numEdges; e++) {
+      offsets[Arrays.binarySearch(rowIds, R2RMap.getLowerRowId(keys[e])) + 1]++;
+      offsets[Arrays.binarySearch(rowIds, R2RMap.getUpperRowId(keys[e])) + 1]++;
+    }
+    for (int i = 0; i < numRows; i++) {
+      offsets[i + 1] += offsets[i];
+    }
+    final int[] neighborIds = new int[numEdges * 2];
+    final Object[] relationships = new Object[numEdges * 2];
+    final int[] next = Arrays.copyOf(offsets, numRows);
+    for (int e = 0; e < numEdges; e++) {
+      final int a = R2RMap.getLowerRowId(keys[e]);
+      final int b = R2RMap.getUpperRowId(keys[e]);
+      int pos = next[Arrays.binarySearch(rowIds, a)]++;
+      neighborIds[pos] = b;
+      relationships[pos] = values[e];
+      pos = next[Arrays.binarySearch(rowIds, b)]++;
+      neighborIds[pos] = a;
+      relationships[pos] = values[e];
+    }
+
+    // sort neighbours of each row for binary search
+    for (int i = 0; i < numRows; i++) {
+      it.unimi.dsi.fastutil.Arrays.quickSort(offsets[i], offsets[i + 1],
+          (x, y) -> Integer.compare(neighborIds[x], neighborIds[y]), (x, y) -> {
+            final int id = neighborIds[x];
+            neighborIds[x] = neighborIds[y];
+            neighborIds[y] = id;
+            final Object rel = relationships[x];
+            relationships[x] = relationships[y];
+            relationships[y] = rel;
+          });
+    }
+    return new R2RGraph<>(rowIds, offsets, neighborIds, relationships, numEdges);
+  }
+
+  /**
+   * @return number of undirected relationships
+   */
+  public int getNumberOfEdges() {
+    return numEdges;
+  }
+
+  /**
+   * @return number of relationships of this row
+   */
+  public int getDegree(@NotNull FeatureListRow row) {
+    final int i = Arrays.binarySearch(rowIds, row.getID());
+    return i < 0 ? 0 : offsets[i + 1] - offsets[i];
+  }
+
+  /**
+   * Arguments a and b yield the same result in any order.
+   *
+   * @return the relationship of a and b or null if there is none
+   */
+  public @Nullable T get(@NotNull FeatureListRow a, @NotNull FeatureListRow b) {
+    return get(a.getID(), b.getID());
+  }
+
+  @SuppressWarnings("unchecked")
+  public @Nullable T get(int rowIdA, int rowIdB) {
+    final int i = Arrays.binarySearch(rowIds, rowIdA);
+    if (i < 0) {
+      return null;
+    }
+    final int j = Arrays.binarySearch(neighborIds, offsets[i], offsets[i + 1], rowIdB);
+    return j < 0 ? null : (T) relationships[j];
+  }
+
+  /**
+   * Iterate all relationships of a row in O(degree)
+   *
+   * @param consumer accepts the relationship and the ID of the other row
+   */
+  @SuppressWarnings("unchecked")
+  public void forEachRelationship(@NotNull FeatureListRow row, @NotNull ObjIntConsumer<T> consumer) {
+    final int i = Arrays.binarySearch(rowIds, row.getID());
+    if (i < 0) {
+      return;
+    }
+    for (int j = offsets[i]; j < offsets[i + 1]; j++) {
+      consumer.accept((T) relationships[j], neighborIds[j]);
+    }
+  }
+
+  /**
+   * @return stream of all relationships of a row in O(degree)
+   */
+  @SuppressWarnings("unchecked")
+  public Stream<T> streamRelationships(@NotNull FeatureListRow row) {
+    final int i = Arrays.binarySearch(rowIds, row.getID());
+    if (i < 0) {
+      return Stream.empty();
+    }
+    return IntStream.range(offsets[i], offsets[i + 1]).mapToObj(j -> (T) relationships[j]);
+  }
+}
@@ -26,30 +26,159 @@
 package io.github.mzmine.datamodel.features.correlation;
 
 import io.github.mzmine.datamodel.features.FeatureListRow;
-import io.github.mzmine.util.MathUtils;
 import java.util.Collection;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 import java.util.stream.Stream;
+import org.jetbrains.annotations.NotNull;
 
 /**
  * Map an object to two rows
  *
  * @author Robin Schmid
  */
-public class R2RMap<T> extends ConcurrentHashMap<Integer, T> {
+public class R2RMap<T> extends ConcurrentHashMap<Long, T> {
+
+  // incremented after every modification, the graph is rebuilt if it was built for an older count
+  private final AtomicLong modCount = new AtomicLong();
+  // frozen adjacency structure with the modification count it was built for
+  private transient volatile CachedGraph<T> graph;
 
   public R2RMap() {
   }
 
   /**
-   * A unique undirected key is computed from the two row.getIDs
+   * A unique undirected key is computed from the two row.getIDs. The smaller ID is stored in the
+   * upper 32 bits, the larger ID in the lower 32 bits.
    *
    * @param a Feature list row with getID >=0
    * @param b Feature list row with getID >=0
    * @return unique undirected ID
    */
-  public static int toKey(FeatureListRow a, FeatureListRow b) {
-    return MathUtils.undirectedPairing(a.getID(), b.getID());
+  public static long toKey(FeatureListRow a, FeatureListRow b) {
+    return toKey(a.getID(), b.getID());
+  }
+
+  /**
+   * @param a row ID >=0
+   * @param b row ID >=0
+   * @return unique undirected key
+   */
+  public static long toKey(int a, int b) {
+    return a > b ? ((long) b << 32) | a : ((long) a << 32) | b;
+  }
+
+  /**
+   * @return the smaller row ID of the key
+   */
+  public static int getLowerRowId(long key) {
+    return (int) (key >>> 32);
+  }
+
+  /**
+   * @return the larger row ID of the key
+   */
+  public static int getUpperRowId(long key) {
+    return (int) key;
+  }
+
+  private <V> V modified(V result) {
+    modCount.incrementAndGet();
+    return result;
+  }
+
+  @Override
+  public T put(@NotNull Long key, @NotNull T value) {
+    return modified(super.put(key, value));
+  }
+
+  @Override
+  public void putAll(Map<? extends Long, ? extends T> m) {
+    super.putAll(m);
+    modified(null);
+  }
+
+  @Override
+  public T putIfAbsent(@NotNull Long key, @NotNull T value) {
+    return modified(super.putIfAbsent(key, value));
+  }
+
+  @Override
+  public T remove(@NotNull Object key) {
+    return modified(super.remove(key));
+  }
+
+  @Override
+  public boolean remove(@NotNull Object key, Object value) {
+    return modified(super.remove(key, value));
+  }
+
+  @Override
+  public boolean replace(@NotNull Long key, @NotNull T oldValue, @NotNull T newValue) {
+    return modified(super.replace(key, oldValue, newValue));
+  }
+
+  @Override
+  public T replace(@NotNull Long key, @NotNull T value) {
+    return modified(super.replace(key, value));
+  }
+
+  @Override
+  public void replaceAll(BiFunction<? super Long, ? super T, ? extends T> function) {
+    super.replaceAll(function);
+    modified(null);
+  }
+
+  @Override
+  public T compute(Long key, BiFunction<? super Long, ? super T, ? extends T> remappingFunction) {
+    return modified(super.compute(key, remappingFunction));
+  }
+
+  @Override
+  public T computeIfAbsent(Long key, Function<? super Long, ? extends T> mappingFunction) {
+    return modified(super.computeIfAbsent(key, mappingFunction));
+  }
+
+  @Override
+  public T computeIfPresent(Long key,
+      BiFunction<? super Long, ? super T, ? extends T> remappingFunction) {
+    return modified(super.computeIfPresent(key, remappingFunction));
+  }
+
+  @Override
+  public T merge(Long key, T value,
+      BiFunction<? super T, ? super T, ? extends T> remappingFunction) {
+    return modified(super.merge(key, value, remappingFunction));
+  }
+
+  @Override
+  public void clear() {
+    super.clear();
+    modified(null);
+  }
+
+  /**
+   * A frozen sparse adjacency view of this map with O(degree) access to the relationships of a row.
+   * The graph is cached and rebuilt after this map was modified. Build the map (concurrently)
+   * first, then use the graph for neighbour lookups.
+   *
+   * @return the graph of all relationships in this map
+   */
+  public @NotNull R2RGraph<T> getGraph() {
+    // read before building, modifications during the build lead to a rebuild on the next call
+    final long currentModCount = modCount.get();
+    final CachedGraph<T> cached = graph;
+    // size check for removals through the key, value, and entry views
+    if (cached != null && cached.modCount() == currentModCount
+        && cached.graph().getNumberOfEdges() == size()) {
+      return cached.graph();
+    }
+    final R2RGraph<T> built = R2RGraph.of(this);
+    graph = new CachedGraph<>(built, currentModCount);
+    return built;
   }
 
   /**
@@ -69,7 +198,7 @@ public class R2RMap<T> extends ConcurrentHashMap<Integer, T> {
    * @param value values is mapped to the pair of FeatureListRows a and b
    */
   public void put(FeatureListRow a, FeatureListRow b, T value) {
-    super.put(toKey(a, b), value);
+    put(toKey(a, b), value);
   }
 
   /**
@@ -99,6 +228,15 @@ public class R2RMap<T> extends ConcurrentHashMap<Integer, T> {
     });
   }
 
+  /**
+   * Stream all relationships of a row in O(degree) using the frozen {@link #getGraph()}.
+   *
+   * @param row the row to search relationships for
+   */
+  public Stream<T> streamAllCorrelatedRows(FeatureListRow row) {
+    return getGraph().streamRelationships(row);
+  }
+
   /**
    * The order of arguments does not matter
    *
@@ -107,4 +245,8 @@ public class R2RMap<T> extends ConcurrentHashMap<Integer, T> {
   public boolean contains(final FeatureListRow a, final FeatureListRow b) {
     return get(a, b) != null;
   }
+
+  private record CachedGraph<T>(@NotNull R2RGraph<T> graph, long modCount) {
+
+  }
 }
@@ -76,6 +76,14 @@ public class R2RNetworkingMaps {
     return Optional.ofNullable(r2rMaps.get(type));
   }
 
+  /**
+   * @return the frozen sparse graph of this relationship type with O(degree) access to the
+   * relationships of a row
+   */
+  public Optional<R2RGraph<RowsRelationship>> getRowsGraph(String type) {
+    return getRowsMap(type).map(R2RMap::getGraph);
+  }
+
 
   public boolean isEmpty() {
     return r2rMaps.isEmpty();
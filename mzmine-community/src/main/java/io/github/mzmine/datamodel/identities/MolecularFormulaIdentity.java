@@ -140,10 +140,24 @@ public class MolecularFormulaIdentity {
    * @return
    */
   public float getPPMScore(double neutralMass, float ppmMax) {
+    return getPPMScore(getExactMass(), neutralMass, ppmMax);
+  }
+
+  /**
+   * Score for ppm distance of a formula with the given exact mass. Allows ranking candidates before
+   * a CDK formula is created.
+   *
+   * @param exactMass   exact mass of the formula
+   * @param neutralMass the searched neutral mass
+   * @param ppmMax      weight for ppm distance
+   * @return the ppm score, same as {@link #getPPMScore(double, float)}
+   */
+  public static float getPPMScore(double exactMass, double neutralMass, float ppmMax) {
     if (ppmMax <= 0) {
       ppmMax = 50f;
     }
-    return (float) (ppmMax - Math.abs(getPpmDiff(neutralMass))) / ppmMax;
+    final float ppmDiff = (float) ((neutralMass - exactMass) / exactMass * 1E6);
+    return (ppmMax - Math.abs(ppmDiff)) / ppmMax;
   }
 
   /**
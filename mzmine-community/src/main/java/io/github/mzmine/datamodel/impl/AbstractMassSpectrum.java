@@ -52,15 +52,10 @@ public abstract class AbstractMassSpectrum implements MassSpectrum {
 
   protected synchronized void updateMzRangeAndTICValues() {
 
-    final DoubleBuffer mzValues = getMzValues();
-    final DoubleBuffer intensityValues = getIntensityValues();
+    // use the value accessors - stored values may have reduced precision and no direct buffer
+    final int numDp = getNumberOfDataPoints();
 
-    assert mzValues != null;
-    assert intensityValues != null;
-    assert mzValues.limit() == intensityValues.limit();
-
-
-    if (mzValues.limit() == 0) {
+    if (numDp == 0) {
       totalIonCurrent = 0.0;
       mzRange = null;
       basePeakIndex = null;
@@ -69,19 +64,19 @@ public abstract class AbstractMassSpectrum implements MassSpectrum {
 
     basePeakIndex = 0;
 
-    double lastMz = mzValues.get(0);
-    double maxIntensity = intensityValues.get(0);
+    double lastMz = getMzValue(0);
+    double maxIntensity = getIntensityValue(0);
     totalIonCurrent = maxIntensity;
-    for (int i = 1; i < mzValues.limit(); i++) {
+    for (int i = 1; i < numDp; i++) {
 
       // Check the order of the m/z values
-      double mz = mzValues.get(i);
+      double mz = getMzValue(i);
       if (lastMz > mz) {
         throw new IllegalArgumentException("The m/z values must be sorted in ascending order");
       }
 
       // Update base peak index
-      double intensity = intensityValues.get(i);
+      double intensity = getIntensityValue(i);
       if (intensity > maxIntensity) {
         basePeakIndex = i;
         maxIntensity = intensity;
@@ -93,7 +88,7 @@ public abstract class AbstractMassSpectrum implements MassSpectrum {
       lastMz = mz;
     }
     // set range after checking the order
-    mzRange = Range.closed(mzValues.get(0), mzValues.get(mzValues.limit() - 1));
+    mzRange = Range.closed(getMzValue(0), getMzValue(numDp - 1));
   }
 
 
@@ -161,7 +156,7 @@ public abstract class AbstractMassSpectrum implements MassSpectrum {
     if (basePeakIndex == null) {
       return null;
     } else {
-      return getMzValues().get(basePeakIndex);
+      return getMzValue(basePeakIndex);
     }
   }
 
@@ -171,7 +166,7 @@ public abstract class AbstractMassSpectrum implements MassSpectrum {
     if (basePeakIndex == null) {
       return null;
     } else {
-      return getIntensityValues().get(basePeakIndex);
+      return getIntensityValue(basePeakIndex);
     }
   }
 
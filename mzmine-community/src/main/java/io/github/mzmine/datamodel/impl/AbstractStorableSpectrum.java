@@ -27,6 +27,8 @@ package io.github.mzmine.datamodel.impl;
 
 import io.github.mzmine.datamodel.Frame;
 import io.github.mzmine.datamodel.featuredata.impl.StorageUtils;
+import io.github.mzmine.datamodel.featuredata.impl.StoredDoubleValues;
+import io.github.mzmine.datamodel.featuredata.impl.StoredDoubleValues.DoubleValues;
 import io.github.mzmine.modules.io.import_rawdata_all.spectral_processor.SimpleSpectralArrays;
 import io.github.mzmine.util.DataPointUtils;
 import io.github.mzmine.util.MemoryMapStorage;
@@ -36,15 +38,16 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 /**
- * An implementation of MassSpectrum that stores the data points in a MemoryMapStorage.
+ * An implementation of MassSpectrum that stores the data points in a MemoryMapStorage. Values are
+ * stored with the {@link StorageUtils#getStoragePrecision()} at the time of creation.
  */
 public abstract class AbstractStorableSpectrum extends AbstractMassSpectrum {
 
   private static final Logger logger = Logger.getLogger(AbstractStorableSpectrum.class.getName());
   public static final DoubleBuffer EMPTY_BUFFER = DoubleBuffer.wrap(new double[0]);
 
-  protected DoubleBuffer mzValues;
-  protected DoubleBuffer intensityValues;
+  protected StoredDoubleValues mzValues;
+  protected StoredDoubleValues intensityValues;
 
   /**
    * Note: mz and intensity values for a scan shall only be set once and are enforced to be
@@ -72,8 +75,8 @@ public abstract class AbstractStorableSpectrum extends AbstractMassSpectrum {
           "%s is null and the other not".formatted(mzValues == null ? "mzs" : "intensities"));
     } else if (mzValues != null) {
       assert mzValues.limit() == intensityValues.limit();
-      this.mzValues = mzValues;
-      this.intensityValues = intensityValues;
+      this.mzValues = new DoubleValues(mzValues);
+      this.intensityValues = new DoubleValues(intensityValues);
       //todo transfer checks
       onDataChangedEvent();
     }
@@ -99,8 +102,8 @@ public abstract class AbstractStorableSpectrum extends AbstractMassSpectrum {
     SimpleSpectralArrays sorted = DataPointUtils.ensureSortingMzAscendingDefault(
         new SimpleSpectralArrays(mzValues, intensityValues));
 
-    this.mzValues = StorageUtils.storeValuesToDoubleBuffer(storage, sorted.mzs());
-    this.intensityValues = StorageUtils.storeValuesToDoubleBuffer(storage, sorted.intensities());
+    this.mzValues = StorageUtils.storeMzValues(storage, sorted.mzs());
+    this.intensityValues = StorageUtils.storeIntensityValues(storage, sorted.intensities());
     onDataChangedEvent();
   }
 
@@ -108,22 +111,45 @@ public abstract class AbstractStorableSpectrum extends AbstractMassSpectrum {
     updateMzRangeAndTICValues();
   }
 
+  /**
+   * @return the stored buffer or a decoded copy for reduced precision storage. Prefer
+   * {@link #getMzValue(int)} or {@link #getMzValues(double[])}.
+   */
   DoubleBuffer getMzValues() {
     if (mzValues == null) {
       return EMPTY_BUFFER;
     } else {
-      return mzValues;
+      return mzValues.asDoubleBuffer();
     }
   }
 
+  /**
+   * @return the stored buffer or a decoded copy for reduced precision storage. Prefer
+   * {@link #getIntensityValue(int)} or {@link #getIntensityValues(double[])}.
+   */
   DoubleBuffer getIntensityValues() {
     if (intensityValues == null) {
       return EMPTY_BUFFER;
     } else {
-      return intensityValues;
+      return intensityValues.asDoubleBuffer();
     }
   }
 
+  @Override
+  public int getNumberOfDataPoints() {
+    return mzValues == null ? 0 : mzValues.size();
+  }
+
+  @Override
+  public double getMzValue(int index) {
+    return mzValues.get(index);
+  }
+
+  @Override
+  public double getIntensityValue(int index) {
+    return intensityValues.get(index);
+  }
+
   @Override
   public double[] getMzValues(@NotNull double[] dst) {
     if (mzValues == null) {
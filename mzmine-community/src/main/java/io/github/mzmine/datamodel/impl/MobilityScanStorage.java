@@ -30,11 +30,14 @@ import io.github.mzmine.datamodel.MassList;
 import io.github.mzmine.datamodel.MobilityScan;
 import io.github.mzmine.datamodel.featuredata.impl.SimpleIonMobilogramTimeSeries;
 import io.github.mzmine.datamodel.featuredata.impl.StorageUtils;
+import io.github.mzmine.datamodel.featuredata.impl.StoredDoubleValues;
+import io.github.mzmine.datamodel.featuredata.impl.StoredDoubleValues.DoubleValues;
 import io.github.mzmine.datamodel.impl.masslist.StoredMobilityScanMassList;
 import io.github.mzmine.modules.dataprocessing.featdet_massdetection.MassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.MassDetectorUtils;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.MassListBuffer;
 import io.github.mzmine.util.MemoryMapStorage;
 import io.github.mzmine.util.exceptions.MissingMassListException;
-import io.github.mzmine.util.scans.ScanUtils;
 import java.nio.DoubleBuffer;
 import java.nio.IntBuffer;
 import java.util.ArrayList;
@@ -46,7 +49,8 @@ import org.jetbrains.annotations.Nullable;
 /**
  * Memory efficient storage of {@link MobilityScan}s. Methods return an instance of
  * {@link StoredMobilityScan} or {@link StoredMobilityScanMassList} which is garbage collected if
- * not used anymore.
+ * not used anymore. Values are stored with the {@link StorageUtils#getStoragePrecision()} at the
+ * time of creation.
  *
  * @author https://github.com/steffenheu
  */
@@ -54,8 +58,8 @@ public class MobilityScanStorage {
 
   // raw data
   private final Frame frame;
-  private final DoubleBuffer rawMzValues;
-  private final DoubleBuffer rawIntensityValues;
+  private final StoredDoubleValues rawMzValues;
+  private final StoredDoubleValues rawIntensityValues;
   /**
    * Per scan
    */
@@ -67,8 +71,8 @@ public class MobilityScanStorage {
   private final int rawMaxNumPoints;
 
   // mass list
-  private DoubleBuffer massListMzValues = null;
-  private DoubleBuffer massListIntensityValues = null;
+  private StoredDoubleValues massListMzValues = null;
+  private StoredDoubleValues massListIntensityValues = null;
   /**
    * Per scan
    */
@@ -109,8 +113,8 @@ public class MobilityScanStorage {
     final int[] rawBasePeakIndices = StorageUtils.putAllValuesIntoOneArray(data, 1, intensities);
     this.rawBasePeakIndices = StorageUtils.storeValuesToIntBuffer(storage, rawBasePeakIndices);
 
-    rawMzValues = StorageUtils.storeValuesToDoubleBuffer(storage, mzs);
-    rawIntensityValues = StorageUtils.storeValuesToDoubleBuffer(storage, intensities);
+    rawMzValues = StorageUtils.storeMzValues(storage, mzs);
+    rawIntensityValues = StorageUtils.storeIntensityValues(storage, intensities);
   }
 
   public MobilityScanStorage(@Nullable MemoryMapStorage storage, @NotNull final Frame frame,
@@ -140,6 +144,21 @@ public class MobilityScanStorage {
   public MobilityScanStorage(final @Nullable MemoryMapStorage storage, final SimpleFrame frame,
       final DoubleBuffer mzValues, final DoubleBuffer intensityValues, final int maxNumPoints,
       final int[] storageOffsets, final int[] basePeakIndices, final boolean useAsMassList) {
+    this(storage, frame, new DoubleValues(mzValues), new DoubleValues(intensityValues),
+        maxNumPoints, storageOffsets, basePeakIndices, useAsMassList);
+  }
+
+  /**
+   * Constructor with already stored values, e.g., from {@link StorageUtils#storeMzValues} and
+   * {@link StorageUtils#storeIntensityValues} to apply the storage precision.
+   *
+   * @see #MobilityScanStorage(MemoryMapStorage, SimpleFrame, DoubleBuffer, DoubleBuffer, int,
+   * int[], int[], boolean)
+   */
+  public MobilityScanStorage(final @Nullable MemoryMapStorage storage, final SimpleFrame frame,
+      final StoredDoubleValues mzValues, final StoredDoubleValues intensityValues,
+      final int maxNumPoints, final int[] storageOffsets, final int[] basePeakIndices,
+      final boolean useAsMassList) {
     this.frame = frame;
     rawBasePeakIndices = StorageUtils.storeValuesToIntBuffer(storage, basePeakIndices);
     rawStorageOffsets = StorageUtils.storeValuesToIntBuffer(storage, storageOffsets);
@@ -162,6 +181,19 @@ public class MobilityScanStorage {
    */
   public void generateAndAddMobilityScanMassLists(@Nullable MemoryMapStorage storage,
       @NotNull MassDetector massDetector, boolean denormalizeMSnScans) {
+    generateAndAddMobilityScanMassLists(storage, massDetector, denormalizeMSnScans,
+        new MassListBuffer());
+  }
+
+  /**
+   * @param storage      The storage for mobility scans-
+   * @param massDetector The mass detector
+   * @param buffer       All mobility scans are detected into this buffer, which is cleared first.
+   *                     Reuse for all frames.
+   */
+  public void generateAndAddMobilityScanMassLists(@Nullable MemoryMapStorage storage,
+      @NotNull MassDetector massDetector, boolean denormalizeMSnScans,
+      @NotNull MassListBuffer buffer) {
 
     if (!massDetector.filtersActive()) {
       // no need to run mass detection in this case.
@@ -173,19 +205,48 @@ public class MobilityScanStorage {
       return;
     }
 
-    // mobility scan -> [0][] = mzs, [1][] = intensities
-    final List<double[][]> data = new ArrayList<>();
-
+    buffer.clear();
+    final boolean denormalize = denormalizeMSnScans && frame.getMSLevel() > 1;
     for (MobilityScan mobilityScan : getMobilityScans()) {
-      double[][] mzIntensity = massDetector.getMassValues(mobilityScan);
-      if (denormalizeMSnScans && frame.getMSLevel() > 1) {
-        ScanUtils.denormalizeIntensitiesMultiplyByInjectTime(mzIntensity[1],
+      buffer.startScan();
+      final int start = buffer.size();
+      massDetector.detectMasses(mobilityScan, buffer);
+      if (denormalize) {
+        MassDetectorUtils.denormalizeIntensitiesMultiplyByInjectTime(buffer, start,
             frame.getInjectionTime());
       }
-      data.add(mzIntensity);
     }
 
-    setMassLists(storage, data);
+    setMassLists(storage, buffer);
+  }
+
+  /**
+   * Sets the new masslists
+   *
+   * @param storage memory storage for masslists
+   * @param data    the masslists of all MobilityScans in this frame, each started by
+   *                {@link MassListBuffer#startScan()}
+   */
+  public void setMassLists(final @Nullable MemoryMapStorage storage,
+      final @NotNull MassListBuffer data) {
+    final int numScans = data.getNumberOfScans();
+    assert numScans == getNumberOfMobilityScans();
+
+    final int[] massListStorageOffsets = new int[numScans];
+    final int[] massListBasePeakIndices = new int[numScans];
+    int maxNumPoints = 0;
+    for (int i = 0; i < numScans; i++) {
+      massListStorageOffsets[i] = data.getScanOffset(i);
+      massListBasePeakIndices[i] = data.getScanBasePeakIndex(i);
+      maxNumPoints = Math.max(maxNumPoints, data.getScanSize(i));
+    }
+    this.massListStorageOffsets = StorageUtils.storeValuesToIntBuffer(storage,
+        massListStorageOffsets);
+    this.massListBasePeakIndices = StorageUtils.storeValuesToIntBuffer(storage,
+        massListBasePeakIndices);
+    massListMaxNumPoints = maxNumPoints;
+    massListMzValues = StorageUtils.storeMzValues(storage, data.toMzArray());
+    massListIntensityValues = StorageUtils.storeIntensityValues(storage, data.toIntensityArray());
   }
 
   /**
@@ -212,8 +273,8 @@ public class MobilityScanStorage {
         intensities);
     this.massListBasePeakIndices = StorageUtils.storeValuesToIntBuffer(storage,
         massListBasePeakIndices);
-    massListMzValues = StorageUtils.storeValuesToDoubleBuffer(storage, mzs);
-    massListIntensityValues = StorageUtils.storeValuesToDoubleBuffer(storage, intensities);
+    massListMzValues = StorageUtils.storeMzValues(storage, mzs);
+    massListIntensityValues = StorageUtils.storeIntensityValues(storage, intensities);
   }
 
   public MassList getMassList(int mobilityScanIndex) {
@@ -267,7 +328,7 @@ public class MobilityScanStorage {
     if (index < rawStorageOffsets.capacity() - 1) {
       return rawStorageOffsets.get(index + 1) - rawStorageOffsets.get(index);
     } else {
-      return rawMzValues.capacity() - rawStorageOffsets.get(index);
+      return rawMzValues.size() - rawStorageOffsets.get(index);
     }
   }
 
@@ -291,7 +352,7 @@ public class MobilityScanStorage {
    * @return The total number of points in this {@link  MobilityScanStorage}.
    */
   public int getRawTotalNumPoints() {
-    return rawMzValues.capacity();
+    return rawMzValues.size();
   }
 
   public Frame getFrame() {
@@ -344,7 +405,7 @@ public class MobilityScanStorage {
     if (index < massListStorageOffsets.capacity() - 1) {
       return massListStorageOffsets.get(index + 1) - massListStorageOffsets.get(index);
     } else {
-      return massListMzValues.capacity() - massListStorageOffsets.get(index);
+      return massListMzValues.size() - massListStorageOffsets.get(index);
     }
   }
 
@@ -395,7 +456,7 @@ public class MobilityScanStorage {
           "No mass list present for mobility scans. Run mass detection for scan type \"Mobility scans\" prior.",
           null);
     }
-    return massListIntensityValues.capacity();
+    return massListIntensityValues.size();
   }
 
   public void getMassListMzValues(int mobilityScanIndex, double[] dst, int offset) {
@@ -84,6 +84,8 @@ public class ColoredXYDataset extends AbstractTaskXYDataset implements IntervalX
 
   protected Range<Double> domainRange;
   protected Range<Double> rangeRange;
+  // null for small or unsorted datasets
+  protected volatile XYLevelOfDetail levelOfDetail;
 
   private ColoredXYDataset(XYValueProvider xyValueProvider,
       SeriesKeyProvider<Comparable<?>> seriesKeyProvider, LabelTextProvider labelTextProvider,
@@ -330,6 +332,8 @@ public class ColoredXYDataset extends AbstractTaskXYDataset implements IntervalX
 
     domainRange = computedItemCount > 0 ? Range.closed(minDomain, maxDomain) : Range.closed(0d, 1d);
     rangeRange = computedItemCount > 0 ? Range.closed(minRange, maxRange) : Range.closed(0d, 1d);
+    // renderers only draw the min/max items per pixel for large datasets
+    levelOfDetail = XYLevelOfDetail.create(xyValueProvider, computedItemCount);
 
 //    if (setToFinished) {
     onCalculationsFinished();
@@ -427,6 +431,15 @@ public class ColoredXYDataset extends AbstractTaskXYDataset implements IntervalX
     return domainRange;
   }
 
+  /**
+   * @return The level-of-detail pyramid. Null for small datasets, datasets with unsorted domain
+   * values or if called before the computation has been finished.
+   */
+  @Nullable
+  public XYLevelOfDetail getLevelOfDetail() {
+    return levelOfDetail;
+  }
+
   /**
    * @return The range value range. Null if called before the computation has been finished.
    */
@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.gui.chartbasics.simplechart.datasets;
+
+import io.github.mzmine.gui.chartbasics.simplechart.providers.XYValueProvider;
+import java.awt.geom.Rectangle2D;
+import java.util.BitSet;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jfree.chart.axis.ValueAxis;
+import org.jfree.chart.plot.PlotOrientation;
+import org.jfree.chart.plot.XYPlot;
+import org.jfree.data.xy.XYDataset;
+
+/**
+ * Level-of-detail pyramid for large datasets with ascending domain values. Each level splits the
+ * items into blocks and stores the index of the minimum and maximum range value of each block. The
+ * block size doubles with each level. For a visible domain range, the level with blocks just
+ * smaller than one pixel is used and only the min/max items of each block are drawn. This keeps the
+ * shape of TIC/BPC and profile spectra while drawing only a few items per pixel. Items outside of
+ * the visible range are skipped.
+ */
+public class XYLevelOfDetail {
+
+  /**
+   * Datasets with fewer items are always drawn completely
+   */
+  public static final int MIN_ITEMS = 10_000;
+  private static final int BASE_BLOCK_SIZE = 4;
+
+  private final double[] domainValues;
+  // [level][block]
+  private final int[][] minIndices;
+  private final int[][] maxIndices;
+
+  private volatile Selection lastSelection;
+
+  private XYLevelOfDetail(double[] domainValues, int[][] minIndices, int[][] maxIndices) {
+    this.domainValues = domainValues;
+    this.minIndices = minIndices;
+    this.maxIndices = maxIndices;
+  }
+
+  /**
+   * @return the pyramid or null if the dataset is too small or the domain values are not sorted
+   */
+  public static @Nullable XYLevelOfDetail create(@NotNull XYValueProvider provider, int itemCount) {
+    if (itemCount < MIN_ITEMS) {
+      return null;
+    }
+    final double[] domain = new double[itemCount];
+    final double[] range = new double[itemCount];
+    for (int i = 0; i < itemCount; i++) {
+      domain[i] = provider.getDomainValue(i);
+      range[i] = provider.getRangeValue(i);
+      if (i > 0 && !(domain[i] >= domain[i - 1])) {
+        // not sorted or NaN
+        return null;
+      }
+    }
+
+    int numLevels = 0;
+    for (long blockSize = BASE_BLOCK_SIZE; blockSize < itemCount; blockSize *= 2) {
+      numLevels++;
+    }
+    final int[][] minIndices = new int[numLevels][];
+    final int[][] maxIndices = new int[numLevels][];
+
+    // first level from the values
+    int numBlocks = (itemCount + BASE_BLOCK_SIZE - 1) / BASE_BLOCK_SIZE;
+    minIndices[0] = new int[numBlocks];
+    maxIndices[0] = new int[numBlocks];
+    for (int b = 0; b < numBlocks; b++) {
+      int min = b * BASE_BLOCK_SIZE;
+      int max = min;
+      final int end = Math.min(itemCount, min + BASE_BLOCK_SIZE);
+      for (int i = min + 1; i < end; i++) {
+        if (range[i] < range[min]) {
+          min = i;
+        }
+        if (range[i] > range[max]) {
+          max = i;
+        }
+      }
+      minIndices[0][b] = min;
+      maxIndices[0][b] = max;
+    }
+
+    // merge pairs of blocks
+    for (int level = 1; level < numLevels; level++) {
+      final int[] prevMin = minIndices[level - 1];
+      final int[] prevMax = maxIndices[level - 1];
+      numBlocks = (prevMin.length + 1) / 2;
+      minIndices[level] = new int[numBlocks];
+      maxIndices[level] = new int[numBlocks];
+      for (int b = 0; b < numBlocks; b++) {
+        int min = prevMin[b * 2];
+        int max = prevMax[b * 2];
+        if (b * 2 + 1 < prevMin.length) {
+          final int min2 = prevMin[b * 2 + 1];
+          final int max2 = prevMax[b * 2 + 1];
+          min = range[min2] < range[min] ? min2 : min;
+          max = range[max2] > range[max] ? max2 : max;
+        }
+        minIndices[level][b] = min;
+        maxIndices[level][b] = max;
+      }
+    }
+    return new XYLevelOfDetail(domain, minIndices, maxIndices);
+  }
+
+  /**
+   * Used by renderers in {@link org.jfree.chart.renderer.xy.XYItemRenderer#initialise} to find the
+   * items to draw for the current domain axis range and data area size.
+   *
+   * @return the items to draw or null if all items should be drawn
+   */
+  public static @Nullable BitSet findItemsToDraw(@NotNull XYPlot plot, @NotNull XYDataset dataset,
+      @NotNull Rectangle2D dataArea) {
+    if (!(dataset instanceof ColoredXYDataset ds) || ds.getLevelOfDetail() == null) {
+      return null;
+    }
+    final ValueAxis domainAxis = plot.getDomainAxisForDataset(plot.indexOf(dataset));
+    if (domainAxis == null) {
+      return null;
+    }
+    final double pixels = plot.getOrientation() == PlotOrientation.VERTICAL ? dataArea.getWidth()
+        : dataArea.getHeight();
+    return ds.getLevelOfDetail()
+        .getVisibleItems(domainAxis.getLowerBound(), domainAxis.getUpperBound(), (int) pixels);
+  }
+
+  /**
+   * @param lower  lower bound of the visible domain range
+   * @param upper  upper bound of the visible domain range
+   * @param pixels width of the data area in pixels
+   * @return the items to draw. The last selection is cached.
+   */
+  public @NotNull BitSet getVisibleItems(double lower, double upper, int pixels) {
+    final Selection last = lastSelection;
+    if (last != null && last.lower == lower && last.upper == upper && last.pixels == pixels) {
+      return last.items;
+    }
+
+    final BitSet items = selectItems(lower, upper, Math.max(pixels, 1));
+    lastSelection = new Selection(lower, upper, pixels, items);
+    return items;
+  }
+
+  private @NotNull BitSet selectItems(double lower, double upper, int pixels) {
+    final int numItems = domainValues.length;
+    // include one item outside of each side so that lines continue to the border
+    final int first = Math.max(0, lowerBoundIndex(lower) - 1);
+    final int last = Math.min(numItems - 1, lowerBoundIndex(upper) + 1);
+    final int visibleItems = last - first + 1;
+    final double itemsPerPixel = visibleItems / (double) pixels;
+
+    final BitSet items = new BitSet(numItems);
+    // find the coarsest level with blocks smaller than a pixel
+    int level = -1;
+    long blockSize = BASE_BLOCK_SIZE;
+    while (level + 1 < minIndices.length && blockSize <= itemsPerPixel) {
+      level++;
+      blockSize *= 2;
+    }
+    if (level < 0) {
+      // zoomed in, only skip the items outside the visible range
+      items.set(first, last + 1);
+      return items;
+    }
+
+    final int levelBlockSize = BASE_BLOCK_SIZE << level;
+    items.set(first);
+    items.set(last);
+    final int[] min = minIndices[level];
+    final int[] max = maxIndices[level];
+    for (int b = first / levelBlockSize; b <= last / levelBlockSize; b++) {
+      if (min[b] >= first && min[b] <= last) {
+        items.set(min[b]);
+      }
+      if (max[b] >= first && max[b] <= last) {
+        items.set(max[b]);
+      }
+    }
+    return items;
+  }
+
+  /**
+   * @return index of the first item with domain value >= value
+   */
+  private int lowerBoundIndex(double value) {
+    int lo = 0;
+    int hi = domainValues.length;
+    while (lo < hi) {
+      final int mid = (lo + hi) >>> 1;
+      if (domainValues[mid] < value) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  private record Selection(double lower, double upper, int pixels, BitSet items) {
+
+  }
+}
@@ -27,6 +27,7 @@ package io.github.mzmine.gui.chartbasics.simplechart.renderers;
 
 import io.github.mzmine.gui.chartbasics.simplechart.SimpleChartUtility;
 import io.github.mzmine.gui.chartbasics.simplechart.SimpleXYChart;
+import io.github.mzmine.gui.chartbasics.simplechart.datasets.XYLevelOfDetail;
 import io.github.mzmine.gui.chartbasics.simplechart.providers.ColorProvider;
 import java.awt.AlphaComposite;
 import java.awt.Graphics2D;
@@ -34,6 +35,7 @@ import java.awt.Paint;
 import java.awt.Shape;
 import java.awt.Stroke;
 import java.awt.geom.Rectangle2D;
+import java.util.BitSet;
 import org.jfree.chart.LegendItem;
 import org.jfree.chart.axis.ValueAxis;
 import org.jfree.chart.entity.EntityCollection;
@@ -62,6 +64,8 @@ public class ColoredXYLineRenderer extends XYLineAndShapeRenderer {
   private double transparency = 1.0f;
 
   private XYDataset currentDataset;
+  // level of detail selection of the dataset that is currently drawn, null to draw all items
+  private transient BitSet itemsToDraw;
 
   public ColoredXYLineRenderer() {
     super(true, false);
@@ -80,10 +84,21 @@ public class ColoredXYLineRenderer extends XYLineAndShapeRenderer {
     super.drawItemLabel(g2, orientation, dataset, series, item, x, y, negative);
   }
 
+  @Override
+  public XYItemRendererState initialise(Graphics2D g2, Rectangle2D dataArea, XYPlot plot,
+      XYDataset data, PlotRenderingInfo info) {
+    itemsToDraw = XYLevelOfDetail.findItemsToDraw(plot, data, dataArea);
+    return super.initialise(g2, dataArea, plot, data, info);
+  }
+
   @Override
   public void drawItem(Graphics2D g2, XYItemRendererState state, Rectangle2D dataArea,
       PlotRenderingInfo info, XYPlot plot, ValueAxis domainAxis, ValueAxis rangeAxis,
       XYDataset dataset, int series, int item, CrosshairState crosshairState, int pass) {
+    // the series path is drawn with the last item
+    if (itemsToDraw != null && !itemsToDraw.get(item) && item < state.getLastItemIndex()) {
+      return;
+    }
 
     g2.setComposite(makeComposite(transparency));
     currentDataset = dataset;
@@ -29,6 +29,7 @@ import io.github.mzmine.gui.chartbasics.chartthemes.EStandardChartTheme;
 import io.github.mzmine.gui.chartbasics.simplechart.SimpleChartUtility;
 import io.github.mzmine.gui.chartbasics.simplechart.datasets.ColoredXYDataset;
 import io.github.mzmine.gui.chartbasics.simplechart.datasets.ColoredXYZDataset;
+import io.github.mzmine.gui.chartbasics.simplechart.datasets.XYLevelOfDetail;
 import io.github.mzmine.gui.chartbasics.simplechart.generators.SimpleToolTipGenerator;
 import io.github.mzmine.gui.chartbasics.simplechart.providers.ZCategoryProvider;
 import io.github.mzmine.main.MZmineCore;
@@ -40,6 +41,7 @@ import java.awt.Shape;
 import java.awt.geom.Ellipse2D;
 import java.awt.geom.Line2D;
 import java.awt.geom.Rectangle2D;
+import java.util.BitSet;
 import org.jfree.chart.LegendItem;
 import org.jfree.chart.LegendItemCollection;
 import org.jfree.chart.axis.ValueAxis;
@@ -64,6 +66,8 @@ public class ColoredXYShapeRenderer extends XYShapeRenderer {
   private final Shape dataPointsShape;
   private final boolean drawOutlinesOnly;
   private final BasicStroke outlineStroke = EStandardChartTheme.DEFAULT_ITEM_OUTLINE_STROKE;
+  // level of detail selection of the dataset that is currently drawn, null to draw all items
+  private transient BitSet itemsToDraw;
 
   public ColoredXYShapeRenderer(boolean drawOutlinesOnly, Shape shape) {
     super();
@@ -156,6 +160,13 @@ public class ColoredXYShapeRenderer extends XYShapeRenderer {
     return item;
   }
 
+  @Override
+  public XYItemRendererState initialise(Graphics2D g2, Rectangle2D dataArea, XYPlot plot,
+      XYDataset data, PlotRenderingInfo info) {
+    itemsToDraw = XYLevelOfDetail.findItemsToDraw(plot, data, dataArea);
+    return super.initialise(g2, dataArea, plot, data, info);
+  }
+
   /**
    * Draws the block representing the specified item.
    *
@@ -176,6 +187,9 @@ public class ColoredXYShapeRenderer extends XYShapeRenderer {
   public void drawItem(Graphics2D g2, XYItemRendererState state, Rectangle2D dataArea,
       PlotRenderingInfo info, XYPlot plot, ValueAxis domainAxis, ValueAxis rangeAxis,
       XYDataset dataset, int series, int item, CrosshairState crosshairState, int pass) {
+    if (itemsToDraw != null && !itemsToDraw.get(item)) {
+      return;
+    }
 
     Shape hotspot;
     EntityCollection entities = null;
@@ -30,6 +30,7 @@ import io.github.mzmine.gui.chartbasics.chartutils.paintscales.PaintScaleTransfo
 import io.github.mzmine.main.ConfigService;
 import io.github.mzmine.main.KeepInMemory;
 import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.main.StoragePrecision;
 import io.github.mzmine.parameters.Parameter;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.parameters.dialogs.GroupedParameterSetupDialog;
@@ -149,6 +150,12 @@ public class MZminePreferences extends SimpleParameterSet {
                                   + "overrides this parameter, if set: --temp D:\\your_tmp_dir\\)",
       System.getProperty("java.io.tmpdir"));
 
+  public static final BooleanParameter spectralLibraryCache = new BooleanParameter(
+      "Cache spectral libraries", "If checked, imported spectral libraries are stored in a "
+                                  + "binary cache in the temporary file directory, which is loaded "
+                                  + "instead of parsing the library again as long as the library "
+                                  + "file did not change.", true);
+
   public static final ComboParameter<KeepInMemory> memoryOption = new ComboParameter<>(
       "Keep in memory", String.format(
       "Specifies the objects that are kept in memory rather than memory mapping "
@@ -161,6 +168,15 @@ public class MZminePreferences extends SimpleParameterSet {
       KeepInMemory.ALL, KeepInMemory.MASSES_AND_FEATURES), KeepInMemory.values(),
       KeepInMemory.NONE);
 
+  public static final ComboParameter<StoragePrecision> storagePrecision = new ComboParameter<>(
+      "Spectral data precision", String.format(
+      "Precision of m/z and intensity values of newly imported scans, mass lists and mobility "
+      + "scans. %s stores values as floats (approx. 7 significant digits, <0.1 ppm m/z error "
+      + "below m/z 2000), which halves the size of the temp files and the disk IO, especially "
+      + "for ion mobility data. %s keeps m/z values as doubles. Default is %s.",
+      StoragePrecision.REDUCED, StoragePrecision.REDUCED_INTENSITIES, StoragePrecision.FULL),
+      StoragePrecision.values(), StoragePrecision.FULL);
+
   /*public static final BooleanParameter applyTimsPressureCompensation = new BooleanParameter(
       "Use MALDI-TIMS pressure compensation", """
       Specifies if mobility values from Bruker timsTOF fleX MALDI raw data shall be recalibrated using a Bruker algorithm.
@@ -190,12 +206,16 @@ public class MZminePreferences extends SimpleParameterSet {
       new DecimalFormat("0.####"), new DecimalFormat("0.####"), new DecimalFormat("0.##"),
       new DecimalFormat("0.###E0"), new DecimalFormat("0.##"), new DecimalFormat("0.####"),
       new DecimalFormat("0.###"), UnitFormat.DIVIDE);
+  // exports are formatted on multiple threads, each thread uses its own copy of the formats
+  private static final ThreadLocal<NumberFormats> threadExportFormat = ThreadLocal.withInitial(
+      exportFormat::copy);
   private final BooleanProperty darkModeProperty = new SimpleBooleanProperty(false);
   private NumberFormats guiFormat = exportFormat; // default value
 
   public MZminePreferences() {
     super(// start with performance
-        numOfThreads, memoryOption, tempDirectory, proxySettings,
+        numOfThreads, memoryOption, storagePrecision, tempDirectory, spectralLibraryCache,
+        proxySettings,
         /*applyTimsPressureCompensation,*/
         // visuals
         // number formats
@@ -233,8 +253,8 @@ public class MZminePreferences extends SimpleParameterSet {
 
     // add groups
     dialog.addParameterGroup("General",
-        new Parameter[]{numOfThreads, memoryOption, tempDirectory, proxySettings,
-            /*, applyTimsPressureCompensation*/});
+        new Parameter[]{numOfThreads, memoryOption, storagePrecision, tempDirectory,
+            spectralLibraryCache, proxySettings, /*, applyTimsPressureCompensation*/});
     dialog.addParameterGroup("Formats",
         new Parameter[]{mzFormat, rtFormat, mobilityFormat, ccsFormat, intensityFormat, ppmFormat,
             scoreFormat, unitFormat});
@@ -274,6 +294,11 @@ public class MZminePreferences extends SimpleParameterSet {
     final KeepInMemory keepInMemory = config.getPreferences()
         .getParameter(MZminePreferences.memoryOption).getValue();
     keepInMemory.enforceToMemoryMapping();
+    final StoragePrecision storagePrecision = config.getPreferences()
+        .getParameter(MZminePreferences.storagePrecision).getValue();
+    if (storagePrecision != null) {
+      storagePrecision.enforceToStorage();
+    }
 
     final Themes theme = getValue(MZminePreferences.theme);
     if (previousTheme != null) {
@@ -441,8 +466,11 @@ public class MZminePreferences extends SimpleParameterSet {
   }
 
 
+  /**
+   * @return the export formats of the calling thread
+   */
   public NumberFormats getExportFormats() {
-    return exportFormat;
+    return threadExportFormat.get();
   }
 
   public NumberFormats getGuiFormats() {
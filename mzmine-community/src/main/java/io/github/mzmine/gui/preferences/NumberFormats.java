@@ -35,6 +35,16 @@ public record NumberFormats(NumberFormat mzFormat, NumberFormat rtFormat,
                             UnitFormat unitFormat) {
 
   private static final String empty = "";
+
+  /**
+   * @return a copy with cloned number formats, as {@link NumberFormat} is not thread safe
+   */
+  public NumberFormats copy() {
+    return new NumberFormats((NumberFormat) mzFormat.clone(), (NumberFormat) rtFormat.clone(),
+        (NumberFormat) mobilityFormat.clone(), (NumberFormat) ccsFormat.clone(),
+        (NumberFormat) intensityFormat.clone(), (NumberFormat) ppmFormat.clone(),
+        (NumberFormat) percentFormat.clone(), (NumberFormat) scoreFormat.clone(), unitFormat);
+  }
   public String mz(double mz) {
     return mzFormat.format(mz);
   }
@@ -241,6 +241,11 @@ public final class MZmineCore {
 
       // apply memory management option
       keepInMemory.enforceToMemoryMapping();
+      final StoragePrecision storagePrecision = preferences.getParameter(
+          MZminePreferences.storagePrecision).getValue();
+      if (storagePrecision != null) {
+        storagePrecision.enforceToStorage();
+      }
 
       // batch mode defined by command line argument
       File batchFile = argsParser.getBatchFile();
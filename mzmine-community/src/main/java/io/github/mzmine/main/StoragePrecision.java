@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.main;
+
+import io.github.mzmine.datamodel.featuredata.impl.StorageUtils;
+
+/**
+ * Precision of m/z and intensity values of scans, mass lists and mobility scans in the storage.
+ * Reduced precision stores values as floats (approx. 7 significant digits, &lt;0.1 ppm for m/z
+ * values &lt; 2000), which halves the temp disk space and IO.
+ */
+public enum StoragePrecision {
+
+  FULL, REDUCED_INTENSITIES, REDUCED;
+
+  /**
+   * Apply this option to newly stored spectral data
+   */
+  public void enforceToStorage() {
+    StorageUtils.setStoragePrecision(this);
+  }
+
+  public boolean isReducedMz() {
+    return this == REDUCED;
+  }
+
+  public boolean isReducedIntensities() {
+    return this != FULL;
+  }
+
+  @Override
+  public String toString() {
+    return switch (this) {
+      case FULL -> "Full (double)";
+      case REDUCED_INTENSITIES -> "Reduced intensities (float)";
+      case REDUCED -> "Reduced m/z and intensities (float)";
+    };
+  }
+}
@@ -25,10 +25,12 @@
 
 package io.github.mzmine.modules.batchmode;
 
+import io.github.mzmine.modules.batchmode.checkpoint.BatchCheckpointParameters;
 import io.github.mzmine.parameters.Parameter;
 import io.github.mzmine.parameters.impl.SimpleParameterSet;
 import io.github.mzmine.parameters.parametertypes.AdvancedParametersParameter;
 import io.github.mzmine.parameters.parametertypes.filenames.FileNameListSilentParameter;
+import io.github.mzmine.parameters.parametertypes.submodules.OptionalModuleParameter;
 import io.github.mzmine.util.ExitCode;
 
 public class BatchModeParameters extends SimpleParameterSet {
@@ -40,10 +42,15 @@ public class BatchModeParameters extends SimpleParameterSet {
   public static final AdvancedParametersParameter<AdvancedBatchModeParameters> advanced = new AdvancedParametersParameter<>(
       new AdvancedBatchModeParameters());
 
+  public static final OptionalModuleParameter<BatchCheckpointParameters> checkpoints = new OptionalModuleParameter<>(
+      "Checkpoints",
+      "Saves the project after each step and resumes the next run of this batch at the first step "
+      + "whose parameters or input files changed.", new BatchCheckpointParameters(), false);
+
   public BatchModeParameters() {
     super(new Parameter[]{batchQueue,
 //        advanced,
-        lastFiles});
+        checkpoints, lastFiles});
   }
 
   @Override
@@ -32,6 +32,12 @@ import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.modules.MZmineProcessingModule;
 import io.github.mzmine.modules.MZmineProcessingStep;
 import io.github.mzmine.modules.batchmode.change_outfiles.ChangeOutputFilesUtils;
+import io.github.mzmine.modules.batchmode.checkpoint.BatchCheckpointParameters;
+import io.github.mzmine.modules.batchmode.checkpoint.BatchCheckpoints;
+import io.github.mzmine.modules.batchmode.checkpoint.StepCheckpoint;
+import io.github.mzmine.modules.batchmode.timing.BatchPerformanceReport;
+import io.github.mzmine.modules.batchmode.timing.StepMetricsRecorder;
+import io.github.mzmine.modules.batchmode.timing.StepPerformanceMetrics;
 import io.github.mzmine.modules.batchmode.timing.StepTimeMeasurement;
 import io.github.mzmine.modules.io.import_rawdata_all.AllSpectralDataImportParameters;
 import io.github.mzmine.parameters.Parameter;
@@ -55,6 +61,7 @@ import io.github.mzmine.util.ExitCode;
 import io.github.mzmine.util.files.ExtensionFilters;
 import io.github.mzmine.util.files.FileAndPathUtil;
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.Paths;
 import java.time.Duration;
 import java.time.Instant;
@@ -64,9 +71,11 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Batch mode task
@@ -78,7 +87,8 @@ public class BatchTask extends AbstractTask {
   private final int stepsPerDataset;
   private final Logger logger = Logger.getLogger(this.getClass().getName());
   private final int totalSteps;
-  private final MZmineProject project;
+  // replaced when resuming from a checkpoint
+  private MZmineProject project;
   private int processedSteps;
   private final boolean useAdvanced;
   private final int datasets;
@@ -93,6 +103,11 @@ public class BatchTask extends AbstractTask {
   private File parentDir;
   private int currentDataset;
   private List<StepTimeMeasurement> stepTimes = new ArrayList<>();
+  private final List<StepPerformanceMetrics> stepMetrics = new ArrayList<>();
+  @Nullable
+  private final BatchCheckpointParameters checkpointParameters;
+  @Nullable
+  private BatchCheckpoints checkpoints;
 
   BatchTask(MZmineProject project, ParameterSet parameters, @NotNull Instant moduleCallDate) {
     this(project, parameters, moduleCallDate,
@@ -122,6 +137,9 @@ public class BatchTask extends AbstractTask {
     } else {
       datasets = 1;
     }
+    // checkpoints are only supported for a single dataset
+    checkpointParameters = useAdvanced ? null
+        : parameters.getEmbeddedParametersIfSelectedOrElse(BatchModeParameters.checkpoints, null);
     stepsPerDataset = queue.size();
     totalSteps = stepsPerDataset * datasets;
     createdDataFiles = new ArrayList<>();
@@ -164,11 +182,20 @@ public class BatchTask extends AbstractTask {
     setStatus(TaskStatus.PROCESSING);
     logger.info("Starting a batch of " + totalSteps + " steps");
 
+    int firstStep = 0;
+    if (checkpointParameters != null) {
+      firstStep = resumeFromCheckpoint();
+      if (getStatus() == TaskStatus.ERROR) {
+        return;
+      }
+      processedSteps = firstStep;
+    }
+
     int errorDataset = 0;
     currentDataset = -1;
     String datasetName = "";
     // Process individual batch steps
-    for (int i = 0; i < totalSteps; i++) {
+    for (int i = firstStep; i < totalSteps; i++) {
       // at the end of one dataset, clear the project and start over again
       if (useAdvanced && currentStep() == 0) {
         // clear the old project
@@ -180,6 +207,8 @@ public class BatchTask extends AbstractTask {
           printBatchTimes(batchStart);
           stepTimes.clear();
         }
+        writePerformanceReport(batchStart, TaskStatus.FINISHED);
+        stepMetrics.clear();
 
         // change files
         File datasetDir = subDirectories.get(currentDataset);
@@ -224,11 +253,15 @@ public class BatchTask extends AbstractTask {
       }
 
       // run step
-      processQueueStep(i % stepsPerDataset);
+      final StepMetricsRecorder metrics = new StepMetricsRecorder(i % stepsPerDataset);
+      processQueueStep(i % stepsPerDataset, metrics);
       processedSteps++;
+      stepMetrics.add(
+          metrics.finish(getStatus() == TaskStatus.PROCESSING ? TaskStatus.FINISHED : getStatus()));
 
       // If we are canceled or ran into error, stop here
       if (isCanceled()) {
+        writePerformanceReport(batchStart, TaskStatus.CANCELED);
         return;
       } else if (getStatus() == TaskStatus.ERROR) {
         errorDataset++;
@@ -238,18 +271,90 @@ public class BatchTask extends AbstractTask {
           processedSteps = (processedSteps / stepsPerDataset + 1) * stepsPerDataset;
           continue;
         } else {
+          writePerformanceReport(batchStart, TaskStatus.ERROR);
           return;
         }
       }
+
+      if (checkpoints != null) {
+        saveCheckpoint(i);
+      }
     }
 
     logger.info("Finished a batch of " + totalSteps + " steps");
     setStatus(TaskStatus.FINISHED);
     printBatchTimes(batchStart);
+    writePerformanceReport(batchStart, TaskStatus.FINISHED);
     Duration duration = Duration.between(batchStart, Instant.now());
     stepTimes.addFirst(new StepTimeMeasurement(0, getName(), duration));
   }
 
+  /**
+   * Reads the checkpoints of previous runs and opens the project of the last unchanged step.
+   *
+   * @return the first step that needs processing
+   */
+  private int resumeFromCheckpoint() {
+    try {
+      checkpoints = BatchCheckpoints.create(queue, project, checkpointParameters);
+      final StepCheckpoint checkpoint = checkpoints.getResumeCheckpoint();
+      if (checkpoint == null) {
+        return 0;
+      }
+
+      project = checkpoints.open(checkpoint);
+      createdDataFiles = BatchCheckpoints.getDataFiles(project, checkpoint);
+      createdFeatureLists = BatchCheckpoints.getFeatureLists(project, checkpoint);
+      previousCreatedDataFiles = createdDataFiles;
+      previousCreatedFeatureLists = createdFeatureLists;
+      logger.info("Skipping %d unchanged batch steps".formatted(checkpoints.getResumeStep()));
+      return checkpoints.getResumeStep();
+    } catch (IOException e) {
+      logger.log(Level.SEVERE, "Could not resume batch from checkpoint: " + e.getMessage(), e);
+      setStatus(TaskStatus.ERROR);
+      setErrorMessage("Could not resume batch from checkpoint: " + e.getMessage());
+      return 0;
+    }
+  }
+
+  /**
+   * Saves the project after a step. Failing checkpoints do not stop the batch but disable all
+   * further checkpoints.
+   */
+  private void saveCheckpoint(final int step) {
+    try {
+      checkpoints.save(step, project, previousCreatedDataFiles, previousCreatedFeatureLists);
+    } catch (IOException e) {
+      logger.log(Level.WARNING,
+          "Could not save checkpoint of batch step %d, continuing without checkpoints: %s".formatted(
+              step + 1, e.getMessage()), e);
+      checkpoints = null;
+    }
+  }
+
+  /**
+   * Writes the step and sub task metrics as json and csv next to the first output file of the
+   * batch.
+   */
+  private void writePerformanceReport(final Instant batchStart, final TaskStatus status) {
+    if (stepMetrics.isEmpty()) {
+      return;
+    }
+    var report = BatchPerformanceReport.create(batchStart, status, stepMetrics);
+
+    File outFile = ChangeOutputFilesUtils.findFirstOutputFile(queue);
+    if (outFile == null) {
+      logger.info("No export step with an output file in batch, skipping performance report");
+      return;
+    }
+    try {
+      File reportFile = report.writeNextTo(outFile);
+      logger.info("Batch performance report written to " + reportFile.getAbsolutePath());
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Could not write batch performance report: " + e.getMessage(), e);
+    }
+  }
+
   private void printBatchTimes(final Instant batchStart) {
     Duration duration = Duration.between(batchStart, Instant.now());
     String times = stepTimes.stream().map(Objects::toString).collect(Collectors.joining("\n"));
@@ -286,11 +391,18 @@ public class BatchTask extends AbstractTask {
     return stepTimes;
   }
 
+  /**
+   * @return metrics of all steps of the current dataset
+   */
+  public List<StepPerformanceMetrics> getStepMetrics() {
+    return stepMetrics;
+  }
+
   public int currentStep() {
     return processedSteps % stepsPerDataset;
   }
 
-  private void processQueueStep(int stepNumber) {
+  private void processQueueStep(int stepNumber, final StepMetricsRecorder metrics) {
 
     Instant start = Instant.now();
     logger.info("Starting step # " + (stepNumber + 1));
@@ -299,6 +411,7 @@ public class BatchTask extends AbstractTask {
     MZmineProcessingStep<?> currentStep = queue.get(stepNumber);
     MZmineProcessingModule method = (MZmineProcessingModule) currentStep.getModule();
     ParameterSet batchStepParameters = currentStep.getParameterSet();
+    metrics.setName(method.getName());
 
     final List<FeatureList> beforeFeatureLists = project.getCurrentFeatureLists();
     final List<RawDataFile> beforeDataFiles = project.getCurrentRawDataFiles();
@@ -311,6 +424,7 @@ public class BatchTask extends AbstractTask {
     if (createdFeatureLists.isEmpty()) {
       createdFeatureLists = previousCreatedFeatureLists;
     }
+    metrics.setInput(createdFeatureLists, createdDataFiles);
 
     // Update the RawDataFilesParameter parameters to reflect the current
     // state of the batch
@@ -366,6 +480,8 @@ public class BatchTask extends AbstractTask {
       return;
     }
 
+    metrics.registerTasks(currentStepTasks);
+
     // submit as ThreadPoolTask
     final TaskStatus status;
     // create ThreadPool
@@ -384,6 +500,7 @@ public class BatchTask extends AbstractTask {
     createdFeatureLists = new ArrayList<>(project.getCurrentFeatureLists());
     createdDataFiles.removeAll(beforeDataFiles);
     createdFeatureLists.removeAll(beforeFeatureLists);
+    metrics.setOutput(createdFeatureLists, createdDataFiles);
 
     // special option to skip already imported files in the AllSpectralDataImportParameters
     // add skipped files
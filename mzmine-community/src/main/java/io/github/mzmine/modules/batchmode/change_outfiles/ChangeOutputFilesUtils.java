@@ -85,6 +85,56 @@ public class ChangeOutputFilesUtils {
     return changed;
   }
 
+  /**
+   * @return the first output file of type {@link FileNameSuffixExportParameter} in all steps or
+   * null if there is none
+   */
+  @Nullable
+  public static File findFirstOutputFile(
+      @Nullable final List<MZmineProcessingStep<MZmineProcessingModule>> steps) {
+    if (steps == null) {
+      return null;
+    }
+    for (var step : steps) {
+      File file = findFirstOutputFile(step.getParameterSet());
+      if (file != null) {
+        return file;
+      }
+    }
+    return null;
+  }
+
+  @Nullable
+  private static File findFirstOutputFile(@Nullable final ParameterSet params) {
+    if (params == null) {
+      return null;
+    }
+    for (final Parameter<?> parameter : params.getParameters()) {
+      File file = findFirstOutputFile(parameter);
+      if (file != null) {
+        return file;
+      }
+    }
+    return null;
+  }
+
+  @Nullable
+  private static File findFirstOutputFile(@Nullable final Parameter<?> parameter) {
+    if (parameter instanceof FileNameSuffixExportParameter outParam) {
+      return outParam.getValue();
+    }
+    if (parameter instanceof EmbeddedParameterSet<?, ?> parent) {
+      return findFirstOutputFile(parent.getEmbeddedParameters());
+    }
+    if (parameter instanceof EmbeddedParameter<?, ?, ?> parent) {
+      return findFirstOutputFile(parent.getEmbeddedParameter());
+    }
+    if (parameter instanceof HiddenParameter<?> parent) {
+      return findFirstOutputFile(parent.getEmbeddedParameter());
+    }
+    return null;
+  }
+
   private static int applyTo(final Parameter<?> parameter, final File baseFile) {
     if (parameter == null) {
       return 0;
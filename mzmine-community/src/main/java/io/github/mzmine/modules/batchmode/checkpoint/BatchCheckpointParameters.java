@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.batchmode.checkpoint;
+
+import io.github.mzmine.parameters.Parameter;
+import io.github.mzmine.parameters.impl.SimpleParameterSet;
+import io.github.mzmine.parameters.parametertypes.BooleanParameter;
+import io.github.mzmine.parameters.parametertypes.filenames.DirectoryParameter;
+
+public class BatchCheckpointParameters extends SimpleParameterSet {
+
+  public static final DirectoryParameter directory = new DirectoryParameter("Checkpoint directory",
+      "The project is saved to this directory after each batch step. A new run of the same batch "
+      + "resumes at the first step whose parameters or input files changed.");
+
+  public static final BooleanParameter storeProcessedData = new BooleanParameter(
+      "Store processed data",
+      "Stores the scans and mass lists of the data files in each checkpoint. This makes resuming "
+      + "much faster but needs more disk space. Otherwise, the data files are re-imported and "
+      + "re-processed when resuming.", true);
+
+  public BatchCheckpointParameters() {
+    super(new Parameter[]{directory, storeProcessedData});
+  }
+}
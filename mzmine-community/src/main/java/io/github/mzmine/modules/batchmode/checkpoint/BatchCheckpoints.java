@@ -0,0 +1,410 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.batchmode.checkpoint;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.modules.MZmineProcessingModule;
+import io.github.mzmine.modules.MZmineProcessingStep;
+import io.github.mzmine.modules.batchmode.BatchQueue;
+import io.github.mzmine.modules.io.projectload.ProjectOpeningTask;
+import io.github.mzmine.modules.io.projectsave.ProjectSaveAsParameters;
+import io.github.mzmine.modules.io.projectsave.ProjectSaveOption;
+import io.github.mzmine.modules.io.projectsave.ProjectSavingTask;
+import io.github.mzmine.parameters.Parameter;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.modules.batchmode.checkpoint.StepCheckpoint.DataFileId;
+import io.github.mzmine.modules.batchmode.checkpoint.StepCheckpoint.FeatureListId;
+import io.github.mzmine.parameters.parametertypes.EmbeddedParameter;
+import io.github.mzmine.parameters.parametertypes.EmbeddedParameterSet;
+import io.github.mzmine.parameters.parametertypes.filenames.FileNameParameter;
+import io.github.mzmine.parameters.parametertypes.filenames.FileNamesParameter;
+import io.github.mzmine.project.ProjectService;
+import io.github.mzmine.project.impl.MZmineProjectImpl;
+import io.github.mzmine.taskcontrol.AbstractTask;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.util.XMLUtils;
+import io.github.mzmine.util.files.FileAndPathUtil;
+import io.github.mzmine.util.io.SemverVersionReader;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibrary;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.TransformerException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Saves the project after each batch step and resumes a batch at the first step that changed.
+ * Each step is identified by a hash of its module, its parameters, the size and modification date
+ * of its input files, and the hash of the previous step. The first step is chained to a hash of the
+ * project the batch started on. A change in one step therefore invalidates all following
+ * checkpoints.
+ */
+public class BatchCheckpoints {
+
+  public static final String MANIFEST_FILENAME = "batch_checkpoints.json";
+  private static final Logger logger = Logger.getLogger(BatchCheckpoints.class.getName());
+
+  private final File directory;
+  private final boolean storeProcessedData;
+  private final List<String> stepModules;
+  private final List<String> stepHashes;
+  /**
+   * valid checkpoints of the leading steps, the index is the step
+   */
+  private final List<StepCheckpoint> checkpoints;
+
+  private BatchCheckpoints(File directory, boolean storeProcessedData, List<String> stepModules,
+      List<String> stepHashes, List<StepCheckpoint> checkpoints) {
+    this.directory = directory;
+    this.storeProcessedData = storeProcessedData;
+    this.stepModules = stepModules;
+    this.stepHashes = stepHashes;
+    this.checkpoints = checkpoints;
+  }
+
+  /**
+   * Reads the checkpoints of a previous run from the directory and keeps all checkpoints up to the
+   * first step that changed.
+   *
+   * @param project the project before the first step
+   */
+  public static BatchCheckpoints create(@NotNull BatchQueue queue, @NotNull MZmineProject project,
+      @NotNull ParameterSet parameters) throws IOException {
+    final File directory = parameters.getValue(BatchCheckpointParameters.directory);
+    final boolean storeProcessedData = parameters.getValue(
+        BatchCheckpointParameters.storeProcessedData);
+    if (!FileAndPathUtil.createDirectory(directory)) {
+      throw new IOException("Could not create checkpoint directory " + directory);
+    }
+
+    final List<String> stepHashes = computeStepHashes(queue, project);
+    final List<StepCheckpoint> checkpoints = new ArrayList<>();
+    final File manifest = new File(directory, MANIFEST_FILENAME);
+    if (manifest.exists()) {
+      final List<StepCheckpoint> previous = readManifest(manifest);
+      for (StepCheckpoint checkpoint : previous) {
+        final int step = checkpoints.size();
+        if (step >= stepHashes.size() || checkpoint.step() != step || !checkpoint.hash()
+            .equals(stepHashes.get(step)) || !new File(directory,
+            checkpoint.projectFile()).exists()) {
+          break;
+        }
+        checkpoints.add(checkpoint);
+      }
+      logger.info("Found %d unchanged batch steps with checkpoints in %s".formatted(
+          checkpoints.size(), directory.getAbsolutePath()));
+    }
+    final List<String> stepModules = queue.stream()
+        .map(step -> step.getModule().getClass().getName()).toList();
+    return new BatchCheckpoints(directory, storeProcessedData, stepModules, stepHashes,
+        checkpoints);
+  }
+
+  /**
+   * @return the checkpoints of the manifest or an empty list if it cannot be read, e.g., if it was
+   * written by another version
+   */
+  private static List<StepCheckpoint> readManifest(File manifest) {
+    try {
+      return new ObjectMapper().readValue(manifest, new TypeReference<>() {
+      });
+    } catch (IOException e) {
+      logger.log(Level.WARNING,
+          "Cannot read checkpoint manifest %s, processing all steps: %s".formatted(
+              manifest.getAbsolutePath(), e.getMessage()), e);
+      return List.of();
+    }
+  }
+
+  /**
+   * @param project the project before the first step
+   * @return the hash of each step, chained with the hash of the previous step
+   */
+  static List<String> computeStepHashes(@NotNull BatchQueue queue, @NotNull MZmineProject project)
+      throws IOException {
+    final MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+
+    final List<String> hashes = new ArrayList<>(queue.size());
+    // checkpoints of other versions might not be compatible
+    digest.update(
+        SemverVersionReader.getMZmineVersion().toString().getBytes(StandardCharsets.UTF_8));
+    updateProjectState(digest, project);
+    String previous = HexFormat.of().formatHex(digest.digest());
+    for (MZmineProcessingStep<MZmineProcessingModule> step : queue) {
+      digest.reset();
+      digest.update(previous.getBytes(StandardCharsets.UTF_8));
+      digest.update(step.getModule().getClass().getName().getBytes(StandardCharsets.UTF_8));
+      final ParameterSet parameters = step.getParameterSet();
+      if (parameters != null) {
+        digest.update(toXml(parameters));
+        updateInputFiles(digest, parameters);
+      }
+      previous = HexFormat.of().formatHex(digest.digest());
+      hashes.add(previous);
+    }
+    return hashes;
+  }
+
+  private static byte[] toXml(@NotNull ParameterSet parameters) throws IOException {
+    try {
+      final Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+          .newDocument();
+      final Element element = document.createElement("parameters");
+      document.appendChild(element);
+      parameters.saveValuesToXML(element);
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      XMLUtils.saveToStream(out, document);
+      return out.toByteArray();
+    } catch (ParserConfigurationException | TransformerException e) {
+      throw new IOException("Cannot serialize parameters " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Adds the data files, feature lists and spectral libraries of the project, so that the
+   * checkpoints of a batch that started on another project are not used.
+   */
+  private static void updateProjectState(MessageDigest digest, MZmineProject project) {
+    for (RawDataFile raw : project.getCurrentRawDataFiles()) {
+      digest.update("raw:%s:%s".formatted(raw.getName(), raw.getAbsolutePath())
+          .getBytes(StandardCharsets.UTF_8));
+      if (raw.getAbsolutePath() != null) {
+        updateFile(digest, new File(raw.getAbsolutePath()));
+      }
+    }
+    for (FeatureList flist : project.getCurrentFeatureLists()) {
+      digest.update(
+          "flist:%s".formatted(FeatureListId.of(flist)).getBytes(StandardCharsets.UTF_8));
+    }
+    for (SpectralLibrary library : project.getCurrentSpectralLibraries()) {
+      updateFile(digest, library.getPath());
+    }
+  }
+
+  /**
+   * Adds the size and modification date of input files, e.g., of the data import or of a
+   * database, so that a changed file invalidates the step.
+   */
+  private static void updateInputFiles(MessageDigest digest, ParameterSet parameters) {
+    for (Parameter<?> p : parameters.getParameters()) {
+      updateInputFiles(digest, p);
+    }
+  }
+
+  private static void updateInputFiles(MessageDigest digest, Parameter<?> p) {
+    switch (p) {
+      case FileNamesParameter fileNames when fileNames.getValue() != null -> {
+        for (File file : fileNames.getValue()) {
+          updateFile(digest, file);
+        }
+      }
+      case FileNameParameter fileName when fileName.getValue() != null ->
+          updateFile(digest, fileName.getValue());
+      case EmbeddedParameterSet<?, ?> embedded ->
+          updateInputFiles(digest, embedded.getEmbeddedParameters());
+      case EmbeddedParameter<?, ?, ?> embedded ->
+          updateInputFiles(digest, embedded.getEmbeddedParameter());
+      default -> {
+      }
+    }
+  }
+
+  private static void updateFile(MessageDigest digest, File file) {
+    digest.update("%s:%d:%d".formatted(file.getAbsolutePath(), file.length(), file.lastModified())
+        .getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * @return the index of the first step that needs processing
+   */
+  public int getResumeStep() {
+    return checkpoints.size();
+  }
+
+  /**
+   * @return the checkpoint of the last unchanged step or null if all steps need processing
+   */
+  public @Nullable StepCheckpoint getResumeCheckpoint() {
+    return checkpoints.isEmpty() ? null : checkpoints.getLast();
+  }
+
+  /**
+   * Replaces the current project with the project of the checkpoint. Spectral libraries are not
+   * stored in projects and are kept from the current project.
+   *
+   * @return the opened project
+   */
+  public @NotNull MZmineProject open(@NotNull StepCheckpoint checkpoint) throws IOException {
+    final File projectFile = new File(directory, checkpoint.projectFile());
+    logger.info("Resuming batch at step %d from checkpoint %s".formatted(checkpoint.step() + 2,
+        projectFile.getAbsolutePath()));
+
+    final List<SpectralLibrary> libraries = ProjectService.getProject()
+        .getCurrentSpectralLibraries();
+    // an empty project does not ask for confirmation before it is replaced
+    ProjectService.getProjectManager().clearProject();
+
+    final ProjectOpeningTask task = new ProjectOpeningTask(projectFile, Instant.now());
+    runBlocking(task, "open checkpoint " + projectFile);
+
+    final MZmineProject project = ProjectService.getProject();
+    project.addSpectralLibrary(libraries.toArray(new SpectralLibrary[0]));
+    return project;
+  }
+
+  /**
+   * Saves the project after a step and discards the checkpoints of all later steps.
+   *
+   * @param dataFiles    the last created data files, used by the next step
+   * @param featureLists the last created feature lists, used by the next step
+   */
+  public void save(int step, @NotNull MZmineProject project, @NotNull List<RawDataFile> dataFiles,
+      @NotNull List<FeatureList> featureLists) throws IOException {
+    // identify before saving, which might change the project
+    final List<DataFileId> dataFileIds = dataFiles.stream()
+        .map(file -> DataFileId.of(project, file)).toList();
+    final List<FeatureListId> featureListIds = featureLists.stream().map(FeatureListId::of)
+        .toList();
+    while (checkpoints.size() > step) {
+      final StepCheckpoint outdated = checkpoints.removeLast();
+      Files.deleteIfExists(new File(directory, outdated.projectFile()).toPath());
+    }
+    if (checkpoints.size() != step) {
+      throw new IllegalStateException(
+          "Checkpoint of step %d is missing before saving step %d".formatted(checkpoints.size(),
+              step));
+    }
+
+    final File projectFile = new File(directory, "step_%03d.mzmine".formatted(step + 1));
+    final ProjectSaveAsParameters parameters = new ProjectSaveAsParameters();
+    parameters.setParameter(ProjectSaveAsParameters.projectFile, projectFile);
+    parameters.setParameter(ProjectSaveAsParameters.option, ProjectSaveOption.REFERENCING);
+    parameters.setParameter(ProjectSaveAsParameters.storeProcessedData, storeProcessedData);
+    parameters.setParameter(ProjectSaveAsParameters.binaryFeatureLists, true);
+
+    // the checkpoint should not become the project file of the user
+    final File userProjectFile = project.getProjectFile();
+    try {
+      runBlocking(new ProjectSavingTask(project, parameters, Instant.now()),
+          "save checkpoint " + projectFile);
+    } finally {
+      ((MZmineProjectImpl) project).setProjectFile(userProjectFile);
+    }
+
+    checkpoints.add(new StepCheckpoint(step, stepModules.get(step), stepHashes.get(step),
+        projectFile.getName(), dataFileIds, featureListIds));
+    writeManifest();
+  }
+
+  /**
+   * @return the data files of the checkpoint in the current project
+   * @throws IOException if a data file is missing
+   */
+  public static @NotNull List<RawDataFile> getDataFiles(@NotNull MZmineProject project,
+      @NotNull StepCheckpoint checkpoint) throws IOException {
+    final List<RawDataFile> projectFiles = project.getCurrentRawDataFiles();
+    final List<RawDataFile> files = new ArrayList<>();
+    for (DataFileId id : checkpoint.dataFiles()) {
+      final RawDataFile atIndex =
+          id.index() >= 0 && id.index() < projectFiles.size() ? projectFiles.get(id.index())
+              : null;
+      if (atIndex != null && id.matches(atIndex)) {
+        files.add(atIndex);
+      } else {
+        files.add(findSingle(projectFiles, id::matches, "data file " + id.name()));
+      }
+    }
+    return files;
+  }
+
+  /**
+   * @return the feature lists of the checkpoint in the current project
+   * @throws IOException if a feature list is missing
+   */
+  public static @NotNull List<FeatureList> getFeatureLists(@NotNull MZmineProject project,
+      @NotNull StepCheckpoint checkpoint) throws IOException {
+    final List<FeatureList> projectLists = project.getCurrentFeatureLists();
+    final List<FeatureList> flists = new ArrayList<>();
+    for (FeatureListId id : checkpoint.featureLists()) {
+      flists.add(findSingle(projectLists, id::matches, "feature list " + id.name()));
+    }
+    return flists;
+  }
+
+  private static <T> T findSingle(List<T> items, Predicate<T> identity, String description)
+      throws IOException {
+    final List<T> matches = items.stream().filter(identity).toList();
+    if (matches.size() != 1) {
+      throw new IOException(
+          "Found %d instead of one %s of the checkpoint in the project".formatted(matches.size(),
+              description));
+    }
+    return matches.getFirst();
+  }
+
+  private void writeManifest() throws IOException {
+    final File manifest = new File(directory, MANIFEST_FILENAME);
+    final File temp = new File(directory, MANIFEST_FILENAME + ".tmp");
+    new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(temp, checkpoints);
+    Files.move(temp.toPath(), manifest.toPath(), StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private static void runBlocking(AbstractTask task, String description) throws IOException {
+    MZmineCore.getTaskController().runTaskOnThisThreadBlocking(task);
+    if (task.getStatus() != TaskStatus.FINISHED) {
+      logger.log(Level.WARNING, "Could not " + description + ": " + task.getErrorMessage());
+      throw new IOException("Could not " + description + ": " + task.getErrorMessage());
+    }
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.batchmode.checkpoint;
+
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.FeatureList;
+import java.util.List;
+import java.util.Objects;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A saved batch step
+ *
+ * @param step         the index of the step in the batch queue
+ * @param module       the module class of the step
+ * @param hash         hash of the initial project, the parameters and input files of this and all
+ *                     previous steps
+ * @param projectFile  the project saved after this step
+ * @param dataFiles    the last created data files that are used by the next step
+ * @param featureLists the last created feature lists that are used by the next step
+ */
+public record StepCheckpoint(int step, String module, String hash, String projectFile,
+                             List<DataFileId> dataFiles, List<FeatureListId> featureLists) {
+
+  /**
+   * Identifies a data file in the saved project. The project keeps the order of data files, the
+   * name and path guard against a different file at the same index.
+   *
+   * @param index index in the data files of the project
+   */
+  public record DataFileId(int index, String name, @Nullable String path) {
+
+    public static DataFileId of(@NotNull MZmineProject project, @NotNull RawDataFile file) {
+      return new DataFileId(project.getCurrentRawDataFiles().indexOf(file), file.getName(),
+          file.getAbsolutePath());
+    }
+
+    public boolean matches(@NotNull RawDataFile file) {
+      return name.equals(file.getName()) && Objects.equals(path, file.getAbsolutePath());
+    }
+  }
+
+  /**
+   * Identifies a feature list in the saved project. Feature lists are not loaded in order, so the
+   * identity is made of all values that are restored with the project.
+   *
+   * @param dataFiles names of the data files of the feature list
+   */
+  public record FeatureListId(String name, String dateCreated, int rows,
+                              List<String> dataFiles) {
+
+    public static FeatureListId of(@NotNull FeatureList flist) {
+      return new FeatureListId(flist.getName(), flist.getDateCreated(), flist.getNumberOfRows(),
+          flist.getRawDataFiles().stream().map(RawDataFile::getName).toList());
+    }
+
+    public boolean matches(@NotNull FeatureList flist) {
+      return equals(of(flist));
+    }
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.batchmode.timing;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.util.files.FileAndPathUtil;
+import io.github.mzmine.util.io.SemverVersionReader;
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Machine-readable performance report of a batch run. Written as json (run information and steps
+ * with their sub tasks) and as csv (one row per step and sub task) to compare runs, e.g., before
+ * and after an update.
+ */
+public record BatchPerformanceReport(String mzmineVersion, String javaVersion,
+                                     int availableProcessors, long maxHeapBytes,
+                                     String startTime, long wallMillis, TaskStatus status,
+                                     List<StepPerformanceMetrics> steps) {
+
+  public static final String FILE_SUFFIX = "_batch_performance";
+
+  public static BatchPerformanceReport create(@NotNull Instant batchStart,
+      @NotNull TaskStatus status, @NotNull List<StepPerformanceMetrics> steps) {
+    return new BatchPerformanceReport(SemverVersionReader.getMZmineVersion().toString(),
+        Runtime.version().toString(), Runtime.getRuntime().availableProcessors(),
+        Runtime.getRuntime().maxMemory(), batchStart.toString(),
+        Instant.now().toEpochMilli() - batchStart.toEpochMilli(), status, List.copyOf(steps));
+  }
+
+  /**
+   * Writes the json and csv report next to the base file of the batch outputs
+   *
+   * @param baseFile the output file of an export step, the format is replaced
+   * @return the json file
+   */
+  public File writeNextTo(@NotNull File baseFile) throws IOException {
+    File jsonFile = FileAndPathUtil.getRealFilePathWithSuffix(baseFile, FILE_SUFFIX, ".json");
+    File csvFile = FileAndPathUtil.getRealFilePathWithSuffix(baseFile, FILE_SUFFIX, ".csv");
+    FileAndPathUtil.createDirectory(jsonFile.getParentFile());
+
+    new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(jsonFile, this);
+
+    var csvMapper = new CsvMapper();
+    var schema = csvMapper.schemaFor(CsvRow.class).withHeader();
+    try (var writer = csvMapper.writer(schema).writeValues(csvFile)) {
+      writer.writeAll(toCsvRows());
+    }
+    return jsonFile;
+  }
+
+  private List<CsvRow> toCsvRows() {
+    List<CsvRow> rows = new ArrayList<>();
+    for (StepPerformanceMetrics step : steps) {
+      rows.add(new CsvRow("step", step.stepNumber() + 1, step.name(), "", step.status(),
+          step.wallMillis(), step.threadCpuMillis(), step.processCpuMillis(),
+          step.threadAllocatedBytes(), step.peakHeapBytes(), step.heapBytesAfter(),
+          step.memoryMappedBytes(), step.memoryMappedDelta(), step.gcCount(), step.gcMillis(),
+          step.inputRows(), step.inputScans(), step.outputRows(), step.outputScans(), -1));
+      for (TaskPerformanceMetrics task : step.tasks()) {
+        rows.add(new CsvRow("task", step.stepNumber() + 1, step.name(), task.name(), task.status(),
+            task.wallMillis(), task.threadCpuMillis(), -1, task.threadAllocatedBytes(), -1, -1, -1,
+            -1, -1, -1, -1, -1, -1, -1, task.processedItems()));
+      }
+    }
+    return rows;
+  }
+
+  /**
+   * Flat csv row for steps and their sub tasks. Values that do not apply are -1. Thread CPU time
+   * and allocations only cover the batch thread and the threads that ran the sub tasks, see
+   * {@link StepPerformanceMetrics}.
+   */
+  @JsonPropertyOrder({"level", "step", "module", "task", "status", "wallMillis",
+      "threadCpuMillis", "processCpuMillis", "threadAllocatedBytes", "peakHeapBytes",
+      "heapBytesAfter", "memoryMappedBytes", "memoryMappedDelta", "gcCount", "gcMillis",
+      "inputRows", "inputScans", "outputRows", "outputScans", "processedItems"})
+  record CsvRow(String level, int step, String module, String task, TaskStatus status,
+                long wallMillis, long threadCpuMillis, long processCpuMillis,
+                long threadAllocatedBytes, long peakHeapBytes, long heapBytesAfter,
+                long memoryMappedBytes, long memoryMappedDelta, long gcCount, long gcMillis,
+                long inputRows, long inputScans, long outputRows, long outputScans,
+                int processedItems) {
+
+  }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.batchmode.timing;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+
+/**
+ * Reads CPU, allocation, heap, GC and memory mapped usage from the platform MXBeans. Values that
+ * are not supported by the JVM are reported as -1.
+ */
+public final class JvmResourceUtils {
+
+  private static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+  private static final boolean allocationSupported = initAllocationSupport();
+  private static final boolean threadCpuSupported = initThreadCpuSupport();
+
+  private JvmResourceUtils() {
+  }
+
+  private static boolean initAllocationSupport() {
+    try {
+      if (threadBean instanceof com.sun.management.ThreadMXBean sunBean
+          && sunBean.isThreadAllocatedMemorySupported()) {
+        if (!sunBean.isThreadAllocatedMemoryEnabled()) {
+          sunBean.setThreadAllocatedMemoryEnabled(true);
+        }
+        return true;
+      }
+    } catch (UnsupportedOperationException | SecurityException _) {
+    }
+    return false;
+  }
+
+  private static boolean initThreadCpuSupport() {
+    try {
+      if (threadBean.isThreadCpuTimeSupported()) {
+        if (!threadBean.isThreadCpuTimeEnabled()) {
+          threadBean.setThreadCpuTimeEnabled(true);
+        }
+        return true;
+      }
+    } catch (UnsupportedOperationException | SecurityException _) {
+    }
+    return false;
+  }
+
+  /**
+   * @return CPU time of a live thread in ns or -1 if not supported or the thread died
+   */
+  public static long getThreadCpuNanos(long threadId) {
+    return threadCpuSupported ? threadBean.getThreadCpuTime(threadId) : -1;
+  }
+
+  /**
+   * @return bytes allocated on the heap by a live thread or -1 if not supported or the thread died
+   */
+  public static long getThreadAllocatedBytes(long threadId) {
+    return allocationSupported ? ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(
+        threadId) : -1;
+  }
+
+  /**
+   * @return CPU time of the whole process in ns (all threads including GC and GUI) or -1
+   */
+  public static long getProcessCpuNanos() {
+    if (ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean os) {
+      return os.getProcessCpuTime();
+    }
+    return -1;
+  }
+
+  /**
+   * @return total number of garbage collections since JVM start
+   */
+  public static long getGcCount() {
+    long count = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      count += Math.max(0, gc.getCollectionCount());
+    }
+    return count;
+  }
+
+  /**
+   * @return accumulated garbage collection time in ms since JVM start
+   */
+  public static long getGcMillis() {
+    long millis = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      millis += Math.max(0, gc.getCollectionTime());
+    }
+    return millis;
+  }
+
+  public static long getUsedHeapBytes() {
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+  }
+
+  /**
+   * Sum of the peak usage of all heap pools since the last {@link #resetPeakHeap()}. Pools may peak
+   * at different times, so this is an upper bound of the actual peak heap usage.
+   */
+  public static long getPeakHeapBytes() {
+    long peak = 0;
+    for (MemoryPoolMXBean pool : heapPools()) {
+      var usage = pool.getPeakUsage();
+      if (usage != null) {
+        peak += usage.getUsed();
+      }
+    }
+    return peak;
+  }
+
+  public static void resetPeakHeap() {
+    for (MemoryPoolMXBean pool : heapPools()) {
+      pool.resetPeakUsage();
+    }
+  }
+
+  private static List<MemoryPoolMXBean> heapPools() {
+    return ManagementFactory.getMemoryPoolMXBeans().stream()
+        .filter(pool -> pool.getType() == MemoryType.HEAP && pool.isValid()).toList();
+  }
+
+  /**
+   * The MemoryMapStorage stores data in memory mapped buffers, which are tracked by the "mapped"
+   * buffer pool of the JVM.
+   *
+   * @return bytes currently held in memory mapped buffers or -1 if the pool is not available
+   */
+  public static long getMemoryMappedBytes() {
+    for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+      if ("mapped".equals(pool.getName())) {
+        return pool.getMemoryUsed();
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return difference of two cumulative counters or -1 if either is not supported
+   */
+  static long delta(long start, long end) {
+    return start < 0 || end < 0 ? -1 : end - start;
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.batchmode.timing;
+
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.taskcontrol.Task;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Records the resources of one batch step. Create on the batch thread when the step starts,
+ * register all sub tasks before they are submitted, and call {@link #finish(TaskStatus)} on the
+ * batch thread when the step is done.
+ */
+public class StepMetricsRecorder {
+
+  private final int stepNumber;
+  private final long batchThreadId = Thread.currentThread().threadId();
+  private final long startNanos = System.nanoTime();
+  private final long startThreadCpu;
+  private final long startThreadAllocated;
+  private final long startProcessCpu;
+  private final long startGcCount;
+  private final long startGcMillis;
+  private final long startMapped;
+  private final List<TaskMetricsListener> taskListeners = new ArrayList<>();
+  private String name = "";
+  private long inputRows;
+  private long inputScans;
+  private long outputRows;
+  private long outputScans;
+
+  public StepMetricsRecorder(int stepNumber) {
+    this.stepNumber = stepNumber;
+    JvmResourceUtils.resetPeakHeap();
+    startThreadCpu = JvmResourceUtils.getThreadCpuNanos(batchThreadId);
+    startThreadAllocated = JvmResourceUtils.getThreadAllocatedBytes(batchThreadId);
+    startProcessCpu = JvmResourceUtils.getProcessCpuNanos();
+    startGcCount = JvmResourceUtils.getGcCount();
+    startGcMillis = JvmResourceUtils.getGcMillis();
+    startMapped = JvmResourceUtils.getMemoryMappedBytes();
+  }
+
+  private static long countRows(List<FeatureList> flists) {
+    return flists.stream().filter(Objects::nonNull).mapToLong(FeatureList::getNumberOfRows).sum();
+  }
+
+  private static long countScans(List<RawDataFile> files) {
+    return files.stream().filter(Objects::nonNull).mapToLong(RawDataFile::getNumOfScans).sum();
+  }
+
+  public void setName(final String name) {
+    this.name = name;
+  }
+
+  public void setInput(@NotNull List<FeatureList> flists, @NotNull List<RawDataFile> files) {
+    inputRows = countRows(flists);
+    inputScans = countScans(files);
+  }
+
+  public void setOutput(@NotNull List<FeatureList> flists, @NotNull List<RawDataFile> files) {
+    outputRows = countRows(flists);
+    outputScans = countScans(files);
+  }
+
+  /**
+   * Adds a status listener to each task. Call before the tasks are submitted.
+   */
+  public void registerTasks(List<? extends Task> tasks) {
+    for (Task task : tasks) {
+      TaskMetricsListener listener = new TaskMetricsListener(task);
+      task.addTaskStatusListener(listener);
+      taskListeners.add(listener);
+    }
+  }
+
+  public StepPerformanceMetrics finish(TaskStatus status) {
+    long wallMillis = (System.nanoTime() - startNanos) / 1_000_000L;
+
+    List<TaskPerformanceMetrics> tasks = taskListeners.stream().map(TaskMetricsListener::getMetrics)
+        .filter(Objects::nonNull).toList();
+    taskListeners.clear();
+
+    long threadCpu = JvmResourceUtils.delta(startThreadCpu,
+        JvmResourceUtils.getThreadCpuNanos(batchThreadId));
+    long cpuMillis = threadCpu < 0 ? -1 : threadCpu / 1_000_000L;
+    long allocated = JvmResourceUtils.delta(startThreadAllocated,
+        JvmResourceUtils.getThreadAllocatedBytes(batchThreadId));
+    for (TaskPerformanceMetrics task : tasks) {
+      cpuMillis =
+          cpuMillis < 0 || task.threadCpuMillis() < 0 ? -1 : cpuMillis + task.threadCpuMillis();
+      allocated = allocated < 0 || task.threadAllocatedBytes() < 0 ? -1
+          : allocated + task.threadAllocatedBytes();
+    }
+    long processCpu = JvmResourceUtils.delta(startProcessCpu, JvmResourceUtils.getProcessCpuNanos());
+    long mapped = JvmResourceUtils.getMemoryMappedBytes();
+
+    return new StepPerformanceMetrics(stepNumber, name, status, wallMillis, cpuMillis,
+        processCpu < 0 ? -1 : processCpu / 1_000_000L, allocated,
+        JvmResourceUtils.getPeakHeapBytes(), JvmResourceUtils.getUsedHeapBytes(), mapped,
+        JvmResourceUtils.delta(startMapped, mapped),
+        JvmResourceUtils.getGcCount() - startGcCount,
+        JvmResourceUtils.getGcMillis() - startGcMillis, inputRows, inputScans, outputRows,
+        outputScans, tasks);
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.batchmode.timing;
+
+import io.github.mzmine.taskcontrol.TaskStatus;
+import java.util.List;
+
+/**
+ * Resources used by one batch step. Cumulative values are the difference between step start and
+ * end and are -1 if not supported by the JVM.
+ *
+ * @param stepNumber             0-based index in the batch queue
+ * @param threadCpuMillis        CPU time of the batch thread and the threads that ran the sub
+ *                               tasks. Work on other threads, e.g., parallel streams or executors
+ *                               used by a task, is only included in processCpuMillis
+ * @param processCpuMillis       CPU time of the whole process including worker threads, GC, GUI
+ *                               and other tasks
+ * @param threadAllocatedBytes   heap allocations of the batch thread and the threads that ran the
+ *                               sub tasks
+ * @param peakHeapBytes          peak heap usage during this step
+ * @param heapBytesAfter         used heap after the step
+ * @param memoryMappedBytes      memory mapped data (MemoryMapStorage) held after the step
+ * @param memoryMappedDelta      change of memory mapped data during the step
+ * @param inputRows              rows of the feature lists used as input
+ * @param inputScans             scans of the raw data files used as input
+ * @param outputRows             rows of the newly created feature lists
+ * @param outputScans            scans of the newly created raw data files
+ * @param tasks                  all sub tasks of this step
+ */
+public record StepPerformanceMetrics(int stepNumber, String name, TaskStatus status,
+                                     long wallMillis, long threadCpuMillis, long processCpuMillis,
+                                     long threadAllocatedBytes, long peakHeapBytes,
+                                     long heapBytesAfter, long memoryMappedBytes,
+                                     long memoryMappedDelta, long gcCount, long gcMillis,
+                                     long inputRows, long inputScans, long outputRows,
+                                     long outputScans, List<TaskPerformanceMetrics> tasks) {
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.batchmode.timing;
+
+import io.github.mzmine.taskcontrol.AbstractTask;
+import io.github.mzmine.taskcontrol.ProcessedItemsCounter;
+import io.github.mzmine.taskcontrol.Task;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.taskcontrol.TaskStatusListener;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Measures a task between its switch to {@link TaskStatus#PROCESSING} and its final status. Tasks
+ * change their status on the thread that runs them, which is used to measure thread CPU time and
+ * allocations independent of the executor. Only the task thread is measured, work that the task
+ * delegates to other threads is not included. Does not keep a reference to the task.
+ */
+class TaskMetricsListener implements TaskStatusListener {
+
+  private final String name;
+  private final long createdNanos = System.nanoTime();
+  private long startNanos = -1;
+  private long threadId = -1;
+  private long startCpu = -1;
+  private long startAllocated = -1;
+  private @Nullable TaskPerformanceMetrics metrics;
+
+  TaskMetricsListener(Task task) {
+    name = task instanceof AbstractTask at ? at.getName() : task.getClass().getSimpleName();
+  }
+
+  @Override
+  public synchronized void taskStatusChanged(Task task, TaskStatus newStatus,
+      TaskStatus oldStatus) {
+    if (newStatus == TaskStatus.PROCESSING && startNanos < 0) {
+      startNanos = System.nanoTime();
+      threadId = Thread.currentThread().threadId();
+      startCpu = JvmResourceUtils.getThreadCpuNanos(threadId);
+      startAllocated = JvmResourceUtils.getThreadAllocatedBytes(threadId);
+    } else if (metrics == null && (newStatus == TaskStatus.FINISHED
+                                   || newStatus == TaskStatus.ERROR
+                                   || newStatus == TaskStatus.CANCELED)) {
+      finish(task, newStatus);
+    }
+  }
+
+  private void finish(Task task, TaskStatus status) {
+    long end = System.nanoTime();
+    long wallMillis = (end - (startNanos < 0 ? createdNanos : startNanos)) / 1_000_000L;
+    long cpuMillis = -1;
+    long allocated = -1;
+    if (threadId >= 0) {
+      long cpu = JvmResourceUtils.delta(startCpu, JvmResourceUtils.getThreadCpuNanos(threadId));
+      cpuMillis = cpu < 0 ? -1 : cpu / 1_000_000L;
+      allocated = JvmResourceUtils.delta(startAllocated,
+          JvmResourceUtils.getThreadAllocatedBytes(threadId));
+    }
+    int processed = task instanceof ProcessedItemsCounter counter ? counter.getProcessedItems() : -1;
+    metrics = new TaskPerformanceMetrics(name, status, wallMillis, cpuMillis, allocated, processed);
+  }
+
+  /**
+   * @return the metrics or null if the task did not reach a final status yet
+   */
+  synchronized @Nullable TaskPerformanceMetrics getMetrics() {
+    return metrics;
+  }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.batchmode.timing;
+
+import io.github.mzmine.taskcontrol.TaskStatus;
+
+/**
+ * Resources used by a single sub task of a batch step. CPU time and allocated bytes are -1 if not
+ * supported by the JVM.
+ *
+ * @param threadCpuMillis      CPU time of the thread that ran the task only. Work that the task
+ *                             delegates to other threads, e.g., parallel streams or executors, is
+ *                             not included.
+ * @param threadAllocatedBytes heap allocations of the thread that ran the task only
+ * @param processedItems       items reported by
+ *                             {@link io.github.mzmine.taskcontrol.ProcessedItemsCounter} or -1
+ */
+public record TaskPerformanceMetrics(String name, TaskStatus status, long wallMillis,
+                                     long threadCpuMillis, long threadAllocatedBytes,
+                                     int processedItems) {
+
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.align_common;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.DoubleUnaryOperator;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Bucket grid over the base rows of an alignment iteration in m/z, RT and mobility. The cell size
+ * of each dimension is the tolerance window at the median value, so that a search only visits the
+ * cells around the tolerance ranges of a row instead of all rows in the m/z window. Dimensions
+ * without window are not indexed.
+ * <p>
+ * The index only provides candidates, the final check against the ranges is done by the
+ * {@link FeatureRowAlignScorer}. Rows without RT or mobility are kept in an extra cell of this
+ * dimension that is always visited. Rows without m/z are not indexed.
+ */
+public class AlignmentGridIndex {
+
+  private static final int MZ = 0;
+  private static final int RT = 1;
+  private static final int MOBILITY = 2;
+  private static final int DIMENSIONS = 3;
+  // 21 bits per dimension, bins are shifted by one for the null bin
+  private static final int BITS = 21;
+  private static final int MAX_BINS = (1 << (BITS - 1));
+  private static final long MASK = (1L << BITS) - 1;
+  private static final int NULL_BIN = -1;
+
+  private final @NotNull List<FeatureListRow> rows;
+  private final double[] min = new double[DIMENSIONS];
+  private final double[] width = new double[DIMENSIONS];
+  private final int[] maxBin = new int[DIMENSIONS];
+  private final boolean[] hasNull = new boolean[DIMENSIONS];
+
+  // cells in CSR layout
+  private final long[] cellKeys;
+  private final int[] cellStarts;
+  private final int[] cellRows;
+  private final Long2IntOpenHashMap cellIndex;
+
+  /**
+   * @param rows           the base rows, the index of a row in this list is used as reference
+   * @param mzWindow       tolerance window length for an m/z value or null to not index m/z
+   * @param rtWindow       tolerance window length for an RT value or null to not index RT
+   * @param mobilityWindow tolerance window length for a mobility value or null to not index
+   *                       mobility
+   */
+  public AlignmentGridIndex(@NotNull List<FeatureListRow> rows,
+      @Nullable DoubleUnaryOperator mzWindow, @Nullable DoubleUnaryOperator rtWindow,
+      @Nullable DoubleUnaryOperator mobilityWindow) {
+    this.rows = rows;
+    final int n = rows.size();
+    final double[][] values = new double[DIMENSIONS][n];
+    for (int i = 0; i < n; i++) {
+      final FeatureListRow row = rows.get(i);
+      values[MZ][i] = toDouble(row.getAverageMZ());
+      values[RT][i] = toDouble(row.getAverageRT());
+      values[MOBILITY][i] = toDouble(row.getAverageMobility());
+    }
+    initDimension(MZ, values[MZ], mzWindow);
+    initDimension(RT, values[RT], rtWindow);
+    initDimension(MOBILITY, values[MOBILITY], mobilityWindow);
+
+    // sort rows by cell, stable so that rows of a cell stay in input order
+    final long[] rowKeys = new long[n];
+    int indexed = 0;
+    for (int i = 0; i < n; i++) {
+      if (Double.isNaN(values[MZ][i])) {
+        rowKeys[i] = -1; // rows without m/z never match
+        continue;
+      }
+      rowKeys[i] = cellKey(binOf(MZ, values[MZ][i]), binOf(RT, values[RT][i]),
+          binOf(MOBILITY, values[MOBILITY][i]));
+      indexed++;
+    }
+    final int[] order = new int[indexed];
+    for (int i = 0, j = 0; i < n; i++) {
+      if (rowKeys[i] != -1) {
+        order[j++] = i;
+      }
+    }
+    IntArrays.stableSort(order, (a, b) -> Long.compare(rowKeys[a], rowKeys[b]));
+
+    cellRows = order;
+    final long[] keys = new long[indexed];
+    final int[] starts = new int[indexed + 1];
+    int cells = 0;
+    for (int j = 0; j < indexed; j++) {
+      final long key = rowKeys[order[j]];
+      if (cells == 0 || keys[cells - 1] != key) {
+        keys[cells] = key;
+        starts[cells] = j;
+        cells++;
+      }
+    }
+    starts[cells] = indexed;
+    cellKeys = Arrays.copyOf(keys, cells);
+    cellStarts = Arrays.copyOf(starts, cells + 1);
+    cellIndex = new Long2IntOpenHashMap(cells);
+    cellIndex.defaultReturnValue(-1);
+    for (int c = 0; c < cells; c++) {
+      cellIndex.put(cellKeys[c], c);
+    }
+  }
+
+  private static double toDouble(@Nullable Number value) {
+    return value == null ? Double.NaN : value.doubleValue();
+  }
+
+  private void initDimension(int dim, double[] values, @Nullable DoubleUnaryOperator window) {
+    double lower = Double.POSITIVE_INFINITY;
+    double upper = Double.NEGATIVE_INFINITY;
+    int numValues = 0;
+    for (double v : values) {
+      if (Double.isNaN(v)) {
+        hasNull[dim] = true;
+      } else {
+        lower = Math.min(lower, v);
+        upper = Math.max(upper, v);
+        numValues++;
+      }
+    }
+    if (window == null || numValues == 0) {
+      return; // all in bin 0
+    }
+    final double[] sorted = Arrays.stream(values).filter(v -> !Double.isNaN(v)).sorted()
+        .toArray();
+    double cellWidth = window.applyAsDouble(sorted[sorted.length / 2]);
+    if (!(cellWidth > 0) || Double.isInfinite(cellWidth)) {
+      return;
+    }
+    // limit the number of bins
+    cellWidth = Math.max(cellWidth, (upper - lower) / (MAX_BINS - 1));
+    min[dim] = lower;
+    width[dim] = cellWidth;
+    maxBin[dim] = (int) Math.floor((upper - lower) / cellWidth);
+  }
+
+  private int binOf(int dim, double value) {
+    if (Double.isNaN(value)) {
+      return NULL_BIN;
+    }
+    if (width[dim] == 0) {
+      return 0;
+    }
+    final double bin = Math.floor((value - min[dim]) / width[dim]);
+    return (int) Math.max(0, Math.min(maxBin[dim], bin));
+  }
+
+  private static long cellKey(int mzBin, int rtBin, int mobilityBin) {
+    return ((long) (mzBin + 1) << (2 * BITS)) | ((long) (rtBin + 1) << BITS) | (mobilityBin + 1);
+  }
+
+  /**
+   * @return the base rows in the original order
+   */
+  public @NotNull List<FeatureListRow> getRows() {
+    return rows;
+  }
+
+  public @NotNull FeatureListRow getRow(int index) {
+    return rows.get(index);
+  }
+
+  public int size() {
+    return rows.size();
+  }
+
+  /**
+   * Candidates in all cells that overlap the ranges. The candidates still need to be checked
+   * against the ranges. Use {@link Range#all()} for dimensions that should not be filtered.
+   *
+   * @return indices of the candidate rows in ascending order
+   */
+  public @NotNull IntArrayList findCandidates(@NotNull Range<Double> mzRange,
+      @NotNull Range<Float> rtRange, @NotNull Range<Float> mobilityRange) {
+    final int[] from = new int[DIMENSIONS];
+    final int[] to = new int[DIMENSIONS];
+    final boolean[] withNull = new boolean[DIMENSIONS];
+    binRange(MZ, mzRange, from, to, withNull);
+    binRange(RT, rtRange, from, to, withNull);
+    binRange(MOBILITY, mobilityRange, from, to, withNull);
+
+    final IntArrayList candidates = new IntArrayList();
+    long numQueryCells = 1;
+    for (int d = 0; d < DIMENSIONS; d++) {
+      numQueryCells *= Math.max(0, to[d] - from[d] + 1) + (withNull[d] ? 1 : 0);
+    }
+    if (numQueryCells == 0) {
+      return candidates;
+    }
+
+    if (numQueryCells >= cellKeys.length) {
+      // wide search - visit all filled cells
+      for (int c = 0; c < cellKeys.length; c++) {
+        final long key = cellKeys[c];
+        if (inBins((int) (key >>> (2 * BITS)) - 1, MZ, from, to, withNull) //
+            && inBins((int) ((key >>> BITS) & MASK) - 1, RT, from, to, withNull) //
+            && inBins((int) (key & MASK) - 1, MOBILITY, from, to, withNull)) {
+          addCell(c, candidates);
+        }
+      }
+    } else {
+      for (int mz = from[MZ]; mz <= to[MZ]; mz++) {
+        for (int rt = firstBin(RT, from, withNull); rt <= to[RT];
+            rt = nextBin(RT, rt, from)) {
+          for (int mob = firstBin(MOBILITY, from, withNull); mob <= to[MOBILITY];
+              mob = nextBin(MOBILITY, mob, from)) {
+            final int c = cellIndex.get(cellKey(mz, rt, mob));
+            if (c != -1) {
+              addCell(c, candidates);
+            }
+          }
+        }
+      }
+    }
+    IntArrays.quickSort(candidates.elements(), 0, candidates.size());
+    return candidates;
+  }
+
+  private static int firstBin(int dim, int[] from, boolean[] withNull) {
+    return withNull[dim] ? NULL_BIN : from[dim];
+  }
+
+  private static int nextBin(int dim, int bin, int[] from) {
+    return bin == NULL_BIN ? from[dim] : bin + 1;
+  }
+
+  private static boolean inBins(int bin, int dim, int[] from, int[] to, boolean[] withNull) {
+    return bin == NULL_BIN ? withNull[dim] : bin >= from[dim] && bin <= to[dim];
+  }
+
+  private void addCell(int cell, IntArrayList candidates) {
+    for (int i = cellStarts[cell]; i < cellStarts[cell + 1]; i++) {
+      candidates.add(cellRows[i]);
+    }
+  }
+
+  /**
+   * Bins that overlap the range. Rows without value are always candidates and are visited in the
+   * extra null bin.
+   */
+  private <N extends Number & Comparable<N>> void binRange(int dim, Range<N> range, int[] from,
+      int[] to, boolean[] withNull) {
+    withNull[dim] = hasNull[dim] && dim != MZ;
+    if (width[dim] == 0) {
+      from[dim] = 0;
+      to[dim] = 0;
+      return;
+    }
+    // from > to if the range is outside all values
+    from[dim] = range.hasLowerBound() ? Math.max(0, rawBin(dim, range.lowerEndpoint())) : 0;
+    to[dim] = range.hasUpperBound() ? Math.min(maxBin[dim], rawBin(dim, range.upperEndpoint()))
+        : maxBin[dim];
+  }
+
+  /**
+   * @return the bin of a value, -1 if below and maxBin+1 if above all bins
+   */
+  private int rawBin(int dim, Number value) {
+    final double bin = Math.floor((value.doubleValue() - min[dim]) / width[dim]);
+    if (bin < 0) {
+      return -1;
+    }
+    return bin > maxBin[dim] ? maxBin[dim] + 1 : (int) bin;
+  }
+}
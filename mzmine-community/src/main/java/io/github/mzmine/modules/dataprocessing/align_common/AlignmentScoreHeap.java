@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.align_common;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Max heap of row vs base row scores in primitive arrays. Rows are referenced by their index in
+ * the list of rows to add and in the {@link AlignmentGridIndex}. Scores are first collected with
+ * {@link #add(double, int, int)} and then polled in descending order after {@link #heapify()}.
+ * Equal scores are ordered by row and base row index to keep the alignment reproducible.
+ */
+public class AlignmentScoreHeap {
+
+  private double[] scores;
+  private int[] rows;
+  private int[] baseRows;
+  private int size;
+  private boolean heap;
+
+  public AlignmentScoreHeap() {
+    this(16);
+  }
+
+  public AlignmentScoreHeap(int initialCapacity) {
+    initialCapacity = Math.max(1, initialCapacity);
+    scores = new double[initialCapacity];
+    rows = new int[initialCapacity];
+    baseRows = new int[initialCapacity];
+  }
+
+  /**
+   * Concatenate all scores into a new heap
+   */
+  public static @NotNull AlignmentScoreHeap merge(@NotNull List<AlignmentScoreHeap> parts) {
+    final int total = parts.stream().mapToInt(AlignmentScoreHeap::size).sum();
+    final AlignmentScoreHeap merged = new AlignmentScoreHeap(total);
+    for (AlignmentScoreHeap part : parts) {
+      System.arraycopy(part.scores, 0, merged.scores, merged.size, part.size);
+      System.arraycopy(part.rows, 0, merged.rows, merged.size, part.size);
+      System.arraycopy(part.baseRows, 0, merged.baseRows, merged.size, part.size);
+      merged.size += part.size;
+    }
+    merged.heapify();
+    return merged;
+  }
+
+  /**
+   * @param score   higher is better
+   * @param row     index of the row to add
+   * @param baseRow index of the base row
+   */
+  public void add(double score, int row, int baseRow) {
+    if (size == scores.length) {
+      final int capacity = Math.max(16, size + (size >> 1));
+      scores = Arrays.copyOf(scores, capacity);
+      rows = Arrays.copyOf(rows, capacity);
+      baseRows = Arrays.copyOf(baseRows, capacity);
+    }
+    scores[size] = score;
+    rows[size] = row;
+    baseRows[size] = baseRow;
+    size++;
+    if (heap) {
+      siftUp(size - 1);
+    }
+  }
+
+  /**
+   * Build the heap in linear time. Called once after all scores were added.
+   */
+  public void heapify() {
+    for (int i = (size >>> 1) - 1; i >= 0; i--) {
+      siftDown(i);
+    }
+    heap = true;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public double peekScore() {
+    checkHeap();
+    return scores[0];
+  }
+
+  public int peekRow() {
+    checkHeap();
+    return rows[0];
+  }
+
+  public int peekBaseRow() {
+    checkHeap();
+    return baseRows[0];
+  }
+
+  /**
+   * Remove the best score
+   */
+  public void removeFirst() {
+    checkHeap();
+    size--;
+    if (size > 0) {
+      move(size, 0);
+      siftDown(0);
+    }
+  }
+
+  private void checkHeap() {
+    if (size == 0) {
+      throw new NoSuchElementException();
+    }
+    if (!heap) {
+      heapify();
+    }
+  }
+
+  /**
+   * @return true if entry a comes before entry b
+   */
+  private boolean before(int a, int b) {
+    final int compare = Double.compare(scores[a], scores[b]);
+    if (compare != 0) {
+      return compare > 0;
+    }
+    if (rows[a] != rows[b]) {
+      return rows[a] < rows[b];
+    }
+    return baseRows[a] < baseRows[b];
+  }
+
+  private void siftUp(int i) {
+    while (i > 0) {
+      final int parent = (i - 1) >>> 1;
+      if (!before(i, parent)) {
+        return;
+      }
+      swap(i, parent);
+      i = parent;
+    }
+  }
+
+  private void siftDown(int i) {
+    while (true) {
+      final int left = 2 * i + 1;
+      if (left >= size) {
+        return;
+      }
+      int best = left;
+      if (left + 1 < size && before(left + 1, left)) {
+        best = left + 1;
+      }
+      if (!before(best, i)) {
+        return;
+      }
+      swap(i, best);
+      i = best;
+    }
+  }
+
+  private void move(int from, int to) {
+    scores[to] = scores[from];
+    rows[to] = rows[from];
+    baseRows[to] = baseRows[from];
+  }
+
+  private void swap(int a, int b) {
+    final double score = scores[a];
+    scores[a] = scores[b];
+    scores[b] = score;
+    final int row = rows[a];
+    rows[a] = rows[b];
+    rows[b] = row;
+    final int baseRow = baseRows[a];
+    baseRows[a] = baseRows[b];
+    baseRows[b] = baseRow;
+  }
+}
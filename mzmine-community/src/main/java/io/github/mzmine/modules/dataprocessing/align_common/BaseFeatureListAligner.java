@@ -33,7 +33,6 @@ import io.github.mzmine.datamodel.features.FeatureList;
 import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.datamodel.features.ModularFeatureListRow;
-import io.github.mzmine.modules.dataprocessing.align_join.RowVsRowScore;
 import io.github.mzmine.taskcontrol.Task;
 import io.github.mzmine.taskcontrol.progress.TotalFinishedItemsProgress;
 import io.github.mzmine.util.FeatureListRowSorter;
@@ -107,31 +106,43 @@ public class BaseFeatureListAligner {
     return alignedFeatureList;
   }
 
+  /**
+   * Adds the features of each row to its best scoring base row. Scores are polled from the heap in
+   * descending order.
+   *
+   * @param scores    heap of row index vs base row index
+   * @param rowsToAdd rows referenced by the row index of the scores
+   * @param baseRows  rows referenced by the base row index of the scores
+   * @return map of all rows that were aligned
+   */
   @NotNull
   public static Object2BooleanOpenHashMap<FeatureListRow> addFeaturesBasedOnScores(
-      Collection<RowVsRowScore> scoresList, final ModularFeatureList alignedFeatureList,
+      final AlignmentScoreHeap scores, final List<FeatureListRow> rowsToAdd,
+      final List<FeatureListRow> baseRows, final ModularFeatureList alignedFeatureList,
       final FeatureCloner featureCloner, final AtomicLong alignedRows) {
-    // natural order is reversed so best highest score is first element
-    final RowVsRowScore[] scores = scoresList.stream().sorted().toArray(RowVsRowScore[]::new);
-
     // track if row was aligned
+    final boolean[] aligned = new boolean[rowsToAdd.size()];
     final Object2BooleanOpenHashMap<FeatureListRow> alignedRowsMap = new Object2BooleanOpenHashMap<>(
-        scores.length);
-
-    for (RowVsRowScore score : scores) {
-      final FeatureListRow alignedRow = score.getAlignedBaseRow();
-      final FeatureListRow row = score.getRowToAdd();
-      if (!alignedRowsMap.getOrDefault(row, false)) {
-        // no row was aligned
-        // put all features of the row into the aligned row
-        for (Feature feature : row.getFeatures()) {
-          final RawDataFile dataFile = feature.getRawDataFile();
-          if (!alignedRow.hasFeature(dataFile)) {
-            var newFeature = featureCloner.cloneFeature(feature, alignedFeatureList, alignedRow);
-            alignedRow.addFeature(dataFile, newFeature, false);
-            alignedRowsMap.put(row, true);
-            alignedRows.getAndIncrement();
-          }
+        rowsToAdd.size());
+
+    // heap returns best highest score first
+    for (; !scores.isEmpty(); scores.removeFirst()) {
+      final int rowIndex = scores.peekRow();
+      if (aligned[rowIndex]) {
+        continue;
+      }
+      final FeatureListRow alignedRow = baseRows.get(scores.peekBaseRow());
+      final FeatureListRow row = rowsToAdd.get(rowIndex);
+      // no row was aligned
+      // put all features of the row into the aligned row
+      for (Feature feature : row.getFeatures()) {
+        final RawDataFile dataFile = feature.getRawDataFile();
+        if (!alignedRow.hasFeature(dataFile)) {
+          var newFeature = featureCloner.cloneFeature(feature, alignedFeatureList, alignedRow);
+          alignedRow.addFeature(dataFile, newFeature, false);
+          aligned[rowIndex] = true;
+          alignedRowsMap.put(row, true);
+          alignedRows.getAndIncrement();
         }
       }
     }
@@ -242,14 +253,16 @@ public class BaseFeatureListAligner {
 
     // align all remaining feature lists onto the feature list with max(row number) = nextBaseRows
     if (!allRows.isEmpty()) {
-      Collection<RowVsRowScore> scoresList = rowAligner.alignRowsOnBaseRows(parentTask, allRows,
+      final List<FeatureListRow> rowsToAdd = allRows.stream().flatMap(Collection::stream)
+          .toList();
+      final AlignmentScoreHeap scores = rowAligner.alignRowsOnBaseRows(parentTask, rowsToAdd,
           nextBaseRows);
 
       // after an iteration, rows of all other featureLists have been given a mapping
       // now we have to find the best match
       // track all aligned rows - only align to highest scoring row
-      final var alignedRowsMap = addFeaturesBasedOnScores(scoresList, alignedFeatureList,
-          featureCloner, progress.getFinished());
+      final var alignedRowsMap = addFeaturesBasedOnScores(scores, rowsToAdd, nextBaseRows,
+          alignedFeatureList, featureCloner, progress.getFinished());
 
       // keep track of unaligned rows for the next interation.
       AlignedRemainingRows result = removeAlignedRows(allRows, alignedRowsMap);
@@ -30,47 +30,61 @@ import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.modules.dataprocessing.align_gc.GCAlignerTask;
 import io.github.mzmine.modules.dataprocessing.align_join.JoinAlignerTask;
-import io.github.mzmine.modules.dataprocessing.align_join.RowVsRowScore;
 import io.github.mzmine.taskcontrol.Task;
-import java.util.Collection;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.stream.IntStream;
 
 public interface FeatureRowAlignScorer {
 
+  /**
+   * Number of rows that are scored by one thread into one local score heap
+   */
+  int ROWS_PER_TASK = 512;
+
   /**
    * Align rows on base rows
    *
-   * @param unalignedRows  score and align these rows against base
+   * @param rowsToAdd      score and align these rows against base
    * @param baseRowsSorted the base rows that alignments will be added. Sorted by RT for
    *                       {@link GCAlignerTask} and by mz for {@link JoinAlignerTask}
-   * @return all RowVsRowScores
+   * @return all scores of rowsToAdd index vs baseRowsSorted index in a heap
    */
-  default Collection<RowVsRowScore> alignRowsOnBaseRows(final Task parentTask,
-      List<List<FeatureListRow>> unalignedRows, List<FeatureListRow> baseRowsSorted) {
-
-    // key = a row to be aligned, value = all possible matches in the aligned fl and it's scores
-    final ConcurrentLinkedDeque<RowVsRowScore> scoresList = new ConcurrentLinkedDeque<>();
+  default AlignmentScoreHeap alignRowsOnBaseRows(final Task parentTask,
+      List<FeatureListRow> rowsToAdd, List<FeatureListRow> baseRowsSorted) {
+    final AlignmentGridIndex baseRows = createBaseRowIndex(baseRowsSorted);
 
-    // stream all rows in all feature lists
-    unalignedRows.stream().flatMap(Collection::stream).parallel().forEach(rowToAdd -> {
-      if (parentTask.isCanceled()) {
-        return;
-      }
-
-      scoreRowAgainstBaseRows(baseRowsSorted, rowToAdd, scoresList);
-    });
-    return scoresList;
+    // score blocks of rows into local heaps and merge them at the end
+    final int numTasks = (rowsToAdd.size() + ROWS_PER_TASK - 1) / ROWS_PER_TASK;
+    final List<AlignmentScoreHeap> parts = IntStream.range(0, numTasks).parallel()
+        .mapToObj(task -> {
+          final AlignmentScoreHeap scores = new AlignmentScoreHeap();
+          final int end = Math.min(rowsToAdd.size(), (task + 1) * ROWS_PER_TASK);
+          for (int i = task * ROWS_PER_TASK; i < end; i++) {
+            if (parentTask.isCanceled()) {
+              break;
+            }
+            scoreRowAgainstBaseRows(baseRows, i, rowsToAdd.get(i), scores);
+          }
+          return scores;
+        }).toList();
+    return AlignmentScoreHeap.merge(parts);
   }
 
   /**
-   * @param baseRowsSorted the base rows to be scored against. sorting may differ between
-   *                       implementations
-   * @param rowToAdd       row to score
-   * @param scoresList     scores are added here
+   * @param baseRowsSorted the base rows of this iteration
+   * @return an index over the base rows to find candidates within the tolerances of this scorer
+   */
+  AlignmentGridIndex createBaseRowIndex(List<FeatureListRow> baseRowsSorted);
+
+  /**
+   * @param baseRows index over the base rows to be scored against. sorting may differ between
+   *                 implementations
+   * @param rowIndex index of the row to score
+   * @param rowToAdd row to score
+   * @param scores   scores are added here
    */
-  void scoreRowAgainstBaseRows(List<FeatureListRow> baseRowsSorted, FeatureListRow rowToAdd,
-      ConcurrentLinkedDeque<RowVsRowScore> scoresList);
+  void scoreRowAgainstBaseRows(AlignmentGridIndex baseRows, int rowIndex, FeatureListRow rowToAdd,
+      AlignmentScoreHeap scores);
 
   void calculateAlignmentScores(ModularFeatureList alignedFeatureList,
       List<FeatureList> originalFeatureLists);
@@ -32,17 +32,19 @@ import io.github.mzmine.datamodel.features.FeatureList;
 import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.modules.MZmineProcessingStep;
+import io.github.mzmine.modules.dataprocessing.align_common.AlignmentGridIndex;
+import io.github.mzmine.modules.dataprocessing.align_common.AlignmentScoreHeap;
 import io.github.mzmine.modules.dataprocessing.align_common.FeatureRowAlignScorer;
-import io.github.mzmine.modules.dataprocessing.align_join.RowVsRowScore;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
 import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance;
 import io.github.mzmine.util.FeatureListUtils;
+import io.github.mzmine.util.RangeUtils;
 import io.github.mzmine.util.exceptions.MissingMassListException;
 import io.github.mzmine.util.scans.similarity.SpectralSimilarity;
 import io.github.mzmine.util.scans.similarity.SpectralSimilarityFunction;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedDeque;
 import org.jetbrains.annotations.Nullable;
 
 /**
@@ -63,26 +65,33 @@ public class GcRowAlignScorer implements FeatureRowAlignScorer {
   }
 
   @Override
-  public void scoreRowAgainstBaseRows(final List<FeatureListRow> baseRowsByRt,
-      final FeatureListRow rowToAdd, final ConcurrentLinkedDeque<RowVsRowScore> scoresList) {
+  public AlignmentGridIndex createBaseRowIndex(final List<FeatureListRow> baseRowsByRt) {
+    // RT only, cell size is the tolerance window
+    return new AlignmentGridIndex(baseRowsByRt, null,
+        rt -> RangeUtils.rangeLength(rtTolerance.getToleranceRange((float) rt)), null);
+  }
 
+  @Override
+  public void scoreRowAgainstBaseRows(final AlignmentGridIndex baseRows, final int rowIndex,
+      final FeatureListRow rowToAdd, final AlignmentScoreHeap scores) {
 
     final Range<Float> rtRange = rtTolerance.getToleranceRange(rowToAdd.getAverageRT());
     // find all rows in the aligned rows that might match
-    final List<FeatureListRow> candidatesInAligned = FeatureListUtils.getCandidatesWithinRtRange(
-        rtRange, baseRowsByRt, true);
-    if (candidatesInAligned.isEmpty()) {
-      return;
-    }
+    final IntArrayList candidates = baseRows.findCandidates(Range.all(), rtRange, Range.all());
 
     // calculate score for unaligned row against all candidates
-    for (FeatureListRow candidateInAligned : candidatesInAligned) {
-      // retention time is already checked for candidates
+    for (int i = 0; i < candidates.size(); i++) {
+      final int candidateIndex = candidates.getInt(i);
+      final FeatureListRow candidateInAligned = baseRows.getRow(candidateIndex);
+      final Float candidateRt = candidateInAligned.getAverageRT();
+      if (candidateRt == null || !rtRange.contains(candidateRt)) {
+        continue;
+      }
       SpectralSimilarity similarity = checkSpectralSimilarity(rowToAdd, candidateInAligned);
       if (similarity != null) {
-        final RowVsRowScore score = new RowVsRowScore(rowToAdd, candidateInAligned, rtRange,
-            rtWeight, similarity.getScore(), 1);
-        scoresList.add(score);
+        final double score = FeatureListUtils.getAlignmentScore(candidateInAligned, rtRange,
+            similarity.getScore(), rtWeight, 1);
+        scores.add(score, rowIndex, candidateIndex);
       }
     }
   }
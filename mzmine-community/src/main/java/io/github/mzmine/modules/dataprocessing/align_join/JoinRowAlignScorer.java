@@ -33,6 +33,8 @@ import io.github.mzmine.datamodel.features.FeatureList;
 import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.modules.MZmineProcessingStep;
+import io.github.mzmine.modules.dataprocessing.align_common.AlignmentGridIndex;
+import io.github.mzmine.modules.dataprocessing.align_common.AlignmentScoreHeap;
 import io.github.mzmine.modules.dataprocessing.align_common.FeatureRowAlignScorer;
 import io.github.mzmine.modules.tools.isotopepatternscore.IsotopePatternScoreCalculator;
 import io.github.mzmine.modules.tools.isotopepatternscore.IsotopePatternScoreParameters;
@@ -42,11 +44,13 @@ import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance;
 import io.github.mzmine.parameters.parametertypes.tolerances.mobilitytolerance.MobilityTolerance;
 import io.github.mzmine.util.FeatureListUtils;
 import io.github.mzmine.util.FeatureUtils;
+import io.github.mzmine.util.RangeUtils;
 import io.github.mzmine.util.exceptions.MissingMassListException;
 import io.github.mzmine.util.scans.similarity.SpectralSimilarity;
 import io.github.mzmine.util.scans.similarity.SpectralSimilarityFunction;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.function.DoubleUnaryOperator;
 
 /**
  * the row aligner used by {@link JoinAlignerTask}. Based on weighted mz, rt, mobility difference
@@ -114,8 +118,21 @@ public class JoinRowAlignScorer implements FeatureRowAlignScorer {
   }
 
   @Override
-  public void scoreRowAgainstBaseRows(final List<FeatureListRow> baseRowsByMz,
-      final FeatureListRow rowToAdd, final ConcurrentLinkedDeque<RowVsRowScore> scoresList) {
+  public AlignmentGridIndex createBaseRowIndex(final List<FeatureListRow> baseRowsByMz) {
+    // only index dimensions that are filtered by ranges, cell size is the tolerance window
+    final DoubleUnaryOperator mzWindow =
+        mzWeight > 0 ? mz -> RangeUtils.rangeLength(mzTolerance.getToleranceRange(mz)) : null;
+    final DoubleUnaryOperator rtWindow = rtWeight > 0 ? rt -> RangeUtils.rangeLength(
+        rtTolerance.getToleranceRange((float) rt)) : null;
+    final DoubleUnaryOperator mobilityWindow =
+        compareMobility && mobilityWeight > 0 ? mobility -> RangeUtils.rangeLength(
+            mobilityTolerance.getToleranceRange((float) mobility)) : null;
+    return new AlignmentGridIndex(baseRowsByMz, mzWindow, rtWindow, mobilityWindow);
+  }
+
+  @Override
+  public void scoreRowAgainstBaseRows(final AlignmentGridIndex baseRows, final int rowIndex,
+      final FeatureListRow rowToAdd, final AlignmentScoreHeap scores) {
     // ranges are build with prechecks - so if there is no mobility use Range.all() to deactivate the filter
     final Range<Double> mzRange =
         mzWeight > 0 ? mzTolerance.getToleranceRange(rowToAdd.getAverageMZ()) : Range.all();
@@ -126,24 +143,31 @@ public class JoinRowAlignScorer implements FeatureRowAlignScorer {
             ? mobilityTolerance.getToleranceRange(rowToAdd.getAverageMobility()) : Range.all();
 
     // find all rows in the aligned rows that might match
-    final List<FeatureListRow> candidatesInAligned = FeatureListUtils.getCandidatesWithinRanges(
-        mzRange, rtRange, mobilityRange, baseRowsByMz, true);
-
-    if (candidatesInAligned.isEmpty()) {
-      return;
-    }
+    final IntArrayList candidates = baseRows.findCandidates(mzRange, rtRange, mobilityRange);
 
     // calculate score for unaligned row against all candidates
-    for (FeatureListRow candidateInAligned : candidatesInAligned) {
-      // retention time and m/z is already checked for candidates
-      if (additionalChecks(rowToAdd, candidateInAligned)) {
-        final RowVsRowScore score = new RowVsRowScore(rowToAdd, candidateInAligned, mzRange,
+    for (int i = 0; i < candidates.size(); i++) {
+      final int candidateIndex = candidates.getInt(i);
+      final FeatureListRow candidateInAligned = baseRows.getRow(candidateIndex);
+      // grid cells are larger than the ranges, same checks as in getCandidatesWithinRanges
+      if (isWithinRanges(candidateInAligned, mzRange, rtRange, mobilityRange) //
+          && additionalChecks(rowToAdd, candidateInAligned)) {
+        final double score = FeatureListUtils.getAlignmentScore(candidateInAligned, mzRange,
             rtRange, mobilityRange, null, mzWeight, rtWeight, mobilityWeight, 0);
-        scoresList.add(score);
+        scores.add(score, rowIndex, candidateIndex);
       }
     }
   }
 
+  private static boolean isWithinRanges(final FeatureListRow row, final Range<Double> mzRange,
+      final Range<Float> rtRange, final Range<Float> mobilityRange) {
+    var rowMobility = row.getAverageMobility();
+    var rowRT = row.getAverageRT();
+    return mzRange.contains(row.getAverageMZ()) //
+           && (rowMobility == null || mobilityRange.contains(rowMobility)) //
+           && (rowRT == null || rtRange.contains(rowRT));
+  }
+
   private boolean additionalChecks(final FeatureListRow row,
       final FeatureListRow candidateInAligned) {
     return (!sameChargeRequired || FeatureUtils.compareChargeState(row, candidateInAligned)) //
@@ -129,6 +129,18 @@ public class ADAPChromatogram {
     mz = mzSum / mzN;
   }
 
+  /**
+   * Same as {@link #addMzFeature(Scan, DataPoint)} but only creates a data point if the scan was
+   * not added before
+   */
+  public void addMzFeature(Scan scan, double mz, double intensity) {
+    if (dataPointsMap.containsKey(scan)) {
+      tmp_see_same_scan_count += 1;
+      return;
+    }
+    addMzFeature(scan, new SimpleDataPoint(mz, intensity));
+  }
+
   public DataPoint getDataPoint(Scan scanNumber) {
     return dataPointsMap.get(scanNumber);
   }
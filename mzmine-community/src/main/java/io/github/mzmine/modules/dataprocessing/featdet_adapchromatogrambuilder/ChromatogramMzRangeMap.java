@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Maps disjoint closed-open m/z ranges [lower, upper) to chromatograms. Replaces a Guava
+ * TreeRangeMap with boxed doubles. Ranges are kept in sorted blocks of primitive arrays so that
+ * lookups are two binary searches and inserts only shift a single block.
+ */
+class ChromatogramMzRangeMap {
+
+  private static final int BLOCK_CAPACITY = 512;
+
+  private final List<Block> blocks = new ArrayList<>();
+  // lower bound of the first range in each block
+  private double[] blockStarts = new double[16];
+  private int size = 0;
+
+  /**
+   * @return the chromatogram whose range contains mz or null
+   */
+  public @Nullable ADAPChromatogram get(double mz) {
+    final int b = findBlock(mz);
+    if (b < 0) {
+      return null;
+    }
+    final Block block = blocks.get(b);
+    final int i = block.floorIndex(mz);
+    return i >= 0 && mz < block.upper[i] ? block.values[i] : null;
+  }
+
+  /**
+   * @return the upper bound of the range that contains mz or NaN
+   */
+  public double getUpperBound(double mz) {
+    final int b = findBlock(mz);
+    if (b < 0) {
+      return Double.NaN;
+    }
+    final Block block = blocks.get(b);
+    final int i = block.floorIndex(mz);
+    return i >= 0 && mz < block.upper[i] ? block.upper[i] : Double.NaN;
+  }
+
+  /**
+   * @return the lower bound of the range that contains mz or NaN
+   */
+  public double getLowerBound(double mz) {
+    final int b = findBlock(mz);
+    if (b < 0) {
+      return Double.NaN;
+    }
+    final Block block = blocks.get(b);
+    final int i = block.floorIndex(mz);
+    return i >= 0 && mz < block.upper[i] ? block.lower[i] : Double.NaN;
+  }
+
+  /**
+   * Put a new range. Like {@link com.google.common.collect.RangeMap#put}, existing ranges that lie
+   * within the new range are removed. Ranges that partially overlap are not supported, callers
+   * limit the new range to the bounds of the neighbouring ranges.
+   */
+  public void put(double lower, double upper, ADAPChromatogram chromatogram) {
+    removeRangesStartingWithin(lower, upper);
+
+    if (blocks.isEmpty()) {
+      addBlock(0, new Block());
+    }
+    final int b = Math.max(findBlock(lower), 0);
+    final Block block = blocks.get(b);
+    block.insert(block.floorIndex(lower) + 1, lower, upper, chromatogram);
+    blockStarts[b] = block.lower[0];
+    size++;
+
+    if (block.size == BLOCK_CAPACITY) {
+      addBlock(b + 1, block.split());
+    }
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Iterate all chromatograms sorted by their m/z range
+   */
+  public void forEach(Consumer<ADAPChromatogram> consumer) {
+    for (Block block : blocks) {
+      for (int i = 0; i < block.size; i++) {
+        consumer.accept(block.values[i]);
+      }
+    }
+  }
+
+  private void removeRangesStartingWithin(double lower, double upper) {
+    if (blocks.isEmpty()) {
+      return;
+    }
+    // ranges are disjoint so all ranges to remove follow the floor range of lower
+    int b = Math.max(findBlock(lower), 0);
+    while (b < blocks.size()) {
+      final Block block = blocks.get(b);
+      final int oldSize = block.size;
+      final int i = block.floorIndex(lower);
+      final int first = i >= 0 && block.lower[i] >= lower ? i : i + 1;
+      int last = first;
+      while (last < oldSize && block.lower[last] < upper) {
+        last++;
+      }
+      if (last > first) {
+        block.remove(first, last);
+        size -= last - first;
+        if (block.size == 0) {
+          blocks.remove(b);
+          System.arraycopy(blockStarts, b + 1, blockStarts, b, blocks.size() - b);
+          continue;
+        }
+        blockStarts[b] = block.lower[0];
+      }
+      if (last < oldSize) {
+        // reached a range that starts after upper
+        return;
+      }
+      b++;
+    }
+  }
+
+  /**
+   * @return index of the last block that starts at or before mz, -1 if mz is before all blocks
+   */
+  private int findBlock(double mz) {
+    int lo = 0;
+    int hi = blocks.size() - 1;
+    int result = -1;
+    while (lo <= hi) {
+      final int mid = (lo + hi) >>> 1;
+      if (blockStarts[mid] <= mz) {
+        result = mid;
+        lo = mid + 1;
+      } else {
+        hi = mid - 1;
+      }
+    }
+    return result;
+  }
+
+  private void addBlock(int index, Block block) {
+    if (blocks.size() == blockStarts.length) {
+      blockStarts = Arrays.copyOf(blockStarts, blockStarts.length * 2);
+    }
+    System.arraycopy(blockStarts, index, blockStarts, index + 1, blocks.size() - index);
+    blocks.add(index, block);
+    blockStarts[index] = block.size > 0 ? block.lower[0] : Double.NEGATIVE_INFINITY;
+  }
+
+  private static class Block {
+
+    private final double[] lower = new double[BLOCK_CAPACITY];
+    private final double[] upper = new double[BLOCK_CAPACITY];
+    private final ADAPChromatogram[] values = new ADAPChromatogram[BLOCK_CAPACITY];
+    private int size = 0;
+
+    /**
+     * @return index of the last range with lower bound <= mz or -1
+     */
+    private int floorIndex(double mz) {
+      int lo = 0;
+      int hi = size - 1;
+      int result = -1;
+      while (lo <= hi) {
+        final int mid = (lo + hi) >>> 1;
+        if (lower[mid] <= mz) {
+          result = mid;
+          lo = mid + 1;
+        } else {
+          hi = mid - 1;
+        }
+      }
+      return result;
+    }
+
+    private void insert(int index, double lo, double hi, ADAPChromatogram value) {
+      final int tail = size - index;
+      System.arraycopy(lower, index, lower, index + 1, tail);
+      System.arraycopy(upper, index, upper, index + 1, tail);
+      System.arraycopy(values, index, values, index + 1, tail);
+      lower[index] = lo;
+      upper[index] = hi;
+      values[index] = value;
+      size++;
+    }
+
+    /**
+     * Remove entries [from, to)
+     */
+    private void remove(int from, int to) {
+      final int tail = size - to;
+      System.arraycopy(lower, to, lower, from, tail);
+      System.arraycopy(upper, to, upper, from, tail);
+      System.arraycopy(values, to, values, from, tail);
+      final int newSize = from + tail;
+      Arrays.fill(values, newSize, size, null);
+      size = newSize;
+    }
+
+    /**
+     * Move the upper half of this block to a new block
+     */
+    private Block split() {
+      final Block next = new Block();
+      final int half = size / 2;
+      final int moved = size - half;
+      System.arraycopy(lower, half, next.lower, 0, moved);
+      System.arraycopy(upper, half, next.upper, 0, moved);
+      System.arraycopy(values, half, next.values, 0, moved);
+      next.size = moved;
+      Arrays.fill(values, half, size, null);
+      size = half;
+      return next;
+    }
+  }
+}
@@ -29,8 +29,6 @@ package io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder;
 import static java.util.Objects.requireNonNullElse;
 
 import com.google.common.collect.Range;
-import com.google.common.collect.RangeMap;
-import com.google.common.collect.TreeRangeMap;
 import io.github.mzmine.datamodel.IMSRawDataFile;
 import io.github.mzmine.datamodel.MZmineProject;
 import io.github.mzmine.datamodel.MassSpectrum;
@@ -54,18 +52,16 @@ import io.github.mzmine.parameters.parametertypes.selectors.ScanSelection;
 import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
-import io.github.mzmine.util.DataPointSorter;
 import io.github.mzmine.util.DataTypeUtils;
 import io.github.mzmine.util.FeatureConvertors;
 import io.github.mzmine.util.FeatureListUtils;
 import io.github.mzmine.util.MemoryMapStorage;
-import io.github.mzmine.util.SortingDirection;
-import io.github.mzmine.util.SortingProperty;
 import io.github.mzmine.util.exceptions.MissingMassListException;
+import it.unimi.dsi.fastutil.ints.IntArrays;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Map;
-import java.util.Map.Entry;
+import java.util.List;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -160,7 +156,6 @@ public class ModularADAPChromatogramBuilderTask extends AbstractTask {
     return dataFile;
   }
 
-  @SuppressWarnings("UnstableApiUsage")
   @Override
   public void run() {
     setStatus(TaskStatus.PROCESSING);
@@ -233,18 +228,22 @@ public class ModularADAPChromatogramBuilderTask extends AbstractTask {
     //
 
     // map the mz tolerance to chromatograms
-    RangeMap<Double, ADAPChromatogram> rangeToChromMap = TreeRangeMap.create();
-
-    // make a list of all the data points
+    final ChromatogramMzRangeMap rangeToChromMap = new ChromatogramMzRangeMap();
 
+    // make a list of all the data points as parallel primitive arrays
+    // scanIndices point into dpScans
     final int totalDps = Arrays.stream(scans).map(Scan::getMassList)
         .mapToInt(MassSpectrum::getNumberOfDataPoints).sum();
     int dpCounter = 0;
 
-    ExpandedDataPoint[] allMzValues = new ExpandedDataPoint[totalDps];
+    final double[] mzs = new double[totalDps];
+    final double[] intensities = new double[totalDps];
+    final int[] scanIndices = new int[totalDps];
 
     ScanDataAccess scanData = EfficientDataAccess.of(dataFile, ScanDataType.MASS_LIST,
         scanSelection);
+    final Scan[] dpScans = new Scan[scanData.getNumberOfScans()];
+    int scanIndex = 0;
 
     progress = 0;
     double progressStep = 0.1 / scanData.getNumberOfScans();
@@ -272,25 +271,33 @@ public class ModularADAPChromatogramBuilderTask extends AbstractTask {
         return;
       }
 
+      dpScans[scanIndex] = scan;
       int dps = scanData.getNumberOfDataPoints();
       for (int i = 0; i < dps; i++) {
-        ExpandedDataPoint curDatP = new ExpandedDataPoint(scanData.getMzValue(i),
-            scanData.getIntensityValue(i), scan);
-        allMzValues[dpCounter] = curDatP;
+        mzs[dpCounter] = scanData.getMzValue(i);
+        intensities[dpCounter] = scanData.getIntensityValue(i);
+        scanIndices[dpCounter] = scanIndex;
         dpCounter++;
       }
+      scanIndex++;
       progress += progressStep;
     }
 
-    // sort data points by intensity
-    Arrays.parallelSort(allMzValues,
-        new DataPointSorter(SortingProperty.Intensity, SortingDirection.Descending));
+    // sort data points by intensity (descending, then by m/z) - only sort the indices
+    final int[] sortedDps = new int[dpCounter];
+    for (int i = 0; i < dpCounter; i++) {
+      sortedDps[i] = i;
+    }
+    IntArrays.parallelQuickSort(sortedDps, (a, b) -> {
+      final int result = Double.compare(intensities[b], intensities[a]);
+      return result != 0 ? result : Double.compare(mzs[b], mzs[a]);
+    });
 
     // count starts at 1 since we already have added one with a single point.
     progress = 0.1;
-    progressStep = (allMzValues.length > 0) ? 0.45 / allMzValues.length : 0.0;
+    progressStep = (sortedDps.length > 0) ? 0.45 / sortedDps.length : 0.0;
 
-    for (ExpandedDataPoint mzFeature : allMzValues) {
+    for (final int dp : sortedDps) {
 
       progress += progressStep;
 
@@ -298,30 +305,32 @@ public class ModularADAPChromatogramBuilderTask extends AbstractTask {
         return;
       }
 
-      if (mzFeature == null || Double.isNaN(mzFeature.getMZ()) || Double.isNaN(
-          mzFeature.getIntensity())) {
+      final double mz = mzs[dp];
+      final double intensity = intensities[dp];
+      if (Double.isNaN(mz) || Double.isNaN(intensity)) {
         continue;
       }
 
-      final Entry<Range<Double>, ADAPChromatogram> existing = rangeToChromMap.getEntry(
-          mzFeature.getMZ());
+      final Scan scan = dpScans[scanIndices[dp]];
+      final ADAPChromatogram existing = rangeToChromMap.get(mz);
       if (existing != null) {
         // add data point to chromatogram
-        existing.getValue().addMzFeature(mzFeature.getScan(), mzFeature);
+        existing.addMzFeature(scan, mz, intensity);
       } else {
         // skip it entierly if the intensity is not high enough
-        if (mzFeature.getIntensity() < minHighestPoint) {
+        if (intensity < minHighestPoint) {
           continue;
         }
         // add a new chromatogram to the range map - limit ranges to avoid overlap
-        startNewChromatogramLimitMzRanges(rangeToChromMap, mzFeature);
+        startNewChromatogramLimitMzRanges(rangeToChromMap, mz, intensity, scan);
       }
     }
 
     // finish chromatograms sorted by m/z
-    final Map<Range<Double>, ADAPChromatogram> finalRangeMap = rangeToChromMap.asMapOfRanges();
+    final List<ADAPChromatogram> chromatograms = new ArrayList<>(rangeToChromMap.size());
+    rangeToChromMap.forEach(chromatograms::add);
 
-    int numChromatograms = finalRangeMap.size();
+    int numChromatograms = chromatograms.size();
     progressStep = numChromatograms > 0 ? 0.45 / numChromatograms : 0.0;
 
     // Create new feature list
@@ -332,7 +341,7 @@ public class ModularADAPChromatogramBuilderTask extends AbstractTask {
 
     int newFeatureID = 1;
     // add chromatograms that match criteria
-    for (ADAPChromatogram chromatogram : finalRangeMap.values()) {
+    for (ADAPChromatogram chromatogram : chromatograms) {
       if (isCanceled()) {
         return;
       }
@@ -384,46 +393,43 @@ public class ModularADAPChromatogramBuilderTask extends AbstractTask {
    * ranges
    *
    * @param rangeToChromMap started chromatograms with their non overlapping m/z range
-   * @param mzFeature       current tested data point
+   * @param mz              m/z of the current tested data point
+   * @param intensity       intensity of the current tested data point
+   * @param scan            scan of the current tested data point
    */
-  @SuppressWarnings("UnstableApiUsage")
-  private void startNewChromatogramLimitMzRanges(RangeMap<Double, ADAPChromatogram> rangeToChromMap,
-      ExpandedDataPoint mzFeature) {
+  private void startNewChromatogramLimitMzRanges(ChromatogramMzRangeMap rangeToChromMap, double mz,
+      double intensity, Scan scan) {
     // start new chromatogram and create new range (subract overlapping existing ranges)
-    Range<Double> toleranceRange = mzTolerance.getToleranceRange(mzFeature.getMZ());
+    Range<Double> toleranceRange = mzTolerance.getToleranceRange(mz);
+    final double lower = toleranceRange.lowerEndpoint();
+    final double upper = toleranceRange.upperEndpoint();
 
     // look +- mz tolerance to see if ther is a range near by.
     // If there is use the proper boundry of that range for the
     // new range to insure than NON OF THE RANGES OVERLAP.
-    final Entry<Range<Double>, ADAPChromatogram> minusRange = rangeToChromMap.getEntry(
-        toleranceRange.lowerEndpoint());
-    final Entry<Range<Double>, ADAPChromatogram> plusRange = rangeToChromMap.getEntry(
-        toleranceRange.upperEndpoint());
+    final double minusRangeUpper = rangeToChromMap.getUpperBound(lower);
+    final double plusRangeLower = rangeToChromMap.getLowerBound(upper);
 
     // If both of the above ranges are null then we make the new range spaning the full
     // mz tolerance range.
     // If one or both are not null we need to properly modify the range of the new
     // chromatogram so that none of the points are overlapping.
-    Double toBeLowerBound =
-        minusRange == null ? toleranceRange.lowerEndpoint() : minusRange.getKey().upperEndpoint();
-    Double toBeUpperBound =
-        plusRange == null ? toleranceRange.upperEndpoint() : plusRange.getKey().lowerEndpoint();
+    final double toBeLowerBound = Double.isNaN(minusRangeUpper) ? lower : minusRangeUpper;
+    final double toBeUpperBound = Double.isNaN(plusRangeLower) ? upper : plusRangeLower;
 
     if (toBeLowerBound < toBeUpperBound) {
       // use closed open so that every value may be captured by rangeMap
-      Range<Double> newRange = Range.closedOpen(toBeLowerBound, toBeUpperBound);
       ADAPChromatogram newChrom = new ADAPChromatogram();
-      newChrom.addMzFeature(mzFeature.getScan(), mzFeature);
+      newChrom.addMzFeature(scan, mz, intensity);
 
-      rangeToChromMap.put(newRange, newChrom);
-    } else if (toBeLowerBound.equals(toBeUpperBound) && plusRange != null) {
-      plusRange.getValue().addMzFeature(mzFeature.getScan(), mzFeature);
+      rangeToChromMap.put(toBeLowerBound, toBeUpperBound, newChrom);
+    } else if (toBeLowerBound == toBeUpperBound && !Double.isNaN(plusRangeLower)) {
+      rangeToChromMap.get(upper).addMzFeature(scan, mz, intensity);
     } else {
       throw new IllegalStateException(
           String.format("Incorrect range [%f, %f] for m/z %f", toBeLowerBound, toBeUpperBound,
-              mzFeature.getMZ()));
+              mz));
     }
   }
 
 }
-
@@ -227,7 +227,8 @@ public class MaldiSpotFeatureDetectionTask extends AbstractTask {
 
     final List<ExpandedTrace> expandedTraces = task.getExpandedTraces();
 
-    flist.getRows().clear();
+    // releases the values of the old rows in the feature list, they stay readable
+    flist.setRows();
     for (ExpandedTrace expandedTrace : expandedTraces) {
       final ModularFeatureListRow row = new ModularFeatureListRow(flist, expandedTrace.oldRow(),
           false);
@@ -37,7 +37,6 @@ import io.github.mzmine.parameters.parametertypes.selectors.ScanSelection;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
 import io.github.mzmine.util.MemoryMapStorage;
-import io.github.mzmine.util.scans.ScanUtils;
 import java.time.Instant;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -52,6 +51,8 @@ public class MassDetectionTask extends AbstractTask {
   private final Boolean denormalizeMSnScans;
   private final ParameterSet parameters;
   private final MassDetector detector;
+  // reused for all scans and frames
+  private final MassListBuffer buffer = new MassListBuffer();
   private int processedScans = 0, totalScans = 0;
 
   public MassDetectionTask(RawDataFile dataFile, ParameterSet parameters,
@@ -107,22 +108,22 @@ public class MassDetectionTask extends AbstractTask {
         Scan scan = data.nextScan();
         assert scan != null;
 
-        double[][] mzPeaks;
         if (scanTypes.applyTo(scan)) {
           // run mass detection on data object
-          // [mzs, intensities]
-          mzPeaks = detector.getMassValues(data);
+          buffer.clear();
+          detector.detectMasses(data, buffer);
 
           // denormalize scan intensities if injection time of trapped instrument was used.
           // this is only done for MS2 because absolute intensities do not matter there
           // MS1 needs to be normalized by injection time, which is already done during data acquisition
           if (denormalizeMSnScans && scan.getMSLevel() > 1) {
-            ScanUtils.denormalizeIntensitiesMultiplyByInjectTime(mzPeaks[1],
+            MassDetectorUtils.denormalizeIntensitiesMultiplyByInjectTime(buffer, 0,
                 scan.getInjectionTime());
           }
 
           // add mass list to scans and frames
-          scan.addMassList(new SimpleMassList(getMemoryMapStorage(), mzPeaks[0], mzPeaks[1]));
+          scan.addMassList(new SimpleMassList(getMemoryMapStorage(), buffer.toMzArray(),
+              buffer.toIntensityArray()));
         }
 
         if (scan instanceof SimpleFrame frame && (scanTypes == SelectedScanTypes.MOBLITY_SCANS
@@ -130,7 +131,7 @@ public class MassDetectionTask extends AbstractTask {
           // for ion mobility, detect subscans, too
           frame.getMobilityScanStorage()
               .generateAndAddMobilityScanMassLists(getMemoryMapStorage(), detector,
-                  denormalizeMSnScans);
+                  denormalizeMSnScans, buffer);
         }
 
         processedScans++;
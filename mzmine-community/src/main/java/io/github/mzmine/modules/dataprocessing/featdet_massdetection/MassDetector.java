@@ -52,4 +52,29 @@ public interface MassDetector extends MZmineModule {
       final @NotNull MassSpectrumType type) {
     throw new UnsupportedOperationException("Method not implemented. Please implement me.");
   }
+
+  /**
+   * Appends the mass and intensity values detected in given spectrum to the buffer. Use one buffer
+   * for many spectra to avoid allocating new arrays for each spectrum. Override, the default
+   * implementation copies the result of {@link #getMassValues(MassSpectrum)}.
+   *
+   * @param out the detected masses are appended to this buffer
+   */
+  default void detectMasses(@NotNull MassSpectrum spectrum, @NotNull MassListBuffer out) {
+    final double[][] values = getMassValues(spectrum);
+    out.addAll(values[0], values[1]);
+  }
+
+  /**
+   * Appends the mass and intensity values detected in given data to the buffer. Override, the
+   * default implementation copies the result of
+   * {@link #getMassValues(double[], double[], MassSpectrumType)}.
+   *
+   * @param out the detected masses are appended to this buffer
+   */
+  default void detectMasses(double[] mzs, double[] intensities,
+      final @NotNull MassSpectrumType type, @NotNull MassListBuffer out) {
+    final double[][] values = getMassValues(mzs, intensities, type);
+    out.addAll(values[0], values[1]);
+  }
 }
@@ -29,6 +29,7 @@ import io.github.mzmine.modules.MZmineProcessingStep;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.parameters.parametertypes.submodules.OptionalModuleParameter;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 public class MassDetectorUtils {
 
@@ -59,4 +60,19 @@ public class MassDetectorUtils {
     // derive new mass detector with parameters
     return massDetectorStep.getModule().create(parameterSet);
   }
+
+  /**
+   * Multiplies the intensities with the injection time to denormalize the intensities, see
+   * {@link io.github.mzmine.util.scans.ScanUtils#denormalizeIntensitiesMultiplyByInjectTime(double[],
+   * Float)}
+   *
+   * @param index the first data point to change
+   */
+  public static void denormalizeIntensitiesMultiplyByInjectTime(@NotNull MassListBuffer buffer,
+      int index, @Nullable Float injectTime) {
+    if (injectTime == null || injectTime <= 0) {
+      return;
+    }
+    buffer.multiplyIntensities(index, injectTime);
+  }
 }
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.featdet_massdetection;
+
+import java.util.Arrays;
+
+/**
+ * Growable primitive buffer for detected masses. Reuse one instance for many spectra to avoid
+ * allocating arrays for each spectrum. Multiple spectra can be appended one after another by
+ * calling {@link #startScan()} before each spectrum, e.g., all mobility scans of a frame. Not
+ * thread safe.
+ */
+public class MassListBuffer {
+
+  private double[] mzs;
+  private double[] intensities;
+  private int size;
+
+  private int[] scanOffsets = new int[16];
+  private int numScans;
+
+  public MassListBuffer() {
+    this(1024);
+  }
+
+  public MassListBuffer(int initialCapacity) {
+    mzs = new double[Math.max(initialCapacity, 16)];
+    intensities = new double[mzs.length];
+  }
+
+  public void add(double mz, double intensity) {
+    if (size == mzs.length) {
+      grow(size + 1);
+    }
+    mzs[size] = mz;
+    intensities[size] = intensity;
+    size++;
+  }
+
+  public void addAll(double[] mzs, double[] intensities) {
+    assert mzs.length == intensities.length;
+    final int length = mzs.length;
+    if (size + length > this.mzs.length) {
+      grow(size + length);
+    }
+    System.arraycopy(mzs, 0, this.mzs, size, length);
+    System.arraycopy(intensities, 0, this.intensities, size, length);
+    size += length;
+  }
+
+  private void grow(int minCapacity) {
+    final int capacity = Math.max(minCapacity, mzs.length + (mzs.length >> 1));
+    mzs = Arrays.copyOf(mzs, capacity);
+    intensities = Arrays.copyOf(intensities, capacity);
+  }
+
+  /**
+   * Starts a new spectrum at the current end of the buffer
+   */
+  public void startScan() {
+    if (numScans == scanOffsets.length) {
+      scanOffsets = Arrays.copyOf(scanOffsets, numScans * 2);
+    }
+    scanOffsets[numScans++] = size;
+  }
+
+  /**
+   * @return number of spectra started by {@link #startScan()}
+   */
+  public int getNumberOfScans() {
+    return numScans;
+  }
+
+  /**
+   * @return the index of the first data point of a spectrum started by {@link #startScan()}
+   */
+  public int getScanOffset(int scan) {
+    assert scan < numScans;
+    return scanOffsets[scan];
+  }
+
+  /**
+   * @return the number of data points of a spectrum started by {@link #startScan()}
+   */
+  public int getScanSize(int scan) {
+    return (scan + 1 < numScans ? scanOffsets[scan + 1] : size) - getScanOffset(scan);
+  }
+
+  /**
+   * @return the index of the highest data point of the spectrum or -1 if it is empty
+   */
+  public int getScanBasePeakIndex(int scan) {
+    final int offset = getScanOffset(scan);
+    final int end = offset + getScanSize(scan);
+    int basePeak = -1;
+    double maxIntensity = -1d;
+    for (int i = offset; i < end; i++) {
+      if (intensities[i] > maxIntensity) {
+        maxIntensity = intensities[i];
+        basePeak = i - offset;
+      }
+    }
+    return basePeak;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public double getMzValue(int index) {
+    assert index < size;
+    return mzs[index];
+  }
+
+  public double getIntensityValue(int index) {
+    assert index < size;
+    return intensities[index];
+  }
+
+  /**
+   * Removes all data points from index to the end of the buffer
+   */
+  public void truncate(int index) {
+    assert index <= size;
+    size = index;
+  }
+
+  /**
+   * Removes all data points below the minimum intensity, starting at index.
+   */
+  public void removeBelow(int index, double minIntensity) {
+    int dst = index;
+    for (int i = index; i < size; i++) {
+      if (intensities[i] >= minIntensity) {
+        mzs[dst] = mzs[i];
+        intensities[dst] = intensities[i];
+        dst++;
+      }
+    }
+    size = dst;
+  }
+
+  /**
+   * Multiplies all intensities starting at index with a factor, e.g., to denormalize by injection
+   * time.
+   */
+  public void multiplyIntensities(int index, double factor) {
+    for (int i = index; i < size; i++) {
+      intensities[i] *= factor;
+    }
+  }
+
+  /**
+   * Removes all data points and spectra. Keeps the capacity.
+   */
+  public void clear() {
+    size = 0;
+    numScans = 0;
+  }
+
+  /**
+   * @return a copy of the m/z values
+   */
+  public double[] toMzArray() {
+    return Arrays.copyOf(mzs, size);
+  }
+
+  /**
+   * @return a copy of the intensity values
+   */
+  public double[] toIntensityArray() {
+    return Arrays.copyOf(intensities, size);
+  }
+
+  /**
+   * @return copies as [mzs, intensities][data]
+   */
+  public double[][] toArrays() {
+    return new double[][]{toMzArray(), toIntensityArray()};
+  }
+}
@@ -28,6 +28,7 @@ package io.github.mzmine.modules.dataprocessing.featdet_massdetection.auto;
 import io.github.mzmine.datamodel.MassSpectrum;
 import io.github.mzmine.datamodel.MassSpectrumType;
 import io.github.mzmine.modules.dataprocessing.featdet_massdetection.MassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.MassListBuffer;
 import io.github.mzmine.modules.dataprocessing.featdet_massdetection.centroid.CentroidMassDetector;
 import io.github.mzmine.modules.dataprocessing.featdet_massdetection.exactmass.ExactMassDetector;
 import io.github.mzmine.parameters.ParameterSet;
@@ -93,4 +94,23 @@ public class AutoMassDetector implements MassDetector {
     }
   }
 
+  @Override
+  public void detectMasses(@NotNull MassSpectrum spectrum, @NotNull MassListBuffer out) {
+    if (spectrum.getSpectrumType() == MassSpectrumType.PROFILE) {
+      exactMassDetector.detectMasses(spectrum, out);
+    } else {
+      centroidDetector.detectMasses(spectrum, out);
+    }
+  }
+
+  @Override
+  public void detectMasses(double[] mzs, double[] intensities, @NotNull MassSpectrumType type,
+      @NotNull MassListBuffer out) {
+    if (type == MassSpectrumType.PROFILE) {
+      exactMassDetector.detectMasses(mzs, intensities, type, out);
+    } else {
+      centroidDetector.detectMasses(mzs, intensities, type, out);
+    }
+  }
+
 }
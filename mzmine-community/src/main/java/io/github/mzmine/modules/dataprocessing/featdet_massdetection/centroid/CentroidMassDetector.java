@@ -28,8 +28,8 @@ package io.github.mzmine.modules.dataprocessing.featdet_massdetection.centroid;
 import io.github.mzmine.datamodel.MassSpectrum;
 import io.github.mzmine.datamodel.MassSpectrumType;
 import io.github.mzmine.modules.dataprocessing.featdet_massdetection.MassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.MassListBuffer;
 import io.github.mzmine.parameters.ParameterSet;
-import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -51,24 +51,24 @@ public class CentroidMassDetector implements MassDetector {
   }
 
   public static double[][] getMassValues(double[] mzs, double[] intensities, double noiseLevel) {
-    assert mzs.length == intensities.length;
+    // use number of centroid signals as base capacity
+    final MassListBuffer out = new MassListBuffer(mzs.length);
+    detectMasses(mzs, intensities, noiseLevel, out);
+    return out.toArrays();
+  }
 
-    // use number of centroid signals as base array list capacity
-    final int points = mzs.length;
-    // lists of primitive doubles
-    DoubleArrayList pickedMZs = new DoubleArrayList(points);
-    DoubleArrayList pickedIntensities = new DoubleArrayList(points);
+  public static void detectMasses(double[] mzs, double[] intensities, double noiseLevel,
+      @NotNull MassListBuffer out) {
+    assert mzs.length == intensities.length;
 
     // Find possible mzPeaks
-    for (int i = 0; i < points; i++) {
+    for (int i = 0; i < mzs.length; i++) {
       // Is intensity above the noise level?
       if (intensities[i] >= noiseLevel) {
         // Yes, then mark this index as mzPeak
-        pickedMZs.add(mzs[i]);
-        pickedIntensities.add(intensities[i]);
+        out.add(mzs[i], intensities[i]);
       }
     }
-    return new double[][]{pickedMZs.toDoubleArray(), pickedIntensities.toDoubleArray()};
   }
 
   @Override
@@ -89,27 +89,33 @@ public class CentroidMassDetector implements MassDetector {
     return getMassValues(mzs, intensities, noiseLevel);
   }
 
+  @Override
+  public void detectMasses(double[] mzs, double[] intensities,
+      final @NotNull MassSpectrumType type, @NotNull MassListBuffer out) {
+    detectMasses(mzs, intensities, noiseLevel, out);
+  }
+
   @Override
   public double[][] getMassValues(MassSpectrum spectrum) {
+    // use number of centroid signals as base capacity
+    final MassListBuffer out = new MassListBuffer(spectrum.getNumberOfDataPoints());
+    detectMasses(spectrum, out);
+    return out.toArrays();
+  }
 
-    // use number of centroid signals as base array list capacity
+  @Override
+  public void detectMasses(@NotNull MassSpectrum spectrum, @NotNull MassListBuffer out) {
     final int points = spectrum.getNumberOfDataPoints();
-    // lists of primitive doubles
-    DoubleArrayList mzs = new DoubleArrayList(points);
-    DoubleArrayList intensities = new DoubleArrayList(points);
 
     // Find possible mzPeaks
     for (int i = 0; i < points; i++) {
       // Is intensity above the noise level or m/z value corresponds to isotope mass?
       double intensity = spectrum.getIntensityValue(i);
-      double mz = spectrum.getMzValue(i);
       if (intensity >= noiseLevel) {
         // Yes, then mark this index as mzPeak
-        mzs.add(mz);
-        intensities.add(intensity);
+        out.add(spectrum.getMzValue(i), intensity);
       }
     }
-    return new double[][]{mzs.toDoubleArray(), intensities.toDoubleArray()};
   }
 
   @Override
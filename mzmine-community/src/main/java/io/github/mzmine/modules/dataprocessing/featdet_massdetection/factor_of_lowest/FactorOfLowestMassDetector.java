@@ -27,10 +27,11 @@ package io.github.mzmine.modules.dataprocessing.featdet_massdetection.factor_of_
 
 import io.github.mzmine.datamodel.MassSpectrum;
 import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.impl.SimpleMassSpectrum;
 import io.github.mzmine.modules.dataprocessing.featdet_massdetection.MassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.MassListBuffer;
 import io.github.mzmine.modules.dataprocessing.featdet_massdetection.exactmass.ExactMassDetector;
 import io.github.mzmine.parameters.ParameterSet;
-import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -53,63 +54,82 @@ public class FactorOfLowestMassDetector implements MassDetector {
   }
 
   public static double[][] getMassValues(MassSpectrum spectrum, double noiseFactor) {
+    // use number of centroid signals as base capacity
+    final MassListBuffer out = new MassListBuffer(spectrum.getNumberOfDataPoints());
+    detectMasses(spectrum, noiseFactor, out);
+    return out.toArrays();
+  }
+
+  public static void detectMasses(MassSpectrum spectrum, double noiseFactor,
+      @NotNull MassListBuffer out) {
     // need to apply centroiding to profile data first
     if (spectrum.getSpectrumType() == MassSpectrumType.PROFILE) {
-      double[][] centroided = ExactMassDetector.getMassValues(spectrum, 0);
-      return getMassValues(centroided[0], centroided[1], MassSpectrumType.CENTROIDED, noiseFactor);
+      final int start = out.size();
+      ExactMassDetector.detectMasses(spectrum, 0, out);
+      out.removeBelow(start, minIntensity(out, start) * noiseFactor);
+      return;
     }
 
     // most likely working on {@link ScanDataAccess}
     // get the minimum intensity and base noise on this
     double noiseLevel = minIntensity(spectrum) * noiseFactor;
 
-    // use number of centroid signals as base array list capacity
     final int points = spectrum.getNumberOfDataPoints();
-
-    // lists of primitive doubles
-    DoubleArrayList mzs = new DoubleArrayList(points);
-    DoubleArrayList intensities = new DoubleArrayList(points);
     // Find possible mzPeaks
     for (int i = 0; i < points; i++) {
       // Is intensity above the noise level?
       double intensity = spectrum.getIntensityValue(i);
       if (intensity >= noiseLevel) {
         // add data point
-        mzs.add(spectrum.getMzValue(i));
-        intensities.add(intensity);
+        out.add(spectrum.getMzValue(i), intensity);
       }
     }
-    return new double[][]{mzs.toDoubleArray(), intensities.toDoubleArray()};
   }
 
   public static double[][] getMassValues(double[] mzs, double[] intensities,
       final @NotNull MassSpectrumType type, double noiseFactor) {
+    // use number of centroid signals as base capacity
+    final MassListBuffer out = new MassListBuffer(mzs.length);
+    detectMasses(mzs, intensities, type, noiseFactor, out);
+    return out.toArrays();
+  }
+
+  public static void detectMasses(double[] mzs, double[] intensities,
+      final @NotNull MassSpectrumType type, double noiseFactor, @NotNull MassListBuffer out) {
     assert mzs.length == intensities.length;
     // need to apply centroiding to profile data first
     if (type == MassSpectrumType.PROFILE) {
-      double[][] centroided = ExactMassDetector.getMassValues(mzs, intensities, 0);
-      return getMassValues(centroided[0], centroided[1], MassSpectrumType.CENTROIDED, noiseFactor);
+      final int start = out.size();
+      ExactMassDetector.detectMasses(new SimpleMassSpectrum(mzs, intensities, type), 0, out);
+      out.removeBelow(start, minIntensity(out, start) * noiseFactor);
+      return;
     }
 
     // get the minimum intensity and base noise on this
     double noiseLevel = minIntensity(intensities) * noiseFactor;
 
-    // use number of centroid signals as base array list capacity
-    final int points = mzs.length;
-    // lists of primitive doubles
-    DoubleArrayList pickedMZs = new DoubleArrayList(points);
-    DoubleArrayList pickedIntensities = new DoubleArrayList(points);
-
     // Find possible mzPeaks
-    for (int i = 0; i < points; i++) {
+    for (int i = 0; i < mzs.length; i++) {
       // Is intensity above the noise level?
       if (intensities[i] >= noiseLevel) {
         // Yes, then mark this index as mzPeak
-        pickedMZs.add(mzs[i]);
-        pickedIntensities.add(intensities[i]);
+        out.add(mzs[i], intensities[i]);
       }
     }
-    return new double[][]{pickedMZs.toDoubleArray(), pickedIntensities.toDoubleArray()};
+  }
+
+  /**
+   * @param start the first data point of the spectrum in the buffer
+   */
+  private static double minIntensity(MassListBuffer buffer, int start) {
+    if (buffer.size() == start) {
+      return 0;
+    }
+    double minIntensity = Double.MAX_VALUE;
+    for (int i = start; i < buffer.size(); i++) {
+      minIntensity = Math.min(minIntensity, buffer.getIntensityValue(i));
+    }
+    return minIntensity;
   }
 
   private static double minIntensity(double[] rawIntensities) {
@@ -152,6 +172,12 @@ public class FactorOfLowestMassDetector implements MassDetector {
     return getMassValues(mzs, intensities, type, noiseFactor);
   }
 
+  @Override
+  public void detectMasses(double[] mzs, double[] intensities,
+      final @NotNull MassSpectrumType type, @NotNull MassListBuffer out) {
+    detectMasses(mzs, intensities, type, noiseFactor, out);
+  }
+
   @Override
   public FactorOfLowestMassDetector create(ParameterSet parameters) {
     var noiseFactor = parameters.getValue(FactorOfLowestMassDetectorParameters.noiseFactor);
@@ -168,6 +194,11 @@ public class FactorOfLowestMassDetector implements MassDetector {
     return getMassValues(spectrum, noiseFactor);
   }
 
+  @Override
+  public void detectMasses(@NotNull MassSpectrum spectrum, @NotNull MassListBuffer out) {
+    detectMasses(spectrum, noiseFactor, out);
+  }
+
   @Override
   public @NotNull String getName() {
     return "Factor of lowest signal";
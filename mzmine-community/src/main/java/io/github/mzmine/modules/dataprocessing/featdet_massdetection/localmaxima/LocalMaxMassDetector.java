@@ -25,9 +25,9 @@
 
 package io.github.mzmine.modules.dataprocessing.featdet_massdetection.localmaxima;
 
-import gnu.trove.list.array.TDoubleArrayList;
 import io.github.mzmine.datamodel.MassSpectrum;
 import io.github.mzmine.modules.dataprocessing.featdet_massdetection.MassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.MassListBuffer;
 import io.github.mzmine.parameters.ParameterSet;
 import org.jetbrains.annotations.NotNull;
 
@@ -63,12 +63,14 @@ public class LocalMaxMassDetector implements MassDetector {
 
   @Override
   public double[][] getMassValues(MassSpectrum scan) {
-    // lists of primitive doubles
-    TDoubleArrayList mzs = new TDoubleArrayList(128);
-    TDoubleArrayList intensities = new TDoubleArrayList(128);
-
-    // All data points of current m/z peak
+    final MassListBuffer out = new MassListBuffer(128);
+    detectMasses(scan, out);
+    // Return an array of detected MzPeaks sorted by MZ
+    return out.toArrays();
+  }
 
+  @Override
+  public void detectMasses(@NotNull MassSpectrum scan, @NotNull MassListBuffer out) {
     // Top data point of current m/z peak
     int currentMzPeakTop = 0;
 
@@ -101,16 +103,13 @@ public class LocalMaxMassDetector implements MassDetector {
 
         // Add the m/z peak if it is above the noise level
         if (scan.getIntensityValue(currentMzPeakTop) > noiseLevel) {
-          mzs.add(scan.getMzValue(currentMzPeakTop));
-          intensities.add(scan.getIntensityValue(currentMzPeakTop));
+          out.add(scan.getMzValue(currentMzPeakTop), scan.getIntensityValue(currentMzPeakTop));
         }
 
         // Reset and start with new peak
         ascending = true;
       }
     }
-    // Return an array of detected MzPeaks sorted by MZ
-    return new double[][]{mzs.toArray(), intensities.toArray()};
   }
 
   @Override
@@ -29,12 +29,11 @@ import io.github.mzmine.datamodel.DataPoint;
 import io.github.mzmine.datamodel.MassSpectrum;
 import io.github.mzmine.datamodel.impl.SimpleDataPoint;
 import io.github.mzmine.modules.dataprocessing.featdet_massdetection.MassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.MassListBuffer;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.util.DataPointSorter;
 import io.github.mzmine.util.SortingDirection;
 import io.github.mzmine.util.SortingProperty;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.TreeSet;
 import org.jetbrains.annotations.NotNull;
 
@@ -77,6 +76,13 @@ public class RecursiveMassDetector implements MassDetector {
 
   @Override
   public double[][] getMassValues(MassSpectrum scan) {
+    final MassListBuffer out = new MassListBuffer(128);
+    detectMasses(scan, out);
+    return out.toArrays();
+  }
+
+  @Override
+  public void detectMasses(@NotNull MassSpectrum scan, @NotNull MassListBuffer out) {
     TreeSet<DataPoint> mzPeaks = new TreeSet<DataPoint>(
         new DataPointSorter(SortingProperty.MZ, SortingDirection.Ascending));
 
@@ -84,17 +90,10 @@ public class RecursiveMassDetector implements MassDetector {
     recursiveThreshold(mzPeaks, scan, 1, scan.getNumberOfDataPoints() - 1, noiseLevel,
         minimumMZPeakWidth, maximumMZPeakWidth, 0);
 
-    // convert to double[][] TODO remove use of DataPoint
-    int size = mzPeaks.size();
-    double[] mzs = new double[size];
-    double[] intensities = new double[size];
-    int i = 0;
+    // TODO remove use of DataPoint
     for (DataPoint mzPeak : mzPeaks) {
-      mzs[i] = mzPeak.getMZ();
-      intensities[i] = mzPeak.getIntensity();
-      i++;
+      out.add(mzPeak.getMZ(), mzPeak.getIntensity());
     }
-    return new double[][]{mzs, intensities};
   }
 
   /**
@@ -106,7 +105,6 @@ public class RecursiveMassDetector implements MassDetector {
 
     // logger.finest(" Level of recursion " + recuLevel);
 
-    List<DataPoint> RawDataPointsInds = new ArrayList<DataPoint>();
     int peakStartInd, peakStopInd, peakMaxInd;
     double peakWidthMZ;
 
@@ -141,9 +139,6 @@ public class RecursiveMassDetector implements MassDetector {
           peakMaxInd = ind;
         }
 
-        // Forming the DataPoint array that defines this peak
-        RawDataPointsInds.add(
-            new SimpleDataPoint(scan.getMzValue(ind), scan.getIntensityValue(ind)));
         ind++;
       }
 
@@ -165,7 +160,6 @@ public class RecursiveMassDetector implements MassDetector {
           return ind;
         }
       }
-      RawDataPointsInds.clear();
 
       // If the peak is still too big applies the same method until find a
       // peak of the right size
@@ -25,17 +25,10 @@
 
 package io.github.mzmine.modules.dataprocessing.featdet_massdetection.wavelet;
 
-import io.github.mzmine.datamodel.DataPoint;
 import io.github.mzmine.datamodel.MassSpectrum;
-import io.github.mzmine.datamodel.impl.SimpleDataPoint;
 import io.github.mzmine.modules.dataprocessing.featdet_massdetection.MassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.MassListBuffer;
 import io.github.mzmine.parameters.ParameterSet;
-import io.github.mzmine.util.DataPointSorter;
-import io.github.mzmine.util.SortingDirection;
-import io.github.mzmine.util.SortingProperty;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.TreeSet;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -56,6 +49,10 @@ public class WaveletMassDetector implements MassDetector {
   private final double noiseLevel;
   private final int scaleLevel;
   private final double waveletWindow;
+  /**
+   * Pre calculated values of the wavelet, only depend on the wavelet window
+   */
+  private final double[] wavelet;
 
   /**
    * required to create a default instance via reflection
@@ -70,6 +67,20 @@ public class WaveletMassDetector implements MassDetector {
     this.noiseLevel = noiseLevel;
     this.scaleLevel = scaleLevel;
     this.waveletWindow = waveletWindow;
+    this.wavelet = createWavelet(waveletWindow);
+  }
+
+  private static double[] createWavelet(double waveletWindow) {
+    double wstep = ((WAVELET_ESR - WAVELET_ESL) / NPOINTS);
+    double[] W = new double[(int) NPOINTS];
+
+    double waveletIndex = WAVELET_ESL;
+    for (int j = 0; j < NPOINTS; j++) {
+      // Pre calculate the values of the wavelet
+      W[j] = cwtMEXHATreal(waveletIndex, waveletWindow, 0.0);
+      waveletIndex += wstep;
+    }
+    return W;
   }
 
   @Override
@@ -87,39 +98,27 @@ public class WaveletMassDetector implements MassDetector {
 
   @Override
   public double[][] getMassValues(MassSpectrum scan) {
+    final MassListBuffer out = new MassListBuffer(128);
+    detectMasses(scan, out);
+    return out.toArrays();
+  }
 
-    DataPoint waveletDataPoints[] = performCWT(scan, waveletWindow, scaleLevel);
-
-    DataPoint detected[] = getMzPeaks(noiseLevel, scan, waveletDataPoints);
-
-    // convert to double[][] TODO remove use of DataPoint
-    int size = detected.length;
-    double[] mzs = new double[size];
-    double[] intensities = new double[size];
-    for (int i = 0; i < size; i++) {
-      mzs[i] = detected[i].getMZ();
-      intensities[i] = detected[i].getIntensity();
-    }
-    return new double[][]{mzs, intensities};
+  @Override
+  public void detectMasses(@NotNull MassSpectrum scan, @NotNull MassListBuffer out) {
+    final double[] waveletIntensities = performCWT(scan, scaleLevel);
+    getMzPeaks(noiseLevel, scan, waveletIntensities, out);
   }
 
   /**
    * Perform the CWT over raw data points in the selected scale level
    *
    * @param scan
+   * @return the wavelet intensity of each data point
    */
-  private SimpleDataPoint[] performCWT(MassSpectrum scan, double waveletWindow, int scaleLevel) {
+  private double[] performCWT(MassSpectrum scan, int scaleLevel) {
     int length = scan.getNumberOfDataPoints();
-    SimpleDataPoint[] cwtDataPoints = new SimpleDataPoint[length];
-    double wstep = ((WAVELET_ESR - WAVELET_ESL) / NPOINTS);
-    double[] W = new double[(int) NPOINTS];
-
-    double waveletIndex = WAVELET_ESL;
-    for (int j = 0; j < NPOINTS; j++) {
-      // Pre calculate the values of the wavelet
-      W[j] = cwtMEXHATreal(waveletIndex, waveletWindow, 0.0);
-      waveletIndex += wstep;
-    }
+    double[] cwtIntensities = new double[length];
+    final double[] W = wavelet;
 
     /*
      * We only perform Translation of the wavelet in the selected scale
@@ -157,10 +156,10 @@ public class WaveletMassDetector implements MassDetector {
       if (intensity < 0) {
         intensity = 0;
       }
-      cwtDataPoints[dx] = new SimpleDataPoint(scan.getMzValue(dx), intensity);
+      cwtIntensities[dx] = intensity;
     }
 
-    return cwtDataPoints;
+    return cwtIntensities;
   }
 
   /**
@@ -170,7 +169,7 @@ public class WaveletMassDetector implements MassDetector {
    * @param a Window Width of the wavelet
    * @param b Offset from the center of the peak
    */
-  private double cwtMEXHATreal(double x, double a, double b) {
+  private static double cwtMEXHATreal(double x, double a, double b) {
     /* c = 2 / ( sqrt(3) * pi^(1/4) ) */
     double c = 0.8673250705840776;
     double TINY = 1E-200;
@@ -185,21 +184,18 @@ public class WaveletMassDetector implements MassDetector {
   }
 
   /**
-   * This function searches for maximums from wavelet data points
+   * This function searches for maximums from wavelet data points. The intensity of a peak is the
+   * maximum raw intensity within the peak.
    */
-  private DataPoint[] getMzPeaks(double noiseLevel, MassSpectrum scan,
-      DataPoint[] waveletDataPoints) {
-
-    TreeSet<DataPoint> mzPeaks = new TreeSet<>(
-        new DataPointSorter(SortingProperty.MZ, SortingDirection.Ascending));
-
-    List<DataPoint> rawDataPoints = new ArrayList<>();
+  private void getMzPeaks(double noiseLevel, MassSpectrum scan, double[] waveletIntensities,
+      MassListBuffer out) {
+    final int start = out.size();
     int peakMaxInd = 0;
-    int stopInd = waveletDataPoints.length - 1;
+    int stopInd = waveletIntensities.length - 1;
 
     for (int ind = 0; ind <= stopInd; ind++) {
 
-      while ((ind <= stopInd) && (waveletDataPoints[ind].getIntensity() == 0)) {
+      while ((ind <= stopInd) && (waveletIntensities[ind] == 0)) {
         ind++;
       }
       peakMaxInd = ind;
@@ -207,13 +203,14 @@ public class WaveletMassDetector implements MassDetector {
         break;
       }
 
+      double aproxIntensity = 0;
       // While peak is on
-      while ((ind <= stopInd) && (waveletDataPoints[ind].getIntensity() > 0)) {
+      while ((ind <= stopInd) && (waveletIntensities[ind] > 0)) {
         // Check if this is the maximum point of the peak
-        if (waveletDataPoints[ind].getIntensity() > waveletDataPoints[peakMaxInd].getIntensity()) {
+        if (waveletIntensities[ind] > waveletIntensities[peakMaxInd]) {
           peakMaxInd = ind;
         }
-        rawDataPoints.add(new SimpleDataPoint(scan.getMzValue(ind), scan.getIntensityValue(ind)));
+        aproxIntensity = Math.max(aproxIntensity, scan.getIntensityValue(ind));
         ind++;
       }
 
@@ -221,32 +218,16 @@ public class WaveletMassDetector implements MassDetector {
         break;
       }
 
-      rawDataPoints.add(new SimpleDataPoint(scan.getMzValue(ind), scan.getIntensityValue(ind)));
-
-      if (scan.getIntensityValue(peakMaxInd) > noiseLevel) {
-        SimpleDataPoint peakDataPoint = new SimpleDataPoint(scan.getMzValue(peakMaxInd),
-            calcAproxIntensity(rawDataPoints));
-
-        mzPeaks.add(peakDataPoint);
-
-      }
-      rawDataPoints.clear();
-    }
-
-    return mzPeaks.toArray(new DataPoint[0]);
-
-  }
-
-  private double calcAproxIntensity(List<DataPoint> rawDataPoints) {
-
-    double aproxIntensity = 0;
+      aproxIntensity = Math.max(aproxIntensity, scan.getIntensityValue(ind));
 
-    for (DataPoint d : rawDataPoints) {
-      if (d.getIntensity() > aproxIntensity) {
-        aproxIntensity = d.getIntensity();
+      final double mz = scan.getMzValue(peakMaxInd);
+      // peaks are found in m/z order, only skip equal data points
+      final int last = out.size() - 1;
+      if (scan.getIntensityValue(peakMaxInd) > noiseLevel && (last < start
+          || out.getMzValue(last) != mz || out.getIntensityValue(last) != aproxIntensity)) {
+        out.add(mz, aproxIntensity);
       }
     }
-    return aproxIntensity;
   }
 
   @Override
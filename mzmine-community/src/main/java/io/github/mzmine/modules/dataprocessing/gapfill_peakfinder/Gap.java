@@ -268,4 +268,8 @@ public class Gap {
   public FeatureListRow getFeatureListRow() {
     return featureListRow;
   }
+
+  public Range<Float> getRtRange() {
+    return rtRange;
+  }
 }
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.gapfill_peakfinder;
+
+import io.github.mzmine.datamodel.Scan;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Sweeps over scans in ascending retention time and provides only those gaps whose RT range may
+ * contain the current scan. Gaps are sorted by RT range start, the active gaps are kept in a queue
+ * ordered by RT range end. This replaces offering every scan to every gap.
+ *
+ * @param <T> the gap type
+ */
+public class GapRtSweep<T extends Gap> {
+
+  private final List<T> gapsByRtStart;
+  private final PriorityQueue<T> activeGaps = new PriorityQueue<>(
+      Comparator.comparingDouble(gap -> gap.getRtRange().upperEndpoint()));
+  private int nextGap = 0;
+  private float lastRt = Float.NEGATIVE_INFINITY;
+
+  public GapRtSweep(@NotNull Collection<T> gaps) {
+    gapsByRtStart = new ArrayList<>(gaps);
+    gapsByRtStart.sort(Comparator.comparingDouble(gap -> gap.getRtRange().lowerEndpoint()));
+  }
+
+  /**
+   * @param rt retention time of the next scan. Needs to be called with ascending retention times.
+   * @return the gaps with an RT range that starts at or before rt and ends at or after rt. The
+   * collection is reused by the next call and has no defined order.
+   */
+  public @NotNull Collection<T> activeGaps(float rt) {
+    if (rt < lastRt) {
+      throw new IllegalArgumentException(
+          "Scans need to be sorted by retention time. %f is smaller than the previous %f".formatted(
+              rt, lastRt));
+    }
+    lastRt = rt;
+
+    while (nextGap < gapsByRtStart.size()
+        && gapsByRtStart.get(nextGap).getRtRange().lowerEndpoint() <= rt) {
+      activeGaps.add(gapsByRtStart.get(nextGap));
+      nextGap++;
+    }
+    while (!activeGaps.isEmpty() && activeGaps.peek().getRtRange().upperEndpoint() < rt) {
+      activeGaps.poll();
+    }
+    return activeGaps;
+  }
+
+  /**
+   * @return true if the scans are sorted by ascending retention time and can be used with this
+   * sweep
+   */
+  public static boolean isSortedByRt(@NotNull List<? extends Scan> scans) {
+    float lastRt = Float.NEGATIVE_INFINITY;
+    for (var scan : scans) {
+      if (scan.getRetentionTime() < lastRt) {
+        return false;
+      }
+      lastRt = scan.getRetentionTime();
+    }
+    return true;
+  }
+}
@@ -30,6 +30,7 @@ import io.github.mzmine.datamodel.FeatureStatus;
 import io.github.mzmine.datamodel.Frame;
 import io.github.mzmine.datamodel.IMSRawDataFile;
 import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
 import io.github.mzmine.datamodel.data_access.BinningMobilogramDataAccess;
 import io.github.mzmine.datamodel.data_access.EfficientDataAccess;
 import io.github.mzmine.datamodel.data_access.EfficientDataAccess.MobilityScanDataType;
@@ -41,6 +42,7 @@ import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.datamodel.features.types.numbers.MobilityType;
 import io.github.mzmine.modules.dataprocessing.gapfill_peakfinder.Gap;
+import io.github.mzmine.modules.dataprocessing.gapfill_peakfinder.GapRtSweep;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
 import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance;
@@ -49,6 +51,7 @@ import io.github.mzmine.taskcontrol.TaskPriority;
 import io.github.mzmine.taskcontrol.TaskStatus;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
@@ -208,10 +211,14 @@ class MultiThreadPeakFinderTask extends AbstractTask {
   }
 
   private void processFile(RawDataFile file, List<Gap> gaps) {
+    final List<? extends Scan> scans = peakList.getSeletedScans(file);
+    // only offer scans to gaps that contain the scan's RT - gaps check their RT range themselves,
+    // so all gaps are offered all scans if the scans are not sorted by RT
+    final GapRtSweep<Gap> sweep = GapRtSweep.isSortedByRt(scans) ? new GapRtSweep<>(gaps) : null;
+
     if (file instanceof IMSRawDataFile imsFile && peakList.hasFeatureType(MobilityType.class)) {
       final MobilityScanDataAccess access = new MobilityScanDataAccess(imsFile,
-          MobilityScanDataType.MASS_LIST, (List<Frame>) peakList.getSeletedScans(file));
-      List<ImsGap> imsGaps = (List<ImsGap>) (List<? extends Gap>) gaps;
+          MobilityScanDataType.MASS_LIST, (List<Frame>) scans);
 
       while (access.hasNextFrame()) {
         if (isCanceled()) {
@@ -219,7 +226,9 @@ class MultiThreadPeakFinderTask extends AbstractTask {
         }
 
         final Frame frame = access.nextFrame();
-        for (ImsGap gap : imsGaps) {
+        final Collection<Gap> frameGaps =
+            sweep != null ? sweep.activeGaps(frame.getRetentionTime()) : gaps;
+        for (Gap gap : frameGaps) {
           access.resetMobilityScan();
           gap.offerNextScan(access);
         }
@@ -230,14 +239,16 @@ class MultiThreadPeakFinderTask extends AbstractTask {
       // no IMS dimension
 
       final ScanDataAccess scanAccess = EfficientDataAccess.of(file, ScanDataType.MASS_LIST,
-          peakList.getSeletedScans(file));
+          scans);
       while (scanAccess.hasNextScan()) {
         if (isCanceled()) {
           return;
         }
-        scanAccess.nextScan();
-        // Feed this scan to all gaps
-        for (Gap gap : gaps) {
+        final Scan scan = scanAccess.nextScan();
+        // Feed this scan to all gaps in its RT range
+        final Collection<Gap> scanGaps =
+            sweep != null ? sweep.activeGaps(scan.getRetentionTime()) : gaps;
+        for (Gap gap : scanGaps) {
           gap.offerNextScan(scanAccess);
         }
 
@@ -38,24 +38,22 @@ import io.github.mzmine.datamodel.features.correlation.R2RMap;
 import io.github.mzmine.datamodel.features.correlation.R2RSimpleSimilarityList;
 import io.github.mzmine.datamodel.features.correlation.RowsRelationship;
 import io.github.mzmine.datamodel.features.correlation.RowsRelationship.Type;
+import io.github.mzmine.modules.dataprocessing.group_imagecorrelate.ImageCorrelationEngine.PixelVector;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
 import io.github.mzmine.util.exceptions.MissingMassListException;
 import io.github.mzmine.util.maths.Combinatorics;
 import io.github.mzmine.util.maths.similarity.SimilarityMeasure;
-import it.unimi.dsi.fastutil.Pair;
 import java.text.MessageFormat;
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -69,18 +67,7 @@ public class ImageCorrelateGroupingTask extends AbstractTask {
   private long totalMaxPairs = 0;
   private final AtomicLong processedPairs = new AtomicLong(0);
 
-  private final double noiseLevel;
-
-  private final int minimumNumberOfCorrelatedPixels;
-  private final int medianFilter;
-  private final double quantileThreshold;
-  private final double hotspotRemovalThreshold;
-
-  private final boolean useMedianFilter;
-  private final boolean useQuantileThreshold;
-  private final boolean useHotspotRemoval;
-
-  private final SimilarityMeasure similarityMeasure;
+  private final ImageCorrelationEngine engine;
   private final double minR;
 
   public ImageCorrelateGroupingTask(final ParameterSet parameterSet,
@@ -89,32 +76,44 @@ public class ImageCorrelateGroupingTask extends AbstractTask {
     this.featureList = featureList;
     this.parameters = parameterSet;
     rows = featureList.getRows();
-    noiseLevel = parameters.getParameter(ImageCorrelateGroupingParameters.NOISE_LEVEL).getValue();
-    minimumNumberOfCorrelatedPixels = parameters.getParameter(
+    final double noiseLevel = parameters.getParameter(ImageCorrelateGroupingParameters.NOISE_LEVEL)
+        .getValue();
+    final int minimumNumberOfCorrelatedPixels = parameters.getParameter(
         ImageCorrelateGroupingParameters.MIN_NUMBER_OF_PIXELS).getValue();
-    useMedianFilter = parameters.getValue(ImageCorrelateGroupingParameters.MEDIAN_FILTER_WINDOW);
+    final boolean useMedianFilter = parameters.getValue(
+        ImageCorrelateGroupingParameters.MEDIAN_FILTER_WINDOW);
+    final int medianFilter;
     if (useMedianFilter) {
       medianFilter = parameters.getEmbeddedParameterValue(
           ImageCorrelateGroupingParameters.MEDIAN_FILTER_WINDOW);
     } else {
       medianFilter = 0;
     }
-    useQuantileThreshold = parameters.getValue(ImageCorrelateGroupingParameters.QUANTILE_THRESHOLD);
+    final boolean useQuantileThreshold = parameters.getValue(
+        ImageCorrelateGroupingParameters.QUANTILE_THRESHOLD);
+    final double quantileThreshold;
     if (useQuantileThreshold) {
       quantileThreshold = parameters.getEmbeddedParameterValue(
           ImageCorrelateGroupingParameters.QUANTILE_THRESHOLD);
     } else {
       quantileThreshold = 0.0;
     }
-    useHotspotRemoval = parameters.getValue(ImageCorrelateGroupingParameters.HOTSPOT_REMOVAL);
+    final boolean useHotspotRemoval = parameters.getValue(
+        ImageCorrelateGroupingParameters.HOTSPOT_REMOVAL);
+    final double hotspotRemovalThreshold;
     if (useHotspotRemoval) {
       hotspotRemovalThreshold = parameters.getEmbeddedParameterValue(
           ImageCorrelateGroupingParameters.HOTSPOT_REMOVAL);
     } else {
       hotspotRemovalThreshold = 0.0;
     }
-    similarityMeasure = parameters.getValue(ImageCorrelateGroupingParameters.MEASURE);
+    final SimilarityMeasure similarityMeasure = parameters.getValue(
+        ImageCorrelateGroupingParameters.MEASURE);
     minR = parameters.getValue(ImageCorrelateGroupingParameters.MIN_R);
+
+    engine = new ImageCorrelationEngine(noiseLevel, minimumNumberOfCorrelatedPixels,
+        useMedianFilter, medianFilter, useQuantileThreshold, quantileThreshold, useHotspotRemoval,
+        hotspotRemovalThreshold, similarityMeasure);
   }
 
   @Override
@@ -160,8 +159,8 @@ public class ImageCorrelateGroupingTask extends AbstractTask {
    */
   public void checkAllFeatures(R2RMap<RowsRelationship> mapSimilarity, List<FeatureListRow> rows)
       throws MissingMassListException {
-    // prefilter rows: check feature height and sort data
-    Map<Feature, FilteredRowData> mapFeatureData = new HashMap<>();
+    // prefilter rows: create the pixel vectors of all images once
+    Map<Feature, PixelVector> mapFeatureData = new HashMap<>();
     List<FeatureListRow> filteredRows = new ArrayList<>();
     FeatureDataAccess featureDataAccess = EfficientDataAccess.of(featureList,
         FeatureDataType.INCLUDE_ZEROS);
@@ -177,53 +176,47 @@ public class ImageCorrelateGroupingTask extends AbstractTask {
     logger.log(Level.INFO,
         () -> MessageFormat.format("Checking image similarity on {0} rows", numRows));
 
-    // try map multi for all pairs
-    long comparedPairs = IntStream.range(0, numRows - 1).boxed()
-        .<Pair<FeatureListRow, FeatureListRow>>mapMulti((i, consumer) -> {
-          if (isCanceled()) {
-            return;
-          }
-          FeatureListRow a = filteredRows.get(i);
-          for (int j = i + 1; j < numRows; j++) {
-            FeatureListRow b = filteredRows.get(j);
-            consumer.accept(Pair.of(a, b));
-          }
-        }).parallel().mapToLong(pair -> {
-          // need to map to ensure thread is waiting for completion
-          checkR2RAllFeaturesImageSimilarity(mapFeatureData, pair.left(), pair.right(),
-              mapSimilarity);
-          // count comparisons
-          processedPairs.incrementAndGet();
-          return 1;
-        }).sum();
+    // each task compares one row to all following rows, work stealing balances the tasks
+    long comparedPairs = IntStream.range(0, numRows - 1).parallel().mapToLong(i -> {
+      if (isCanceled()) {
+        return 0;
+      }
+      FeatureListRow a = filteredRows.get(i);
+      for (int j = i + 1; j < numRows; j++) {
+        checkR2RAllFeaturesImageSimilarity(mapFeatureData, a, filteredRows.get(j),
+            mapSimilarity);
+      }
+      // count comparisons
+      final int pairs = numRows - 1 - i;
+      processedPairs.addAndGet(pairs);
+      return pairs;
+    }).sum();
 
     logger.info(
         "Image correlation: Performed %d pairwise comparisons of rows.".formatted(comparedPairs));
   }
 
-  private boolean prepareRows(
-      @NotNull Map<Feature, ImageCorrelateGroupingTask.FilteredRowData> mapFeatureData,
+  private boolean prepareRows(@NotNull Map<Feature, PixelVector> mapFeatureData,
       @NotNull FeatureListRow row, FeatureDataAccess featureDataAccess)
       throws MissingMassListException {
     boolean result = false;
-    ImageCorrelateGroupingTask.FilteredRowData data = getDataAndFilter(row, featureDataAccess);
+    PixelVector data = getDataAndFilter(row, featureDataAccess);
     mapFeatureData.put(featureDataAccess.getFeature(), data);
     result = true;
     return result;
   }
 
   @Nullable
-  private ImageCorrelateGroupingTask.FilteredRowData getDataAndFilter(@NotNull FeatureListRow row,
+  private PixelVector getDataAndFilter(@NotNull FeatureListRow row,
       FeatureDataAccess featureDataAccess) {
 
     if (featureDataAccess instanceof FeatureFullDataAccess) {
       while (featureDataAccess.hasNextFeature()) {
         featureDataAccess.nextFeature();
         if (featureDataAccess.getFeature().getRow().equals(row)) {
-          double[] intensities = ((FeatureFullDataAccess) featureDataAccess).getIntensityValues()
-              .clone();
-          return intensities.length > 0 ? new ImageCorrelateGroupingTask.FilteredRowData(row,
-              intensities) : null;
+          // the data access reuses its buffer, the pixel vector copies the pixels above noise
+          double[] intensities = ((FeatureFullDataAccess) featureDataAccess).getIntensityValues();
+          return intensities.length > 0 ? engine.createPixelVector(intensities) : null;
         }
       }
     } else {
@@ -232,21 +225,15 @@ public class ImageCorrelateGroupingTask extends AbstractTask {
     return null;
   }
 
-
-  //Intensities have to be sorted by scan number
-  private record FilteredRowData(FeatureListRow row, double[] intensities) {
-
-  }
-
-  private void checkR2RAllFeaturesImageSimilarity(Map<Feature, FilteredRowData> mapFeatureData,
+  private void checkR2RAllFeaturesImageSimilarity(Map<Feature, PixelVector> mapFeatureData,
       FeatureListRow a, FeatureListRow b, final R2RMap<RowsRelationship> mapSimilarity) {
 
     R2RSimpleSimilarityList imageSimilarities = new R2RSimpleSimilarityList(a, b,
         Type.MS1_FEATURE_CORR);
     for (Feature fa : a.getFeatures()) {
       double similarity = 0;
-      double[] intensitiesA = mapFeatureData.get(fa).intensities;
-      if (intensitiesA != null) {
+      PixelVector imageA = mapFeatureData.get(fa);
+      if (imageA != null) {
 
         RawDataFile dataFile = fa.getRawDataFile();
         Feature fb = b.getFeature(dataFile);
@@ -254,9 +241,9 @@ public class ImageCorrelateGroupingTask extends AbstractTask {
           continue;
         }
 
-        double[] intensitiesB = mapFeatureData.get(fb).intensities;
-        if (intensitiesB != null) {
-          similarity = calculateSimilarity(intensitiesA, intensitiesB);
+        PixelVector imageB = mapFeatureData.get(fb);
+        if (imageB != null) {
+          similarity = engine.calculateSimilarity(imageA, imageB);
         }
       }
       // always add value also 0 if no correlation
@@ -266,90 +253,4 @@ public class ImageCorrelateGroupingTask extends AbstractTask {
       mapSimilarity.add(a, b, imageSimilarities);
     }
   }
-
-  private double calculateSimilarity(final double[] intensitiesA, final double[] intensitiesB) {
-    List<IntensityPair> intensityPairs = new ArrayList<>();
-
-    // Remove signals below noise level and create intensity pairs
-    for (int i = 0; i < intensitiesA.length; i++) {
-      if (intensitiesA[i] >= noiseLevel && intensitiesB[i] >= noiseLevel) {
-        intensityPairs.add(new IntensityPair(intensitiesA[i], intensitiesB[i]));
-      }
-    }
-
-    List<IntensityPair> filteredIntensityPairs;
-    if (useMedianFilter && intensitiesA.length >= minimumNumberOfCorrelatedPixels) {
-      filteredIntensityPairs = applyMedianFilter(intensityPairs, medianFilter);
-    } else {
-      filteredIntensityPairs = intensityPairs;
-    }
-
-    if (useQuantileThreshold && filteredIntensityPairs.size() >= minimumNumberOfCorrelatedPixels) {
-      double quantileThresholdA = calculateQuantile(
-          filteredIntensityPairs.stream().map(IntensityPair::intensityA)
-              .collect(Collectors.toList()), quantileThreshold);
-      double quantileThresholdB = calculateQuantile(
-          filteredIntensityPairs.stream().map(IntensityPair::intensityB)
-              .collect(Collectors.toList()), quantileThreshold);
-      filteredIntensityPairs.removeIf(
-          pair -> pair.intensityA() < quantileThresholdA || pair.intensityB() < quantileThresholdB);
-    }
-
-    if (useHotspotRemoval && filteredIntensityPairs.size() >= minimumNumberOfCorrelatedPixels) {
-      double hotSpotThresholdA = calculateQuantile(
-          filteredIntensityPairs.stream().map(IntensityPair::intensityA)
-              .collect(Collectors.toList()), hotspotRemovalThreshold);
-      double hotSpotThresholdB = calculateQuantile(
-          filteredIntensityPairs.stream().map(IntensityPair::intensityB)
-              .collect(Collectors.toList()), hotspotRemovalThreshold);
-      filteredIntensityPairs.removeIf(
-          pair -> pair.intensityA() > hotSpotThresholdA || pair.intensityB() > hotSpotThresholdB);
-    }
-
-    if (filteredIntensityPairs.size() >= minimumNumberOfCorrelatedPixels) {
-      double[][] correlationDataInput = new double[filteredIntensityPairs.size()][2];
-      for (int i = 0; i < filteredIntensityPairs.size(); i++) {
-        correlationDataInput[i][0] = filteredIntensityPairs.get(i).intensityA;
-        correlationDataInput[i][1] = filteredIntensityPairs.get(i).intensityB;
-      }
-
-      return similarityMeasure.calc(correlationDataInput);
-    }
-    return 0;
-  }
-
-  private List<IntensityPair> applyMedianFilter(List<IntensityPair> intensityPairs,
-      int windowSize) {
-    List<IntensityPair> result = new ArrayList<>();
-    int halfWindowSize = windowSize / 2;
-    for (int i = 0; i < intensityPairs.size(); i++) {
-      int start = Math.max(0, i - halfWindowSize);
-      int end = Math.min(intensityPairs.size() - 1, i + halfWindowSize);
-      List<IntensityPair> subarray = intensityPairs.subList(start, end + 1);
-      double medianA = calculateMedian(
-          subarray.stream().mapToDouble(IntensityPair::intensityA).toArray());
-      double medianB = calculateMedian(
-          subarray.stream().mapToDouble(IntensityPair::intensityB).toArray());
-      result.add(new IntensityPair(medianA, medianB));
-    }
-
-    return result;
-  }
-
-  private double calculateMedian(double[] values) {
-    Arrays.sort(values);
-    int middle = values.length / 2;
-    return values.length % 2 == 0 ? (values[middle - 1] + values[middle]) / 2.0 : values[middle];
-  }
-
-  private double calculateQuantile(List<Double> values, double quantile) {
-    double[] array = values.stream().mapToDouble(Double::doubleValue).toArray();
-    Arrays.sort(array);
-    int index = (int) Math.ceil(quantile * array.length) - 1;
-    return array[index];
-  }
-
-  private record IntensityPair(double intensityA, double intensityB) {
-
-  }
 }
@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.group_imagecorrelate;
+
+import io.github.mzmine.util.maths.similarity.SimilarityMeasure;
+import java.util.Arrays;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Calculates the similarity of two images on primitive pixel vectors. Each image is prepared once
+ * as a sparse {@link PixelVector} of all pixels above the noise level. Pairs are then intersected
+ * and filtered (median, quantile, hotspot) in reusable per-thread buffers without boxing. Results
+ * are identical to filtering a list of intensity pairs.
+ */
+class ImageCorrelationEngine {
+
+  private final double noiseLevel;
+  private final int minimumNumberOfCorrelatedPixels;
+  private final int medianFilter;
+  private final double quantileThreshold;
+  private final double hotspotRemovalThreshold;
+  private final boolean useMedianFilter;
+  private final boolean useQuantileThreshold;
+  private final boolean useHotspotRemoval;
+  private final SimilarityMeasure similarityMeasure;
+
+  private final ThreadLocal<Buffers> buffers = ThreadLocal.withInitial(Buffers::new);
+
+  /**
+   * @param medianFilter            window size, only used if useMedianFilter
+   * @param quantileThreshold       only used if useQuantileThreshold
+   * @param hotspotRemovalThreshold only used if useHotspotRemoval
+   */
+  ImageCorrelationEngine(double noiseLevel, int minimumNumberOfCorrelatedPixels,
+      boolean useMedianFilter, int medianFilter, boolean useQuantileThreshold,
+      double quantileThreshold, boolean useHotspotRemoval, double hotspotRemovalThreshold,
+      @NotNull SimilarityMeasure similarityMeasure) {
+    this.noiseLevel = noiseLevel;
+    this.minimumNumberOfCorrelatedPixels = minimumNumberOfCorrelatedPixels;
+    this.useMedianFilter = useMedianFilter;
+    this.medianFilter = medianFilter;
+    this.useQuantileThreshold = useQuantileThreshold;
+    this.quantileThreshold = quantileThreshold;
+    this.useHotspotRemoval = useHotspotRemoval;
+    this.hotspotRemovalThreshold = hotspotRemovalThreshold;
+    this.similarityMeasure = similarityMeasure;
+  }
+
+  /**
+   * @param intensities the intensities of all pixels of an image, sorted by scan
+   * @return the pixels above the noise level
+   */
+  @NotNull
+  PixelVector createPixelVector(double[] intensities) {
+    int size = 0;
+    for (double intensity : intensities) {
+      if (intensity >= noiseLevel) {
+        size++;
+      }
+    }
+    final int[] indices = new int[size];
+    final double[] values = new double[size];
+    for (int i = 0, n = 0; i < intensities.length; i++) {
+      if (intensities[i] >= noiseLevel) {
+        indices[n] = i;
+        values[n] = intensities[i];
+        n++;
+      }
+    }
+    return new PixelVector(intensities.length, indices, values);
+  }
+
+  /**
+   * @return the similarity of both images or 0 if less than the minimum number of pixels are
+   * correlated
+   */
+  double calculateSimilarity(@NotNull PixelVector imageA, @NotNull PixelVector imageB) {
+    // filters only remove pixels, skip the intersection if there cannot be enough pixels
+    if (Math.min(imageA.size(), imageB.size()) < minimumNumberOfCorrelatedPixels) {
+      return 0;
+    }
+
+    final Buffers buffer = buffers.get();
+    buffer.ensureCapacity(Math.min(imageA.size(), imageB.size()));
+    double[] a = buffer.a;
+    double[] b = buffer.b;
+
+    // pixels above noise level in both images
+    int n = 0;
+    final int[] indicesA = imageA.indices();
+    final int[] indicesB = imageB.indices();
+    for (int i = 0, j = 0; i < indicesA.length && j < indicesB.length; ) {
+      if (indicesA[i] < indicesB[j]) {
+        i++;
+      } else if (indicesA[i] > indicesB[j]) {
+        j++;
+      } else {
+        a[n] = imageA.intensities()[i++];
+        b[n] = imageB.intensities()[j++];
+        n++;
+      }
+    }
+
+    if (n < minimumNumberOfCorrelatedPixels) {
+      return 0;
+    }
+
+    if (useMedianFilter && imageA.numPixels() >= minimumNumberOfCorrelatedPixels) {
+      applyMedianFilter(a, buffer.filteredA, n, buffer.sorted);
+      applyMedianFilter(b, buffer.filteredB, n, buffer.sorted);
+      a = buffer.filteredA;
+      b = buffer.filteredB;
+    }
+
+    if (useQuantileThreshold) {
+      final double thresholdA = calculateQuantile(a, n, quantileThreshold, buffer.sorted);
+      final double thresholdB = calculateQuantile(b, n, quantileThreshold, buffer.sorted);
+      int kept = 0;
+      for (int i = 0; i < n; i++) {
+        if (a[i] >= thresholdA && b[i] >= thresholdB) {
+          a[kept] = a[i];
+          b[kept] = b[i];
+          kept++;
+        }
+      }
+      n = kept;
+    }
+
+    if (useHotspotRemoval && n >= minimumNumberOfCorrelatedPixels) {
+      final double thresholdA = calculateQuantile(a, n, hotspotRemovalThreshold, buffer.sorted);
+      final double thresholdB = calculateQuantile(b, n, hotspotRemovalThreshold, buffer.sorted);
+      int kept = 0;
+      for (int i = 0; i < n; i++) {
+        if (a[i] <= thresholdA && b[i] <= thresholdB) {
+          a[kept] = a[i];
+          b[kept] = b[i];
+          kept++;
+        }
+      }
+      n = kept;
+    }
+
+    if (n >= minimumNumberOfCorrelatedPixels) {
+      return similarityMeasure.calc(a, b, n);
+    }
+    return 0;
+  }
+
+  /**
+   * Median of a window around each value
+   *
+   * @param src    the values
+   * @param dst    the filtered values
+   * @param n      the number of values
+   * @param sorted buffer for sorting the windows
+   */
+  private void applyMedianFilter(double[] src, double[] dst, int n, double[] sorted) {
+    final int halfWindowSize = medianFilter / 2;
+    for (int i = 0; i < n; i++) {
+      final int start = Math.max(0, i - halfWindowSize);
+      final int length = Math.min(n - 1, i + halfWindowSize) - start + 1;
+      System.arraycopy(src, start, sorted, 0, length);
+      Arrays.sort(sorted, 0, length);
+      final int middle = length / 2;
+      dst[i] = length % 2 == 0 ? (sorted[middle - 1] + sorted[middle]) / 2.0 : sorted[middle];
+    }
+  }
+
+  private static double calculateQuantile(double[] values, int n, double quantile,
+      double[] sorted) {
+    System.arraycopy(values, 0, sorted, 0, n);
+    Arrays.sort(sorted, 0, n);
+    return sorted[(int) Math.ceil(quantile * n) - 1];
+  }
+
+  /**
+   * All pixels of an image above the noise level
+   *
+   * @param numPixels   the number of pixels of the full image
+   * @param indices     the pixel indices, ascending
+   * @param intensities the intensity of each pixel in indices
+   */
+  record PixelVector(int numPixels, int[] indices, double[] intensities) {
+
+    int size() {
+      return indices.length;
+    }
+  }
+
+  /**
+   * Reused by one thread for all pairs
+   */
+  private static class Buffers {
+
+    private double[] a = new double[0];
+    private double[] b = new double[0];
+    private double[] filteredA = new double[0];
+    private double[] filteredB = new double[0];
+    private double[] sorted = new double[0];
+
+    private void ensureCapacity(int capacity) {
+      if (a.length < capacity) {
+        a = new double[capacity];
+        b = new double[capacity];
+        filteredA = new double[capacity];
+        filteredB = new double[capacity];
+        sorted = new double[capacity];
+      }
+    }
+  }
+}
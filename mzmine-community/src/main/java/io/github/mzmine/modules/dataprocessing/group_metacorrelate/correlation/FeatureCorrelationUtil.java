@@ -29,7 +29,7 @@ package io.github.mzmine.modules.dataprocessing.group_metacorrelate.correlation;
 import com.google.common.collect.Range;
 import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.Scan;
-import io.github.mzmine.datamodel.data_access.CachedFeatureDataAccess;
+import io.github.mzmine.datamodel.data_access.FeatureDataCache;
 import io.github.mzmine.datamodel.features.Feature;
 import io.github.mzmine.datamodel.features.FeatureList;
 import io.github.mzmine.datamodel.features.FeatureListRow;
@@ -125,7 +125,7 @@ public class FeatureCorrelationUtil {
    * @return R2R correlation, returns null if it was filtered by height correlation. Check for
    * validity on result
    */
-  public static R2RFullCorrelationData corrR2R(CachedFeatureDataAccess data, List<RawDataFile> raws,
+  public static R2RFullCorrelationData corrR2R(FeatureDataCache data, List<RawDataFile> raws,
       FeatureListRow testRow, FeatureListRow row, boolean doFShapeCorr, int minCorrelatedDataPoints,
       int minCorrDPOnFeatureEdge, int minDPFHeightCorr, double minHeight,
       double noiseLevelShapeCorr, boolean useHeightCorrFilter, SimilarityMeasure heightSimilarity,
@@ -173,7 +173,7 @@ public class FeatureCorrelationUtil {
    * @param g
    * @return Map of feature shape correlation data (can be empty NON null)
    */
-  public static Map<RawDataFile, CorrelationData> corrR2RFeatureShapes(CachedFeatureDataAccess data,
+  public static Map<RawDataFile, CorrelationData> corrR2RFeatureShapes(FeatureDataCache data,
       final List<RawDataFile> raws, FeatureListRow row, FeatureListRow g,
       int minCorrelatedDataPoints, int minCorrDPOnFeatureEdge, double noiseLevelShapeCorr) {
     HashMap<RawDataFile, CorrelationData> corrData = new HashMap<>();
@@ -209,7 +209,7 @@ public class FeatureCorrelationUtil {
    * @return feature shape correlation or null if not possible not enough data points for a
    * correlation
    */
-  public static CorrelationData corrFeatureShape(CachedFeatureDataAccess data, Feature f1,
+  public static CorrelationData corrFeatureShape(FeatureDataCache data, Feature f1,
       Feature f2, boolean sameRawFile, int minCorrelatedDataPoints, int minCorrDPOnFeatureEdge,
       double noiseLevelShapeCorr) {
     // f1 should be the higher feature
@@ -43,10 +43,16 @@ public class AdvancedCorrelateGroupingParameters extends SimpleParameterSet {
       Simplify some steps for large datasets with ≥samples.
       This will skip the feature overlap function "Min intensity % overlap".""", 250);
 
+  public static final IntegerParameter featureDataCacheMB = new IntegerParameter(
+      "Feature data cache (MB)", """
+      Maximum memory used to cache feature intensities during correlation.
+      Least recently used feature data is removed from the cache and reloaded when needed.
+      0 uses 25% of the maximum memory.""", 0, 0, null);
+
 
   // Constructor
   public AdvancedCorrelateGroupingParameters() {
-    super(keepExtendedStats, simplifyLargeDatasets);
+    super(keepExtendedStats, simplifyLargeDatasets, featureDataCacheMB);
   }
 
 }
@@ -30,7 +30,8 @@ import com.google.common.util.concurrent.AtomicDouble;
 import io.github.msdk.MSDKRuntimeException;
 import io.github.mzmine.datamodel.MZmineProject;
 import io.github.mzmine.datamodel.RawDataFile;
-import io.github.mzmine.datamodel.data_access.CachedFeatureDataAccess;
+import io.github.mzmine.datamodel.data_access.FeatureDataCache;
+import io.github.mzmine.datamodel.data_access.MemoryBudgetFeatureDataAccess;
 import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
@@ -71,6 +72,8 @@ public class CorrelateGroupingTask extends AbstractTask {
   private final AtomicDouble stageProgress = new AtomicDouble(0);
   private final boolean keepExtendedStats;
   private final int simplifyLargeDatasets;
+  // max bytes of cached feature data
+  private final long featureDataCacheBytes;
   protected ParameterSet parameters;
   protected MZmineProject project;
   // GENERAL
@@ -187,6 +190,10 @@ public class CorrelateGroupingTask extends AbstractTask {
     simplifyLargeDatasets =
         isAdvanced ? advanced.getValue(AdvancedCorrelateGroupingParameters.simplifyLargeDatasets)
             : 20000;
+    final int cacheMB =
+        isAdvanced ? advanced.getValue(AdvancedCorrelateGroupingParameters.featureDataCacheMB) : 0;
+    featureDataCacheBytes =
+        cacheMB > 0 ? cacheMB * 1024L * 1024L : Runtime.getRuntime().maxMemory() / 4;
 
   }
 
@@ -289,12 +296,10 @@ public class CorrelateGroupingTask extends AbstractTask {
 
     totalRows = rows.length;
 
-    // preload all intensity values only if feature shape correlation active or if overlap is computed
     // overlap is not computed for large datasets
     boolean calculateShapeOverlap = raws.size() < simplifyLargeDatasets;
-    boolean preloadIntensities =
-        useTotalShapeCorrFilter || groupByFShapeCorr || calculateShapeOverlap;
-    CachedFeatureDataAccess data = new CachedFeatureDataAccess(rows, false, preloadIntensities);
+    // intensities are loaded lazily and cached within the memory budget
+    FeatureDataCache data = new MemoryBudgetFeatureDataAccess(rows, featureDataCacheBytes);
 
     // for all rows - do in parallel
     long correlated = IntStream.range(0, totalRows - 1).parallel().mapToLong(i -> {
@@ -0,0 +1,403 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.group_spectral_networking;
+
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.datamodel.features.correlation.SpectralSimilarity;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.scans.similarity.Weights;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * All-vs-all modified cosine scorer for molecular networking. All spectra are packed into
+ * contiguous primitive arrays once, the pair matrix is split into blocks of spectra that are
+ * scored in parallel, and edges are handed to a consumer as soon as they pass all thresholds.
+ * <p>
+ * Scores are equal to
+ * {@link SpectralNetworkingTask#createMS2SimModificationAware(MZTolerance, Weights, DataPoint[],
+ * DataPoint[], double, java.util.function.Function, double, double)} with
+ * {@link SpectralNetworkingTask#SIZE_OVERLAP} for spectrum a (lower index) and b (higher index):
+ * every signal of b, in descending intensity, is matched to the most intense unmatched signal of a
+ * within the tolerance of the signal m/z or the signal m/z shifted by the precursor m/z delta.
+ * Values are summed in the same order as the aligned list to produce the same results.
+ * <p>
+ * Pairs are pruned by the maximum precursor m/z delta like in
+ * {@link io.github.mzmine.util.collections.StreamUtils#processPairs}.
+ */
+public final class PackedSpectralNetworkingScorer {
+
+  /**
+   * Number of spectra per block. Blocks are the unit of parallel work
+   */
+  public static final int DEFAULT_BLOCK_SIZE = 128;
+
+  private final MZTolerance mzTol;
+  private final int minMatch;
+  private final double minCosine;
+  private final int blockSize;
+
+  private final int numSpectra;
+  private final double[] precursorMzs;
+  // first exclusive index of the later spectra that are compared with each spectrum
+  private final int[] pairEnds;
+  private final int maxSignals;
+
+  // signals of all spectra, each spectrum starts at offsets[i] and is sorted by intensity
+  private final int[] offsets;
+  private final double[] mzs;
+  private final double[] intensities;
+  private final double[] weightedIntensities;
+  // per spectrum sorted by mz, points to the intensity rank within the spectrum
+  private final double[] mzSortedMzs;
+  private final int[] mzSortedRanks;
+
+  /**
+   * @param precursorMzs         precursor m/z of all spectra. Should be sorted ascending for the
+   *                             m/z delta pruning, like the rows in {@link SpectralNetworkingTask}
+   * @param sortedSpectra        the signals of each spectrum sorted by intensity (descending)
+   * @param mzTol                tolerance to match signals
+   * @param weights              weights for the cosine
+   * @param minMatch             minimum matched signals
+   * @param minCosine            minimum cosine similarity
+   * @param maxPrecursorMzDelta  maximum precursor m/z delta, pairs of spectra i < j are only scored
+   *                             until the first j with precursorMzs[j] - precursorMzs[i] > delta
+   */
+  public PackedSpectralNetworkingScorer(double[] precursorMzs,
+      @NotNull List<DataPoint[]> sortedSpectra, @NotNull MZTolerance mzTol,
+      @NotNull Weights weights, int minMatch, double minCosine, double maxPrecursorMzDelta) {
+    this(precursorMzs, sortedSpectra, mzTol, weights, minMatch, minCosine, maxPrecursorMzDelta,
+        DEFAULT_BLOCK_SIZE);
+  }
+
+  PackedSpectralNetworkingScorer(double[] precursorMzs, @NotNull List<DataPoint[]> sortedSpectra,
+      @NotNull MZTolerance mzTol, @NotNull Weights weights, int minMatch, double minCosine,
+      double maxPrecursorMzDelta, int blockSize) {
+    if (precursorMzs.length != sortedSpectra.size()) {
+      throw new IllegalArgumentException(
+          "Number of precursor m/z values (%d) and spectra (%d) differ".formatted(
+              precursorMzs.length, sortedSpectra.size()));
+    }
+    this.mzTol = mzTol;
+    this.minMatch = minMatch;
+    this.minCosine = minCosine;
+    this.blockSize = Math.max(1, blockSize);
+    this.numSpectra = precursorMzs.length;
+    this.precursorMzs = precursorMzs.clone();
+
+    offsets = new int[numSpectra + 1];
+    int max = 0;
+    for (int i = 0; i < numSpectra; i++) {
+      final int n = sortedSpectra.get(i).length;
+      offsets[i + 1] = offsets[i] + n;
+      max = Math.max(max, n);
+    }
+    maxSignals = max;
+
+    final int total = offsets[numSpectra];
+    mzs = new double[total];
+    intensities = new double[total];
+    weightedIntensities = new double[total];
+    mzSortedMzs = new double[total];
+    mzSortedRanks = new int[total];
+
+    final double wIntensity = weights.getIntensity();
+    final double wMz = weights.getMz();
+    for (int i = 0; i < numSpectra; i++) {
+      final DataPoint[] dps = sortedSpectra.get(i);
+      final int start = offsets[i];
+      for (int k = 0; k < dps.length; k++) {
+        final double mz = dps[k].getMZ();
+        final double intensity = dps[k].getIntensity();
+        mzs[start + k] = mz;
+        intensities[start + k] = intensity;
+        // same as ScanAlignment.toIntensityMatrixWeighted
+        weightedIntensities[start + k] = Math.pow(intensity, wIntensity) * Math.pow(mz, wMz);
+      }
+      // mz sorted view for the tolerance windows
+      final int[] ranks = new int[dps.length];
+      for (int k = 0; k < ranks.length; k++) {
+        ranks[k] = k;
+      }
+      IntArrays.quickSort(ranks, (a, b) -> {
+        final int result = Double.compare(mzs[start + a], mzs[start + b]);
+        return result != 0 ? result : Integer.compare(a, b);
+      });
+      for (int k = 0; k < ranks.length; k++) {
+        mzSortedRanks[start + k] = ranks[k];
+        mzSortedMzs[start + k] = mzs[start + ranks[k]];
+      }
+    }
+
+    pairEnds = findPairEnds(this.precursorMzs, maxPrecursorMzDelta);
+  }
+
+  /**
+   * Same break condition as the pair loop in {@link SpectralNetworkingTask}: the later spectra are
+   * compared until the first precursor m/z that exceeds the delta.
+   */
+  private static int[] findPairEnds(double[] precursorMzs, double maxDelta) {
+    final int n = precursorMzs.length;
+    final int[] ends = new int[n];
+    boolean sorted = true;
+    for (int i = 1; i < n && sorted; i++) {
+      sorted = precursorMzs[i - 1] <= precursorMzs[i];
+    }
+
+    int end = 0;
+    for (int i = 0; i < n; i++) {
+      if (!sorted) {
+        // rows sorted by a slightly different value need the full scan
+        end = i + 1;
+      } else {
+        end = Math.max(end, i + 1);
+      }
+      while (end < n && !(maxDelta < precursorMzs[end] - precursorMzs[i])) {
+        end++;
+      }
+      ends[i] = end;
+    }
+    return ends;
+  }
+
+  /**
+   * @return number of pairs that pass the precursor m/z delta pruning
+   */
+  public long getNumPairs() {
+    long pairs = 0;
+    for (int i = 0; i < numSpectra; i++) {
+      pairs += pairEnds[i] - i - 1;
+    }
+    return pairs;
+  }
+
+  public int getNumSpectra() {
+    return numSpectra;
+  }
+
+  /**
+   * Score all pairs in parallel
+   *
+   * @param isCanceled checked before each block
+   * @param progress   receives the number of processed pairs after each block
+   * @param consumer   receives all edges that passed the thresholds, needs to be thread safe
+   * @return the number of compared pairs
+   */
+  public long scoreAll(@Nullable BooleanSupplier isCanceled, @Nullable LongConsumer progress,
+      @NotNull EdgeConsumer consumer) {
+    final int numBlocks = (numSpectra + blockSize - 1) / blockSize;
+    // all blocks [a, b] with b >= a and at least one pair within the m/z delta
+    final LongStream.Builder tiles = LongStream.builder();
+    for (int ba = 0; ba < numBlocks; ba++) {
+      final int start = ba * blockSize;
+      final int end = Math.min(numSpectra, start + blockSize);
+      int maxPairEnd = 0;
+      for (int i = start; i < end; i++) {
+        maxPairEnd = Math.max(maxPairEnd, pairEnds[i]);
+      }
+      for (int bb = ba; bb * blockSize < maxPairEnd; bb++) {
+        tiles.add((long) ba * numBlocks + bb);
+      }
+    }
+
+    return tiles.build().parallel().map(tile -> {
+      if (isCanceled != null && isCanceled.getAsBoolean()) {
+        return 0;
+      }
+      final long pairs = scoreTile((int) (tile / numBlocks), (int) (tile % numBlocks), consumer);
+      if (progress != null) {
+        progress.accept(pairs);
+      }
+      return pairs;
+    }).sum();
+  }
+
+  private long scoreTile(int blockA, int blockB, @NotNull EdgeConsumer consumer) {
+    final int[] matchOfB = new int[maxSignals];
+    final boolean[] matchedA = new boolean[maxSignals];
+
+    final int startA = blockA * blockSize;
+    final int endA = Math.min(numSpectra, startA + blockSize);
+    final int startB = blockB * blockSize;
+    final int endB = Math.min(numSpectra, startB + blockSize);
+    long pairs = 0;
+    for (int a = startA; a < endA; a++) {
+      final int end = Math.min(endB, pairEnds[a]);
+      for (int b = Math.max(startB, a + 1); b < end; b++) {
+        pairs++;
+        final SpectralSimilarity similarity = score(a, b, matchOfB, matchedA);
+        if (similarity != null && similarity.cosine() >= minCosine) {
+          consumer.accept(a, b, similarity);
+        }
+      }
+    }
+    return pairs;
+  }
+
+  /**
+   * Score a single pair
+   *
+   * @param a lower spectrum index
+   * @param b higher spectrum index
+   * @return the similarity if the minimum matched signals were reached, the cosine threshold is
+   * not applied
+   */
+  public @Nullable SpectralSimilarity score(int a, int b) {
+    return score(a, b, new int[maxSignals], new boolean[maxSignals]);
+  }
+
+  private @Nullable SpectralSimilarity score(int a, int b, int[] matchOfB, boolean[] matchedA) {
+    final int offsetA = offsets[a];
+    final int nA = offsets[a + 1] - offsetA;
+    final int offsetB = offsets[b];
+    final int nB = offsets[b + 1] - offsetB;
+    if (nA < minMatch || nB < minMatch) {
+      return null;
+    }
+
+    Arrays.fill(matchedA, 0, nA, false);
+    final double precursorA = precursorMzs[a];
+    final double precursorB = precursorMzs[b];
+    final boolean modAware = precursorA > 0 && precursorB > 0;
+    final double delta = precursorA - precursorB;
+
+    int overlap = 0;
+    for (int k = 0; k < nB; k++) {
+      // not enough signals left to reach minimum
+      if (overlap + nB - k < minMatch) {
+        return null;
+      }
+      final double mz = mzs[offsetB + k];
+      int best = findMostIntenseUnmatched(offsetA, nA, mz, matchedA, nA);
+      if (modAware) {
+        best = findMostIntenseUnmatched(offsetA, nA, mz + delta, matchedA, best);
+      }
+      if (best < nA) {
+        matchedA[best] = true;
+        matchOfB[k] = best;
+        overlap++;
+      } else {
+        matchOfB[k] = -1;
+      }
+    }
+    if (overlap < minMatch) {
+      return null;
+    }
+
+    // sum in the order of the aligned list: all b signals with their match, then unmatched a
+    double dot = 0;
+    double normB = 0;
+    double normA = 0;
+    double totalB = 0;
+    double totalA = 0;
+    double explainedB = 0;
+    double explainedA = 0;
+    for (int k = 0; k < nB; k++) {
+      final double weightedB = weightedIntensities[offsetB + k];
+      final double intensityB = intensities[offsetB + k];
+      normB += weightedB * weightedB;
+      totalB += intensityB;
+      final int match = matchOfB[k];
+      if (match != -1) {
+        final double weightedA = weightedIntensities[offsetA + match];
+        final double intensityA = intensities[offsetA + match];
+        dot += weightedB * weightedA;
+        normA += weightedA * weightedA;
+        explainedB += intensityB;
+        explainedA += intensityA;
+        totalA += intensityA;
+      }
+    }
+    for (int r = 0; r < nA; r++) {
+      if (!matchedA[r]) {
+        final double weightedA = weightedIntensities[offsetA + r];
+        normA += weightedA * weightedA;
+        totalA += intensities[offsetA + r];
+      }
+    }
+
+    final double cosine = dot / (Math.sqrt(normB) * Math.sqrt(normA));
+    // the aligned list has b first
+    return new SpectralSimilarity(cosine, overlap, nB, nA, explainedB / totalB,
+        explainedA / totalA);
+  }
+
+  /**
+   * @param base      center of the tolerance window
+   * @param bestRank  the current best rank
+   * @return the lowest intensity rank of an unmatched signal of spectrum a within the tolerance of
+   * base or bestRank if there is no better signal
+   */
+  private int findMostIntenseUnmatched(int offsetA, int nA, double base, boolean[] matchedA,
+      int bestRank) {
+    final double tol = mzTol.getMzToleranceForMass(base);
+    final double lower = base - tol;
+    final double upper = base + tol;
+    final int end = offsetA + nA;
+    for (int i = lowerBound(mzSortedMzs, offsetA, end, lower); i < end && mzSortedMzs[i] <= upper;
+        i++) {
+      final int rank = mzSortedRanks[i];
+      if (rank < bestRank && !matchedA[rank]) {
+        bestRank = rank;
+      }
+    }
+    return bestRank;
+  }
+
+  private static int lowerBound(double[] values, int from, int to, double value) {
+    int low = from;
+    int high = to;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (values[mid] < value) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Receives edges from multiple threads
+   */
+  @FunctionalInterface
+  public interface EdgeConsumer {
+
+    /**
+     * @param a          lower spectrum index
+     * @param b          higher spectrum index
+     * @param similarity similarity that passed all thresholds
+     */
+    void accept(int a, int b, @NotNull SpectralSimilarity similarity);
+  }
+}
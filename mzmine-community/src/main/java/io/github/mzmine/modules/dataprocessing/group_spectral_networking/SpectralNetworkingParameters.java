@@ -68,7 +68,9 @@ public class SpectralNetworkingParameters extends SimpleParameterSet {
 
   public static final OptionalModuleParameter<NeutralLossSimilarityParameters> CHECK_NEUTRAL_LOSS_SIMILARITY = new OptionalModuleParameter<>(
       "Check MS2 neutral loss similarity",
-      "Generates a list of m/z differences and calculates cosine similarity",
+      "Generates a list of m/z differences and calculates cosine similarity. "
+      + "Slower as all pairs are then scored on data point lists instead of the faster packed "
+      + "modified cosine scoring.",
       new NeutralLossSimilarityParameters(), false);
 
   public static final OptionalParameter<DoubleParameter> MAX_MZ_DELTA = new OptionalParameter<>(
@@ -446,42 +446,51 @@ public class SpectralNetworkingTask extends AbstractTask {
     totalMaxPairs = Combinatorics.uniquePairs(filteredRows);
     logger.log(Level.INFO, MessageFormat.format("Checking MS2 similarity on {0} rows", numRows));
 
-    long comparedPairs = StreamUtils.processPairs(filteredRows, this::isCanceled, true, //
-        (first, later) -> maxMzDelta < later.row.getAverageMZ() - first.row.getAverageMZ(), //
-        pair -> {
-          // the actual processing
-          checkSpectralPair(pair.left(), pair.right(), mapSimilarity, mapNeutralLoss);
-          processedPairs.incrementAndGet();
-        });
-
-    // try map multi for all pairs
-//    long comparedPairs = IntStream.range(0, numRows - 1).boxed()
-//        .<Pair<FilteredRowData, FilteredRowData>>mapMulti((i, consumer) -> {
-//          if (isCanceled()) {
-//            return;
-//          }
-//          FilteredRowData a = filteredRows.get(i);
-//          var mzA = a.row().getAverageMZ();
-//          for (int j = i + 1; j < numRows; j++) {
-//            FilteredRowData b = filteredRows.get(j);
-//            double deltaMz = b.row().getAverageMZ() - mzA;
-//            if (deltaMz > maxMzDelta) {
-//              return; // out of range so stop searching
-//            }
-//            // within range so add to queue
-//            consumer.accept(Pair.of(a, b));
-//          }
-//        }).parallel().mapToLong(pair -> {
-//          // need to map to ensure thread is waiting for completion
-//          checkSpectralPair(pair.left(), pair.right(), mapSimilarity, mapNeutralLoss);
-//          // count comparisons
-//          processedPairs.incrementAndGet();
-//          return 1;
-//        }).sum();
+    final long comparedPairs;
+    if (checkNeutralLoss) {
+      // neutral loss similarity works on data point arrays
+      comparedPairs = StreamUtils.processPairs(filteredRows, this::isCanceled, true, //
+          (first, later) -> maxMzDelta < later.row.getAverageMZ() - first.row.getAverageMZ(), //
+          pair -> {
+            // the actual processing
+            checkSpectralPair(pair.left(), pair.right(), mapSimilarity, mapNeutralLoss);
+            processedPairs.incrementAndGet();
+          });
+    } else {
+      comparedPairs = checkRowsPackedModifiedCosine(mapSimilarity, filteredRows);
+    }
 
     logger.info("Spectral networking: Performed %d pairwise comparisons.".formatted(comparedPairs));
   }
 
+  /**
+   * Scores all pairs of rows on packed spectra in parallel blocks. Produces the same edges as
+   * {@link #checkR2RMs2Similarity} for {@link Type#MS2_COSINE_SIM}.
+   *
+   * @param mapSimilarity map for all MS2 cosine similarity edges
+   * @param filteredRows  rows sorted by m/z
+   * @return number of compared pairs
+   */
+  private long checkRowsPackedModifiedCosine(final R2RMap<RowsRelationship> mapSimilarity,
+      final List<FilteredRowData> filteredRows) {
+    final double[] precursorMzs = new double[filteredRows.size()];
+    final List<DataPoint[]> spectra = new ArrayList<>(filteredRows.size());
+    for (int i = 0; i < precursorMzs.length; i++) {
+      final FilteredRowData data = filteredRows.get(i);
+      precursorMzs[i] = data.row().getAverageMZ();
+      spectra.add(data.data());
+    }
+
+    var scorer = new PackedSpectralNetworkingScorer(precursorMzs, spectra, mzTolerance,
+        Weights.SQRT, minMatch, minCosineSimilarity, maxMzDelta);
+    return scorer.scoreAll(this::isCanceled, processedPairs::addAndGet, (a, b, similarity) -> {
+      final FeatureListRow rowA = filteredRows.get(a).row();
+      final FeatureListRow rowB = filteredRows.get(b).row();
+      mapSimilarity.add(rowA, rowB,
+          new R2RSpectralSimilarity(rowA, rowB, Type.MS2_COSINE_SIM, similarity));
+    });
+  }
+
   private boolean checkSpectralPair(final FilteredRowData a, final FilteredRowData b,
       final R2RMap<RowsRelationship> mapSimilarity, final R2RMap<RowsRelationship> mapNeutralLoss) {
     boolean result = checkR2RMs2Similarity(mapSimilarity, a.row(), b.row(), a.data(), b.data(),
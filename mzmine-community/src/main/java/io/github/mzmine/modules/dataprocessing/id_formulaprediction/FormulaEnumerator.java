@@ -0,0 +1,356 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.id_formulaprediction;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.modules.dataprocessing.id_formulaprediction.restrictions.elements.ElementalHeuristicChecker;
+import io.github.mzmine.modules.dataprocessing.id_formulaprediction.restrictions.rdbe.RDBERestrictionChecker;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.openscience.cdk.formula.MolecularFormulaRange;
+import org.openscience.cdk.interfaces.IChemObjectBuilder;
+import org.openscience.cdk.interfaces.IIsotope;
+import org.openscience.cdk.interfaces.IMolecularFormula;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+
+/**
+ * Enumerates all molecular formulas within a mass range on primitive element count vectors. The
+ * count range of each element is narrowed by the mass (and RDBE) that the remaining elements can
+ * still contribute, so only formulas within the mass window are visited. Elemental ratios and RDBE
+ * are checked on the counts, CDK formulas are only created for the remaining candidates by
+ * {@link #toFormula(int[])}.
+ * <p>
+ * Instances are immutable and can be shared between threads. Replaces the CDK
+ * MolecularFormulaGenerator followed by the {@link ElementalHeuristicChecker} and
+ * {@link RDBERestrictionChecker} in the formula prediction tasks.
+ */
+public final class FormulaEnumerator {
+
+  /**
+   * Tolerance when deriving count bounds from masses. The final mass check is exact.
+   */
+  private static final double COUNT_TOLERANCE = 1E-9;
+
+  private static final int C = 0, H = 1, N = 2, O = 3, P = 4, S = 5;
+  private static final String[] HEURISTIC_ELEMENTS = {"C", "H", "N", "O", "P", "S"};
+
+  private final IChemObjectBuilder builder = SilentChemObjectBuilder.getInstance();
+
+  // all arrays are sorted by isotope mass descending
+  private final IIsotope[] isotopes;
+  private final double[] masses;
+  private final int[] minCounts;
+  private final int[] maxCounts;
+  /**
+   * index in C, H, N, O, P, S or -1
+   */
+  private final int[] heuristicIndex;
+  /**
+   * valence - 2 for each element or 0 if the valence is unknown
+   */
+  private final int[] rdbeIncrement;
+  private final boolean[] unknownValence;
+
+  // bounds of the elements from index i to the end. Length is number of elements + 1
+  private final double[] restMinMass;
+  private final double[] restMaxMass;
+  private final int[] restMinRdbeSum;
+  private final int[] restMaxRdbeSum;
+  private final boolean[] restUnknownValence;
+
+  private final @Nullable Range<Double> rdbeRange;
+  private final boolean rdbeMustBeInteger;
+  /**
+   * RDBE limits on the sum of (valence - 2) * count, which is 2 * (RDBE - 1)
+   */
+  private final double minRdbeSum;
+  private final double maxRdbeSum;
+
+  private final boolean checkRatios;
+  private final boolean checkHC;
+  private final boolean checkNOPS;
+  private final boolean checkMultiple;
+
+  /**
+   * @param elements          element count ranges
+   * @param rdbeRange         RDBE restriction or null to skip the RDBE check
+   * @param rdbeMustBeInteger only accept integer RDBE values
+   * @param checkHC           H/C ratio heuristic of {@link ElementalHeuristicChecker}
+   * @param checkNOPS         NOPS/C ratio heuristic of {@link ElementalHeuristicChecker}
+   * @param checkMultiple     multiple element heuristic of {@link ElementalHeuristicChecker}
+   */
+  public FormulaEnumerator(@NotNull MolecularFormulaRange elements,
+      @Nullable Range<Double> rdbeRange, boolean rdbeMustBeInteger, boolean checkHC,
+      boolean checkNOPS, boolean checkMultiple) {
+    final List<IIsotope> sorted = new ArrayList<>();
+    for (IIsotope isotope : elements.isotopes()) {
+      if (isotope.getExactMass() == null || isotope.getExactMass() <= 0) {
+        throw new IllegalArgumentException(
+            "No exact mass defined for element " + isotope.getSymbol());
+      }
+      if (elements.getIsotopeCountMax(isotope) > 0) {
+        sorted.add(isotope);
+      }
+    }
+    sorted.sort(Comparator.comparingDouble(IIsotope::getExactMass).reversed());
+
+    final int n = sorted.size();
+    isotopes = sorted.toArray(IIsotope[]::new);
+    masses = new double[n];
+    minCounts = new int[n];
+    maxCounts = new int[n];
+    heuristicIndex = new int[n];
+    rdbeIncrement = new int[n];
+    unknownValence = new boolean[n];
+    for (int i = 0; i < n; i++) {
+      final IIsotope isotope = isotopes[i];
+      masses[i] = isotope.getExactMass();
+      minCounts[i] = Math.max(0, elements.getIsotopeCountMin(isotope));
+      maxCounts[i] = elements.getIsotopeCountMax(isotope);
+      heuristicIndex[i] = -1;
+      for (int h = 0; h < HEURISTIC_ELEMENTS.length; h++) {
+        if (HEURISTIC_ELEMENTS[h].equals(isotope.getSymbol())) {
+          heuristicIndex[i] = h;
+        }
+      }
+      final Integer valence = RDBERestrictionChecker.getValence(isotope.getSymbol());
+      unknownValence[i] = valence == null;
+      rdbeIncrement[i] = valence == null ? 0 : valence - 2;
+    }
+
+    restMinMass = new double[n + 1];
+    restMaxMass = new double[n + 1];
+    restMinRdbeSum = new int[n + 1];
+    restMaxRdbeSum = new int[n + 1];
+    restUnknownValence = new boolean[n + 1];
+    for (int i = n - 1; i >= 0; i--) {
+      restMinMass[i] = restMinMass[i + 1] + minCounts[i] * masses[i];
+      restMaxMass[i] = restMaxMass[i + 1] + maxCounts[i] * masses[i];
+      final int a = minCounts[i] * rdbeIncrement[i];
+      final int b = maxCounts[i] * rdbeIncrement[i];
+      restMinRdbeSum[i] = restMinRdbeSum[i + 1] + Math.min(a, b);
+      restMaxRdbeSum[i] = restMaxRdbeSum[i + 1] + Math.max(a, b);
+      restUnknownValence[i] = restUnknownValence[i + 1] || unknownValence[i];
+    }
+
+    this.rdbeRange = rdbeRange;
+    this.rdbeMustBeInteger = rdbeMustBeInteger;
+    minRdbeSum = rdbeRange != null && rdbeRange.hasLowerBound() ? 2 * (rdbeRange.lowerEndpoint()
+        - 1) : Double.NEGATIVE_INFINITY;
+    maxRdbeSum = rdbeRange != null && rdbeRange.hasUpperBound() ? 2 * (rdbeRange.upperEndpoint()
+        - 1) : Double.POSITIVE_INFINITY;
+
+    this.checkHC = checkHC;
+    this.checkNOPS = checkNOPS;
+    this.checkMultiple = checkMultiple;
+    checkRatios = checkHC || checkNOPS || checkMultiple;
+  }
+
+  /**
+   * @return the number of elements, which is the length of the count vectors
+   */
+  public int getNumberOfElements() {
+    return isotopes.length;
+  }
+
+  /**
+   * Visits all formulas within the mass range that pass the elemental ratio and RDBE checks.
+   *
+   * @param massRange  neutral mass range
+   * @param isCanceled stops the enumeration if true
+   * @param consumer   receives the element counts and the exact mass. The count array is reused
+   *                   and needs to be copied if it is kept.
+   */
+  public void forEachCandidate(@NotNull Range<Double> massRange,
+      @NotNull BooleanSupplier isCanceled, @NotNull CandidateConsumer consumer) {
+    forEachCandidate(massRange, isCanceled, null, consumer);
+  }
+
+  /**
+   * Visits all formulas within the mass range that pass the elemental ratio and RDBE checks.
+   *
+   * @param massRange  neutral mass range
+   * @param isCanceled stops the enumeration if true
+   * @param progress   receives the finished fraction of the enumeration or null
+   * @param consumer   receives the element counts and the exact mass. The count array is reused
+   *                   and needs to be copied if it is kept.
+   */
+  public void forEachCandidate(@NotNull Range<Double> massRange,
+      @NotNull BooleanSupplier isCanceled, @Nullable DoubleConsumer progress,
+      @NotNull CandidateConsumer consumer) {
+    if (isotopes.length == 0) {
+      return;
+    }
+    final Search search = new Search(massRange.lowerEndpoint(), massRange.upperEndpoint(),
+        new int[isotopes.length], new int[HEURISTIC_ELEMENTS.length], isCanceled, progress,
+        consumer);
+    enumerate(search, 0, 0d, 0, false);
+    if (progress != null && !isCanceled.getAsBoolean()) {
+      progress.accept(1d);
+    }
+  }
+
+  /**
+   * Same as {@link #forEachCandidate(Range, BooleanSupplier, CandidateConsumer)} but creates a CDK
+   * formula for each candidate.
+   */
+  public void forEachFormula(@NotNull Range<Double> massRange,
+      @NotNull BooleanSupplier isCanceled, @NotNull Consumer<IMolecularFormula> consumer) {
+    forEachFormula(massRange, isCanceled, null, consumer);
+  }
+
+  /**
+   * Same as {@link #forEachCandidate(Range, BooleanSupplier, DoubleConsumer, CandidateConsumer)}
+   * but creates a CDK formula for each candidate.
+   */
+  public void forEachFormula(@NotNull Range<Double> massRange,
+      @NotNull BooleanSupplier isCanceled, @Nullable DoubleConsumer progress,
+      @NotNull Consumer<IMolecularFormula> consumer) {
+    forEachCandidate(massRange, isCanceled, progress,
+        (counts, mass) -> consumer.accept(toFormula(counts)));
+  }
+
+  /**
+   * @param counts element counts as passed to the {@link CandidateConsumer}
+   * @return a new CDK formula with all elements with a count > 0
+   */
+  public IMolecularFormula toFormula(int[] counts) {
+    final IMolecularFormula formula = builder.newInstance(IMolecularFormula.class);
+    for (int i = 0; i < isotopes.length; i++) {
+      if (counts[i] > 0) {
+        formula.addIsotope(isotopes[i], counts[i]);
+      }
+    }
+    return formula;
+  }
+
+  /**
+   * @param level             current element index
+   * @param mass              mass of all elements before level
+   * @param rdbeSum           sum of (valence - 2) * count of all elements before level
+   * @param hasUnknownValence an element without valence was added, RDBE is not checked
+   */
+  private void enumerate(Search search, int level, double mass, int rdbeSum,
+      boolean hasUnknownValence) {
+    if (level == isotopes.length) {
+      checkCandidate(search, mass, rdbeSum, hasUnknownValence);
+      return;
+    }
+    if (search.isCanceled.getAsBoolean()) {
+      return;
+    }
+
+    final double elementMass = masses[level];
+    // narrow the count range to what the remaining elements can still fill up to the mass range
+    final double lowerCount =
+        (search.minMass - mass - restMaxMass[level + 1]) / elementMass - COUNT_TOLERANCE;
+    final double upperCount =
+        (search.maxMass - mass - restMinMass[level + 1]) / elementMass + COUNT_TOLERANCE;
+    final int from = (int) Math.max(minCounts[level], Math.ceil(lowerCount));
+    final int to = (int) Math.min(maxCounts[level], Math.floor(upperCount));
+
+    // RDBE is only checked if all elements have a known valence
+    final boolean pruneRdbe = rdbeRange != null && !hasUnknownValence
+        && !restUnknownValence[level];
+
+    for (int count = from; count <= to; count++) {
+      if (level == 0 && search.progress != null) {
+        search.progress.accept((count - from) / (double) (to - from + 1));
+      }
+
+      final int nextRdbeSum = rdbeSum + count * rdbeIncrement[level];
+      if (pruneRdbe && (nextRdbeSum + restMinRdbeSum[level + 1] > maxRdbeSum
+          || nextRdbeSum + restMaxRdbeSum[level + 1] < minRdbeSum)) {
+        continue;
+      }
+
+      search.counts[level] = count;
+      enumerate(search, level + 1, mass + count * elementMass, nextRdbeSum,
+          hasUnknownValence || (count > 0 && unknownValence[level]));
+    }
+    search.counts[level] = 0;
+  }
+
+  private void checkCandidate(Search search, double mass, int rdbeSum,
+      boolean hasUnknownValence) {
+    if (mass < search.minMass || mass > search.maxMass) {
+      return;
+    }
+
+    final int[] counts = search.counts;
+    if (checkRatios) {
+      final int[] elements = search.heuristicCounts;
+      Arrays.fill(elements, 0);
+      for (int i = 0; i < counts.length; i++) {
+        if (heuristicIndex[i] != -1) {
+          elements[heuristicIndex[i]] += counts[i];
+        }
+      }
+      if (!ElementalHeuristicChecker.checkFormula(elements[C], elements[H], elements[N],
+          elements[O], elements[P], elements[S], checkHC, checkNOPS, checkMultiple)) {
+        return;
+      }
+    }
+
+    if (rdbeRange != null && !hasUnknownValence) {
+      final double rdbe = rdbeSum / 2d + 1d;
+      if (!RDBERestrictionChecker.checkRDBE(rdbe, rdbeRange, rdbeMustBeInteger)) {
+        return;
+      }
+    }
+
+    search.consumer.accept(counts, mass);
+  }
+
+  /**
+   * Receives enumerated formulas as element counts in the order of this enumerator.
+   */
+  @FunctionalInterface
+  public interface CandidateConsumer {
+
+    /**
+     * @param counts element counts, reused for the next candidate
+     * @param mass   exact neutral mass of the formula
+     */
+    void accept(int[] counts, double mass);
+  }
+
+  /**
+   * State of one enumeration
+   */
+  private record Search(double minMass, double maxMass, int[] counts, int[] heuristicCounts,
+                        BooleanSupplier isCanceled, @Nullable DoubleConsumer progress,
+                        CandidateConsumer consumer) {
+
+  }
+}
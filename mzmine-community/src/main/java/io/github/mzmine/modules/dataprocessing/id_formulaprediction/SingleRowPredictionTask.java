@@ -37,9 +37,7 @@ import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
 import io.github.mzmine.javafx.concurrent.threading.FxThread;
 import io.github.mzmine.main.MZmineCore;
-import io.github.mzmine.modules.dataprocessing.id_formulaprediction.restrictions.elements.ElementalHeuristicChecker;
 import io.github.mzmine.modules.dataprocessing.id_formulaprediction.restrictions.elements.ElementalHeuristicParameters;
-import io.github.mzmine.modules.dataprocessing.id_formulaprediction.restrictions.rdbe.RDBERestrictionChecker;
 import io.github.mzmine.modules.dataprocessing.id_formulaprediction.restrictions.rdbe.RDBERestrictionParameters;
 import io.github.mzmine.modules.tools.isotopepatternscore.IsotopePatternScoreCalculator;
 import io.github.mzmine.modules.tools.isotopepatternscore.IsotopePatternScoreParameters;
@@ -57,11 +55,8 @@ import java.util.Map;
 import java.util.logging.Logger;
 import javafx.application.Platform;
 import org.jetbrains.annotations.NotNull;
-import org.openscience.cdk.formula.MolecularFormulaGenerator;
 import org.openscience.cdk.formula.MolecularFormulaRange;
-import org.openscience.cdk.interfaces.IChemObjectBuilder;
 import org.openscience.cdk.interfaces.IMolecularFormula;
-import org.openscience.cdk.silent.SilentChemObjectBuilder;
 
 public class SingleRowPredictionTask extends AbstractTask {
 
@@ -90,7 +85,7 @@ public class SingleRowPredictionTask extends AbstractTask {
   private Double msmsMinScore;
   private int topNmsmsSignals;
   private MZTolerance msmsMzTolerance;
-  private MolecularFormulaGenerator generator;
+  private volatile double finishedPercentage = 0;
   private int foundFormulas = 0;
 
 
@@ -156,10 +151,7 @@ public class SingleRowPredictionTask extends AbstractTask {
 
   @Override
   public double getFinishedPercentage() {
-    if (generator == null) {
-      return 0;
-    }
-    return generator.getFinishedPercentage();
+    return finishedPercentage;
   }
 
   @Override
@@ -192,23 +184,13 @@ public class SingleRowPredictionTask extends AbstractTask {
 
     try {
 
-      IChemObjectBuilder builder = SilentChemObjectBuilder.getInstance();
-
-      generator = new MolecularFormulaGenerator(builder, massRange.lowerEndpoint(),
-          massRange.upperEndpoint(), elementCounts);
-
-      IMolecularFormula cdkFormula;
-      while ((cdkFormula = generator.getNextFormula()) != null) {
-
-        if (isCanceled()) {
-          return;
-        }
-
-        // Mass is ok, so test other constraints
-        checkConstraints(cdkFormula);
-
+      final FormulaEnumerator formulaEnumerator = new FormulaEnumerator(elementCounts,
+          checkRDBE ? rdbeRange : null, checkRDBE && rdbeIsInteger, checkRatios && checkHCRatio,
+          checkRatios && checkNOPSRatio, checkRatios && checkMultipleRatios);
 
-      }
+      // Mass, elemental ratios and RDBE are ok, so test other constraints
+      formulaEnumerator.forEachFormula(massRange, this::isCanceled,
+          progress -> finishedPercentage = progress, this::checkConstraints);
 
       if (isCanceled()) {
         return;
@@ -237,25 +219,6 @@ public class SingleRowPredictionTask extends AbstractTask {
 
   private void checkConstraints(IMolecularFormula cdkFormula) {
 
-    // Check elemental ratios
-    if (checkRatios) {
-      boolean check = ElementalHeuristicChecker.checkFormula(cdkFormula, checkHCRatio,
-          checkNOPSRatio, checkMultipleRatios);
-      if (!check) {
-        return;
-      }
-    }
-
-    Double rdbeValue = RDBERestrictionChecker.calculateRDBE(cdkFormula);
-
-    // Check RDBE condition
-    if (checkRDBE && (rdbeValue != null)) {
-      boolean check = RDBERestrictionChecker.checkRDBE(rdbeValue, rdbeRange, rdbeIsInteger);
-      if (!check) {
-        return;
-      }
-    }
-
     // Calculate isotope similarity score
     final IsotopePattern detectedPattern = peakListRow.getBestIsotopePattern();
 
@@ -323,15 +286,4 @@ public class SingleRowPredictionTask extends AbstractTask {
 
   }
 
-  @Override
-  public void cancel() {
-    super.cancel();
-
-    // We need to cancel the formula generator, because searching for next
-    // candidate formula may take a looong time
-    if (generator != null) {
-      generator.cancel();
-    }
-  }
-
 }
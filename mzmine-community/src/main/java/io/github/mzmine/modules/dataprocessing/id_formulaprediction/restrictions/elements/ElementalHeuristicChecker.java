@@ -33,7 +33,7 @@ public class ElementalHeuristicChecker {
   public static boolean checkFormula(IMolecularFormula formula, boolean checkHC, boolean checkNOPS,
       boolean checkMultiple) {
 
-    double eH = 0, eC = 0, eN = 0, eO = 0, eP = 0, eS = 0;
+    int eH = 0, eC = 0, eN = 0, eO = 0, eP = 0, eS = 0;
     for (IIsotope isotope : formula.isotopes()) {
       if (isotope.getSymbol().equals("C")) {
         eC += formula.getIsotopeCount(isotope);
@@ -55,23 +55,33 @@ public class ElementalHeuristicChecker {
       }
     }
 
+    return checkFormula(eC, eH, eN, eO, eP, eS, checkHC, checkNOPS, checkMultiple);
+  }
+
+  /**
+   * Checks the elemental ratios on plain element counts, e.g., during formula enumeration before a
+   * CDK formula is created.
+   */
+  public static boolean checkFormula(int eC, int eH, int eN, int eO, int eP, int eS,
+      boolean checkHC, boolean checkNOPS, boolean checkMultiple) {
+
     // If there is no carbon, consider the formula OK
     if (eC == 0) {
       return true;
     }
 
     if (checkHC) {
-      double rHC = eH / eC;
+      double rHC = (double) eH / eC;
       if ((rHC < 0.1) || (rHC > 6)) {
         return false;
       }
     }
 
     if (checkNOPS) {
-      double rPC = eP / eC;
-      double rNC = eN / eC;
-      double rOC = eO / eC;
-      double rSC = eS / eC;
+      double rPC = (double) eP / eC;
+      double rNC = (double) eN / eC;
+      double rOC = (double) eO / eC;
+      double rSC = (double) eS / eC;
       if ((rNC > 4) || (rOC > 3) || (rPC > 2) || (rSC > 3)) {
         return false;
       }
@@ -28,6 +28,7 @@ package io.github.mzmine.modules.dataprocessing.id_formulaprediction.restriction
 import com.google.common.collect.Range;
 import java.util.HashMap;
 import java.util.Map;
+import org.jetbrains.annotations.Nullable;
 import org.openscience.cdk.interfaces.IIsotope;
 import org.openscience.cdk.interfaces.IMolecularFormula;
 
@@ -68,24 +69,9 @@ public class RDBERestrictionChecker {
 
     double sum = 0;
 
-    Map<String, Integer> valences2 = new HashMap<String, Integer>();
-    valences2.put("H", 1);
-    valences2.put("C", 4);
-    valences2.put("N", 3);
-    valences2.put("O", 2);
-    valences2.put("Si", 4);
-    valences2.put("P", 3);
-    valences2.put("S", 2);
-    valences2.put("F", 1);
-    valences2.put("Cl", 1);
-    valences2.put("Br", 1);
-    valences2.put("I", 1);
-    valences2.put("Na", 1);
-    valences2.put("K", 1);
-
     for (IIsotope isotope : formula.isotopes()) {
 
-      Integer valence = valences2.get(isotope.getSymbol());
+      Integer valence = valences.get(isotope.getSymbol());
       if (valence == null) {
         return null;
       }
@@ -98,6 +84,15 @@ public class RDBERestrictionChecker {
     return sum;
   }
 
+  /**
+   * @return the ground valence of an element or null if the element is not covered by the RDBE
+   * calculation
+   */
+  @Nullable
+  public static Integer getValence(String symbol) {
+    return valences.get(symbol);
+  }
+
   public static boolean checkRDBE(double rdbeValue, Range<Double> rdbeRange,
       boolean mustBeInteger) {
     if ((mustBeInteger) && (Math.floor(rdbeValue) != rdbeValue)) {
@@ -34,12 +34,11 @@ import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
 import io.github.mzmine.datamodel.features.types.DataTypes;
-import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.datamodel.identities.MolecularFormulaIdentity;
 import io.github.mzmine.modules.dataprocessing.id_formula_sort.FormulaSortParameters;
+import io.github.mzmine.modules.dataprocessing.id_formulaprediction.FormulaEnumerator;
 import io.github.mzmine.modules.dataprocessing.id_formulaprediction.ResultFormula;
-import io.github.mzmine.modules.dataprocessing.id_formulaprediction.restrictions.elements.ElementalHeuristicChecker;
 import io.github.mzmine.modules.dataprocessing.id_formulaprediction.restrictions.elements.ElementalHeuristicParameters;
-import io.github.mzmine.modules.dataprocessing.id_formulaprediction.restrictions.rdbe.RDBERestrictionChecker;
 import io.github.mzmine.modules.dataprocessing.id_formulaprediction.restrictions.rdbe.RDBERestrictionParameters;
 import io.github.mzmine.modules.tools.isotopepatternscore.IsotopePatternScoreCalculator;
 import io.github.mzmine.modules.tools.isotopepatternscore.IsotopePatternScoreParameters;
@@ -54,15 +53,16 @@ import io.github.mzmine.taskcontrol.TaskStatus;
 import io.github.mzmine.util.FormulaUtils;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
-import org.openscience.cdk.formula.MolecularFormulaGenerator;
 import org.openscience.cdk.formula.MolecularFormulaRange;
-import org.openscience.cdk.interfaces.IChemObjectBuilder;
 import org.openscience.cdk.interfaces.IMolecularFormula;
-import org.openscience.cdk.silent.SilentChemObjectBuilder;
 
 public class FormulaPredictionFeatureListTask extends AbstractTask {
 
@@ -85,10 +85,10 @@ public class FormulaPredictionFeatureListTask extends AbstractTask {
   private float sortPPMFactor;
   private float sortMSMSFactor;
   private float sortIsotopeFactor;
-  private MolecularFormulaGenerator generator;
-  private String message;
-  private int totalRows, finishedRows;
-  private List<ResultFormula> resultingFormulas;
+  private final AtomicInteger finishedRows = new AtomicInteger(0);
+  private final FormulaEnumerator formulaEnumerator;
+  private final String message;
+  private int totalRows;
   private Range<Double> rdbeRange;
   private Boolean rdbeIsInteger;
   private Boolean checkHCRatio;
@@ -175,7 +175,11 @@ public class FormulaPredictionFeatureListTask extends AbstractTask {
       sortIsotopeFactor = sortParam.getValue(FormulaSortParameters.ISOTOPE_SCORE_WEIGHT)
           .floatValue();
     }
-    message = "Formula Prediction";
+    formulaEnumerator = new FormulaEnumerator(elementCounts, checkRDBE ? rdbeRange : null,
+        checkRDBE && rdbeIsInteger, checkRatios && checkHCRatio, checkRatios && checkNOPSRatio,
+        checkRatios && checkMultipleRatios);
+
+    message = "Formula prediction for " + featureList.getName();
     this.parameters = parameters;
   }
 
@@ -184,7 +188,7 @@ public class FormulaPredictionFeatureListTask extends AbstractTask {
     if (totalRows == 0) {
       return 0.0;
     }
-    return (double) finishedRows / (double) totalRows;
+    return finishedRows.get() / (double) totalRows;
   }
 
   @Override
@@ -202,95 +206,119 @@ public class FormulaPredictionFeatureListTask extends AbstractTask {
     featureList.addRowType(DataTypes.get(
         io.github.mzmine.datamodel.features.types.annotations.formula.FormulaListType.class));
 
-    for (FeatureListRow row : featureList.getRows()) {
-
-      if (row.getPeakIdentities().size() > 0) {
-        continue;
+    // rows are independent, enumerate and score their formulas in parallel
+    featureList.getRows().parallelStream().forEach(row -> {
+      if (isStopped()) {
+        return;
+      }
+      if (row.getPeakIdentities().isEmpty()) {
+        predictFormulas(row);
       }
-      this.resultingFormulas = new ArrayList<>();
+      finishedRows.incrementAndGet();
+    });
 
-      double searchedMass = (row.getAverageMZ() - ionType.getAddedMass()) * charge;
+    if (isStopped()) {
+      return;
+    }
 
-      message = "Formula prediction for " + MZmineCore.getConfiguration().getMZFormat()
-          .format(searchedMass);
+    featureList.getAppliedMethods().add(
+        new SimpleFeatureListAppliedMethod(FormulaPredictionFeatureListModule.class, parameters,
+            getModuleCallDate()));
 
-      Range<Double> massRange = mzTolerance.getToleranceRange(searchedMass);
+    logger.finest("Finished formula search for all the features");
 
-      IChemObjectBuilder builder = SilentChemObjectBuilder.getInstance();
-      generator = new MolecularFormulaGenerator(builder, massRange.lowerEndpoint(),
-          massRange.upperEndpoint(), elementCounts);
+    setStatus(TaskStatus.FINISHED);
 
-      IMolecularFormula cdkFormula;
+  }
 
-      // create a map to store ResultFormula and relative mass deviation
-      // for sorting
-      while ((cdkFormula = generator.getNextFormula()) != null) {
-        // Mass is ok, so test other constraints
-        ResultFormula molf = checkConstraints(cdkFormula, row, searchedMass);
+  private void predictFormulas(FeatureListRow row) {
+    final double searchedMass = (row.getAverageMZ() - ionType.getAddedMass()) * charge;
 
-        if (isCanceled() || getStatus().equals(TaskStatus.ERROR)) {
-          return;
-        }
+    final Range<Double> massRange = mzTolerance.getToleranceRange(searchedMass);
 
+    final List<ResultFormula> resultingFormulas;
+    if ((checkIsotopes && row.getBestIsotopePattern() != null) || (checkMSMS
+        && row.getMostIntenseFragmentScan() != null)) {
+      resultingFormulas = new ArrayList<>();
+      formulaEnumerator.forEachFormula(massRange, this::isStopped, cdkFormula -> {
+        // Mass, elemental ratios and RDBE are ok, so test other constraints
+        ResultFormula molf = checkConstraints(cdkFormula, row, searchedMass);
         if (molf != null) {
           resultingFormulas.add(molf);
         }
-      }
+      });
+    } else {
+      resultingFormulas = predictBestByMass(massRange, searchedMass);
+    }
 
-      if (isCanceled()) {
-        return;
-      }
+    if (isStopped()) {
+      return;
+    }
 
+    // Add the new formula entry top results
+    if (!resultingFormulas.isEmpty()) {
+      FormulaUtils.sortFormulaList(resultingFormulas, sortPPMFactor, sortIsotopeFactor,
+          sortMSMSFactor);
+      row.setFormulas(resultingFormulas.subList(0,
+          Math.min(resultingFormulas.size(), maxBestFormulasPerFeature)));
+    }
+  }
 
-      // Add the new formula entry top results
-      if (!resultingFormulas.isEmpty()) {
-        FormulaUtils.sortFormulaList(resultingFormulas, sortPPMFactor, sortIsotopeFactor,
-            sortMSMSFactor);
-        row.setFormulas(resultingFormulas.subList(0,
-            Math.min(resultingFormulas.size(), maxBestFormulasPerFeature)));
-      }
+  /**
+   * Without isotope and MS/MS scores, formulas are only ranked by their mass deviation. Keep the
+   * top primitive candidates with the same score in a bounded heap and only create CDK formulas
+   * for them.
+   */
+  private List<ResultFormula> predictBestByMass(Range<Double> massRange, double searchedMass) {
+    record Candidate(int[] counts, float score, long index) {
 
-      if (isCanceled()) {
-        return;
-      }
-      finishedRows++;
     }
 
-    if (isCanceled()) {
-      return;
+    if (maxBestFormulasPerFeature <= 0) {
+      return new ArrayList<>();
     }
 
-    featureList.getAppliedMethods().add(
-        new SimpleFeatureListAppliedMethod(FormulaPredictionFeatureListModule.class, parameters,
-            getModuleCallDate()));
-
-    logger.finest("Finished formula search for all the features");
+    // min-heap with the worst kept candidate at the head. On equal scores the candidate that was
+    // enumerated first is better, same order as a stable sort of all candidates
+    final Comparator<Candidate> worstFirst = Comparator.comparingDouble(Candidate::score)
+        .thenComparing(Comparator.comparingLong(Candidate::index).reversed());
+    final PriorityQueue<Candidate> best = new PriorityQueue<>(maxBestFormulasPerFeature,
+        worstFirst);
+    final long[] nextIndex = {0};
+    formulaEnumerator.forEachCandidate(massRange, this::isStopped, (counts, exactMass) -> {
+      final float score = MolecularFormulaIdentity.getPPMScore(exactMass, searchedMass,
+          sortPPMFactor);
+      final long index = nextIndex[0]++;
+      if (best.size() < maxBestFormulasPerFeature) {
+        best.add(new Candidate(counts.clone(), score, index));
+      } else if (score > best.peek().score()) {
+        best.poll();
+        best.add(new Candidate(counts.clone(), score, index));
+      }
+    });
 
-    setStatus(TaskStatus.FINISHED);
+    // best to position 0
+    final ResultFormula[] resultingFormulas = new ResultFormula[best.size()];
+    for (int i = resultingFormulas.length - 1; i >= 0; i--) {
+      resultingFormulas[i] = new ResultFormula(formulaEnumerator.toFormula(best.poll().counts()),
+          null, null, null, null, searchedMass);
+    }
+    return new ArrayList<>(Arrays.asList(resultingFormulas));
+  }
 
+  private boolean isStopped() {
+    return isCanceled() || getStatus() == TaskStatus.ERROR;
   }
 
   /**
+   * Elemental ratios and RDBE are already checked by the {@link FormulaEnumerator}
+   *
    * @param cdkFormula
    * @return null if molecular formula does not match requirements
    */
   private ResultFormula checkConstraints(IMolecularFormula cdkFormula, FeatureListRow peakListRow,
       double searchedMass) {
 
-    // Check elemental ratios
-    if (checkRatios && !ElementalHeuristicChecker.checkFormula(cdkFormula, checkHCRatio,
-        checkNOPSRatio, checkMultipleRatios)) {
-      return null;
-    }
-
-    Double rdbeValue = RDBERestrictionChecker.calculateRDBE(cdkFormula);
-
-    // Check RDBE condition
-    if (checkRDBE && (rdbeValue != null) && !RDBERestrictionChecker.checkRDBE(rdbeValue, rdbeRange,
-        rdbeIsInteger)) {
-      return null;
-    }
-
     // Calculate isotope similarity score
     IsotopePattern detectedPattern = peakListRow.getBestIsotopePattern();
     IsotopePattern predictedIsotopePattern = null;
@@ -351,16 +379,4 @@ public class FormulaPredictionFeatureListTask extends AbstractTask {
     return new ResultFormula(cdkFormula, predictedIsotopePattern, isotopeScore, msmsScore,
         msmsAnnotations, searchedMass);
   }
-
-  @Override
-  public void cancel() {
-    super.cancel();
-
-    // We need to cancel the formula generator, because searching for next
-    // candidate formula may take a looong time
-    if (generator != null) {
-      generator.cancel();
-    }
-
-  }
 }
@@ -39,10 +39,9 @@ import io.github.mzmine.datamodel.identities.iontype.IonNetworkLogic;
 import io.github.mzmine.datamodel.identities.iontype.IonType;
 import io.github.mzmine.modules.dataprocessing.id_formula_sort.FormulaSortParameters;
 import io.github.mzmine.modules.dataprocessing.id_formula_sort.FormulaSortTask;
+import io.github.mzmine.modules.dataprocessing.id_formulaprediction.FormulaEnumerator;
 import io.github.mzmine.modules.dataprocessing.id_formulaprediction.ResultFormula;
-import io.github.mzmine.modules.dataprocessing.id_formulaprediction.restrictions.elements.ElementalHeuristicChecker;
 import io.github.mzmine.modules.dataprocessing.id_formulaprediction.restrictions.elements.ElementalHeuristicParameters;
-import io.github.mzmine.modules.dataprocessing.id_formulaprediction.restrictions.rdbe.RDBERestrictionChecker;
 import io.github.mzmine.modules.dataprocessing.id_formulaprediction.restrictions.rdbe.RDBERestrictionParameters;
 import io.github.mzmine.modules.dataprocessing.id_ion_identity_networking.formula.createavgformulas.CreateAvgNetworkFormulasTask;
 import io.github.mzmine.modules.tools.isotopepatternscore.IsotopePatternScoreCalculator;
@@ -69,11 +68,8 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import org.openscience.cdk.formula.MolecularFormulaGenerator;
 import org.openscience.cdk.formula.MolecularFormulaRange;
-import org.openscience.cdk.interfaces.IChemObjectBuilder;
 import org.openscience.cdk.interfaces.IMolecularFormula;
-import org.openscience.cdk.silent.SilentChemObjectBuilder;
 import org.openscience.cdk.tools.manipulator.MolecularFormulaManipulator;
 
 public class FormulaPredictionIonNetworkTask extends AbstractTask {
@@ -98,7 +94,7 @@ public class FormulaPredictionIonNetworkTask extends AbstractTask {
   private final CreateAvgNetworkFormulasTask netFormulaMerger;
   private final OptionForValues handleHigherMz;
   private final HashMap<IMolecularFormula, IsotopePattern> predictedPattern = new HashMap<>(1000);
-  private MolecularFormulaGenerator generator;
+  private final FormulaEnumerator formulaEnumerator;
   private String message;
   private int totalRows;
   private FormulaSortTask sorter;
@@ -179,6 +175,10 @@ public class FormulaPredictionIonNetworkTask extends AbstractTask {
       checkMultipleRatios = elementRatiosParam.getValue(ElementalHeuristicParameters.checkMultiple);
       checkNOPSRatio = elementRatiosParam.getValue(ElementalHeuristicParameters.checkNOPS);
     }
+
+    formulaEnumerator = new FormulaEnumerator(elementCounts, checkRDBE ? rdbeRange : null,
+        checkRDBE && rdbeIsInteger, checkRatios && checkHCRatio, checkRatios && checkNOPSRatio,
+        checkRatios && checkMultipleRatios);
   }
 
   @Override
@@ -263,29 +263,24 @@ public class FormulaPredictionIonNetworkTask extends AbstractTask {
 
   private List<ResultFormula> predictFormulas(FeatureListRow row, IonType ion) {
     List<ResultFormula> resultingFormulas = new ArrayList<>();
-    double searchedMass = ion.getMass(row.getAverageMZ());
+    final double mass = ion.getMass(row.getAverageMZ());
     // correct by ppm offset
-    searchedMass += searchedMass * ppmOffset / 1E6;
+    final double searchedMass = mass + mass * ppmOffset / 1E6;
 
     Range<Double> massRange = mzTolerance.getToleranceRange(searchedMass);
 
-    IChemObjectBuilder builder = SilentChemObjectBuilder.getInstance();
-    generator = new MolecularFormulaGenerator(builder, massRange.lowerEndpoint(),
-        massRange.upperEndpoint(), elementCounts);
-
-    IMolecularFormula cdkFormula;
-    while ((cdkFormula = generator.getNextFormula()) != null) {
+    formulaEnumerator.forEachFormula(massRange, this::isCanceled, cdkFormula -> {
       try {
         // ionized formula
         IMolecularFormula cdkFormulaIon = ion.addToFormula(cdkFormula);
 
-        // Mass is ok, so test other constraints
+        // Mass, elemental ratios and RDBE are ok, so test other constraints
         checkConstraints(resultingFormulas, cdkFormula, cdkFormulaIon, row, ion, searchedMass);
       } catch (CloneNotSupportedException e) {
         logger.log(Level.SEVERE, "Cannot copy cdk formula", e);
         throw new MSDKRuntimeException(e);
       }
-    }
+    });
 
     return resultingFormulas;
   }
@@ -312,12 +307,7 @@ public class FormulaPredictionIonNetworkTask extends AbstractTask {
 
     Range<Double> massRange = mzTolerance.getToleranceRange(searchedMass);
 
-    IChemObjectBuilder builder = SilentChemObjectBuilder.getInstance();
-    generator = new MolecularFormulaGenerator(builder, massRange.lowerEndpoint(),
-        massRange.upperEndpoint(), elementCounts);
-
-    IMolecularFormula cdkFormula;
-    while ((cdkFormula = generator.getNextFormula()) != null) {
+    formulaEnumerator.forEachFormula(massRange, this::isCanceled, cdkFormula -> {
       for (int i = 0; i < net.size(); i++) {
         try {
           final FeatureListRow row = entries.get(i).getKey();
@@ -332,14 +322,14 @@ public class FormulaPredictionIonNetworkTask extends AbstractTask {
           double rowMass = ion.getMass(row.getAverageMZ());
           rowMass += rowMass * ppmOffset / 1E6;
 
-          // Mass is ok, so test other constraints
+          // Mass, elemental ratios and RDBE are ok, so test other constraints
           checkConstraints(resultingFormulas[i], cdkFormula, cdkFormulaIon, row, ion, rowMass);
         } catch (CloneNotSupportedException e) {
           logger.log(Level.SEVERE, "Cannot copy cdk formula", e);
           throw new MSDKRuntimeException(e);
         }
       }
-    }
+    });
 
     for (int i = 0; i < net.size(); i++) {
       final FeatureListRow row = entries.get(i).getKey();
@@ -364,24 +354,6 @@ public class FormulaPredictionIonNetworkTask extends AbstractTask {
       FeatureListRow featureListRow, IonType ionType, double searchedMass) {
     int charge = ionType.getCharge();
 
-    // Check elemental ratios
-    if (checkRatios) {
-      boolean check = ElementalHeuristicChecker.checkFormula(cdkFormulaNeutralM, checkHCRatio,
-          checkNOPSRatio, checkMultipleRatios);
-      if (!check) {
-        return;
-      }
-    }
-
-    Double rdbeValue = RDBERestrictionChecker.calculateRDBE(cdkFormulaNeutralM);
-    // Check RDBE condition
-    if (checkRDBE && (rdbeValue != null)) {
-      boolean check = RDBERestrictionChecker.checkRDBE(rdbeValue, rdbeRange, rdbeIsInteger);
-      if (!check) {
-        return;
-      }
-    }
-
     // Calculate isotope similarity score
     IsotopePattern detectedPattern = featureListRow.getBestIsotopePattern();
     IsotopePattern predictedIsotopePattern = null;
@@ -446,16 +418,4 @@ public class FormulaPredictionIonNetworkTask extends AbstractTask {
     // Add the new formula entry
     resultingFormulas.add(resultEntry);
   }
-
-  @Override
-  public void cancel() {
-    super.cancel();
-
-    // We need to cancel the formula generator, because searching for next
-    // candidate formula may take a looong time
-    if (generator != null) {
-      generator.cancel();
-    }
-
-  }
 }
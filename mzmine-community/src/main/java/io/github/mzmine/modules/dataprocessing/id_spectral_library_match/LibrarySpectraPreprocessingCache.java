@@ -0,0 +1,307 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.id_spectral_library_match;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.modules.visualization.spectra.simplespectra.datapointprocessing.isotopes.MassListDeisotoper;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.DataPointUtils;
+import io.github.mzmine.util.scans.ScanAlignment;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibrary;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibraryEntry;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.function.Predicate;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Caches the filtered peak arrays of library entries so that deisotoping and precursor removal
+ * are only done once per library entry and parameter set - and not for every row and scan that is
+ * matched against the entry. The cache is split into stripes that are locked independently so that
+ * parallel matching threads do not serialize on a single lock. Each stripe evicts its entries in
+ * least recently used order when its share of the memory budget is exceeded.
+ */
+public final class LibrarySpectraPreprocessingCache {
+
+  // array objects and map entry
+  private static final long ENTRY_OVERHEAD_BYTES = 128;
+  private static final LibrarySpectraPreprocessingCache INSTANCE = //
+      new LibrarySpectraPreprocessingCache(Runtime.getRuntime().maxMemory() / 10,
+          Runtime.getRuntime().availableProcessors() * 4);
+
+  private final Stripe[] stripes;
+
+  /**
+   * @param maxBytes memory budget shared equally by all stripes
+   * @param stripes  number of independently locked stripes, rounded up to a power of two
+   */
+  LibrarySpectraPreprocessingCache(long maxBytes, int stripes) {
+    final int n = stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+    this.stripes = new Stripe[n];
+    for (int i = 0; i < n; i++) {
+      this.stripes[i] = new Stripe(Math.max(maxBytes / n, 1));
+    }
+  }
+
+  public static LibrarySpectraPreprocessingCache getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * @return the cached spectrum or the newly preprocessed spectrum that is then added to the cache.
+   * Spectra without any preprocessing are not cached.
+   */
+  public @NotNull PreprocessedSpectrum getOrCompute(@NotNull Preprocessing preprocessing,
+      @NotNull SpectralLibraryEntry entry) {
+    if (!preprocessing.changesSpectrum(entry)) {
+      return preprocessing.apply(entry);
+    }
+    final Key key = new Key(preprocessing, entry);
+    final Stripe stripe = stripeFor(key);
+    final PreprocessedSpectrum cached = stripe.get(key);
+    if (cached != null) {
+      return cached;
+    }
+    // compute outside of lock - in rare cases this is done twice
+    final PreprocessedSpectrum spectrum = preprocessing.apply(entry);
+    stripe.put(key, spectrum);
+    return spectrum;
+  }
+
+  private Stripe stripeFor(Key key) {
+    final int h = key.hashCode();
+    return stripes[(h ^ (h >>> 16)) & (stripes.length - 1)];
+  }
+
+  /**
+   * Removes all entries of a library
+   */
+  public void invalidate(@NotNull SpectralLibrary library) {
+    for (final Stripe stripe : stripes) {
+      stripe.removeIf(lib -> lib == library);
+    }
+  }
+
+  /**
+   * Removes all entries of libraries that are not in the given collection, e.g., when a project is
+   * closed or replaced.
+   *
+   * @param libraries the libraries to keep, compared by identity
+   */
+  public void retainLibraries(@NotNull Collection<SpectralLibrary> libraries) {
+    final Set<SpectralLibrary> keep = Collections.newSetFromMap(new IdentityHashMap<>());
+    keep.addAll(libraries);
+    for (final Stripe stripe : stripes) {
+      stripe.removeIf(lib -> !keep.contains(lib));
+    }
+  }
+
+  public void clear() {
+    for (final Stripe stripe : stripes) {
+      stripe.clear();
+    }
+  }
+
+  public int size() {
+    int size = 0;
+    for (final Stripe stripe : stripes) {
+      size += stripe.size();
+    }
+    return size;
+  }
+
+  /**
+   * One part of the cache with its own lock and memory budget
+   */
+  private static final class Stripe {
+
+    private final long maxBytes;
+    // access order for LRU
+    private final LinkedHashMap<Key, PreprocessedSpectrum> cache = new LinkedHashMap<>(64, 0.75f,
+        true);
+    private long usedBytes;
+
+    private Stripe(long maxBytes) {
+      this.maxBytes = maxBytes;
+    }
+
+    private synchronized @Nullable PreprocessedSpectrum get(Key key) {
+      return cache.get(key);
+    }
+
+    private synchronized void put(Key key, PreprocessedSpectrum spectrum) {
+      final PreprocessedSpectrum old = cache.put(key, spectrum);
+      if (old != null) {
+        usedBytes -= old.estimateBytes();
+      }
+      usedBytes += spectrum.estimateBytes();
+      evict();
+    }
+
+    private void evict() {
+      final Iterator<Entry<Key, PreprocessedSpectrum>> it = cache.entrySet().iterator();
+      while (usedBytes > maxBytes && cache.size() > 1 && it.hasNext()) {
+        usedBytes -= it.next().getValue().estimateBytes();
+        it.remove();
+      }
+    }
+
+    private synchronized void removeIf(Predicate<@Nullable SpectralLibrary> libraryFilter) {
+      final Iterator<Entry<Key, PreprocessedSpectrum>> it = cache.entrySet().iterator();
+      while (it.hasNext()) {
+        final Entry<Key, PreprocessedSpectrum> next = it.next();
+        if (libraryFilter.test(next.getKey().entry().getLibrary())) {
+          usedBytes -= next.getValue().estimateBytes();
+          it.remove();
+        }
+      }
+    }
+
+    private synchronized void clear() {
+      cache.clear();
+      usedBytes = 0;
+    }
+
+    private synchronized int size() {
+      return cache.size();
+    }
+  }
+
+  /**
+   * Library entries are compared by identity as their equals method compares all fields
+   */
+  private record Key(@NotNull Preprocessing preprocessing, @NotNull SpectralLibraryEntry entry) {
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Key other && entry == other.entry && preprocessing.equals(
+          other.preprocessing);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * preprocessing.hashCode() + System.identityHashCode(entry);
+    }
+  }
+
+  /**
+   * All parameters that change the preprocessed library spectrum. Applies deisotoping first and
+   * then removes the precursor signals.
+   *
+   * @param removePrecursorTolerance remove all signals within this tolerance around the precursor
+   *                                 m/z of the entry or null to keep all signals
+   * @param deisotopeTolerance       deisotoping tolerance or null to skip deisotoping
+   * @param deisotopeMonotonicShape  only used for deisotoping
+   * @param deisotopeMaximumCharge   only used for deisotoping
+   */
+  public record Preprocessing(@Nullable MZTolerance removePrecursorTolerance,
+                              @Nullable MZTolerance deisotopeTolerance,
+                              boolean deisotopeMonotonicShape, int deisotopeMaximumCharge) {
+
+    /**
+     * @return false if neither deisotoping nor precursor removal apply to this entry
+     */
+    public boolean changesSpectrum(@NotNull SpectralLibraryEntry entry) {
+      return deisotopeTolerance != null || (removePrecursorTolerance != null
+                                            && entry.getPrecursorMZ() != null);
+    }
+
+    public @NotNull PreprocessedSpectrum apply(@NotNull SpectralLibraryEntry entry) {
+      double[][] spectrum;
+      if (deisotopeTolerance != null) {
+        DataPoint[] dps = MassListDeisotoper.filterIsotopes(entry.getDataPoints(),
+            deisotopeTolerance, deisotopeMonotonicShape, deisotopeMaximumCharge);
+        spectrum = DataPointUtils.getDataPointsAsDoubleArray(dps);
+      } else {
+        spectrum = new double[][]{entry.getMzValues(new double[entry.getNumberOfDataPoints()]),
+            entry.getIntensityValues(new double[entry.getNumberOfDataPoints()])};
+      }
+      // range before precursor removal as this is used to crop spectra
+      final Range<Double> mzRange = ScanAlignment.getMZRange(spectrum[0]);
+
+      final Double precursorMz = entry.getPrecursorMZ();
+      if (removePrecursorTolerance != null && precursorMz != null) {
+        spectrum = removeSignals(spectrum, removePrecursorTolerance.getToleranceRange(precursorMz));
+      }
+      return new PreprocessedSpectrum(spectrum[0], spectrum[1], mzRange);
+    }
+
+    /**
+     * @param spectrum [mzs, intensities]
+     * @return the filtered [mzs, intensities] or the input if nothing was removed
+     */
+    private static double[][] removeSignals(double[][] spectrum, Range<Double> removeMzRange) {
+      final double lower = removeMzRange.lowerEndpoint();
+      final double upper = removeMzRange.upperEndpoint();
+      final double[] mzs = spectrum[0];
+      final double[] intensities = spectrum[1];
+
+      int n = 0;
+      for (double mz : mzs) {
+        if (mz < lower || mz > upper) {
+          n++;
+        }
+      }
+      if (n == mzs.length) {
+        return spectrum;
+      }
+      double[][] filtered = new double[2][n];
+      int i = 0;
+      for (int k = 0; k < mzs.length; k++) {
+        if (mzs[k] < lower || mzs[k] > upper) {
+          filtered[0][i] = mzs[k];
+          filtered[1][i] = intensities[k];
+          i++;
+        }
+      }
+      return filtered;
+    }
+  }
+
+  /**
+   * @param mzs         filtered m/z values
+   * @param intensities filtered intensities
+   * @param mzRange     m/z range of the spectrum before precursor removal, used to crop spectra to
+   *                    their overlap
+   */
+  public record PreprocessedSpectrum(double[] mzs, double[] intensities, Range<Double> mzRange) {
+
+    public double[][] spectrum() {
+      return new double[][]{mzs, intensities};
+    }
+
+    private long estimateBytes() {
+      return ENTRY_OVERHEAD_BYTES + (long) mzs.length * Double.BYTES * 2;
+    }
+  }
+}
@@ -25,6 +25,7 @@
 
 package io.github.mzmine.modules.dataprocessing.id_spectral_library_match;
 
+import com.google.common.collect.Range;
 import io.github.mzmine.datamodel.DataPoint;
 import io.github.mzmine.datamodel.IMSRawDataFile;
 import io.github.mzmine.datamodel.MassList;
@@ -37,6 +38,8 @@ import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.datamodel.msms.DDAMsMsInfo;
 import io.github.mzmine.modules.MZmineProcessingStep;
 import io.github.mzmine.modules.dataprocessing.id_ccscalc.CCSUtils;
+import io.github.mzmine.modules.dataprocessing.id_spectral_library_match.LibrarySpectraPreprocessingCache.PreprocessedSpectrum;
+import io.github.mzmine.modules.dataprocessing.id_spectral_library_match.LibrarySpectraPreprocessingCache.Preprocessing;
 import io.github.mzmine.modules.dataprocessing.id_spectral_library_match.SpectralLibrarySearchParameters.ScanMatchingSelection;
 import io.github.mzmine.modules.dataprocessing.id_spectral_match_sort.SortSpectralMatchesTask;
 import io.github.mzmine.modules.visualization.spectra.simplespectra.datapointprocessing.isotopes.MassListDeisotoper;
@@ -48,6 +51,7 @@ import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
 import io.github.mzmine.parameters.parametertypes.tolerances.PercentTolerance;
 import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance;
 import io.github.mzmine.taskcontrol.AbstractTask;
+import io.github.mzmine.util.DataPointUtils;
 import io.github.mzmine.util.exceptions.MissingMassListException;
 import io.github.mzmine.util.scans.FragmentScanSelection;
 import io.github.mzmine.util.scans.FragmentScanSelection.IncludeInputSpectra;
@@ -109,6 +113,8 @@ public class RowsSpectralMatchTask extends AbstractTask {
   // remove 13C isotopes
   private boolean removeIsotopes;
   private MassListDeisotoperParameters deisotopeParam;
+  // defines the cached preprocessing of library spectra
+  private final Preprocessing libraryPreprocessing;
   // needs any signals within mzToleranceSpectra for
   // 13C, H, 2H or Cl
   private boolean needsIsotopePattern;
@@ -172,6 +178,7 @@ public class RowsSpectralMatchTask extends AbstractTask {
     fragmentScanSelection = new FragmentScanSelection(mzToleranceSpectra, true,
         IncludeInputSpectra.ALL, IntensityMergingType.MAXIMUM, msLevelFilter);
 
+    libraryPreprocessing = createLibraryPreprocessing();
     totalRows = 1;
   }
 
@@ -234,9 +241,25 @@ public class RowsSpectralMatchTask extends AbstractTask {
     fragmentScanSelection = new FragmentScanSelection(mzToleranceSpectra, true, includeInputScans,
         IntensityMergingType.MAXIMUM, msLevelFilter);
 
+    libraryPreprocessing = createLibraryPreprocessing();
     totalRows = rows.size();
   }
 
+  /**
+   * Library spectra are deisotoped and the precursor signals are removed once per parameter set
+   */
+  private Preprocessing createLibraryPreprocessing() {
+    final MZTolerance removePrecursorTolerance =
+        !msLevelFilter.isMs1Only() && removePrecursor ? mzToleranceRemovePrecursor : null;
+    if (!removeIsotopes) {
+      return new Preprocessing(removePrecursorTolerance, null, false, 0);
+    }
+    return new Preprocessing(removePrecursorTolerance,
+        deisotopeParam.getValue(MassListDeisotoperParameters.mzTolerance),
+        deisotopeParam.getValue(MassListDeisotoperParameters.monotonicShape),
+        deisotopeParam.getValue(MassListDeisotoperParameters.maximumCharge));
+  }
+
   /**
    * Checks for isotope pattern in matched signals within mzToleranceSpectra
    */
@@ -288,35 +311,43 @@ public class RowsSpectralMatchTask extends AbstractTask {
 
   @Override
   public void run() {
-
-    // combine libraries
-    List<SpectralLibraryEntry> entries = new ArrayList<>();
-    for (var lib : libraries) {
-      entries.addAll(lib.getEntries());
+    // MS2 matching uses the precursor index of each library to only compare candidates
+    // MS1 matching has no precursor filter and needs all entries
+    final List<SpectralLibraryEntry> allEntries =
+        usePrecursorIndex() ? List.of() : combineLibraryEntries();
+    final int totalEntries = libraries.stream().mapToInt(SpectralLibrary::size).sum();
+    if (usePrecursorIndex()) {
+      // build indexes once before parallel access
+      libraries.forEach(SpectralLibrary::getPrecursorIndex);
     }
 
     // run on spectra
     if (scan != null) {
       logger.info(
-          () -> String.format("Comparing %d library spectra to scan: %s", entries.size(), scan));
+          () -> String.format("Comparing %d library spectra to scan: %s", totalEntries, scan));
 
-      matchScan(entries, scan);
+      final Float precursorCCS = getPrecursorCCSFromMsMs(scan);
+      var candidates = getCandidateEntries(allEntries, scanPrecursorMZ, scan.getRetentionTime(),
+          precursorCCS);
+      matchScan(candidates, scan);
 
       logger.info(
           () -> String.format("library matches=%d (Errors:%d); library entries=%d; for scan: %s",
-              getCount(), getErrorCount(), entries.size(), scan));
+              getCount(), getErrorCount(), totalEntries, scan));
     }
 
     // run in parallel
     if (rows != null) {
       logger.info(() -> String.format("Comparing %d library spectra to %d feature list rows",
-          entries.size(), totalRows));
+          totalEntries, totalRows));
       // cannot use parallel.forEach with side effects - this thread will continue without waiting for
       // stream to finish
       var totalMatches = rows.stream().filter(FeatureListRow::hasMs2Fragmentation).parallel()
           .mapToInt(row -> {
             if (!isCanceled()) {
-              int matches = matchRowToLibraries(entries, row);
+              var candidates = getCandidateEntries(allEntries, row.getAverageMZ(),
+                  row.getAverageRT(), row.getAverageCCS());
+              int matches = candidates.isEmpty() ? 0 : matchRowToLibraries(candidates, row);
               finishedRows.incrementAndGet();
               return matches;
             }
@@ -324,8 +355,54 @@ public class RowsSpectralMatchTask extends AbstractTask {
           }).sum();
       logger.info("Total spectral library matches " + totalMatches);
       logger.info(() -> String.format("library matches=%d (Errors:%d); rows=%d; library entries=%d",
-          getCount(), getErrorCount(), totalRows, entries.size()));
+          getCount(), getErrorCount(), totalRows, totalEntries));
+    }
+  }
+
+  /**
+   * @return true if the precursor m/z is checked and the precursor index of each library can be
+   * used to find candidates
+   */
+  private boolean usePrecursorIndex() {
+    return !msLevelFilter.isMs1Only() && mzTolerancePrecursor != null;
+  }
+
+  private @NotNull List<SpectralLibraryEntry> combineLibraryEntries() {
+    List<SpectralLibraryEntry> entries = new ArrayList<>();
+    for (var lib : libraries) {
+      entries.addAll(lib.getEntries());
     }
+    return entries;
+  }
+
+  /**
+   * Candidates are preselected by precursor m/z and optionally RT and CCS by a binary search in
+   * each library's {@link SpectralLibrary#getPrecursorIndex()}. All filters are applied again
+   * during matching.
+   *
+   * @param allEntries  all combined library entries, only used if the precursor index is not used
+   *                    for MS1 matching
+   * @param precursorMz query precursor m/z
+   * @param rt          query retention time
+   * @param ccs         query CCS
+   * @return the library entries that may match the query
+   */
+  protected @NotNull List<SpectralLibraryEntry> getCandidateEntries(
+      @NotNull List<SpectralLibraryEntry> allEntries, @Nullable Double precursorMz,
+      @Nullable Float rt, @Nullable Float ccs) {
+    if (!usePrecursorIndex()) {
+      return allEntries;
+    }
+    if (precursorMz == null) {
+      return List.of();
+    }
+    List<SpectralLibraryEntry> candidates = new ArrayList<>();
+    for (var lib : libraries) {
+      lib.getPrecursorIndex()
+          .collectCandidates(precursorMz, mzTolerancePrecursor, rt, useRT ? rtTolerance : null,
+              ccs, ccsTolerance, candidates);
+    }
+    return candidates;
   }
 
   /**
@@ -338,6 +415,7 @@ public class RowsSpectralMatchTask extends AbstractTask {
     try {
       // get mass list and perform deisotoping if active
       DataPoint[] masses = getDataPoints(scan, scan.getPrecursorMz());
+      double[][] massArrays = DataPointUtils.getDataPointsAsDoubleArray(masses);
 
       // get a ccs for the precursor of this scan
       final Float precursorCCS = getPrecursorCCSFromMsMs(scan);
@@ -345,7 +423,7 @@ public class RowsSpectralMatchTask extends AbstractTask {
       for (var entry : entries) {
         float rt = scan.getRetentionTime();
         final SpectralSimilarity sim = matchSpectrum(rt, scanPrecursorMZ,
-            precursorCCS, masses, entry);
+            precursorCCS, masses, massArrays, entry);
         if (sim != null) {
           Float ccsError = PercentTolerance.getPercentError(entry.getOrElse(DBEntryField.CCS, null),
               precursorCCS);
@@ -411,10 +489,12 @@ public class RowsSpectralMatchTask extends AbstractTask {
       }
 
       List<DataPoint[]> rowMassLists = new ArrayList<>();
+      List<double[][]> rowMassArrays = new ArrayList<>();
       for (Scan scan : scans) {
         // get mass list and perform deisotoping if active
         DataPoint[] rowMassList = getDataPoints(scan, row.getAverageMZ());
         rowMassLists.add(rowMassList);
+        rowMassArrays.add(DataPointUtils.getDataPointsAsDoubleArray(rowMassList));
       }
 
       final Float rowCCS = row.getAverageCCS();
@@ -435,7 +515,7 @@ public class RowsSpectralMatchTask extends AbstractTask {
           }
 
           SpectralSimilarity sim = matchSpectrum(row.getAverageRT(), row.getAverageMZ(), rowCCS,
-              rowMassLists.get(i), ident);
+              rowMassLists.get(i), rowMassArrays.get(i), ident);
           if (sim != null && (!needsIsotopePattern || checkForIsotopePattern(sim,
               mzToleranceSpectra, minMatchedIsoSignals)) && (best == null
                                                              || best.getSimilarity().getScore()
@@ -481,44 +561,35 @@ public class RowsSpectralMatchTask extends AbstractTask {
   /**
    * match row against library entry
    *
-   * @param rowRT       retention time of query row
-   * @param rowMZ       m/z of query row
-   * @param rowMassList mass list (data points) for row
-   * @param ident       library entry
+   * @param rowRT         retention time of query row
+   * @param rowMZ         m/z of query row
+   * @param rowMassList   mass list (data points) for row
+   * @param rowMassArrays the same mass list as [mzs, intensities]
+   * @param ident         library entry
    * @return spectral similarity or null if no match
    */
   private SpectralSimilarity matchSpectrum(Float rowRT, double rowMZ, Float rowCCS,
-      DataPoint[] rowMassList, SpectralLibraryEntry ident) {
+      DataPoint[] rowMassList, double[][] rowMassArrays, SpectralLibraryEntry ident) {
     // retention time
     // MS level 1 or check precursorMZ
     if (checkRT(rowRT, ident) && (msLevelFilter.isMs1Only() || checkPrecursorMZ(rowMZ, ident))
         && checkCCS(rowCCS, ident)) {
-      DataPoint[] library = ident.getDataPoints();
-      if (removeIsotopes) {
-        library = removeIsotopes(library);
+      // deisotoping and precursor removal are cached per library entry
+      final PreprocessedSpectrum library = LibrarySpectraPreprocessingCache.getInstance()
+          .getOrCompute(libraryPreprocessing, ident);
+
+      if (!cropSpectraToOverlap) {
+        return createSimilarity(library.spectrum(), rowMassArrays);
       }
 
       // crop the spectra to their overlapping mz range
       // helpful when comparing spectra, acquired with different
       // fragmentation energy
-      DataPoint[] query = rowMassList;
-      if (cropSpectraToOverlap) {
-        DataPoint[][] cropped = ScanAlignment.cropToOverlap(mzToleranceSpectra, library, query,
-            ident.getPrecursorMZ(), rowMZ);
-        library = cropped[0];
-        query = cropped[1];
-      }
-
-      // remove precursor signals
-      if (!msLevelFilter.isMs1Only() && removePrecursor && ident.getPrecursorMZ() != null) {
-        // precursor mz from library entry for signal filtering
-        double precursorMZ = ident.getPrecursorMZ();
-        // remove from both spectra
-        library = removePrecursor(library, precursorMZ);
-      }
-
-      // check spectra similarity
-      return createSimilarity(library, query);
+      // overlap is based on the library spectrum before precursor removal
+      final Range<Double> overlap = ScanAlignment.getOverlapMZ(mzToleranceSpectra,
+          library.mzRange(), ScanAlignment.getMZRange(rowMassList), ident.getPrecursorMZ(), rowMZ);
+      return createSimilarity(cropToRange(library.spectrum(), overlap),
+          cropToRange(rowMassArrays, overlap));
     }
     return null;
   }
@@ -546,13 +617,46 @@ public class RowsSpectralMatchTask extends AbstractTask {
   }
 
   /**
-   * Uses the similarity function and filter to create similarity.
+   * @param spectrum [mzs, intensities]
+   * @return all signals within the closed range as [mzs, intensities]
+   */
+  private static double[][] cropToRange(double[][] spectrum, Range<Double> range) {
+    final double lower = range.lowerEndpoint();
+    final double upper = range.upperEndpoint();
+    final double[] mzs = spectrum[0];
+    int n = 0;
+    for (double mz : mzs) {
+      if (mz >= lower && mz <= upper) {
+        n++;
+      }
+    }
+    if (n == mzs.length) {
+      return spectrum;
+    }
+    double[][] cropped = new double[2][n];
+    int i = 0;
+    for (int k = 0; k < mzs.length; k++) {
+      if (mzs[k] >= lower && mzs[k] <= upper) {
+        cropped[0][i] = mzs[k];
+        cropped[1][i] = spectrum[1][k];
+        i++;
+      }
+    }
+    return cropped;
+  }
+
+  /**
+   * Uses the similarity function and filter to create similarity. Works on arrays so that data
+   * points are only created for matches.
    *
+   * @param library [mzs, intensities]
+   * @param query   [mzs, intensities]
    * @return positive match with similarity or null if criteria was not met
    */
-  private SpectralSimilarity createSimilarity(DataPoint[] library, DataPoint[] query) {
+  private SpectralSimilarity createSimilarity(double[][] library, double[][] query) {
     return simFunction.getModule()
-        .getSimilarity(simFunction.getParameterSet(), mzToleranceSpectra, minMatch, library, query);
+        .getSimilarity(simFunction.getParameterSet(), mzToleranceSpectra, minMatch, library[0],
+            library[1], query[0], query[1]);
   }
 
   private boolean checkPrecursorMZ(double rowMZ, SpectralLibraryEntry ident) {
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.export_features_csv;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.ModularDataModel;
+import io.github.mzmine.datamodel.features.ModularFeature;
+import io.github.mzmine.datamodel.features.types.DataType;
+import io.github.mzmine.datamodel.features.types.modifiers.SubColumnsFactory;
+import io.github.mzmine.datamodel.features.types.numbers.abstr.NumberRangeType;
+import io.github.mzmine.datamodel.features.types.numbers.abstr.NumberType;
+import io.github.mzmine.util.io.CSVUtils;
+import java.text.NumberFormat;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A column of the modular CSV export, defined by a data type, an optional sub column index and the
+ * raw data file for feature columns. Number and number range columns are formatted directly with a
+ * copy of the export format, because {@link NumberFormat} is not thread safe. All other types use
+ * their export string, which is formatted with the export formats of the calling thread (see
+ * {@link io.github.mzmine.gui.preferences.MZminePreferences#getExportFormats()}).
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
+final class CSVExportColumn {
+
+  private static final Logger logger = Logger.getLogger(CSVExportColumn.class.getName());
+
+  private final @NotNull DataType type;
+  private final @Nullable RawDataFile raw;
+  private final int subColumn;
+  // template for number columns, null for all other columns
+  private final @Nullable NumberFormat exportFormat;
+
+  /**
+   * @param type      the data type or the parent type of a sub column
+   * @param raw       the raw data file for feature columns or null for row columns
+   * @param subColumn the sub column index or -1 for the main column
+   */
+  CSVExportColumn(@NotNull DataType type, @Nullable RawDataFile raw, int subColumn) {
+    this.type = type;
+    this.raw = raw;
+    this.subColumn = subColumn;
+    if (subColumn < 0 && type instanceof NumberType<?> numberType) {
+      exportFormat = numberType.getExportFormat();
+    } else if (subColumn >= 0 && type instanceof NumberRangeType<?> rangeType) {
+      exportFormat = rangeType.getExportFormat();
+    } else {
+      exportFormat = null;
+    }
+  }
+
+  /**
+   * @return a new copy of the export format for number columns or null. Use one copy per thread.
+   */
+  @Nullable
+  NumberFormat createNumberFormat() {
+    return exportFormat == null ? null : (NumberFormat) exportFormat.clone();
+  }
+
+  /**
+   * Appends the escaped value of this column for a row
+   *
+   * @param format the thread's copy of {@link #createNumberFormat()}
+   */
+  void append(@NotNull StringBuilder b, @NotNull FeatureListRow row, @Nullable NumberFormat format,
+      @NotNull String separator) {
+    final ModularDataModel data = raw == null ? row : (ModularFeature) row.getFeature(raw);
+    Object value = data == null ? null : data.get(type);
+    if (value == null) {
+      value = type.getDefaultValue();
+    }
+
+    if (format != null) {
+      appendNumber(b, format, value, separator);
+    } else if (subColumn >= 0) {
+      b.append(CSVUtils.escape(
+          ((SubColumnsFactory) type).getFormattedSubColExportValue(subColumn, value), separator));
+    } else {
+      try {
+        b.append(CSVUtils.escape(type.getFormattedExportString(value), separator));
+      } catch (Exception e) {
+        logger.log(Level.FINEST,
+            "Cannot format value of type " + type.getClass().getName() + " value: " + value, e);
+      }
+    }
+  }
+
+  private void appendNumber(@NotNull StringBuilder b, @NotNull NumberFormat format,
+      @Nullable Object value, @NotNull String separator) {
+    if (value instanceof Range range) {
+      value = switch (subColumn) {
+        case 0 -> range.lowerEndpoint();
+        case 1 -> range.upperEndpoint();
+        default -> null;
+      };
+    }
+    final String formatted = switch (value) {
+      case Double d -> format.format(d.doubleValue());
+      case Float f -> format.format(f.doubleValue());
+      case Integer i -> format.format(i.longValue());
+      case Long l -> format.format(l.longValue());
+      case Number n -> format.format(n);
+      case null, default -> "";
+    };
+    // numbers only need escaping if the separator is part of the format, e.g., a decimal comma
+    if (formatted.contains(separator)) {
+      b.append(CSVUtils.escape(formatted, separator));
+    } else {
+      b.append(formatted);
+    }
+  }
+}
@@ -59,11 +59,14 @@ public class CSVExportModularParameters extends SimpleParameterSet {
                   + "(i.e. \"blah{}blah.csv\" would become \"blahSourceFeatureListNameblah.csv\"). "
                   + "If the file already exists, it will be overwritten.", extensions,
       "quant_modular");
+  public static final ComboParameter<CSVExportCompression> compression = new ComboParameter<>(
+      "Compression", "Compress the exported file. Adds the suffix of the format, e.g., .csv.gz",
+      CSVExportCompression.values(), CSVExportCompression.NONE);
 
 
   public CSVExportModularParameters() {
     super(new Parameter[]{featureLists, filename, fieldSeparator, idSeparator, omitEmptyColumns,
-        filter});
+        filter, compression});
   }
 
   @Override
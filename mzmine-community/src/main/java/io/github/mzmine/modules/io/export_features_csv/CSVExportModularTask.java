@@ -37,6 +37,8 @@ import io.github.mzmine.datamodel.features.types.LinkedGraphicalType;
 import io.github.mzmine.datamodel.features.types.modifiers.NoTextColumn;
 import io.github.mzmine.datamodel.features.types.modifiers.NullColumnType;
 import io.github.mzmine.datamodel.features.types.modifiers.SubColumnsFactory;
+import io.github.mzmine.gui.preferences.MZminePreferences;
+import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.modules.io.export_features_gnps.fbmn.FeatureListRowsFilter;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.taskcontrol.AbstractTask;
@@ -45,11 +47,13 @@ import io.github.mzmine.taskcontrol.TaskStatus;
 import io.github.mzmine.util.FeatureListRowSorter;
 import io.github.mzmine.util.files.FileAndPathUtil;
 import io.github.mzmine.util.io.CSVUtils;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.text.MessageFormat;
 import java.time.Instant;
 import java.util.ArrayList;
@@ -77,10 +81,11 @@ public class CSVExportModularTask extends AbstractTask implements ProcessedItems
   private final String headerSeparator = ":";
   private final FeatureListRowsFilter rowFilter;
   private final boolean removeEmptyCols;
+  private final CSVExportCompression compression;
   private final ParameterSet parameters;
   // track number of exported items
   private final AtomicInteger exportedRows = new AtomicInteger(0);
-  private int processedTypes = 0, totalTypes = 0;
+  private int totalRows = 0;
 
   public CSVExportModularTask(ParameterSet parameters, @NotNull Instant moduleCallDate) {
     super(null, moduleCallDate); // no new data stored -> null
@@ -91,6 +96,7 @@ public class CSVExportModularTask extends AbstractTask implements ProcessedItems
     idSeparator = parameters.getParameter(CSVExportModularParameters.idSeparator).getValue();
     this.rowFilter = parameters.getParameter(CSVExportModularParameters.filter).getValue();
     removeEmptyCols = parameters.getValue(CSVExportModularParameters.omitEmptyColumns);
+    compression = parameters.getValue(CSVExportModularParameters.compression);
     this.parameters = parameters;
   }
 
@@ -104,6 +110,22 @@ public class CSVExportModularTask extends AbstractTask implements ProcessedItems
   public CSVExportModularTask(ModularFeatureList[] featureLists, File fileName,
       String fieldSeparator, String idSeparator, FeatureListRowsFilter rowFilter,
       boolean removeEmptyCols, @NotNull Instant moduleCallDate) {
+    this(featureLists, fileName, fieldSeparator, idSeparator, rowFilter, removeEmptyCols,
+        CSVExportCompression.NONE, moduleCallDate);
+  }
+
+  /**
+   * @param featureLists   feature lists to export
+   * @param fileName       export file name
+   * @param fieldSeparator separation of columns
+   * @param idSeparator    identity field separation
+   * @param rowFilter      Row filter
+   * @param compression    compression of the output file
+   */
+  public CSVExportModularTask(ModularFeatureList[] featureLists, File fileName,
+      String fieldSeparator, String idSeparator, FeatureListRowsFilter rowFilter,
+      boolean removeEmptyCols, @NotNull CSVExportCompression compression,
+      @NotNull Instant moduleCallDate) {
     super(null, moduleCallDate); // no new data stored -> null
     if (fieldSeparator.equals(idSeparator)) {
       throw new IllegalArgumentException(MessageFormat.format(
@@ -115,6 +137,7 @@ public class CSVExportModularTask extends AbstractTask implements ProcessedItems
     this.idSeparator = idSeparator;
     this.rowFilter = rowFilter;
     this.removeEmptyCols = removeEmptyCols;
+    this.compression = compression;
     parameters = null;
   }
 
@@ -125,10 +148,10 @@ public class CSVExportModularTask extends AbstractTask implements ProcessedItems
 
   @Override
   public double getFinishedPercentage() {
-    if (totalTypes == 0) {
+    if (totalRows == 0) {
       return 0;
     }
-    return (double) processedTypes / (double) totalTypes;
+    return (double) exportedRows.get() / (double) totalRows;
   }
 
   @Override
@@ -156,7 +179,7 @@ public class CSVExportModularTask extends AbstractTask implements ProcessedItems
 
     // Total number of rows
     for (ModularFeatureList featureList : featureLists) {
-      totalTypes += featureList.getNumberOfRows();
+      totalRows += featureList.getNumberOfRows();
     }
 
     // Process feature lists
@@ -181,12 +204,13 @@ public class CSVExportModularTask extends AbstractTask implements ProcessedItems
         curFile = new File(newFilename);
       }
       curFile = FileAndPathUtil.getRealFilePath(curFile, "csv");
+      curFile = new File(curFile.getPath() + compression.getFileSuffix());
 
       // Open file
-
-      try (BufferedWriter writer = Files.newBufferedWriter(curFile.toPath(),
-          StandardCharsets.UTF_8)) {
-        exportFeatureList(featureList, writer);
+      try (FileChannel channel = FileChannel.open(curFile.toPath(), StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+          OutputStream out = compression.wrap(Channels.newOutputStream(channel))) {
+        exportFeatureList(featureList, out);
 
       } catch (IOException e) {
         setStatus(TaskStatus.ERROR);
@@ -218,10 +242,11 @@ public class CSVExportModularTask extends AbstractTask implements ProcessedItems
   }
 
   @SuppressWarnings("rawtypes")
-  private void exportFeatureList(ModularFeatureList flist, BufferedWriter writer)
-      throws IOException {
+  private void exportFeatureList(ModularFeatureList flist, OutputStream out) throws IOException {
     final List<FeatureListRow> rows = flist.getRows().stream().filter(rowFilter::accept)
         .sorted(FeatureListRowSorter.DEFAULT_ID).toList();
+    // filtered rows are not exported
+    totalRows -= flist.getNumberOfRows() - rows.size();
     List<RawDataFile> rawDataFiles = flist.getRawDataFiles();
 
     List<DataType> rowTypes = flist.getRowTypes().stream().filter(this::filterType)
@@ -240,64 +265,39 @@ public class CSVExportModularTask extends AbstractTask implements ProcessedItems
               true));
     }
 
-    writer.append(header.toString());
-    writer.newLine();
-
-    // write data
-    totalTypes = rowTypes.size() + featureTypes.size() * rawDataFiles.size();
+    header.append(System.lineSeparator());
+    out.write(header.toString().getBytes(StandardCharsets.UTF_8));
 
-    List<String[]> formattedCols = new ArrayList<>(totalTypes);
-
-    // list string values for each type and sub type
+    // define the columns for each type and sub type
+    List<CSVExportColumn> columns = new ArrayList<>();
     for (DataType rowType : rowTypes) {
-      if (isCanceled()) {
-        return;
-      }
-
-      addFormattedColumnsRecursively(formattedCols, rows, null, rowType);
-
-      processedTypes++;
+      addColumnsRecursively(columns, rows, null, rowType);
     }
-
     // add feature types for each raw data file
     for (RawDataFile raw : rawDataFiles) {
       for (DataType featureType : featureTypes) {
-        if (isCanceled()) {
-          return;
-        }
-
-        addFormattedColumnsRecursively(formattedCols, rows, raw, featureType);
-        processedTypes++;
+        addColumnsRecursively(columns, rows, raw, featureType);
       }
     }
 
-    for (int i = 0; i < rows.size(); i++) {
-      // Cancel?
-      if (isCanceled()) {
-        return;
-      }
-
-      final int row = i;
-      writer.append(
-          formattedCols.stream().map(col -> col[row]).collect(Collectors.joining(fieldSeparator)));
-      writer.newLine();
-
-      exportedRows.incrementAndGet();
-      processedTypes++;
-    }
+    // format chunks of rows in parallel and write them in order
+    final int threads = MZmineCore.getConfiguration().getPreferences()
+        .getParameter(MZminePreferences.numOfThreads).getValue();
+    new ParallelCSVRowWriter(columns, fieldSeparator, threads).writeRows(rows, out,
+        exportedRows::addAndGet, this::isCanceled);
   }
 
   /**
-   * Adds columns of formatted values for each column / sub column. missing values are replaced by
-   * empty strings or default values
+   * Adds a column for each type / sub column. Missing values are replaced by empty strings or
+   * default values during formatting
    *
-   * @param formattedCols the target list
-   * @param rows          the data
-   * @param raw           defines the feature
-   * @param type          the feature data type to be added (and its sub columns)
+   * @param columns the target list
+   * @param rows    the data
+   * @param raw     defines the feature
+   * @param type    the feature data type to be added (and its sub columns)
    */
-  private void addFormattedColumnsRecursively(List<String[]> formattedCols,
-      List<FeatureListRow> rows, @Nullable RawDataFile raw, DataType type) {
+  private void addColumnsRecursively(List<CSVExportColumn> columns, List<FeatureListRow> rows,
+      @Nullable RawDataFile raw, DataType type) {
     if (type instanceof SubColumnsFactory subFactory) {
       int subCols = subFactory.getNumberOfSubColumns();
       for (int s = 0; s < subCols; s++) {
@@ -307,16 +307,10 @@ public class CSVExportModularTask extends AbstractTask implements ProcessedItems
             s))) {
           continue;
         }
-        // collect column data
-        final int subIndex = s;
-        String[] column = getDataStream(rows, raw, false).map(
-            data -> getFormattedValue(data, subFactory, subIndex)).toArray(String[]::new);
-        formattedCols.add(column);
+        columns.add(new CSVExportColumn(type, raw, s));
       }
     } else {
-      String[] column = getDataStream(rows, raw, false).map(data -> getFormattedValue(data, type))
-          .toArray(String[]::new);
-      formattedCols.add(column);
+      columns.add(new CSVExportColumn(type, raw, -1));
     }
   }
 
@@ -339,30 +333,6 @@ public class CSVExportModularTask extends AbstractTask implements ProcessedItems
     }
   }
 
-
-  private String getFormattedValue(@Nullable ModularDataModel data, SubColumnsFactory subColFactory,
-      int col) {
-    Object value = data == null ? null : data.get((DataType) subColFactory);
-    if (value == null) {
-      value = ((DataType) subColFactory).getDefaultValue();
-    }
-    return csvEscape(subColFactory.getFormattedSubColExportValue(col, value));
-  }
-
-  private String getFormattedValue(@Nullable ModularDataModel data, DataType type) {
-    Object value = data == null ? null : data.get(type);
-    if (value == null) {
-      value = type.getDefaultValue();
-    }
-    try {
-      return csvEscape(type.getFormattedExportString(value));
-    } catch (Exception e) {
-      logger.log(Level.FINEST,
-          "Cannot format value of type " + type.getClass().getName() + " value: " + value, e);
-      return "";
-    }
-  }
-
   /**
    * @return true if type should be exported
    */
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.export_features_csv;
+
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.util.concurrent.OrderedTaskPipeline;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.NumberFormat;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntConsumer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Formats the rows of a CSV export in chunks on the shared task executor and writes the chunks in
+ * row order to a single output. Only a limited number of chunks is formatted ahead of the output to
+ * bound the memory and the number of executor threads, independent of the number of rows and
+ * columns.
+ */
+class ParallelCSVRowWriter {
+
+  static final int ROWS_PER_CHUNK = 512;
+
+  private final @NotNull List<CSVExportColumn> columns;
+  private final @NotNull String fieldSeparator;
+  private final @Nullable Executor formattingExecutor;
+  private final int maxPendingChunks;
+
+  /**
+   * @param formattingThreads number of threads to format rows. Values &lt; 2 format all rows on the
+   *                          writing thread.
+   */
+  ParallelCSVRowWriter(@NotNull List<CSVExportColumn> columns, @NotNull String fieldSeparator,
+      int formattingThreads) {
+    this.columns = columns;
+    this.fieldSeparator = fieldSeparator;
+    if (formattingThreads > 1) {
+      formattingExecutor = MZmineCore.getTaskController().getExecutor();
+      maxPendingChunks = formattingThreads * 4;
+    } else {
+      formattingExecutor = null;
+      maxPendingChunks = 0;
+    }
+  }
+
+  /**
+   * Writes all rows in order
+   *
+   * @param out      the target output
+   * @param progress receives the number of rows written with each chunk
+   * @param canceled stops the export if true
+   */
+  void writeRows(@NotNull List<FeatureListRow> rows, @NotNull OutputStream out,
+      @NotNull IntConsumer progress, @NotNull BooleanSupplier canceled) throws IOException {
+    try (var pipeline = new OrderedTaskPipeline<FormattedChunk, IOException>(formattingExecutor,
+        maxPendingChunks, chunk -> {
+          out.write(chunk.data());
+          progress.accept(chunk.rows());
+        })) {
+      for (int start = 0; start < rows.size(); start += ROWS_PER_CHUNK) {
+        if (canceled.getAsBoolean()) {
+          return;
+        }
+        final List<FeatureListRow> chunk = rows.subList(start,
+            Math.min(rows.size(), start + ROWS_PER_CHUNK));
+        pipeline.submit(
+            () -> new FormattedChunk(chunk.size(), new ChunkFormatter(chunk.size()).format(chunk)));
+      }
+      pipeline.finish(canceled);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while formatting CSV rows", e);
+    } catch (ExecutionException e) {
+      throw new IOException("Error while formatting CSV rows", e.getCause());
+    }
+  }
+
+  private record FormattedChunk(int rows, byte[] data) {
+
+  }
+
+  /**
+   * Formats a single chunk of rows. Created by each chunk task, so that no builders or number
+   * formats stay referenced by the executor threads after the export.
+   */
+  private class ChunkFormatter {
+
+    private final StringBuilder b;
+    private final NumberFormat[] formats;
+
+    private ChunkFormatter(int rows) {
+      b = new StringBuilder(rows * columns.size() * 8);
+      formats = new NumberFormat[columns.size()];
+      for (int i = 0; i < formats.length; i++) {
+        formats[i] = columns.get(i).createNumberFormat();
+      }
+    }
+
+    private byte[] format(List<FeatureListRow> chunk) {
+      for (FeatureListRow row : chunk) {
+        for (int c = 0; c < formats.length; c++) {
+          if (c > 0) {
+            b.append(fieldSeparator);
+          }
+          columns.get(c).append(b, row, formats[c], fieldSeparator);
+        }
+        b.append(System.lineSeparator());
+      }
+      return b.toString().getBytes(StandardCharsets.UTF_8);
+    }
+  }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.export_features_npz;
+
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.Feature;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
+import io.github.mzmine.datamodel.features.compoundannotations.FeatureAnnotation;
+import io.github.mzmine.datamodel.features.types.annotations.ManualAnnotation;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.taskcontrol.AbstractTask;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.util.FeatureListRowSorter;
+import io.github.mzmine.util.files.FileAndPathUtil;
+import io.github.mzmine.util.io.NpzWriter;
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Exports feature lists column by column into NumPy npz files. Row columns are named by
+ * {@link #ROW_COLUMNS}, feature columns by {@link #featureColumn(String, String)} for each sample
+ * in the {@link #SAMPLES} array. Missing numbers are NaN, missing integers 0, and missing strings
+ * have the code -1. Each column is streamed to the file, so the memory does not depend on the size
+ * of the table.
+ */
+public class NpzExportTask extends AbstractTask {
+
+  public static final String SAMPLES = "samples";
+  public static final String ID = "id";
+  public static final String MZ = "mz";
+  public static final String RT = "rt";
+  public static final String MOBILITY = "mobility";
+  public static final String CCS = "ccs";
+  public static final String CHARGE = "charge";
+  public static final String HEIGHT = "height";
+  public static final String AREA = "area";
+  public static final String COMPOUND_NAME = "compound_name";
+  public static final String FORMULA = "formula";
+  public static final String ADDUCT = "adduct";
+  public static final List<String> ROW_COLUMNS = List.of(ID, MZ, RT, MOBILITY, CCS, CHARGE, HEIGHT,
+      AREA, COMPOUND_NAME, FORMULA, ADDUCT);
+  public static final List<String> FEATURE_COLUMNS = List.of(MZ, RT, MOBILITY, HEIGHT, AREA);
+
+  private static final Logger logger = Logger.getLogger(NpzExportTask.class.getName());
+
+  private final ModularFeatureList[] featureLists;
+  private final File fileName;
+  private final boolean compress;
+  private final ParameterSet parameters;
+  private int exportedColumns = 0, totalColumns = 0;
+
+  public NpzExportTask(ParameterSet parameters, @NotNull Instant moduleCallDate) {
+    super(null, moduleCallDate); // no new data stored -> null
+    featureLists = parameters.getValue(NpzExportParameters.featureLists).getMatchingFeatureLists();
+    fileName = parameters.getValue(NpzExportParameters.filename);
+    compress = parameters.getValue(NpzExportParameters.compress);
+    this.parameters = parameters;
+  }
+
+  /**
+   * @return the name of the feature column of a sample, e.g., datafile:sample.mzML:height
+   */
+  public static String featureColumn(String rawName, String column) {
+    // slashes would create folders in the zip file
+    return "datafile:" + rawName.replaceAll("[/\\\\]", "_") + ":" + column;
+  }
+
+  @Override
+  public double getFinishedPercentage() {
+    return totalColumns == 0 ? 0 : (double) exportedColumns / totalColumns;
+  }
+
+  @Override
+  public String getTaskDescription() {
+    return "Exporting feature list(s) " + Arrays.toString(featureLists) + " to npz file(s)";
+  }
+
+  @Override
+  public void run() {
+    setStatus(TaskStatus.PROCESSING);
+
+    String plNamePattern = "{}";
+    boolean substitute = fileName.getPath().contains(plNamePattern);
+
+    for (ModularFeatureList flist : featureLists) {
+      totalColumns += ROW_COLUMNS.size() + FEATURE_COLUMNS.size() * flist.getNumberOfRawDataFiles();
+    }
+
+    for (ModularFeatureList flist : featureLists) {
+      if (isCanceled()) {
+        return;
+      }
+
+      File curFile = fileName;
+      if (substitute) {
+        String cleanPlName = flist.getName().replaceAll("[^a-zA-Z0-9.-]", "_");
+        curFile = new File(
+            fileName.getPath().replaceAll(Pattern.quote(plNamePattern), cleanPlName));
+      }
+      curFile = FileAndPathUtil.getRealFilePath(curFile, "npz");
+
+      try (NpzWriter writer = new NpzWriter(curFile, compress)) {
+        exportFeatureList(flist, writer);
+      } catch (IOException e) {
+        setStatus(TaskStatus.ERROR);
+        setErrorMessage("Could not write file " + curFile + ": " + e.getMessage());
+        logger.log(Level.WARNING, "Error writing npz file " + curFile.getAbsolutePath(), e);
+        return;
+      }
+
+      flist.getAppliedMethods().add(
+          new SimpleFeatureListAppliedMethod(NpzExportModule.class, parameters,
+              getModuleCallDate()));
+
+      if (!substitute) {
+        break;
+      }
+    }
+
+    if (getStatus() == TaskStatus.PROCESSING) {
+      setStatus(TaskStatus.FINISHED);
+    }
+  }
+
+  private void exportFeatureList(ModularFeatureList flist, NpzWriter writer) throws IOException {
+    final List<FeatureListRow> rows = flist.getRows().stream()
+        .sorted(FeatureListRowSorter.DEFAULT_ID).toList();
+    final List<RawDataFile> raws = flist.getRawDataFiles();
+    final int n = rows.size();
+
+    writer.writeStringArray(SAMPLES, raws.stream().map(RawDataFile::getName).toList());
+
+    writer.writeInts(ID, n, i -> rows.get(i).getID());
+    writer.writeDoubles(MZ, n, i -> orNaN(rows.get(i).getAverageMZ()));
+    writer.writeFloats(RT, n, i -> (float) orNaN(rows.get(i).getAverageRT()));
+    writer.writeFloats(MOBILITY, n, i -> (float) orNaN(rows.get(i).getAverageMobility()));
+    writer.writeFloats(CCS, n, i -> (float) orNaN(rows.get(i).getAverageCCS()));
+    writer.writeInts(CHARGE, n, i -> {
+      final Integer charge = rows.get(i).getRowCharge();
+      return charge == null ? 0 : charge;
+    });
+    writer.writeFloats(HEIGHT, n, i -> (float) orNaN(rows.get(i).getMaxHeight()));
+    writer.writeFloats(AREA, n, i -> (float) orNaN(rows.get(i).getMaxArea()));
+    writer.writeStrings(COMPOUND_NAME, n, i -> rows.get(i).getPreferredAnnotationName());
+    writer.writeStrings(FORMULA, n, i -> getAnnotationValue(rows.get(i), true));
+    writer.writeStrings(ADDUCT, n, i -> getAnnotationValue(rows.get(i), false));
+    exportedColumns += ROW_COLUMNS.size();
+
+    for (RawDataFile raw : raws) {
+      if (isCanceled()) {
+        return;
+      }
+      writeFeatureColumn(writer, rows, raw, MZ, Feature::getMZ);
+      writeFeatureColumn(writer, rows, raw, RT, Feature::getRT);
+      writeFeatureColumn(writer, rows, raw, MOBILITY, Feature::getMobility);
+      writeFeatureColumn(writer, rows, raw, HEIGHT, Feature::getHeight);
+      writeFeatureColumn(writer, rows, raw, AREA, Feature::getArea);
+    }
+  }
+
+  private void writeFeatureColumn(NpzWriter writer, List<FeatureListRow> rows, RawDataFile raw,
+      String column, Function<Feature, Number> value) throws IOException {
+    final String name = featureColumn(raw.getName(), column);
+    if (column.equals(MZ)) {
+      writer.writeDoubles(name, rows.size(), i -> {
+        final Feature feature = rows.get(i).getFeature(raw);
+        return feature == null ? Double.NaN : orNaN(value.apply(feature));
+      });
+    } else {
+      writer.writeFloats(name, rows.size(), i -> {
+        final Feature feature = rows.get(i).getFeature(raw);
+        return feature == null ? Float.NaN : (float) orNaN(value.apply(feature));
+      });
+    }
+    exportedColumns++;
+  }
+
+  /**
+   * @param formula the formula or otherwise the adduct of the preferred annotation
+   */
+  @Nullable
+  private static String getAnnotationValue(FeatureListRow row, boolean formula) {
+    return switch (row.getPreferredAnnotation()) {
+      case FeatureAnnotation annotation -> formula ? annotation.getFormula()
+          : annotation.getAdductType() != null ? annotation.getAdductType().toString() : null;
+      case ManualAnnotation manual -> formula ? manual.getFormula() : manual.getIon();
+      case null, default -> null;
+    };
+  }
+
+  private static double orNaN(@Nullable Number value) {
+    return value == null ? Double.NaN : value.doubleValue();
+  }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.import_features_csv;
+
+import static io.github.mzmine.modules.io.export_features_npz.NpzExportTask.*;
+
+import io.github.mzmine.datamodel.FeatureStatus;
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.ModularFeature;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
+import io.github.mzmine.datamodel.features.types.annotations.ManualAnnotation;
+import io.github.mzmine.datamodel.features.types.annotations.ManualAnnotationType;
+import io.github.mzmine.datamodel.features.types.numbers.AreaType;
+import io.github.mzmine.datamodel.features.types.numbers.CCSType;
+import io.github.mzmine.datamodel.features.types.numbers.ChargeType;
+import io.github.mzmine.datamodel.features.types.numbers.HeightType;
+import io.github.mzmine.datamodel.features.types.numbers.MZType;
+import io.github.mzmine.datamodel.features.types.numbers.MobilityType;
+import io.github.mzmine.datamodel.features.types.numbers.RTType;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.taskcontrol.AbstractTask;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.util.MemoryMapStorage;
+import io.github.mzmine.util.io.NpzReader;
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Imports a feature list from an npz file written by the npz export. Samples are matched to the raw
+ * data files in the project by name. Features are only created for samples with a height.
+ */
+public class NpzImportTask extends AbstractTask {
+
+  private static final Logger logger = Logger.getLogger(NpzImportTask.class.getName());
+
+  private final MZmineProject project;
+  private final File file;
+  private final ParameterSet parameters;
+  private int processedRows = 0, totalRows = 0;
+
+  NpzImportTask(MZmineProject project, File file, ParameterSet parameters,
+      @Nullable MemoryMapStorage storage, @NotNull Instant moduleCallDate) {
+    super(storage, moduleCallDate);
+    this.project = project;
+    this.file = file;
+    this.parameters = parameters;
+  }
+
+  @Override
+  public String getTaskDescription() {
+    return "Importing feature list from npz file " + file.getName();
+  }
+
+  @Override
+  public double getFinishedPercentage() {
+    return totalRows == 0 ? 0 : (double) processedRows / totalRows;
+  }
+
+  @Override
+  public void run() {
+    setStatus(TaskStatus.PROCESSING);
+
+    try (NpzReader reader = new NpzReader(file)) {
+      final ModularFeatureList flist = importFeatureList(reader);
+      if (flist == null || isCanceled()) {
+        return;
+      }
+      flist.addDescriptionOfAppliedTask(
+          new SimpleFeatureListAppliedMethod(NpzImportModule.class, parameters,
+              getModuleCallDate()));
+      project.addFeatureList(flist);
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Error reading npz file " + file.getAbsolutePath(), e);
+      setStatus(TaskStatus.ERROR);
+      setErrorMessage(
+          "Could not import feature list from file " + file.getName() + ": " + e.getMessage());
+      return;
+    }
+
+    if (getStatus() == TaskStatus.PROCESSING) {
+      setStatus(TaskStatus.FINISHED);
+    }
+  }
+
+  @Nullable
+  private ModularFeatureList importFeatureList(NpzReader reader) throws IOException {
+    final Map<String, RawDataFile> projectRaws = project.getCurrentRawDataFiles().stream()
+        .collect(Collectors.toMap(RawDataFile::getName, Function.identity(), (a, b) -> a));
+    final List<RawDataFile> raws = new ArrayList<>();
+    for (String sample : reader.readStringArray(SAMPLES)) {
+      final RawDataFile raw = projectRaws.get(sample);
+      if (raw == null) {
+        setStatus(TaskStatus.ERROR);
+        setErrorMessage("Sample " + sample + " of file " + file.getName()
+            + " is not imported in the project. Import all samples before the feature list.");
+        return null;
+      }
+      raws.add(raw);
+    }
+
+    final int[] ids = reader.readInts(ID);
+    final float[] ccs = reader.readFloats(CCS);
+    final int[] charges = reader.readInts(CHARGE);
+    final String[] names = reader.readStrings(COMPOUND_NAME);
+    final String[] formulas = reader.readStrings(FORMULA);
+    final String[] adducts = reader.readStrings(ADDUCT);
+    totalRows = ids.length;
+
+    final String flistName = file.getName().replaceFirst("\\.npz$", "");
+    final ModularFeatureList flist = new ModularFeatureList(flistName, getMemoryMapStorage(),
+        new ArrayList<>(raws));
+    final List<ModularFeatureListRow> rows = new ArrayList<>(ids.length);
+    for (int id : ids) {
+      final ModularFeatureListRow row = new ModularFeatureListRow(flist, id);
+      rows.add(row);
+      flist.addRow(row);
+    }
+
+    // one sample at a time to only keep the columns of a single sample in memory
+    for (RawDataFile raw : raws) {
+      if (isCanceled()) {
+        return null;
+      }
+      final String name = raw.getName();
+      final double[] mzs = reader.readDoubles(featureColumn(name, MZ));
+      final float[] rts = reader.readFloats(featureColumn(name, RT));
+      final float[] mobilities = reader.readFloats(featureColumn(name, MOBILITY));
+      final float[] heights = reader.readFloats(featureColumn(name, HEIGHT));
+      final float[] areas = reader.readFloats(featureColumn(name, AREA));
+
+      for (int i = 0; i < rows.size(); i++) {
+        if (Float.isNaN(heights[i])) {
+          continue;
+        }
+        final ModularFeature feature = new ModularFeature(flist, raw, FeatureStatus.DETECTED);
+        feature.set(MZType.class, mzs[i]);
+        feature.set(RTType.class, rts[i]);
+        feature.set(HeightType.class, heights[i]);
+        feature.set(AreaType.class, areas[i]);
+        if (!Float.isNaN(mobilities[i])) {
+          feature.set(MobilityType.class, mobilities[i]);
+        }
+        if (charges[i] != 0) {
+          feature.set(ChargeType.class, charges[i]);
+        }
+        rows.get(i).addFeature(raw, feature);
+      }
+      flist.setSelectedScans(raw, raw.getScanNumbers(1));
+    }
+
+    for (int i = 0; i < rows.size(); i++) {
+      final ModularFeatureListRow row = rows.get(i);
+      if (!Float.isNaN(ccs[i])) {
+        row.set(CCSType.class, ccs[i]);
+      }
+      if (names[i] != null || formulas[i] != null || adducts[i] != null) {
+        final ManualAnnotation manual = new ManualAnnotation();
+        manual.setCompoundName(names[i]);
+        manual.setFormula(formulas[i]);
+        manual.setIon(adducts[i]);
+        row.set(ManualAnnotationType.class, manual);
+      }
+      processedRows++;
+    }
+    return flist;
+  }
+}
@@ -30,6 +30,7 @@ import static io.github.mzmine.modules.dataprocessing.featdet_massdetection.Mass
 import io.github.mzmine.datamodel.MassSpectrumType;
 import io.github.mzmine.datamodel.Scan;
 import io.github.mzmine.modules.dataprocessing.featdet_massdetection.MassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.MassListBuffer;
 import io.github.mzmine.modules.io.import_rawdata_all.AdvancedSpectraImportParameters;
 import io.github.mzmine.modules.io.import_rawdata_all.spectral_processor.MsProcessor;
 import io.github.mzmine.modules.io.import_rawdata_all.spectral_processor.SimpleSpectralArrays;
@@ -44,6 +45,8 @@ public class MassDetectorMsProcessor implements MsProcessor {
   private final MassDetector ms1Detector;
   private final MassDetector ms2Detector;
   private final String description;
+  // scans are processed in parallel, one reused buffer per thread
+  private final ThreadLocal<MassListBuffer> buffers = ThreadLocal.withInitial(MassListBuffer::new);
 
   public MassDetectorMsProcessor(@NotNull ParameterSet advanced) {
     StringBuilder descb = new StringBuilder("Applying mass detection on scans:");
@@ -82,8 +85,10 @@ public class MassDetectorMsProcessor implements MsProcessor {
       type = MassSpectrumType.CENTROIDED;
     }
 
-    var values = msDetector.getMassValues(spectrum.mzs(), spectrum.intensities(), type);
-    return new SimpleSpectralArrays(values[0], values[1]);
+    final MassListBuffer buffer = buffers.get();
+    buffer.clear();
+    msDetector.detectMasses(spectrum.mzs(), spectrum.intensities(), type, buffer);
+    return new SimpleSpectralArrays(buffer.toMzArray(), buffer.toIntensityArray());
   }
 
 
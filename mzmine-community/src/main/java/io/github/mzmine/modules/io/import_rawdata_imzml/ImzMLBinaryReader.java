@@ -0,0 +1,271 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.import_rawdata_imzml;
+
+import com.alanmrace.jimzmlparser.mzml.BinaryDataArray;
+import com.alanmrace.jimzmlparser.mzml.CVParam;
+import io.github.mzmine.util.files.FileAndPathUtil;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.IntStream;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Reads uncompressed spectral arrays directly from the memory mapped imzML binary file (.ibd)
+ * using the external offsets of the imzML metadata. Mapped windows can be decoded by multiple
+ * threads.
+ */
+class ImzMLBinaryReader implements AutoCloseable {
+
+  /**
+   * Maximum size of a mapped window
+   */
+  static final long MAX_WINDOW_BYTES = 1L << 30;
+
+  private final FileChannel channel;
+
+  // the last shared array, e.g., the m/z array of continuous mode files
+  private BinaryLocation sharedLocation;
+  private double[] sharedValues;
+
+  private ImzMLBinaryReader(FileChannel channel) {
+    this.channel = channel;
+  }
+
+  /**
+   * @param imzmlFile the imzML file
+   * @return a reader for the .ibd file next to the imzML file or null if there is no .ibd file
+   */
+  @Nullable
+  static ImzMLBinaryReader open(@NotNull File imzmlFile) throws IOException {
+    for (String extension : new String[]{"ibd", "IBD"}) {
+      final File ibd = FileAndPathUtil.getRealFilePath(imzmlFile, extension);
+      if (ibd.isFile()) {
+        return new ImzMLBinaryReader(FileChannel.open(ibd.toPath(), StandardOpenOption.READ));
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return the location of the array in the binary file or null if it is not stored externally
+   * or compressed. Decode with the imzML parser in this case.
+   */
+  @Nullable
+  static BinaryLocation getLocation(@Nullable BinaryDataArray array) {
+    if (array == null) {
+      return null;
+    }
+    // external offset and array length
+    final CVParam offset = array.getCVParam("IMS:1000102");
+    final CVParam length = array.getCVParam("IMS:1000103");
+    // only no compression
+    if (offset == null || length == null || array.getCVParam("MS:1000576") == null) {
+      return null;
+    }
+    final BinaryDataType type = BinaryDataType.of(array);
+    if (type == null) {
+      return null;
+    }
+    return new BinaryLocation((long) offset.getValueAsDouble(), length.getValueAsInteger(), type);
+  }
+
+  /**
+   * Maps a window of the binary file
+   *
+   * @param start first byte
+   * @param end   exclusive end, at most {@link #MAX_WINDOW_BYTES} after start
+   */
+  @NotNull
+  MappedWindow map(long start, long end) throws IOException {
+    assert end - start <= MAX_WINDOW_BYTES;
+    final ByteBuffer buffer = channel.map(MapMode.READ_ONLY, start, end - start)
+        .order(ByteOrder.LITTLE_ENDIAN);
+    return new MappedWindow(start, buffer);
+  }
+
+  /**
+   * Decodes the arrays of a batch of spectra in parallel from one mapped window. Arrays that are
+   * equal to the previous array, e.g., the single m/z array of continuous mode files, are decoded
+   * only once. Batches that span more than {@link #MAX_WINDOW_BYTES} are split. Not thread safe.
+   *
+   * @param locations the arrays in the binary file, null for arrays that are not stored externally
+   * @return the values of each array, null for null locations
+   */
+  @NotNull
+  double[][] readBatch(@Nullable BinaryLocation[] locations) throws IOException {
+    final double[][] values = new double[locations.length][];
+    readBatch(locations, 0, locations.length, values);
+    return values;
+  }
+
+  private void readBatch(BinaryLocation[] locations, int from, int to, double[][] values)
+      throws IOException {
+    // sequential: arrays that are shared by consecutive spectra
+    long windowStart = Long.MAX_VALUE;
+    long windowEnd = Long.MIN_VALUE;
+    for (int i = from; i < to; i++) {
+      final BinaryLocation location = locations[i];
+      if (location == null) {
+        continue;
+      }
+      if (location.equals(sharedLocation) || (i > 0 && location.equals(locations[i - 1]))) {
+        values[i] = readShared(location);
+      } else {
+        windowStart = Math.min(windowStart, location.offset());
+        windowEnd = Math.max(windowEnd, location.end());
+      }
+    }
+    if (windowStart == Long.MAX_VALUE) {
+      // all arrays are shared or not stored externally
+      return;
+    }
+
+    if (windowEnd - windowStart > MAX_WINDOW_BYTES && to - from > 1) {
+      // spectra are usually stored in order, split until the window can be mapped
+      final int middle = (from + to) >>> 1;
+      readBatch(locations, from, middle, values);
+      readBatch(locations, middle, to, values);
+      return;
+    }
+
+    final MappedWindow window = map(windowStart, windowEnd);
+    IntStream.range(from, to).parallel().forEach(i -> {
+      if (values[i] == null && locations[i] != null) {
+        values[i] = window.decode(locations[i]);
+      }
+    });
+  }
+
+  /**
+   * Decodes an array that is shared by multiple spectra only once. Not thread safe.
+   */
+  @NotNull
+  double[] readShared(@NotNull BinaryLocation location) throws IOException {
+    if (!location.equals(sharedLocation)) {
+      sharedValues = map(location.offset(), location.end()).decode(location);
+      sharedLocation = location;
+    }
+    return sharedValues;
+  }
+
+  @Override
+  public void close() throws IOException {
+    // mapped buffers stay valid after closing the channel
+    channel.close();
+  }
+
+  enum BinaryDataType {
+    FLOAT32(4), FLOAT64(8), INT32(4), INT64(8);
+
+    private final int bytes;
+
+    BinaryDataType(int bytes) {
+      this.bytes = bytes;
+    }
+
+    @Nullable
+    static BinaryDataType of(@NotNull BinaryDataArray array) {
+      if (array.getCVParam("MS:1000521") != null) {
+        return FLOAT32;
+      } else if (array.getCVParam("MS:1000523") != null) {
+        return FLOAT64;
+      } else if (array.getCVParam("MS:1000519") != null) {
+        return INT32;
+      } else if (array.getCVParam("MS:1000522") != null) {
+        return INT64;
+      }
+      return null;
+    }
+
+    int getBytes() {
+      return bytes;
+    }
+  }
+
+  /**
+   * @param offset byte offset in the binary file
+   * @param length number of values
+   */
+  record BinaryLocation(long offset, int length, @NotNull BinaryDataType type) {
+
+    /**
+     * @return exclusive end byte
+     */
+    long end() {
+      return offset + (long) length * type.getBytes();
+    }
+  }
+
+  /**
+   * A mapped window of the binary file. Decoding uses absolute reads and is thread safe.
+   *
+   * @param start  byte offset of the window in the binary file
+   * @param buffer little endian buffer
+   */
+  record MappedWindow(long start, @NotNull ByteBuffer buffer) {
+
+    boolean contains(@NotNull BinaryLocation location) {
+      return location.offset() >= start && location.end() <= start + buffer.capacity();
+    }
+
+    @NotNull
+    double[] decode(@NotNull BinaryLocation location) {
+      assert contains(location);
+      final double[] values = new double[location.length()];
+      final int pos = (int) (location.offset() - start);
+      switch (location.type()) {
+        case FLOAT32 -> {
+          for (int i = 0; i < values.length; i++) {
+            values[i] = buffer.getFloat(pos + i * 4);
+          }
+        }
+        case FLOAT64 -> {
+          for (int i = 0; i < values.length; i++) {
+            values[i] = buffer.getDouble(pos + i * 8);
+          }
+        }
+        case INT32 -> {
+          for (int i = 0; i < values.length; i++) {
+            values[i] = buffer.getInt(pos + i * 4);
+          }
+        }
+        case INT64 -> {
+          for (int i = 0; i < values.length; i++) {
+            values[i] = buffer.getLong(pos + i * 8);
+          }
+        }
+      }
+      return values;
+    }
+  }
+}
@@ -44,12 +44,12 @@ import io.github.mzmine.datamodel.MassSpectrumType;
 import io.github.mzmine.datamodel.PolarityType;
 import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
 import io.github.mzmine.datamodel.impl.SimpleImagingScan;
-import io.github.mzmine.datamodel.impl.SimpleScan;
 import io.github.mzmine.datamodel.impl.builders.SimpleBuildingScan;
 import io.github.mzmine.datamodel.impl.masslist.ScanPointerMassList;
 import io.github.mzmine.modules.MZmineModule;
 import io.github.mzmine.modules.io.import_rawdata_all.spectral_processor.ScanImportProcessorConfig;
 import io.github.mzmine.modules.io.import_rawdata_all.spectral_processor.SimpleSpectralArrays;
+import io.github.mzmine.modules.io.import_rawdata_imzml.ImzMLBinaryReader.BinaryLocation;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
@@ -58,13 +58,16 @@ import io.github.mzmine.util.scans.ScanUtils;
 import java.io.File;
 import java.io.IOException;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Hashtable;
-import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.IntStream;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * This class reads mzML 1.0 and 1.1.0 files (http://www.psidev.info/index.php?q=node/257) using the
@@ -86,15 +89,10 @@ public class ImzMLImportTask extends AbstractTask {
 
   private Map<String, Integer> scanIdTable = new Hashtable<>();
 
-  /*
-   * This stack stores at most 20 consecutive scans. This window serves to find possible fragments
-   * (current scan) that belongs to any of the stored scans in the stack. The reason of the size
-   * follows the concept of neighborhood of scans and all his fragments. These solution is
-   * implemented because exists the possibility to find fragments of one scan after one or more full
-   * scans.
+  /**
+   * Number of spectra that are decoded and processed in parallel
    */
-  private static final int PARENT_STACK_SIZE = 20;
-  private LinkedList<SimpleScan> parentStack = new LinkedList<>();
+  private static final int BATCH_SIZE = 1024;
 
   public ImzMLImportTask(MZmineProject project, File fileToOpen,
       final @NotNull ScanImportProcessorConfig scanProcessorConfig,
@@ -124,9 +122,15 @@ public class ImzMLImportTask extends AbstractTask {
     logger.info("Started parsing file " + file);
 
     ImzML imzml;
-    try {
+    try (ImzMLBinaryReader reader = ImzMLBinaryReader.open(file)) {
       imzml = ImzMLHandler.parseimzML(file.getAbsolutePath());
+      if (reader == null) {
+        logger.info(
+            "No .ibd file found next to " + file + ", decoding spectra with the imzML parser");
+      }
 
+      // metadata is read sequentially, the binary data is decoded and processed in batches
+      final List<ImzMLSpectrum> batch = new ArrayList<>(BATCH_SIZE);
       SpectrumList spectra = imzml.getRun().getSpectrumList();
       totalScans = spectra.size();
       for (int i = 0; i < totalScans; i++) {
@@ -166,45 +170,22 @@ public class ImzMLImportTask extends AbstractTask {
           continue;
         }
 
-        double[] mzValues = extractMzValues(spectrum);
-        double[] intensityValues = extractIntensityValues(spectrum);
-        // Auto-detect whether this scan is centroided
-        SimpleSpectralArrays data = new SimpleSpectralArrays(mzValues, intensityValues);
-        MassSpectrumType spectrumType = ScanUtils.detectSpectrumType(mzValues, intensityValues);
-
-        data = scanProcessorConfig.processor().processScan(metadataScan, data);
-
-        if (scanProcessorConfig.isMassDetectActive(msLevel)) {
-          spectrumType = MassSpectrumType.CENTROIDED;
-        }
-
-        SimpleImagingScan scan = new SimpleImagingScan(newMZmineFile, scanNumber, msLevel,
-            retentionTime, precursorMz, precursorCharge, data.mzs(), data.intensities(),
-            spectrumType, polarity, scanDefinition, null, coord);
-
-        if (scanProcessorConfig.isMassDetectActive(msLevel)) {
-          scan.addMassList(new ScanPointerMassList(scan));
-        }
-
-        /*
-         * Verify the size of parentStack. The actual size of the window to cover possible
-         * candidates is defined by limitSize.
-         */
-        if (parentStack.size() > PARENT_STACK_SIZE) {
-          io.github.mzmine.datamodel.Scan firstScan = parentStack.removeLast();
-          newMZmineFile.addScan(firstScan);
+        final BinaryDataArrayList dataList = spectrum.getBinaryDataArrayList();
+        final BinaryLocation mzLocation =
+            reader == null || dataList == null ? null
+                : ImzMLBinaryReader.getLocation(dataList.getmzArray());
+        final BinaryLocation intensityLocation =
+            reader == null || dataList == null ? null
+                : ImzMLBinaryReader.getLocation(dataList.getIntensityArray());
+        batch.add(new ImzMLSpectrum(spectrum, metadataScan, precursorMz, precursorCharge,
+            scanDefinition, coord, mzLocation, intensityLocation));
+
+        if (batch.size() == BATCH_SIZE) {
+          processBatch(reader, batch);
+          batch.clear();
         }
-
-        parentStack.addFirst(scan);
-
-        parsedScans++;
-
-      }
-
-      while (!parentStack.isEmpty()) {
-        io.github.mzmine.datamodel.Scan scan = parentStack.removeLast();
-        newMZmineFile.addScan(scan);
       }
+      processBatch(reader, batch);
 
       // set settings of image
       newMZmineFile.setImagingParam(new ImagingParameters(imzml));
@@ -230,6 +211,89 @@ public class ImzMLImportTask extends AbstractTask {
 
   }
 
+  /**
+   * Decodes and processes the spectra in parallel and adds the scans in order.
+   *
+   * @param reader the binary reader or null to decode all spectra with the imzML parser
+   */
+  private void processBatch(@Nullable ImzMLBinaryReader reader,
+      @NotNull List<ImzMLSpectrum> batch) throws IOException {
+    if (batch.isEmpty()) {
+      return;
+    }
+    final int n = batch.size();
+    // m/z arrays followed by the intensity arrays
+    final BinaryLocation[] locations = new BinaryLocation[2 * n];
+    for (int i = 0; i < n; i++) {
+      locations[i] = batch.get(i).mzLocation();
+      locations[n + i] = batch.get(i).intensityLocation();
+    }
+    final double[][] values =
+        reader != null ? reader.readBatch(locations) : new double[locations.length][];
+
+    // sequential: spectra without external binary data
+    for (int i = 0; i < n; i++) {
+      if (values[i] == null) {
+        values[i] = extractMzValues(batch.get(i).spectrum());
+      }
+      if (values[n + i] == null) {
+        values[n + i] = extractIntensityValues(batch.get(i).spectrum());
+      }
+    }
+
+    final SimpleSpectralArrays[] data = new SimpleSpectralArrays[n];
+    final MassSpectrumType[] spectrumTypes = new MassSpectrumType[n];
+    IntStream.range(0, n).parallel().forEach(i -> {
+      final ImzMLSpectrum spectrum = batch.get(i);
+      final double[] mzValues = values[i];
+      final double[] intensityValues = values[n + i];
+      // Auto-detect whether this scan is centroided
+      spectrumTypes[i] = ScanUtils.detectSpectrumType(mzValues, intensityValues);
+      data[i] = scanProcessorConfig.processor().processScan(spectrum.metadataScan(),
+          new SimpleSpectralArrays(mzValues, intensityValues));
+    });
+
+    // storage and scan list in order
+    for (int i = 0; i < n; i++) {
+      final ImzMLSpectrum spectrum = batch.get(i);
+      final SimpleBuildingScan metadataScan = spectrum.metadataScan();
+      final int msLevel = metadataScan.getMSLevel();
+
+      MassSpectrumType spectrumType = spectrumTypes[i];
+      if (scanProcessorConfig.isMassDetectActive(msLevel)) {
+        spectrumType = MassSpectrumType.CENTROIDED;
+      }
+
+      SimpleImagingScan scan = new SimpleImagingScan(newMZmineFile,
+          metadataScan.getScanNumber(), msLevel, metadataScan.getRetentionTime(),
+          spectrum.precursorMz(), spectrum.precursorCharge(), data[i].mzs(),
+          data[i].intensities(), spectrumType, metadataScan.getPolarity(),
+          spectrum.scanDefinition(), null, spectrum.coordinates());
+
+      if (scanProcessorConfig.isMassDetectActive(msLevel)) {
+        scan.addMassList(new ScanPointerMassList(scan));
+      }
+
+      newMZmineFile.addScan(scan);
+      parsedScans++;
+    }
+  }
+
+  /**
+   * Metadata of a spectrum, the binary data is decoded later
+   *
+   * @param mzLocation        location in the .ibd file or null to decode with the imzML parser
+   * @param intensityLocation location in the .ibd file or null to decode with the imzML parser
+   */
+  private record ImzMLSpectrum(@NotNull Spectrum spectrum,
+                               @NotNull SimpleBuildingScan metadataScan, double precursorMz,
+                               int precursorCharge, @NotNull String scanDefinition,
+                               @Nullable Coordinates coordinates,
+                               @Nullable BinaryLocation mzLocation,
+                               @Nullable BinaryLocation intensityLocation) {
+
+  }
+
   private int convertScanIdToScanNumber(String scanId) {
 
     if (scanIdTable.containsKey(scanId)) {
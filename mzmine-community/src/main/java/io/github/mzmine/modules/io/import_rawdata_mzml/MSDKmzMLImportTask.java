@@ -584,6 +584,11 @@ public class MSDKmzMLImportTask extends AbstractTask {
     } catch (IOException e) {
       logger.log(Level.WARNING, "Error while loading mzML/RAW file " + e.getMessage(), e);
       throw (new MSDKException(e));
+    } finally {
+      if (parser != null) {
+        // stops the decoding threads, also on cancel
+        parser.close();
+      }
     }
     return parser.getMzMLRawFile();
   }
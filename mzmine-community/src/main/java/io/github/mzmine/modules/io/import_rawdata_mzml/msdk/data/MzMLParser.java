@@ -26,10 +26,13 @@
 package io.github.mzmine.modules.io.import_rawdata_mzml.msdk.data;
 
 import io.github.msdk.datamodel.Chromatogram;
+import io.github.mzmine.gui.preferences.MZminePreferences;
+import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.modules.io.import_rawdata_all.spectral_processor.ScanImportProcessorConfig;
 import io.github.mzmine.modules.io.import_rawdata_mzml.MSDKmzMLImportTask;
 import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.util.TagTracker;
 import io.github.mzmine.util.MemoryMapStorage;
+import io.github.mzmine.util.concurrent.OrderedTaskPipeline;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
@@ -37,6 +40,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
 import java.util.function.Function;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -46,6 +50,7 @@ import java.util.zip.DataFormatException;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * <p>
@@ -61,6 +66,14 @@ public class MzMLParser {
   private final MemoryMapStorage storage;
   private final @NotNull ScanImportProcessorConfig scanProcessorConfig;
 
+  private final @NotNull MSDKmzMLImportTask importer;
+  /**
+   * Decodes binary arrays and applies the scan processors on the shared task executor while this
+   * thread keeps reading the XML. Adds the spectra to the spectrum list in file order, as frames
+   * are built from consecutive mobility scans. Results are null for skipped spectra.
+   */
+  private final OrderedTaskPipeline<BuildingMzMLMsScan, RuntimeException> decodingPipeline;
+
   private int totalScans = 0, parsedScans = 0;
   private final MzMLRawDataFile newRawFile;
   private final Pattern scanNumberPattern = Pattern.compile("scan=([0-9]+)");
@@ -77,12 +90,34 @@ public class MzMLParser {
 
   public MzMLParser(MSDKmzMLImportTask importer, MemoryMapStorage storage,
       @NotNull ScanImportProcessorConfig scanProcessorConfig) {
+    // one thread reads the xml, the others decode
+    this(importer, storage, scanProcessorConfig,
+        MZmineCore.getConfiguration().getPreferences().getParameter(MZminePreferences.numOfThreads)
+            .getValue() - 1);
+  }
+
+  /**
+   * @param decodingThreads number of spectra that are decoded in parallel on the shared task
+   *                        executor. Values &lt; 1 decode all spectra on the parsing thread.
+   */
+  public MzMLParser(@NotNull MSDKmzMLImportTask importer, MemoryMapStorage storage,
+      @NotNull ScanImportProcessorConfig scanProcessorConfig, int decodingThreads) {
+    this.importer = importer;
     this.vars = new Vars();
     this.tracker = new TagTracker();
     this.newRawFile = new MzMLRawDataFile(importer.getMzMLFile(), vars.msFunctionsList,
         vars.spectrumList, vars.chromatogramsList, vars.mobilityScanData);
     this.storage = storage;
     this.scanProcessorConfig = scanProcessorConfig;
+
+    // without executor all spectra are decoded on the parsing thread
+    decodingPipeline = new OrderedTaskPipeline<>(
+        decodingThreads > 0 ? MZmineCore.getTaskController().getExecutor() : null,
+        decodingThreads * 4, spectrum -> {
+          if (spectrum != null) {
+            vars.addSpectrumToList(storage, spectrum);
+          }
+        });
   }
 
   /**
@@ -510,6 +545,11 @@ public class MzMLParser {
     }
     if (closingTagName.contentEquals(MzMLTags.TAG_SPECTRUM_LIST)) {
       // finished the last scan
+      try {
+        decodingPipeline.finish(importer::isCanceled);
+      } catch (ExecutionException | InterruptedException e) {
+        throw decodingFailed(e);
+      }
       vars.memoryMapAndClearFrameMobilityScanData(storage);
     }
 
@@ -533,13 +573,46 @@ public class MzMLParser {
     var spectrum = vars.spectrum;
 //    logger.info(STR."Finalizing scan \{spectrum.getScanNumber()}");
     if (scanProcessorConfig.scanFilter().matches(spectrum)) {
-      if (spectrum.loadProcessMemMapData(storage, scanProcessorConfig)) {
-        vars.addSpectrumToList(storage, spectrum);
+      try {
+        decodingPipeline.submit(() -> decode(spectrum));
+      } catch (ExecutionException | InterruptedException e) {
+        throw decodingFailed(e);
       }
     }
     vars.spectrum = null;
   }
 
+  /**
+   * @return the spectrum or null if it was filtered or the import was canceled
+   */
+  private @Nullable BuildingMzMLMsScan decode(BuildingMzMLMsScan spectrum) {
+    // skip the decoding of queued spectra once the import was canceled
+    try {
+      return !importer.isCanceled() && spectrum.loadProcessMemMapData(storage,
+          scanProcessorConfig) ? spectrum : null;
+    } catch (RuntimeException e) {
+      throw new IllegalStateException(
+          "Could not decode scan #%d".formatted(spectrum.getScanNumber()), e);
+    }
+  }
+
+  private static RuntimeException decodingFailed(Exception e) {
+    if (e instanceof InterruptedException) {
+      Thread.currentThread().interrupt();
+      return new IllegalStateException("Interrupted while decoding mzML spectra", e);
+    }
+    return e.getCause() instanceof RuntimeException cause ? cause
+        : new IllegalStateException("Could not decode mzML spectra", e.getCause());
+  }
+
+  /**
+   * Cancels all spectra that are still waiting for decoding. Needs to be called after parsing
+   * finished or was cancelled.
+   */
+  public void close() {
+    decodingPipeline.close();
+  }
+
   /**
    * <p>
    * Carry out the required parsing of the mzML data when the
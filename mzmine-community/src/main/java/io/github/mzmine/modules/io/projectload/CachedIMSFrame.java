@@ -82,14 +82,12 @@ public class CachedIMSFrame implements Frame {
 
   @Override
   public @Nullable MobilityScan getMobilityScan(int num) {
-    if (cachedScans == null) {
-      cachedScans = originalFrame.getMobilityScans();
-    }
-    return cachedScans.get(num);
+    return getMobilityScans().get(num);
   }
 
   @Override
-  public @NotNull List<MobilityScan> getMobilityScans() {
+  public synchronized @NotNull List<MobilityScan> getMobilityScans() {
+    // synchronized, feature list chunks are loaded in parallel and must share the same scans
     if (cachedScans == null) {
       cachedScans = originalFrame.getMobilityScans();
     }
@@ -26,8 +26,10 @@
 package io.github.mzmine.modules.io.projectload;
 
 import com.google.common.io.CountingInputStream;
+import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.modules.io.projectload.version_3_0.FeatureListLoadTask;
+import io.github.mzmine.modules.io.projectload.version_3_0.RawDataFileBinaryReader;
 import io.github.mzmine.modules.io.projectsave.ProjectSavingTask;
 import io.github.mzmine.modules.io.projectsave.RawDataFileSaveHandler;
 import io.github.mzmine.parameters.ParameterSet;
@@ -50,7 +52,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -59,6 +63,7 @@ import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import javafx.scene.control.ButtonType;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 import org.jetbrains.annotations.NotNull;
 import org.xml.sax.SAXException;
 
@@ -202,6 +207,12 @@ public class ProjectOpeningTask extends AbstractTask {
 
       }
 
+      loadProcessedRawDataFiles(zipFile);
+      if (isCanceled()) {
+        zipFile.close();
+        return;
+      }
+
       loadFeatureList(zipFile);
 
       // Finish and close the project ZIP file
@@ -355,6 +366,40 @@ public class ProjectOpeningTask extends AbstractTask {
     tempConfigFile.delete();
   }
 
+  /**
+   * Loads the files that were stored as processed data instead of being re-imported from the batch.
+   * MS/MS information may reference scans of other files and is set after all files were added.
+   * Files are inserted at their index in the saved project, so the re-imported files keep their
+   * order in between.
+   */
+  private void loadProcessedRawDataFiles(ZipFile zipFile)
+      throws IOException, ParserConfigurationException, SAXException, XMLStreamException {
+    final List<String> folders = RawDataFileBinaryReader.findFolders(zipFile);
+    if (folders.isEmpty()) {
+      return;
+    }
+
+    logger.info("Loading " + folders.size() + " processed MS data files");
+    currentLoadedObjectName = "Processed MS data files";
+    final List<RawDataFile> files = new ArrayList<>();
+    for (String folder : folders) {
+      if (isCanceled()) {
+        return;
+      }
+      files.add(RawDataFileBinaryReader.readFile(zipFile, folder));
+    }
+
+    final List<RawDataFile> allFiles = new ArrayList<>(List.of(newProject.getDataFiles()));
+    allFiles.addAll(files);
+    for (int i = 0; i < files.size(); i++) {
+      RawDataFileBinaryReader.readMsMsInfos(zipFile, folders.get(i), files.get(i), allFiles);
+    }
+    // ascending indices, so all files before each index are already in the project
+    for (int i = 0; i < files.size(); i++) {
+      newProject.addFile(RawDataFileBinaryReader.getIndex(folders.get(i)), files.get(i));
+    }
+  }
+
   private void loadFeatureList(ZipFile zipFile) {
 
     FeatureListLoadTask task = new FeatureListLoadTask(MemoryMapStorage.forFeatureList(),
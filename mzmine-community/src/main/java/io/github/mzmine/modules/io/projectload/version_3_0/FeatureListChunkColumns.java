@@ -0,0 +1,396 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.projectload.version_3_0;
+
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.ModularDataModel;
+import io.github.mzmine.datamodel.features.ModularFeature;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import io.github.mzmine.datamodel.features.types.DataType;
+import io.github.mzmine.datamodel.features.types.DataTypes;
+import io.github.mzmine.datamodel.features.types.numbers.abstr.DoubleType;
+import io.github.mzmine.datamodel.features.types.numbers.abstr.FloatType;
+import io.github.mzmine.datamodel.features.types.numbers.abstr.IntegerType;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The numeric values of a chunk of feature list rows in the binary feature list format. Values of
+ * {@link DoubleType}, {@link FloatType} and {@link IntegerType}s that use the default xml
+ * serialization are stored as little endian primitive columns, one per data type for the rows and
+ * one per data type and raw data file for the features. All other values are stored as xml in the
+ * same chunk. A chunk is encoded as:
+ * <pre>
+ * header   magic, version, first row index, number of rows
+ * files    number of file names, file names
+ * columns  number of columns, then per column: type id, file index (-1 for rows), kind,
+ *          one state byte per row (0 absent, 1 value), one value per row
+ * xml      number of bytes, xml of all rows without the column values
+ * </pre>
+ */
+public final class FeatureListChunkColumns {
+
+  public static final int MAGIC = 0x4d5a4643; // MZFC
+  public static final int VERSION = 1;
+
+  private static final Logger logger = Logger.getLogger(FeatureListChunkColumns.class.getName());
+  private static final byte ABSENT = 0;
+  private static final byte VALUE = 1;
+  private static final ClassValue<Kind> KINDS = new ClassValue<>() {
+    @Override
+    protected Kind computeValue(@NotNull Class<?> type) {
+      return Kind.forType(type);
+    }
+  };
+
+  private final int firstRow;
+  private final int numRows;
+  private final List<Column> rowColumns;
+  // columns by file name
+  private final Map<String, List<Column>> featureColumns;
+  private final ByteBuffer xml;
+
+  private FeatureListChunkColumns(int firstRow, int numRows, List<Column> rowColumns,
+      Map<String, List<Column>> featureColumns, ByteBuffer xml) {
+    this.firstRow = firstRow;
+    this.numRows = numRows;
+    this.rowColumns = rowColumns;
+    this.featureColumns = featureColumns;
+    this.xml = xml;
+  }
+
+  /**
+   * @return true if this value is stored in a column and must not be written as xml
+   */
+  public static boolean isColumnValue(@NotNull DataType<?> type, @Nullable Object value) {
+    final Kind kind = KINDS.get(type.getClass());
+    return kind != Kind.NONE && (value == null || value.getClass() == kind.valueClass);
+  }
+
+  /**
+   * Decodes a chunk. The buffer is not copied, column values are read on demand from slices.
+   *
+   * @param buffer the encoded chunk
+   */
+  public static @NotNull FeatureListChunkColumns decode(@NotNull ByteBuffer buffer)
+      throws IOException {
+    final ByteBuffer in = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    if (in.getInt() != MAGIC) {
+      throw new IOException("Invalid feature list chunk.");
+    }
+    final int version = in.getInt();
+    if (version != VERSION) {
+      throw new IOException("Unsupported feature list chunk version " + version);
+    }
+    final int firstRow = in.getInt();
+    final int numRows = in.getInt();
+
+    final String[] files = new String[in.getInt()];
+    for (int i = 0; i < files.length; i++) {
+      files[i] = readString(in);
+    }
+
+    final List<Column> rowColumns = new ArrayList<>();
+    final Map<String, List<Column>> featureColumns = new HashMap<>();
+    final int numColumns = in.getInt();
+    for (int i = 0; i < numColumns; i++) {
+      final String typeId = readString(in);
+      final int fileIndex = in.getInt();
+      final Kind kind = Kind.values()[in.get()];
+      final ByteBuffer states = slice(in, numRows);
+      final ByteBuffer values = slice(in, numRows * kind.bytes);
+
+      final DataType<?> type = DataTypes.getTypeForId(typeId);
+      if (type == null) {
+        logger.info(() -> "No data type for id " + typeId);
+        continue;
+      }
+      final Column column = new Column(type, kind, states, values);
+      if (fileIndex < 0) {
+        rowColumns.add(column);
+      } else {
+        featureColumns.computeIfAbsent(files[fileIndex], f -> new ArrayList<>()).add(column);
+      }
+    }
+
+    final ByteBuffer xml = slice(in, in.getInt());
+    return new FeatureListChunkColumns(firstRow, numRows, rowColumns, featureColumns, xml);
+  }
+
+  private static ByteBuffer slice(ByteBuffer in, int length) {
+    final ByteBuffer slice = in.slice(in.position(), length).order(ByteOrder.LITTLE_ENDIAN);
+    in.position(in.position() + length);
+    return slice;
+  }
+
+  private static String readString(ByteBuffer in) {
+    final byte[] bytes = new byte[in.getInt()];
+    in.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  public int getFirstRow() {
+    return firstRow;
+  }
+
+  public int getNumRows() {
+    return numRows;
+  }
+
+  /**
+   * @return the xml of all rows of this chunk, parsed like the xml feature list format
+   */
+  public @NotNull ByteBuffer getXml() {
+    return xml.duplicate();
+  }
+
+  /**
+   * Sets the column values of a row
+   *
+   * @param rowIndex the index of the row in the feature list
+   */
+  public void applyToRow(@NotNull ModularFeatureListRow row, int rowIndex) {
+    apply(row, rowColumns, rowIndex);
+  }
+
+  /**
+   * Sets the column values of a feature before it is added to its row
+   *
+   * @param fileName the name of the raw data file of the feature
+   * @param rowIndex the index of the row in the feature list
+   */
+  public void applyToFeature(@NotNull ModularFeature feature, @NotNull String fileName,
+      int rowIndex) {
+    final List<Column> columns = featureColumns.get(fileName);
+    if (columns != null) {
+      apply(feature, columns, rowIndex);
+    }
+  }
+
+  private void apply(ModularDataModel model, List<Column> columns, int rowIndex) {
+    final int i = rowIndex - firstRow;
+    for (Column column : columns) {
+      if (column.states.get(i) != VALUE) {
+        continue;
+      }
+      final Object value = switch (column.kind) {
+        case DOUBLE -> column.values.getDouble(i * Double.BYTES);
+        case FLOAT -> column.values.getFloat(i * Float.BYTES);
+        case INT -> column.values.getInt(i * Integer.BYTES);
+        case NONE -> throw new IllegalStateException("Column without values");
+      };
+      try {
+        model.set((DataType) column.type, value);
+      } catch (RuntimeException e) {
+        logger.log(Level.WARNING, () -> String.format(
+            "DataType %s and value %s were not set. Maybe incompatible during loading?",
+            column.type, value));
+      }
+    }
+  }
+
+  private enum Kind {
+    DOUBLE(Double.class, DoubleType.class, Double.BYTES), //
+    FLOAT(Float.class, FloatType.class, Float.BYTES), //
+    INT(Integer.class, IntegerType.class, Integer.BYTES), //
+    NONE(null, null, 0);
+
+    private final Class<?> valueClass;
+    private final Class<?> baseType;
+    private final int bytes;
+
+    Kind(Class<?> valueClass, Class<?> baseType, int bytes) {
+      this.valueClass = valueClass;
+      this.baseType = baseType;
+      this.bytes = bytes;
+    }
+
+    /**
+     * Only types that inherit the xml serialization of their base type are stored in columns.
+     * Other types may store more than the value.
+     */
+    private static Kind forType(Class<?> type) {
+      for (Kind kind : values()) {
+        if (kind.baseType == null || !kind.baseType.isAssignableFrom(type)) {
+          continue;
+        }
+        try {
+          final Class<?> save = type.getMethod("saveToXML", XMLStreamWriter.class, Object.class,
+              ModularFeatureList.class, ModularFeatureListRow.class, ModularFeature.class,
+              RawDataFile.class).getDeclaringClass();
+          final Class<?> load = type.getMethod("loadFromXML", XMLStreamReader.class,
+              MZmineProject.class, ModularFeatureList.class, ModularFeatureListRow.class,
+              ModularFeature.class, RawDataFile.class).getDeclaringClass();
+          return save == kind.baseType && load == kind.baseType ? kind : NONE;
+        } catch (NoSuchMethodException e) {
+          return NONE;
+        }
+      }
+      return NONE;
+    }
+  }
+
+  private record Column(DataType<?> type, Kind kind, ByteBuffer states, ByteBuffer values) {
+
+  }
+
+  /**
+   * Collects the column values of the rows of one chunk while the xml of the rows is written.
+   */
+  public static final class Builder {
+
+    private final int firstRow;
+    private final int numRows;
+    private final List<String> files = new ArrayList<>();
+    private final Map<String, Integer> fileIndices = new HashMap<>();
+    // key: file index and type id
+    private final Map<String, ColumnBuilder> columns = new LinkedHashMap<>();
+
+    /**
+     * @param firstRow index of the first row of this chunk in the feature list
+     * @param numRows  number of rows in this chunk
+     */
+    public Builder(int firstRow, int numRows) {
+      this.firstRow = firstRow;
+      this.numRows = numRows;
+    }
+
+    /**
+     * Adds all column values of a row or feature
+     *
+     * @param file     the raw data file of a feature or null for a row
+     * @param rowIndex the index of the row in the feature list
+     */
+    public void add(@NotNull ModularDataModel model, @Nullable RawDataFile file, int rowIndex) {
+      final int fileIndex = file == null ? -1
+          : fileIndices.computeIfAbsent(file.getName(), name -> {
+            files.add(name);
+            return files.size() - 1;
+          });
+      for (Entry<DataType, Object> entry : model.getMap().entrySet()) {
+        final DataType<?> type = entry.getKey();
+        final Object value = entry.getValue();
+        if (value == null || !isColumnValue(type, value)) {
+          continue;
+        }
+        final Kind kind = KINDS.get(type.getClass());
+        columns.computeIfAbsent(fileIndex + "_" + type.getUniqueID(),
+                key -> new ColumnBuilder(type.getUniqueID(), fileIndex, kind, numRows))
+            .set(rowIndex - firstRow, value);
+      }
+    }
+
+    /**
+     * @param xml the xml of all rows of this chunk
+     * @return the encoded chunk
+     */
+    public byte[] build(byte[] xml) {
+      final List<byte[]> fileNames = files.stream()
+          .map(f -> f.getBytes(StandardCharsets.UTF_8)).toList();
+      final List<byte[]> typeIds = columns.values().stream()
+          .map(c -> c.typeId.getBytes(StandardCharsets.UTF_8)).toList();
+
+      int size = 5 * Integer.BYTES + fileNames.stream().mapToInt(b -> Integer.BYTES + b.length).sum()
+                 + Integer.BYTES + Integer.BYTES + xml.length;
+      int c = 0;
+      for (ColumnBuilder column : columns.values()) {
+        size += Integer.BYTES + typeIds.get(c++).length + Integer.BYTES + 1 + numRows
+                + numRows * column.kind.bytes;
+      }
+
+      final ByteBuffer out = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+      out.putInt(MAGIC).putInt(VERSION).putInt(firstRow).putInt(numRows);
+      out.putInt(fileNames.size());
+      fileNames.forEach(name -> out.putInt(name.length).put(name));
+      out.putInt(columns.size());
+      c = 0;
+      for (ColumnBuilder column : columns.values()) {
+        final byte[] typeId = typeIds.get(c++);
+        out.putInt(typeId.length).put(typeId);
+        out.putInt(column.fileIndex);
+        out.put((byte) column.kind.ordinal());
+        out.put(column.states);
+        switch (column.kind) {
+          case DOUBLE -> out.asDoubleBuffer().put((double[]) column.values);
+          case FLOAT -> out.asFloatBuffer().put((float[]) column.values);
+          case INT -> out.asIntBuffer().put((int[]) column.values);
+          case NONE -> throw new IllegalStateException("Column without values");
+        }
+        out.position(out.position() + numRows * column.kind.bytes);
+      }
+      out.putInt(xml.length).put(xml);
+      return out.array();
+    }
+  }
+
+  private static final class ColumnBuilder {
+
+    private final String typeId;
+    private final int fileIndex;
+    private final Kind kind;
+    private final byte[] states;
+    private final Object values;
+
+    private ColumnBuilder(String typeId, int fileIndex, Kind kind, int numRows) {
+      this.typeId = typeId;
+      this.fileIndex = fileIndex;
+      this.kind = kind;
+      states = new byte[numRows];
+      values = switch (kind) {
+        case DOUBLE -> new double[numRows];
+        case FLOAT -> new float[numRows];
+        case INT -> new int[numRows];
+        case NONE -> throw new IllegalArgumentException("No column for this type");
+      };
+    }
+
+    private void set(int i, Object value) {
+      switch (kind) {
+        case DOUBLE -> ((double[]) values)[i] = (Double) value;
+        case FLOAT -> ((float[]) values)[i] = (Float) value;
+        case INT -> ((int[]) values)[i] = (Integer) value;
+        case NONE -> throw new IllegalStateException("Column without values");
+      }
+      states[i] = VALUE;
+    }
+  }
+}
@@ -45,10 +45,13 @@ import io.github.mzmine.util.MemoryMapStorage;
 import io.github.mzmine.util.ParsingUtils;
 import io.github.mzmine.util.ZipUtils;
 import io.github.mzmine.util.files.FileAndPathUtil;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.file.Path;
 import java.time.Instant;
 import java.util.ArrayList;
@@ -59,6 +62,8 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -84,6 +89,8 @@ public class FeatureListLoadTask extends AbstractTask {
   public static final String TEMP_FLIST_DATA_FOLDER = "mzmine_featurelists_temp";
   public static final Pattern fileNamePattern = Pattern
       .compile("([^\\n]+)(" + FeatureListSaveTask.DATA_FILE_SUFFIX + ")");
+  public static final Pattern binaryFileNamePattern = Pattern
+      .compile("([^\\n]+)(" + FeatureListSaveTask.ROWS_FILE_SUFFIX + ")");
 
   private static final Logger logger = Logger.getLogger(FeatureListLoadTask.class.getName());
   final String idTypeUniqueID = new IDType().getUniqueID();
@@ -91,7 +98,7 @@ public class FeatureListLoadTask extends AbstractTask {
   private final MZmineProject project;
   private final AtomicInteger rowCounter = new AtomicInteger(0);
   private int totalRows = 1;
-  private int processedRows = 0;
+  private final AtomicInteger processedRows = new AtomicInteger(0);
   private String currentFlist = "";
   private int numFlists = 1;
   private int processedFlists;
@@ -133,13 +140,13 @@ public class FeatureListLoadTask extends AbstractTask {
   @Override
   public String getTaskDescription() {
     return "Importing feature list " + currentFlist + (processedFlists + 1) + "/" + numFlists
-           + ". Parsing row " + processedRows + "/" + totalRows;
+           + ". Parsing row " + processedRows.get() + "/" + totalRows;
   }
 
   @Override
   public double getFinishedPercentage() {
     return (double) processedFlists / numFlists // overall progress finished flists
-           + (double) processedRows / totalRows / numFlists; // current flist progress
+           + (double) processedRows.get() / totalRows / numFlists; // current flist progress
   }
 
   @Override
@@ -149,34 +156,41 @@ public class FeatureListLoadTask extends AbstractTask {
       Path tempDirectory = FileAndPathUtil.createTempDirectory(TEMP_FLIST_DATA_FOLDER);
 
       logger.info(() -> "Unzipping feature lists of project to " + tempDirectory.toString());
-      ZipUtils.unzipDirectory(FeatureListSaveTask.FLIST_FOLDER, zip, tempDirectory.toFile());
+      // rows files of the binary format are read directly from the project file
+      ZipUtils.unzipDirectory(FeatureListSaveTask.FLIST_FOLDER, zip, tempDirectory.toFile(),
+          name -> !binaryFileNamePattern.matcher(name).matches());
       logger.info(() -> "Unzipping feature lists done.");
 
-      File[] files = new File(tempDirectory.toFile(), FeatureListSaveTask.FLIST_FOLDER)
-          .listFiles((dir, name) -> fileNamePattern.matcher(name).matches());
-      if (files == null) {
+      final List<String> flistEntries = zip.stream().map(ZipEntry::getName)
+          .filter(FeatureListLoadTask::isFeatureListEntry).toList();
+      if (flistEntries.isEmpty()) {
         logger.info("Did not find feature lists to load.");
         setStatus(TaskStatus.FINISHED);
         return;
       }
 
-      numFlists = files.length;
+      numFlists = flistEntries.size();
 
       final MemoryMapStorage storage = MemoryMapStorage.forFeatureList();
 
       // enable caching of mobility scans during project import.
       project.setProjectLoadImsImportCaching(true);
 
-      for (File flistFile : files) {
+      for (String flistEntry : flistEntries) {
         if (isCanceled()) {
           return;
         }
         rowCounter.set(0);
 
+        final File flistFile = new File(tempDirectory.toFile(), flistEntry);
+        final boolean binary = binaryFileNamePattern.matcher(flistEntry).matches();
         final File metadataFile = new File(flistFile.toString()
-            .replace(FeatureListSaveTask.DATA_FILE_SUFFIX,
+            .replace(binary ? FeatureListSaveTask.ROWS_FILE_SUFFIX
+                    : FeatureListSaveTask.DATA_FILE_SUFFIX,
                 FeatureListSaveTask.METADATA_FILE_SUFFIX));
-        ModularFeatureList flist = createRows(storage, flistFile, metadataFile);
+        ModularFeatureList flist =
+            binary ? createRowsBinary(storage, zip.getEntry(flistEntry), metadataFile)
+                : createRows(storage, flistFile, metadataFile);
 
         if (flist == null) {
           logger.severe(
@@ -184,7 +198,15 @@ public class FeatureListLoadTask extends AbstractTask {
                     + metadataFile.getAbsolutePath());
           continue;
         }
-        parseFeatureList(storage, project, flist, flistFile);
+        if (binary) {
+          parseFeatureListBinary(storage, project, flist);
+        } else {
+          parseFeatureList(storage, project, flist, flistFile);
+        }
+        if (isCanceled()) {
+          // do not add the incomplete feature list
+          return;
+        }
 
         // disable buffering after the import (replace references to CachedIMSRawDataFiles with IMSRawDataFiles
         flist.replaceCachedFilesAndScans();
@@ -209,7 +231,7 @@ public class FeatureListLoadTask extends AbstractTask {
   private void parseFeatureList(MemoryMapStorage storage, MZmineProject project,
       ModularFeatureList flist, File flistFile) {
     currentFlist = flist.getName();
-    processedRows = 0;
+    processedRows.set(0);
     totalRows = flist.getNumberOfRows();
 
     try (InputStream fis = new FileInputStream(flistFile)) {
@@ -233,8 +255,8 @@ public class FeatureListLoadTask extends AbstractTask {
                       .getAttributeValue(null, CONST.XML_FLIST_NAME_ATTR));
             }
           } else if (CONST.XML_ROW_ELEMENT.equals(localName)) {
-            parseRow(reader, storage, project, flist);
-            processedRows++;
+            parseRow(reader, storage, project, flist, rowCounter.getAndIncrement(), null);
+            processedRows.incrementAndGet();
           }
         }
       }
@@ -244,6 +266,122 @@ public class FeatureListLoadTask extends AbstractTask {
     }
   }
 
+  /**
+   * @return true for the xml data files and binary rows files directly in the feature list folder
+   */
+  private static boolean isFeatureListEntry(String entryName) {
+    if (!entryName.startsWith(FeatureListSaveTask.FLIST_FOLDER)) {
+      return false;
+    }
+    final String name = entryName.substring(FeatureListSaveTask.FLIST_FOLDER.length());
+    return !name.contains("/") && (fileNamePattern.matcher(name).matches()
+                                   || binaryFileNamePattern.matcher(name).matches());
+  }
+
+  /**
+   * Parses the chunks of the binary feature list format in parallel. The chunks are inflated
+   * directly from the project file, each chunk sets the values of its own range of rows.
+   */
+  private void parseFeatureListBinary(MemoryMapStorage storage, MZmineProject project,
+      ModularFeatureList flist) {
+    currentFlist = flist.getName();
+    processedRows.set(0);
+    totalRows = flist.getNumberOfRows();
+    final int numChunks =
+        (totalRows + FeatureListSaveTask.ROWS_PER_CHUNK - 1) / FeatureListSaveTask.ROWS_PER_CHUNK;
+
+    IntStream.range(0, numChunks).parallel().forEach(chunk -> {
+      if (isCanceled()) {
+        return;
+      }
+      final String entryName = FeatureListSaveTask.getChunkFileName(flist.getName(), chunk);
+      try {
+        final ZipEntry entry = zip.getEntry(entryName);
+        if (entry == null) {
+          throw new IOException("Missing entry " + entryName + " in project file");
+        }
+        final FeatureListChunkColumns columns;
+        try (InputStream is = zip.getInputStream(entry)) {
+          columns = FeatureListChunkColumns.decode(ByteBuffer.wrap(is.readAllBytes()));
+        }
+        parseChunk(columns, storage, project, flist);
+      } catch (IOException | XMLStreamException e) {
+        throw new IllegalStateException(
+            "Error while loading chunk " + chunk + " of feature list " + flist.getName(), e);
+      }
+    });
+  }
+
+  private void parseChunk(FeatureListChunkColumns columns, MemoryMapStorage storage,
+      MZmineProject project, ModularFeatureList flist) throws XMLStreamException {
+    final ByteBuffer xml = columns.getXml();
+    final byte[] bytes = new byte[xml.remaining()];
+    xml.get(bytes);
+    final XMLStreamReader reader = XMLInputFactory.newInstance()
+        .createXMLStreamReader(new ByteArrayInputStream(bytes));
+
+    int rowIndex = columns.getFirstRow();
+    while (reader.hasNext()) {
+      if (isCanceled()) {
+        return;
+      }
+      if (reader.next() == XMLEvent.START_ELEMENT && CONST.XML_ROW_ELEMENT.equals(
+          reader.getLocalName())) {
+        parseRow(reader, storage, project, flist, rowIndex++, columns);
+        processedRows.incrementAndGet();
+      }
+    }
+    reader.close();
+    if (rowIndex != columns.getFirstRow() + columns.getNumRows()) {
+      throw new IllegalStateException(
+          "Number of rows in chunk does not match in feature list " + flist.getName());
+    }
+  }
+
+  /**
+   * Creates the modular feature list from the metadata file and the rows with their ids from the
+   * rows entry of the binary format.
+   *
+   * @param storage      The storage for the feature list.
+   * @param rowsEntry    The project file entry containing the row ids.
+   * @param metadataFile The file containign the metadata associated with the feature list.
+   * @return The created feature list with empty rows (row ids are set)
+   */
+  private ModularFeatureList createRowsBinary(MemoryMapStorage storage, ZipEntry rowsEntry,
+      File metadataFile) {
+    ModularFeatureList flist = readMetadataCreateFeatureList(metadataFile, storage);
+    if (flist == null) {
+      throw new IllegalStateException("Cannot create feature list.");
+    }
+
+    try (InputStream is = zip.getInputStream(rowsEntry)) {
+      final ByteBuffer ids = ByteBuffer.wrap(is.readAllBytes()).order(ByteOrder.LITTLE_ENDIAN);
+      if (ids.getInt() != FeatureListSaveTask.ROWS_MAGIC) {
+        throw new IOException("Invalid rows file " + rowsEntry.getName());
+      }
+      final int version = ids.getInt();
+      if (version != FeatureListSaveTask.ROWS_VERSION) {
+        throw new IOException("Unsupported version " + version + " of rows file");
+      }
+      final int numRows = ids.getInt();
+      if (ids.getInt() != FeatureListSaveTask.ROWS_PER_CHUNK) {
+        throw new IOException("Unsupported number of rows per chunk in " + rowsEntry.getName());
+      }
+      ids.getInt(); // number of chunks
+
+      for (int i = 0; i < numRows; i++) {
+        flist.addRow(new ModularFeatureListRow(flist, ids.getInt()));
+      }
+    } catch (IOException e) {
+      logger.log(Level.WARNING, e.getMessage(), e);
+      return null;
+    }
+
+    logger.finest(
+        () -> "Created " + flist.getNumberOfRows() + " rows in feature list " + flist.getName());
+    return flist;
+  }
+
   /**
    * Creates the modular feature list from the metadata file using {@link
    * this#readMetadataCreateFeatureList(File, MemoryMapStorage)}.
@@ -380,17 +518,25 @@ public class FeatureListLoadTask extends AbstractTask {
     }
   }
 
+  /**
+   * @param rowIndex the index of the row in the feature list
+   * @param columns  the column values of the binary format or null for the xml format
+   */
   private void parseRow(XMLStreamReader reader, MemoryMapStorage storage, MZmineProject project,
-      ModularFeatureList flist) throws XMLStreamException {
+      ModularFeatureList flist, int rowIndex, @Nullable FeatureListChunkColumns columns)
+      throws XMLStreamException {
     if (!reader.getLocalName().equals(CONST.XML_ROW_ELEMENT)) {
       throw new IllegalStateException("Cannot parse row if current element is not a row element");
     }
 
     int id = Integer.parseInt(reader.getAttributeValue(null, idTypeUniqueID));
-    final ModularFeatureListRow row = (ModularFeatureListRow) flist.getRow(rowCounter.get());
+    final ModularFeatureListRow row = (ModularFeatureListRow) flist.getRow(rowIndex);
     if (id != row.getID()) {
       throw new IllegalStateException("Row ids do not match.");
     }
+    if (columns != null) {
+      columns.applyToRow(row, rowIndex);
+    }
 
     while (!(reader.getEventType() == XMLEvent.END_ELEMENT && reader.getLocalName()
         .equals(CONST.XML_ROW_ELEMENT)) && reader.hasNext()) {
@@ -404,7 +550,7 @@ public class FeatureListLoadTask extends AbstractTask {
                                  + ". File does not exist in project.");
             continue;
           }
-          parseFeature(reader, storage, project, flist, row, file);
+          parseFeature(reader, storage, project, flist, row, file, rowIndex, columns);
         } else if (reader.getLocalName().equals(CONST.XML_DATA_TYPE_ELEMENT)) {
           DataType type = DataTypes.getTypeForId(
               reader.getAttributeValue(null, CONST.XML_DATA_TYPE_ID_ATTR));
@@ -423,12 +569,12 @@ public class FeatureListLoadTask extends AbstractTask {
         }
       }
     }
-    rowCounter.getAndIncrement();
   }
 
   private void parseFeature(@NotNull XMLStreamReader reader, @Nullable MemoryMapStorage storage,
       MZmineProject project, @NotNull ModularFeatureList flist, @NotNull ModularFeatureListRow row,
-      @NotNull RawDataFile file) throws XMLStreamException {
+      @NotNull RawDataFile file, int rowIndex, @Nullable FeatureListChunkColumns columns)
+      throws XMLStreamException {
 
     // create feature with original file, but use buffered file for data type loading.
     final RawDataFile originalFile =
@@ -460,6 +606,9 @@ public class FeatureListLoadTask extends AbstractTask {
       }
     }
 
+    if (columns != null) {
+      columns.applyToFeature(feature, file.getName(), rowIndex);
+    }
     row.addFeature(originalFile, feature);
   }
 }
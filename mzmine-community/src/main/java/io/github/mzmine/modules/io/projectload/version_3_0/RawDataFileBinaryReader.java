@@ -0,0 +1,376 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.projectload.version_3_0;
+
+import static io.github.mzmine.modules.io.projectsave.RawDataFileBinaryWriter.DATA_FOLDER;
+import static io.github.mzmine.modules.io.projectsave.RawDataFileBinaryWriter.MAGIC;
+import static io.github.mzmine.modules.io.projectsave.RawDataFileBinaryWriter.MASS_LIST_SCAN_POINTER;
+import static io.github.mzmine.modules.io.projectsave.RawDataFileBinaryWriter.MASS_LIST_STORED;
+import static io.github.mzmine.modules.io.projectsave.RawDataFileBinaryWriter.METADATA_FILENAME;
+import static io.github.mzmine.modules.io.projectsave.RawDataFileBinaryWriter.MSMS_INFO_FILENAME;
+import static io.github.mzmine.modules.io.projectsave.RawDataFileBinaryWriter.SCANS_FILENAME;
+import static io.github.mzmine.modules.io.projectsave.RawDataFileBinaryWriter.TYPE_IMS;
+import static io.github.mzmine.modules.io.projectsave.RawDataFileBinaryWriter.VERSION;
+import static io.github.mzmine.modules.io.projectsave.RawDataFileBinaryWriter.XML_COLOR_ELEMENT;
+import static io.github.mzmine.modules.io.projectsave.RawDataFileBinaryWriter.XML_FRAME_ELEMENT;
+import static io.github.mzmine.modules.io.projectsave.RawDataFileBinaryWriter.XML_START_TIME_ELEMENT;
+import static io.github.mzmine.modules.io.projectsave.RawDataFileBinaryWriter.XML_TYPE_ATTR;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.MobilityType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.featuredata.impl.StorageUtils;
+import io.github.mzmine.datamodel.featuredata.impl.StoredDoubleValues;
+import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
+import io.github.mzmine.datamodel.impl.MobilityScanStorage;
+import io.github.mzmine.datamodel.impl.SimpleFrame;
+import io.github.mzmine.datamodel.impl.SimpleScan;
+import io.github.mzmine.datamodel.impl.masslist.ScanPointerMassList;
+import io.github.mzmine.datamodel.impl.masslist.SimpleMassList;
+import io.github.mzmine.datamodel.msms.MsMsInfo;
+import io.github.mzmine.datamodel.msms.PasefMsMsInfo;
+import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.modules.dataprocessing.id_ccscalibration.CCSCalibration;
+import io.github.mzmine.project.impl.IMSRawDataFileImpl;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import io.github.mzmine.util.MemoryMapStorage;
+import io.github.mzmine.util.XMLUtils;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import javafx.scene.paint.Color;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+/**
+ * Reads the processed raw data files written by
+ * {@link io.github.mzmine.modules.io.projectsave.RawDataFileBinaryWriter}. Zip entries are
+ * compressed and cannot be memory mapped directly, so the columns are streamed block wise into the
+ * {@link MemoryMapStorage} of the new files. MS/MS information references other scans and is
+ * therefore loaded in a second step after all files were added to the project.
+ */
+public final class RawDataFileBinaryReader {
+
+  private static final Pattern FOLDER_PATTERN = Pattern.compile(
+      Pattern.quote(DATA_FOLDER) + "(\\d+)/" + Pattern.quote(METADATA_FILENAME));
+  // number of values converted at once
+  private static final int BLOCK_VALUES = 8192;
+
+  private RawDataFileBinaryReader() {
+  }
+
+  /**
+   * @return the folders of all stored files in the order of the saved project
+   */
+  public static @NotNull List<String> findFolders(@NotNull ZipFile zipFile) {
+    final List<Integer> indices = new ArrayList<>();
+    zipFile.stream().forEach(entry -> {
+      final Matcher matcher = FOLDER_PATTERN.matcher(entry.getName());
+      if (matcher.matches()) {
+        indices.add(Integer.parseInt(matcher.group(1)));
+      }
+    });
+    indices.sort(Comparator.naturalOrder());
+    return indices.stream().map(i -> DATA_FOLDER + i + "/").toList();
+  }
+
+  /**
+   * @param folder a folder of {@link #findFolders(ZipFile)}
+   * @return the index of the file in the saved project
+   */
+  public static int getIndex(@NotNull String folder) {
+    return Integer.parseInt(folder.substring(DATA_FOLDER.length(), folder.length() - 1));
+  }
+
+  /**
+   * Reads the file with all scans, mass lists and mobility scans. MS/MS information is read by
+   * {@link #readMsMsInfos(ZipFile, String, RawDataFile, List)}.
+   */
+  public static @NotNull RawDataFile readFile(@NotNull ZipFile zipFile, @NotNull String folder)
+      throws IOException, ParserConfigurationException, SAXException {
+    final Element root;
+    try (InputStream is = zipFile.getInputStream(getEntry(zipFile, folder + METADATA_FILENAME))) {
+      root = XMLUtils.load(is).getDocumentElement();
+    }
+
+    final String name = XMLUtils.parseString(root, CONST.XML_RAW_FILE_NAME_ELEMENT);
+    final String path = XMLUtils.parseString(root, CONST.XML_RAW_FILE_PATH_ELEMENT);
+    final String colorValue = XMLUtils.parseString(root, XML_COLOR_ELEMENT);
+    final Color color = colorValue != null ? Color.web(colorValue)
+        : MZmineCore.getConfiguration().getDefaultColorPalette().getNextColor();
+    final MemoryMapStorage storage = MemoryMapStorage.forRawDataFile();
+
+    final RawDataFileImpl file;
+    if (TYPE_IMS.equals(root.getAttribute(XML_TYPE_ATTR))) {
+      final IMSRawDataFileImpl imsFile = new IMSRawDataFileImpl(name, path, storage, color);
+      final NodeList calibration = root.getElementsByTagName(CCSCalibration.XML_ELEMENT);
+      if (calibration.getLength() > 0) {
+        imsFile.setCCSCalibration(CCSCalibration.loadFromXML((Element) calibration.item(0)));
+      }
+      file = imsFile;
+    } else {
+      file = new RawDataFileImpl(name, path, storage, color);
+    }
+
+    final String startTime = XMLUtils.parseString(root, XML_START_TIME_ELEMENT);
+    if (startTime != null) {
+      file.setStartTimeStamp(LocalDateTime.parse(startTime));
+    }
+
+    final NodeList methods = root.getElementsByTagName(CONST.XML_FLIST_APPLIED_METHOD_ELEMENT);
+    for (int i = 0; i < methods.getLength(); i++) {
+      final SimpleFeatureListAppliedMethod method = SimpleFeatureListAppliedMethod.loadValueFromXML(
+          (Element) methods.item(i));
+      if (method != null) {
+        file.getAppliedMethods().add(method);
+      }
+    }
+
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+        zipFile.getInputStream(getEntry(zipFile, folder + SCANS_FILENAME)), 1 << 16))) {
+      readScans(file, in, MemoryMapStorage.forMassList());
+    }
+    return file;
+  }
+
+  private static void readScans(RawDataFileImpl file, DataInputStream in,
+      MemoryMapStorage massListStorage) throws IOException {
+    if (in.readInt() != MAGIC) {
+      throw new IOException("Invalid processed data of file " + file.getName());
+    }
+    final int version = in.readInt();
+    if (version != VERSION) {
+      throw new IOException("Unsupported version %d of processed data in file %s".formatted(version,
+          file.getName()));
+    }
+
+    final ByteBuffer block = ByteBuffer.allocate(BLOCK_VALUES * Double.BYTES);
+    final int numScans = in.readInt();
+    for (int i = 0; i < numScans; i++) {
+      final int scanNumber = in.readInt();
+      final int msLevel = in.readInt();
+      final float rt = in.readFloat();
+      final MassSpectrumType spectrumType = MassSpectrumType.valueOf(readString(in));
+      final PolarityType polarity = PolarityType.valueOf(readString(in));
+      final String scanDefinition = in.readBoolean() ? readString(in) : null;
+      final Range<Double> scanMzRange =
+          in.readBoolean() ? Range.closed(in.readDouble(), in.readDouble()) : null;
+      final Float injectionTime = in.readBoolean() ? in.readFloat() : null;
+
+      final int numPoints = in.readInt();
+      final double[] mzs = readDoubles(in, numPoints, block);
+      final double[] intensities = readDoubles(in, numPoints, block);
+
+      final byte massListType = in.readByte();
+      double[][] massList = null;
+      if (massListType == MASS_LIST_STORED) {
+        final int numMasses = in.readInt();
+        massList = new double[][]{readDoubles(in, numMasses, block),
+            readDoubles(in, numMasses, block)};
+      }
+
+      final SimpleScan scan;
+      if (file instanceof IMSRawDataFileImpl) {
+        final MobilityType mobilityType = MobilityType.valueOf(readString(in));
+        final SimpleFrame frame = new SimpleFrame(file, scanNumber, msLevel, rt, mzs, intensities,
+            spectrumType, polarity, scanDefinition, scanMzRange, mobilityType, null,
+            injectionTime);
+        readMobilityScans(frame, in, block, massListStorage);
+        scan = frame;
+      } else {
+        scan = new SimpleScan(file, scanNumber, msLevel, rt, null, mzs, intensities, spectrumType,
+            polarity, scanDefinition, scanMzRange, injectionTime);
+      }
+      file.addScan(scan);
+
+      if (massList != null) {
+        scan.addMassList(new SimpleMassList(massListStorage, massList));
+      } else if (massListType == MASS_LIST_SCAN_POINTER) {
+        scan.addMassList(new ScanPointerMassList(scan));
+      }
+    }
+
+    if (in.readInt() != MAGIC) {
+      throw new IOException("Processed data of file " + file.getName() + " is incomplete");
+    }
+  }
+
+  private static void readMobilityScans(SimpleFrame frame, DataInputStream in, ByteBuffer block,
+      MemoryMapStorage massListStorage) throws IOException {
+    final int numMobilities = in.readInt();
+    if (numMobilities >= 0) {
+      frame.setMobilities(readDoubles(in, numMobilities, block));
+    }
+
+    final int numMobilityScans = in.readInt();
+    if (numMobilityScans < 0) {
+      return;
+    }
+    final MemoryMapStorage storage = frame.getDataFile().getMemoryMapStorage();
+    final int[] offsets = readInts(in, numMobilityScans);
+    final int[] basePeakIndices = readInts(in, numMobilityScans);
+    final int maxNumPoints = in.readInt();
+    final int rawPoints = in.readInt();
+    // apply the storage precision like for newly imported mobility scans
+    final StoredDoubleValues mzs = StorageUtils.storeMzValues(storage,
+        readDoubles(in, rawPoints, block));
+    final StoredDoubleValues intensities = StorageUtils.storeIntensityValues(storage,
+        readDoubles(in, rawPoints, block));
+    final MobilityScanStorage mobilityScans = new MobilityScanStorage(storage, frame, mzs,
+        intensities, maxNumPoints, offsets, basePeakIndices, false);
+    frame.setMobilityScanStorage(mobilityScans);
+
+    if (!in.readBoolean()) {
+      return;
+    }
+    final int[] massListOffsets = readInts(in, numMobilityScans);
+    final int massListPoints = in.readInt();
+    final double[] massListMzs = readDoubles(in, massListPoints, block);
+    final double[] massListIntensities = readDoubles(in, massListPoints, block);
+    final List<double[][]> massLists = new ArrayList<>(numMobilityScans);
+    for (int i = 0; i < numMobilityScans; i++) {
+      final int from = massListOffsets[i];
+      final int to = i + 1 < numMobilityScans ? massListOffsets[i + 1] : massListPoints;
+      massLists.add(new double[][]{Arrays.copyOfRange(massListMzs, from, to),
+          Arrays.copyOfRange(massListIntensities, from, to)});
+    }
+    mobilityScans.setMassLists(massListStorage, massLists);
+  }
+
+  /**
+   * Sets the MS/MS information of all scans and frames. Requires all files of the project to be
+   * loaded, because the information may reference scans of other files.
+   *
+   * @param file     the file loaded from this folder
+   * @param allFiles all files of the project
+   */
+  public static void readMsMsInfos(@NotNull ZipFile zipFile, @NotNull String folder,
+      @NotNull RawDataFile file, @NotNull List<RawDataFile> allFiles)
+      throws IOException, XMLStreamException {
+    try (InputStream is = zipFile.getInputStream(getEntry(zipFile, folder + MSMS_INFO_FILENAME))) {
+      final XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(is);
+      Scan scan = null;
+      Set<PasefMsMsInfo> pasefInfos = null;
+      while (reader.hasNext()) {
+        final int type = reader.next();
+        if (type == XMLStreamConstants.START_ELEMENT) {
+          switch (reader.getLocalName()) {
+            case CONST.XML_RAW_FILE_SCAN_ELEMENT -> {
+              scan = getScan(reader, file);
+              pasefInfos = null;
+            }
+            case XML_FRAME_ELEMENT -> {
+              scan = getScan(reader, file);
+              pasefInfos = new HashSet<>();
+            }
+            case MsMsInfo.XML_ELEMENT -> {
+              final MsMsInfo info = MsMsInfo.loadFromXML(reader, file, allFiles);
+              if (pasefInfos != null && info instanceof PasefMsMsInfo pasefInfo) {
+                pasefInfos.add(pasefInfo);
+              } else if (scan instanceof SimpleScan simpleScan) {
+                simpleScan.setMsMsInfo(info);
+              }
+            }
+            default -> {
+            }
+          }
+        } else if (type == XMLStreamConstants.END_ELEMENT && XML_FRAME_ELEMENT.equals(
+            reader.getLocalName())) {
+          if (scan instanceof SimpleFrame frame) {
+            frame.setPrecursorInfos(pasefInfos);
+          }
+          scan = null;
+          pasefInfos = null;
+        }
+      }
+      reader.close();
+    }
+  }
+
+  private static @Nullable Scan getScan(XMLStreamReader reader, RawDataFile file) {
+    return file.getScan(
+        Integer.parseInt(reader.getAttributeValue(null, CONST.XML_RAW_FILE_SCAN_INDEX_ATTR)));
+  }
+
+  private static @NotNull ZipEntry getEntry(ZipFile zipFile, String name) throws IOException {
+    final ZipEntry entry = zipFile.getEntry(name);
+    if (entry == null) {
+      throw new IOException("Missing entry " + name + " in project file");
+    }
+    return entry;
+  }
+
+  private static double[] readDoubles(DataInputStream in, int n, ByteBuffer block)
+      throws IOException {
+    final double[] values = new double[n];
+    for (int offset = 0; offset < n; offset += BLOCK_VALUES) {
+      final int length = Math.min(BLOCK_VALUES, n - offset);
+      in.readFully(block.array(), 0, length * Double.BYTES);
+      block.clear();
+      block.asDoubleBuffer().get(values, offset, length);
+    }
+    return values;
+  }
+
+  private static int[] readInts(DataInputStream in, int n) throws IOException {
+    final int[] values = new int[n];
+    for (int i = 0; i < n; i++) {
+      values[i] = in.readInt();
+    }
+    return values;
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    final byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
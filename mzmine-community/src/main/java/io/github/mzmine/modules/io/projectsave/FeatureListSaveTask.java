@@ -38,23 +38,29 @@ import io.github.mzmine.datamodel.features.types.DataType;
 import io.github.mzmine.datamodel.features.types.FeaturesType;
 import io.github.mzmine.datamodel.features.types.numbers.IDType;
 import io.github.mzmine.modules.io.projectload.version_3_0.CONST;
+import io.github.mzmine.modules.io.projectload.version_3_0.FeatureListChunkColumns;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
 import io.github.mzmine.util.ParsingUtils;
 import io.github.mzmine.util.StreamCopy;
 import io.github.mzmine.util.XMLUtils;
 import io.github.mzmine.util.files.FileAndPathUtil;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.time.Instant;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.IntStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 import javax.xml.parsers.DocumentBuilder;
@@ -74,19 +80,39 @@ public class FeatureListSaveTask extends AbstractTask {
   public static final String METADATA_FILE_SUFFIX = "_metadata.xml";
   public static final String DATA_FILE_SUFFIX = "_data.xml";
   public static final String FLIST_FOLDER = "featurelists/";
+  /**
+   * Binary feature list format: the row ids are stored in the feature list folder, the chunks of
+   * rows in a separate folder so that they are not extracted with the xml files.
+   */
+  public static final String ROWS_FILE_SUFFIX = "_rows.bin";
+  public static final String FLIST_CHUNK_FOLDER = "featurelistchunks/";
+  public static final String CHUNK_FILE_SUFFIX = ".bin";
+  public static final int ROWS_MAGIC = 0x4d5a4652; // MZFR
+  public static final int ROWS_VERSION = 1;
+  public static final int ROWS_PER_CHUNK = 10_000;
   private static final Logger logger = Logger.getLogger(FeatureListSaveTask.class.getName());
   private static final IDType idType = new IDType();
 
   private final ModularFeatureList flist;
   private final ZipOutputStream zos;
+  private final boolean binary;
   private final int rows;
   private final StreamCopy copy;
   private int processedRows = 0;
 
   public FeatureListSaveTask(ModularFeatureList flist, ZipOutputStream zos) {
+    this(flist, zos, false);
+  }
+
+  /**
+   * @param binary store the rows in the binary chunked format, see
+   *               {@link FeatureListChunkColumns}
+   */
+  public FeatureListSaveTask(ModularFeatureList flist, ZipOutputStream zos, boolean binary) {
     super(null, Instant.now());
     this.flist = flist;
     this.zos = zos;
+    this.binary = binary;
     rows = flist.getNumberOfRows();
     copy = new StreamCopy();
   }
@@ -99,6 +125,15 @@ public class FeatureListSaveTask extends AbstractTask {
     return FLIST_FOLDER + CONST.XML_FEATURE_LIST_ELEMENT + "_" + flistname + METADATA_FILE_SUFFIX;
   }
 
+  public static String getRowsFileName(String flistname) {
+    return FLIST_FOLDER + CONST.XML_FEATURE_LIST_ELEMENT + "_" + flistname + ROWS_FILE_SUFFIX;
+  }
+
+  public static String getChunkFileName(String flistname, int chunk) {
+    return FLIST_CHUNK_FOLDER + CONST.XML_FEATURE_LIST_ELEMENT + "_" + flistname + "_" + chunk
+           + CHUNK_FILE_SUFFIX;
+  }
+
   @Override
   public String getTaskDescription() {
     return "Saving feature list " + flist.getName();
@@ -113,7 +148,7 @@ public class FeatureListSaveTask extends AbstractTask {
   public void run() {
     setStatus(TaskStatus.PROCESSING);
 
-    if (!saveFeatureData()) {
+    if (!(binary ? saveFeatureDataBinary() : saveFeatureData())) {
       return;
     }
 
@@ -267,8 +302,89 @@ public class FeatureListSaveTask extends AbstractTask {
     return true;
   }
 
+  /**
+   * Writes the row ids and then chunks of rows into separate entries. Chunks are encoded in
+   * parallel, a batch of chunks at a time to limit the memory, and written in order.
+   */
+  private boolean saveFeatureDataBinary() {
+    final List<FeatureListRow> flistRows = List.copyOf(flist.getRows());
+    final int numChunks = (flistRows.size() + ROWS_PER_CHUNK - 1) / ROWS_PER_CHUNK;
+
+    try {
+      final ByteBuffer ids = ByteBuffer.allocate((5 + flistRows.size()) * Integer.BYTES)
+          .order(ByteOrder.LITTLE_ENDIAN);
+      ids.putInt(ROWS_MAGIC).putInt(ROWS_VERSION).putInt(flistRows.size()).putInt(ROWS_PER_CHUNK)
+          .putInt(numChunks);
+      flistRows.forEach(row -> ids.putInt(row.getID()));
+      zos.putNextEntry(new ZipEntry(getRowsFileName(flist.getName())));
+      zos.write(ids.array());
+
+      final int batchSize = Runtime.getRuntime().availableProcessors();
+      for (int batch = 0; batch < numChunks; batch += batchSize) {
+        if (isCanceled()) {
+          return false;
+        }
+        final List<byte[]> chunks = IntStream.range(batch, Math.min(batch + batchSize, numChunks))
+            .parallel().mapToObj(chunk -> encodeChunk(flistRows, chunk)).toList();
+        for (int i = 0; i < chunks.size(); i++) {
+          zos.putNextEntry(new ZipEntry(getChunkFileName(flist.getName(), batch + i)));
+          zos.write(chunks.get(i));
+          processedRows = Math.min(flistRows.size(), (batch + i + 1) * ROWS_PER_CHUNK);
+        }
+      }
+    } catch (IOException | UncheckedIOException e) {
+      logger.log(Level.SEVERE, e.getMessage(), e);
+      setStatus(TaskStatus.ERROR);
+      return false;
+    }
+    return true;
+  }
+
+  private byte[] encodeChunk(List<FeatureListRow> flistRows, int chunk) {
+    final int from = chunk * ROWS_PER_CHUNK;
+    final int to = Math.min(flistRows.size(), from + ROWS_PER_CHUNK);
+    final FeatureListChunkColumns.Builder columns = new FeatureListChunkColumns.Builder(from,
+        to - from);
+
+    final ByteArrayOutputStream xml = new ByteArrayOutputStream();
+    try {
+      final XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(xml);
+      writer.writeStartDocument("UTF-8", "1.0");
+      writer.writeStartElement(CONST.XML_FEATURE_LIST_ELEMENT);
+      for (int i = from; i < to; i++) {
+        final ModularFeatureListRow row = (ModularFeatureListRow) flistRows.get(i);
+        columns.add(row, null, i);
+        for (ModularFeature feature : row.getFeatures()) {
+          if (isSaved(feature)) {
+            columns.add(feature, feature.getRawDataFile(), i);
+          }
+        }
+        writeRow(writer, row, true);
+      }
+      writer.writeEndElement();
+      writer.writeEndDocument();
+      writer.close();
+    } catch (XMLStreamException e) {
+      throw new UncheckedIOException(new IOException(e));
+    }
+    return columns.build(xml.toByteArray());
+  }
+
+  private static boolean isSaved(ModularFeature feature) {
+    return feature.getRawDataFile() != null
+           && feature.getFeatureStatus() != FeatureStatus.UNKNOWN;
+  }
+
   private void writeRow(XMLStreamWriter writer, ModularFeatureListRow row)
       throws XMLStreamException {
+    writeRow(writer, row, false);
+  }
+
+  /**
+   * @param skipColumnValues skip values that are stored in {@link FeatureListChunkColumns}
+   */
+  private void writeRow(XMLStreamWriter writer, ModularFeatureListRow row,
+      boolean skipColumnValues) throws XMLStreamException {
 
     writer.writeStartElement(CONST.XML_ROW_ELEMENT);
     writer.writeAttribute(idType.getUniqueID(), String.valueOf(row.getID()));
@@ -279,11 +395,14 @@ public class FeatureListSaveTask extends AbstractTask {
       if (dataType instanceof FeaturesType) {
         continue;
       }
+      if (skipColumnValues && FeatureListChunkColumns.isColumnValue(dataType, value)) {
+        continue;
+      }
       writeDataType(writer, dataType, value, flist, row, null, null);
     }
 
     for (ModularFeature feature : row.getFeatures()) {
-      writeFeature(writer, row, feature);
+      writeFeature(writer, row, feature, skipColumnValues);
     }
 
     writer.writeEndElement();
@@ -308,16 +427,20 @@ public class FeatureListSaveTask extends AbstractTask {
   }
 
   private void writeFeature(XMLStreamWriter writer, ModularFeatureListRow row,
-      ModularFeature feature) throws XMLStreamException {
-    final RawDataFile rawDataFile = feature.getRawDataFile();
-    if (rawDataFile == null || feature.getFeatureStatus() == FeatureStatus.UNKNOWN) {
+      ModularFeature feature, boolean skipColumnValues) throws XMLStreamException {
+    if (!isSaved(feature)) {
       return;
     }
+    final RawDataFile rawDataFile = feature.getRawDataFile();
 
     writer.writeStartElement(CONST.XML_FEATURE_ELEMENT);
     writer.writeAttribute(CONST.XML_RAW_FILE_ELEMENT, rawDataFile.getName());
 
     for (Entry<DataType, Object> entry : feature.getMap().entrySet()) {
+      if (skipColumnValues && FeatureListChunkColumns.isColumnValue(entry.getKey(),
+          entry.getValue())) {
+        continue;
+      }
       writeDataType(writer, entry.getKey(), entry.getValue(), flist, row, feature, rawDataFile);
     }
 
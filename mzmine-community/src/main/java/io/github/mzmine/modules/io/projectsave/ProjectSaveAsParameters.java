@@ -34,6 +34,7 @@ import io.github.mzmine.javafx.components.factories.FxTextFlows;
 import io.github.mzmine.parameters.Parameter;
 import io.github.mzmine.parameters.dialogs.ParameterSetupDialog;
 import io.github.mzmine.parameters.impl.SimpleParameterSet;
+import io.github.mzmine.parameters.parametertypes.BooleanParameter;
 import io.github.mzmine.parameters.parametertypes.ComboParameter;
 import io.github.mzmine.parameters.parametertypes.filenames.FileNameSuffixExportParameter;
 import io.github.mzmine.project.ProjectService;
@@ -63,12 +64,22 @@ public class ProjectSaveAsParameters extends SimpleParameterSet {
       + "files should not be moved or renamed). Standalone copies the raw data files into the project, "
       + "creating a large but flexible project that can be shared.", ProjectSaveOption.values(),
       ProjectSaveOption.REFERENCING);
+  public static final BooleanParameter storeProcessedData = new BooleanParameter(
+      "Store processed data",
+      "Stores the scans, mass lists, and mobility scans of the MS data files in the project. "
+      + "Opening the project loads this data directly instead of re-importing and re-processing "
+      + "the raw data files.", false);
+  public static final BooleanParameter binaryFeatureLists = new BooleanParameter(
+      "Binary feature lists",
+      "Stores feature lists in chunks of rows with numeric values as binary columns. Chunks are "
+      + "saved and loaded in parallel, which is much faster for large feature lists. "
+      + "Projects in this format cannot be opened by older MZmine versions.", false);
   public static final FileNameSuffixExportParameter projectFile = new FileNameSuffixExportParameter(
       "Project file", "File name of project to be saved", extensions, null);
   private static final Logger logger = Logger.getLogger(ProjectSaveAsParameters.class.getName());
 
   public ProjectSaveAsParameters() {
-    super(new Parameter[]{projectFile, option});
+    super(new Parameter[]{projectFile, option, storeProcessedData, binaryFeatureLists});
   }
 
   @Override
@@ -82,7 +93,9 @@ public class ProjectSaveAsParameters extends SimpleParameterSet {
         boldText("Referencing: "), text(
             "The project will point to the current files used. Any rename, move, or remove of a file from their current directory might lead to incompatibility of the project."),
         linebreak(), boldText("WARNING: "),
-        text("If this is an existing project, it is recommended to save it in the same way."));
+        text("If this is an existing project, it is recommended to save it in the same way."),
+        linebreak(), boldText("Store processed data: "), text(
+            "Adds the processed scans and mass lists to the project for fast loading. Files that cannot be stored are re-imported."));
 
     // set parameters to current project if already saved to file
     final MZmineProject project = ProjectService.getProjectManager().getCurrentProject();
@@ -0,0 +1,368 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.projectsave;
+
+import com.google.common.collect.Range;
+import com.sun.xml.txw2.output.IndentingXMLStreamWriter;
+import io.github.mzmine.datamodel.MassList;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.features.FeatureList.FeatureListAppliedMethod;
+import io.github.mzmine.datamodel.impl.MobilityScanStorage;
+import io.github.mzmine.datamodel.impl.SimpleFrame;
+import io.github.mzmine.datamodel.impl.SimpleScan;
+import io.github.mzmine.datamodel.impl.masslist.ScanPointerMassList;
+import io.github.mzmine.datamodel.msms.MsMsInfo;
+import io.github.mzmine.datamodel.msms.PasefMsMsInfo;
+import io.github.mzmine.modules.dataprocessing.id_ccscalibration.CCSCalibration;
+import io.github.mzmine.modules.io.projectload.version_3_0.CONST;
+import io.github.mzmine.project.impl.IMSRawDataFileImpl;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import io.github.mzmine.util.XMLUtils;
+import it.unimi.dsi.fastutil.doubles.DoubleImmutableList;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.transform.TransformerException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Stores the processed state of a {@link RawDataFile} in the project file, so that opening a
+ * project does not need to re-import and re-process the original data files. Each file is written
+ * to its own folder with three entries:
+ * <pre>
+ * metadata.xml  file type, name, path, color, start time stamp, applied methods, CCS calibration
+ * scans.bin     header (magic, version, number of scans), then per scan: metadata, m/z and
+ *               intensity column, mass list columns, and for frames the mobility values and the
+ *               raw and mass list columns of all mobility scans with their offsets, end magic
+ * msmsinfo.xml  MS/MS information of scans and PASEF frames, which reference scans by index
+ * </pre>
+ * Columns are written in big endian blocks and are streamed back into the
+ * {@link io.github.mzmine.util.MemoryMapStorage} of the new file on load. Only
+ * {@link RawDataFileImpl} and {@link IMSRawDataFileImpl} with simple scans and frames are
+ * supported, all other files are re-imported from the raw data import batch.
+ */
+public final class RawDataFileBinaryWriter {
+
+  public static final String DATA_FOLDER = "msdataprocessed/";
+  public static final String METADATA_FILENAME = "metadata.xml";
+  public static final String SCANS_FILENAME = "scans.bin";
+  public static final String MSMS_INFO_FILENAME = "msmsinfo.xml";
+
+  public static final int MAGIC = 0x4d5a5244; // MZRD
+  public static final int VERSION = 1;
+
+  public static final String TYPE_LC = "lc";
+  public static final String TYPE_IMS = "ims";
+
+  public static final byte MASS_LIST_NONE = 0;
+  public static final byte MASS_LIST_STORED = 1;
+  public static final byte MASS_LIST_SCAN_POINTER = 2;
+
+  public static final String XML_TYPE_ATTR = "type";
+  public static final String XML_COLOR_ELEMENT = "color";
+  public static final String XML_START_TIME_ELEMENT = "starttimestamp";
+  public static final String XML_MSMS_INFOS_ELEMENT = "msmsinfos";
+  public static final String XML_FRAME_ELEMENT = "frame";
+
+  // number of values converted at once
+  private static final int BLOCK_VALUES = 8192;
+
+  private RawDataFileBinaryWriter() {
+  }
+
+  /**
+   * @return true if all scans of this file can be stored as binary data
+   */
+  public static boolean isSupported(@NotNull RawDataFile file) {
+    if (file.getClass() == RawDataFileImpl.class) {
+      return file.getScans().stream().allMatch(scan -> scan.getClass() == SimpleScan.class);
+    }
+    if (file.getClass() == IMSRawDataFileImpl.class) {
+      return file.getScans().stream().allMatch(scan -> scan.getClass() == SimpleFrame.class);
+    }
+    return false;
+  }
+
+  /**
+   * @param index the index of the file in the project
+   * @return the folder of all entries of this file in the project zip
+   */
+  public static @NotNull String getFolder(int index) {
+    return DATA_FOLDER + index + "/";
+  }
+
+  /**
+   * Writes all entries of a file to the project zip.
+   *
+   * @param file   a supported file, see {@link #isSupported(RawDataFile)}
+   * @param folder the folder in the zip, see {@link #getFolder(int)}
+   */
+  public static void write(@NotNull RawDataFile file, @NotNull String folder,
+      @NotNull ZipOutputStream zipStream)
+      throws IOException, ParserConfigurationException, TransformerException, XMLStreamException {
+    if (!isSupported(file)) {
+      throw new IllegalArgumentException(
+          "Cannot store file " + file.getName() + " of type " + file.getClass().getName());
+    }
+
+    zipStream.putNextEntry(new ZipEntry(folder + METADATA_FILENAME));
+    XMLUtils.saveToStream(zipStream, createMetadata(file));
+
+    zipStream.putNextEntry(new ZipEntry(folder + SCANS_FILENAME));
+    // do not close, this would close the zip stream
+    final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(zipStream, 1 << 16));
+    writeScans(file, out);
+    out.flush();
+
+    zipStream.putNextEntry(new ZipEntry(folder + MSMS_INFO_FILENAME));
+    writeMsMsInfos(file, zipStream);
+  }
+
+  private static Document createMetadata(RawDataFile file) throws ParserConfigurationException {
+    final Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+    final Element root = doc.createElement(CONST.XML_RAW_FILE_ELEMENT);
+    root.setAttribute(XML_TYPE_ATTR, file instanceof IMSRawDataFileImpl ? TYPE_IMS : TYPE_LC);
+    doc.appendChild(root);
+
+    appendElement(root, CONST.XML_RAW_FILE_NAME_ELEMENT, file.getName());
+    appendElement(root, CONST.XML_RAW_FILE_PATH_ELEMENT, file.getAbsolutePath());
+    if (file.getColor() != null) {
+      appendElement(root, XML_COLOR_ELEMENT, file.getColor().toString());
+    }
+    if (file.getStartTimeStamp() != null) {
+      appendElement(root, XML_START_TIME_ELEMENT, file.getStartTimeStamp().toString());
+    }
+
+    final Element methods = doc.createElement(CONST.XML_FLIST_APPLIED_METHODS_LIST_ELEMENT);
+    for (FeatureListAppliedMethod method : file.getAppliedMethods()) {
+      final Element methodElement = doc.createElement(CONST.XML_FLIST_APPLIED_METHOD_ELEMENT);
+      method.saveValueToXML(methodElement);
+      methods.appendChild(methodElement);
+    }
+    root.appendChild(methods);
+
+    if (file instanceof IMSRawDataFileImpl ims && ims.getCCSCalibration() != null) {
+      final Element calibration = doc.createElement(CCSCalibration.XML_ELEMENT);
+      ims.getCCSCalibration().saveToXML(calibration);
+      root.appendChild(calibration);
+    }
+    return doc;
+  }
+
+  private static void appendElement(Element parent, String tagName, String value) {
+    if (value == null) {
+      return;
+    }
+    final Element element = parent.getOwnerDocument().createElement(tagName);
+    element.setTextContent(value);
+    parent.appendChild(element);
+  }
+
+  private static void writeScans(RawDataFile file, DataOutputStream out) throws IOException {
+    final List<Scan> scans = file.getScans();
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeInt(scans.size());
+
+    final ByteBuffer block = ByteBuffer.allocate(BLOCK_VALUES * Double.BYTES);
+    double[] mzs = new double[0];
+    double[] intensities = new double[0];
+    for (Scan scan : scans) {
+      out.writeInt(scan.getScanNumber());
+      out.writeInt(scan.getMSLevel());
+      out.writeFloat(scan.getRetentionTime());
+      writeString(out, scan.getSpectrumType().name());
+      writeString(out, scan.getPolarity().name());
+      writeNullableString(out, scan.getScanDefinition());
+      final Range<Double> scanMzRange = scan.getScanningMZRange();
+      out.writeBoolean(scanMzRange != null);
+      if (scanMzRange != null) {
+        out.writeDouble(scanMzRange.lowerEndpoint());
+        out.writeDouble(scanMzRange.upperEndpoint());
+      }
+      final Float injectionTime = scan.getInjectionTime();
+      out.writeBoolean(injectionTime != null);
+      if (injectionTime != null) {
+        out.writeFloat(injectionTime);
+      }
+
+      final int numPoints = scan.getNumberOfDataPoints();
+      if (mzs.length < numPoints) {
+        mzs = new double[numPoints];
+        intensities = new double[numPoints];
+      }
+      out.writeInt(numPoints);
+      writeDoubles(out, scan.getMzValues(mzs), numPoints, block);
+      writeDoubles(out, scan.getIntensityValues(intensities), numPoints, block);
+
+      final MassList massList = scan.getMassList();
+      if (massList == null) {
+        out.writeByte(MASS_LIST_NONE);
+      } else if (massList instanceof ScanPointerMassList) {
+        out.writeByte(MASS_LIST_SCAN_POINTER);
+      } else {
+        out.writeByte(MASS_LIST_STORED);
+        final int numMasses = massList.getNumberOfDataPoints();
+        if (mzs.length < numMasses) {
+          mzs = new double[numMasses];
+          intensities = new double[numMasses];
+        }
+        out.writeInt(numMasses);
+        writeDoubles(out, massList.getMzValues(mzs), numMasses, block);
+        writeDoubles(out, massList.getIntensityValues(intensities), numMasses, block);
+      }
+
+      if (scan instanceof SimpleFrame frame) {
+        writeFrame(frame, out, block);
+      }
+    }
+    out.writeInt(MAGIC);
+  }
+
+  private static void writeFrame(SimpleFrame frame, DataOutputStream out, ByteBuffer block)
+      throws IOException {
+    writeString(out, frame.getMobilityType().name());
+    final DoubleImmutableList mobilities = frame.getMobilities();
+    out.writeInt(mobilities == null ? -1 : mobilities.size());
+    if (mobilities != null) {
+      writeDoubles(out, mobilities.toDoubleArray(), mobilities.size(), block);
+    }
+
+    final MobilityScanStorage storage;
+    try {
+      storage = frame.getMobilityScanStorage();
+    } catch (IllegalStateException e) {
+      out.writeInt(-1); // mobility scans were not loaded
+      return;
+    }
+    final int numMobilityScans = storage.getNumberOfMobilityScans();
+    out.writeInt(numMobilityScans);
+    for (int i = 0; i < numMobilityScans; i++) {
+      out.writeInt(storage.getRawStorageOffset(i));
+    }
+    for (int i = 0; i < numMobilityScans; i++) {
+      out.writeInt(storage.getRawBasePeakIndex(i));
+    }
+    out.writeInt(storage.getRawMaxNumPoints());
+    final int rawPoints = storage.getRawTotalNumPoints();
+    final double[] values = new double[rawPoints];
+    out.writeInt(rawPoints);
+    storage.getAllRawMobilityScanMzValues(values);
+    writeDoubles(out, values, rawPoints, block);
+    storage.getAllRawMobilityScanIntensityValues(values);
+    writeDoubles(out, values, rawPoints, block);
+
+    final boolean hasMassLists = numMobilityScans > 0 && storage.getMassList(0) != null;
+    out.writeBoolean(hasMassLists);
+    if (hasMassLists) {
+      for (int i = 0; i < numMobilityScans; i++) {
+        out.writeInt(storage.getMassListStorageOffset(i));
+      }
+      final int massListPoints = storage.getMassListTotalNumPoints();
+      final double[] masses = new double[massListPoints];
+      out.writeInt(massListPoints);
+      storage.getAllMassListMzValues(masses);
+      writeDoubles(out, masses, massListPoints, block);
+      storage.getAllMassListIntensityValues(masses);
+      writeDoubles(out, masses, massListPoints, block);
+    }
+  }
+
+  private static void writeMsMsInfos(RawDataFile file, OutputStream os) throws XMLStreamException {
+    final XMLOutputFactory xof = XMLOutputFactory.newInstance();
+    final XMLStreamWriter writer = new IndentingXMLStreamWriter(xof.createXMLStreamWriter(os));
+    writer.writeStartDocument("UTF-8", "1.0");
+    writer.writeStartElement(XML_MSMS_INFOS_ELEMENT);
+
+    final List<Scan> scans = file.getScans();
+    for (int i = 0; i < scans.size(); i++) {
+      final Scan scan = scans.get(i);
+      final MsMsInfo info = scan.getMsMsInfo();
+      if (info != null) {
+        writer.writeStartElement(CONST.XML_RAW_FILE_SCAN_ELEMENT);
+        writer.writeAttribute(CONST.XML_RAW_FILE_SCAN_INDEX_ATTR, String.valueOf(i));
+        info.writeToXML(writer);
+        writer.writeEndElement();
+      }
+      if (scan instanceof SimpleFrame frame && !frame.getImsMsMsInfos().isEmpty()) {
+        writer.writeStartElement(XML_FRAME_ELEMENT);
+        writer.writeAttribute(CONST.XML_RAW_FILE_SCAN_INDEX_ATTR, String.valueOf(i));
+        for (PasefMsMsInfo pasefInfo : frame.getImsMsMsInfos()) {
+          pasefInfo.writeToXML(writer);
+        }
+        writer.writeEndElement();
+      }
+    }
+
+    writer.writeEndElement();
+    writer.writeEndDocument();
+    // flushes but does not close the underlying stream
+    writer.close();
+  }
+
+  /**
+   * Writes the first n values as one big endian block
+   */
+  private static void writeDoubles(DataOutputStream out, double[] values, int n, ByteBuffer block)
+      throws IOException {
+    for (int offset = 0; offset < n; offset += BLOCK_VALUES) {
+      final int length = Math.min(BLOCK_VALUES, n - offset);
+      block.clear();
+      block.asDoubleBuffer().put(values, offset, length);
+      out.write(block.array(), 0, length * Double.BYTES);
+    }
+  }
+
+  private static void writeNullableString(DataOutputStream out, @Nullable String s)
+      throws IOException {
+    out.writeBoolean(s != null);
+    if (s != null) {
+      writeString(out, s);
+    }
+  }
+
+  private static void writeString(DataOutputStream out, String s) throws IOException {
+    // writeUTF is limited to 64k
+    final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+}
@@ -62,6 +62,7 @@ import java.util.zip.ZipOutputStream;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.transform.TransformerException;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -83,7 +84,12 @@ public class RawDataFileSaveHandler extends AbstractTask {
   private final MZmineProject project;
   private final Logger logger = Logger.getLogger(this.getClass().getName());
   private final ZipOutputStream zipStream;
+  // all project files, the index is used to restore the order on load
+  private final List<RawDataFile> allFiles;
+  // files that are re-imported from the batch
   private final List<RawDataFile> files;
+  // files that are stored as processed data, see RawDataFileBinaryWriter
+  private final List<RawDataFile> processedFiles;
   private final boolean saveFilesInProject;
   private final String prefix = "Saving raw data files: ";
   private final int numSteps;
@@ -93,13 +99,25 @@ public class RawDataFileSaveHandler extends AbstractTask {
 
   public RawDataFileSaveHandler(MZmineProject project, ZipOutputStream zipOutputStream,
       boolean saveFilesInProject, @NotNull Instant moduleCallDate) {
+    this(project, zipOutputStream, saveFilesInProject, false, moduleCallDate);
+  }
+
+  /**
+   * @param storeProcessedData store the scans and mass lists of all supported files in the project.
+   *                           Only the remaining files are re-imported on load.
+   */
+  public RawDataFileSaveHandler(MZmineProject project, ZipOutputStream zipOutputStream,
+      boolean saveFilesInProject, boolean storeProcessedData, @NotNull Instant moduleCallDate) {
     super(null, moduleCallDate);
     this.project = project;
     this.zipStream = zipOutputStream;
     this.saveFilesInProject = saveFilesInProject;
-    files = List.of(project.getDataFiles());
+    allFiles = List.of(project.getDataFiles());
+    processedFiles = storeProcessedData ? allFiles.stream()
+        .filter(RawDataFileBinaryWriter::isSupported).toList() : List.of();
+    files = allFiles.stream().filter(file -> !processedFiles.contains(file)).toList();
     numSteps = 1 /*dissect + merge */ + (saveFilesInProject ? files.size() : 0) /*save files*/
-        + 1 /*save batch file*/;
+        + processedFiles.size() /*store processed files*/ + 1 /*save batch file*/;
     stepProgress = 1 / (double) numSteps;
   }
 
@@ -131,6 +149,10 @@ public class RawDataFileSaveHandler extends AbstractTask {
 
   public boolean saveRawDataFilesAsBatch() throws IOException, ParserConfigurationException {
 
+    if (!saveProcessedRawDataFiles()) {
+      return false;
+    }
+
     List<BatchQueue> cleanedBatchQueues = List.of(RawDataSavingUtils.makeBatchQueue(files));
     progress += stepProgress;
 
@@ -178,6 +200,33 @@ public class RawDataFileSaveHandler extends AbstractTask {
     return true;
   }
 
+  /**
+   * Stores the scans, mass lists and mobility scans of the processed files in the project. The
+   * index of the file in the project is used as the folder name to restore the order of all files.
+   *
+   * @return false if a file could not be stored or the task was canceled
+   */
+  private boolean saveProcessedRawDataFiles() throws IOException {
+    for (final RawDataFile file : processedFiles) {
+      if (isCanceled()) {
+        return false;
+      }
+      description = prefix + "Storing processed data of file " + file.getName();
+      logger.finest(() -> "Storing processed data of file " + file.getName() + " in project file.");
+      try {
+        RawDataFileBinaryWriter.write(file,
+            RawDataFileBinaryWriter.getFolder(allFiles.indexOf(file)), zipStream);
+      } catch (ParserConfigurationException | TransformerException | XMLStreamException e) {
+        logger.log(Level.WARNING,
+            "Could not store processed data of file " + file.getName() + ".\n" + e.getMessage(),
+            e);
+        return false;
+      }
+      progress += stepProgress;
+    }
+    return true;
+  }
+
   /**
    * Copies the raw data files to the zip folder (MZmine project file).
    *
@@ -299,7 +348,9 @@ public class RawDataFileSaveHandler extends AbstractTask {
 
     try {
       if (!saveRawDataFilesAsBatch()) {
-        setStatus(TaskStatus.ERROR);
+        if (!isCanceled()) {
+          setStatus(TaskStatus.ERROR);
+        }
         return;
       }
     } catch (IOException | ParserConfigurationException e) {
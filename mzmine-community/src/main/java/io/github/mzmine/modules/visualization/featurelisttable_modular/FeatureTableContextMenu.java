@@ -551,16 +551,9 @@ public class FeatureTableContextMenu extends ContextMenu {
     }
     R2RMap<RowsRelationship> rowsRelationshipR2RMap = rowMapOptional.get();
 
-    List<FeatureListRow> allRows = selectedRow.getFeatureList().getRows();
-    for (FeatureListRow row : allRows) {
-      if (row != selectedRow && rowsRelationshipR2RMap.get(selectedRow, row) != null) {
-        if (rowsRelationshipR2RMap.get(selectedRow, row).getScore() > 0) {
-          return true;
-        }
-      }
-    }
-
-    return false;
+    // only iterate the relationships of the selected row
+    return rowsRelationshipR2RMap.streamAllCorrelatedRows(selectedRow)
+        .anyMatch(r2r -> r2r.getRowA() != r2r.getRowB() && r2r.getScore() > 0);
   }
 
   private boolean hasMs2(final List<ModularFeatureListRow> selectedRows) {
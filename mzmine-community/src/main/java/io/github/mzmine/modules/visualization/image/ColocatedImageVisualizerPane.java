@@ -135,7 +135,7 @@ public class ColocatedImageVisualizerPane extends AbstractFeatureListRowsPane {
 
     final R2RMap<RowsRelationship> rowsRelationshipR2RMap = opt.get();
     final List<RowsRelationship> sortedRelationships = rowsRelationshipR2RMap.streamAllCorrelatedRows(
-            selectedRow, flist.getRows())
+            selectedRow)
         .sorted(Comparator.comparingDouble(RowsRelationship::getScore).reversed()).toList();
 
     if (sortedRelationships.isEmpty()) {
@@ -60,6 +60,14 @@ public class MassListDeisotoper {
         parameterSet.getParameter(MassListDeisotoperParameters.monotonicShape).getValue();
     int maximumCharge =
         parameterSet.getParameter(MassListDeisotoperParameters.maximumCharge).getValue();
+    return filterIsotopes(dataPoints, mzTolerance, monotonicShape, maximumCharge);
+  }
+
+  public static DataPoint[] filterIsotopes(DataPoint[] dataPoints, MZTolerance mzTolerance,
+      boolean monotonicShape, int maximumCharge) {
+    if (dataPoints == null || dataPoints.length == 0) {
+      return dataPoints;
+    }
 
     int charges[] = new int[maximumCharge];
     for (int i = 0; i < maximumCharge; i++)
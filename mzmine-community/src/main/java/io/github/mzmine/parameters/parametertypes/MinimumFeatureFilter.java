@@ -29,7 +29,7 @@ import io.github.mzmine.datamodel.FeatureStatus;
 import io.github.mzmine.datamodel.MZmineProject;
 import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.Scan;
-import io.github.mzmine.datamodel.data_access.CachedFeatureDataAccess;
+import io.github.mzmine.datamodel.data_access.FeatureDataCache;
 import io.github.mzmine.datamodel.features.Feature;
 import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.parameters.UserParameter;
@@ -176,7 +176,7 @@ public class MinimumFeatureFilter {
    * @param calculateShapeOverlap deactivated shape overlap colculation for large datasets
    * @return
    */
-  public OverlapResult filterMinFeaturesOverlap(@Nullable CachedFeatureDataAccess data,
+  public OverlapResult filterMinFeaturesOverlap(@Nullable FeatureDataCache data,
       final List<RawDataFile> raw, FeatureListRow row, FeatureListRow row2, RTTolerance rtTolerance,
       final boolean calculateShapeOverlap) {
     OverlapResult result = OverlapResult.TRUE;
@@ -272,7 +272,7 @@ public class MinimumFeatureFilter {
    * @param minHeight
    * @return
    */
-  public boolean checkIntensityOverlap(CachedFeatureDataAccess data, Feature a, Feature b,
+  public boolean checkIntensityOverlap(FeatureDataCache data, Feature a, Feature b,
       double minIPercOverlap, double minHeight) {
     if (minIPercOverlap < 0.00001) {
       return true;
@@ -32,6 +32,7 @@ import io.github.mzmine.datamodel.features.FeatureList;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.javafx.concurrent.threading.FxThread;
 import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.modules.dataprocessing.id_spectral_library_match.LibrarySpectraPreprocessingCache;
 import io.github.mzmine.modules.io.projectload.CachedIMSRawDataFile;
 import io.github.mzmine.modules.visualization.projectmetadata.table.MetadataTable;
 import io.github.mzmine.parameters.UserParameter;
@@ -187,6 +188,11 @@ public class MZmineProjectImpl implements MZmineProject {
 
   @Override
   public void addFile(@NotNull final RawDataFile newFile) {
+    addFile(-1, newFile);
+  }
+
+  @Override
+  public void addFile(final int index, @NotNull final RawDataFile newFile) {
     try {
       rawLock.writeLock().lock();
       // avoid duplicate file names and check the actual names of the files of the raw data files
@@ -210,7 +216,11 @@ public class MZmineProjectImpl implements MZmineProject {
 
       logger.finest("Adding a new file to the project: " + newFile.getName());
 
-      rawDataFiles.add(newFile);
+      if (index >= 0 && index < rawDataFiles.size()) {
+        rawDataFiles.add(index, newFile);
+      } else {
+        rawDataFiles.add(newFile);
+      }
       projectMetadata.addFile(newFile);
 
       fireDataFilesChangeEvent(List.of(newFile), Type.ADDED);
@@ -437,6 +447,9 @@ public class MZmineProjectImpl implements MZmineProject {
   public void removeSpectralLibrary(SpectralLibrary... library) {
     synchronized (spectralLibraries) {
       spectralLibraries.removeAll(library);
+      for (SpectralLibrary lib : library) {
+        LibrarySpectraPreprocessingCache.getInstance().invalidate(lib);
+      }
       fireLibrariesChangeEvent(List.of(library), Type.REMOVED);
     }
   }
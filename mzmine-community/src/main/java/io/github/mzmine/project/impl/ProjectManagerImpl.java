@@ -29,6 +29,7 @@ import io.github.mzmine.datamodel.MZmineProject;
 import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.gui.MZmineGUI;
 import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.modules.dataprocessing.id_spectral_library_match.LibrarySpectraPreprocessingCache;
 import io.github.mzmine.modules.io.projectload.ProjectLoadModule;
 import io.github.mzmine.modules.io.projectload.ProjectLoaderParameters;
 import io.github.mzmine.parameters.ParameterSet;
@@ -77,6 +78,9 @@ public class ProjectManagerImpl implements ProjectManager {
     }
 
     this.currentProject = project;
+    // remove preprocessed spectra of libraries that were only part of the previous project
+    LibrarySpectraPreprocessingCache.getInstance()
+        .retainLibraries(project.getCurrentSpectralLibraries());
 
     // This is a hack to keep correct value of last opened directory (this
     // value was overwritten when configuration file was loaded from the new
@@ -98,10 +102,10 @@ public class ProjectManagerImpl implements ProjectManager {
   public void clearProject() {
     // Create a new, empty project
     MZmineProject old = getCurrentProject();
-    setCurrentProject(new MZmineProjectImpl());
+    MZmineProject project = new MZmineProjectImpl();
     // keep libraries
-    currentProject.addSpectralLibrary(
-        old.getCurrentSpectralLibraries().toArray(new SpectralLibrary[0]));
+    project.addSpectralLibrary(old.getCurrentSpectralLibraries().toArray(new SpectralLibrary[0]));
+    setCurrentProject(project);
     logger.info("Project cleared");
   }
 
@@ -29,6 +29,8 @@ import com.google.common.collect.Range;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Objects;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
@@ -63,6 +65,17 @@ public class XMLUtils {
     return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(file);
   }
 
+  /**
+   * Parse XML from a stream, e.g., a zip entry. The stream is not closed.
+   *
+   * @param stream xml input
+   * @return the document
+   */
+  public static Document load(final InputStream stream)
+      throws ParserConfigurationException, IOException, SAXException {
+    return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(stream);
+  }
+
   /**
    * Write XML file
    *
@@ -73,17 +86,28 @@ public class XMLUtils {
    */
   public static void saveToFile(final File file, final Document document)
       throws TransformerException, IOException {
+    // Write to file and transform.
+    try (FileOutputStream fos = new FileOutputStream(file)) {
+      saveToStream(fos, document);
+    }
+  }
+
+  /**
+   * Write XML to a stream, e.g., a zip entry. The stream is not closed.
+   *
+   * @param stream   output
+   * @param document xml document
+   * @throws TransformerException
+   */
+  public static void saveToStream(final OutputStream stream, final Document document)
+      throws TransformerException {
     // Create transformer.
     final Transformer transformer = TransformerFactory.newInstance().newTransformer();
     transformer.setOutputProperty(OutputKeys.METHOD, "xml");
     transformer.setOutputProperty(OutputKeys.INDENT, "yes");
     transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
     transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
-
-    // Write to file and transform.
-    try (FileOutputStream fos = new FileOutputStream(file)) {
-      transformer.transform(new DOMSource(document), new StreamResult(fos));
-    }
+    transformer.transform(new DOMSource(document), new StreamResult(stream));
   }
 
   /**
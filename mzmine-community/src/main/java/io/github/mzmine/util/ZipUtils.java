@@ -31,6 +31,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Enumeration;
+import java.util.function.Predicate;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
@@ -108,6 +109,14 @@ public class ZipUtils {
 
   public static void unzipDirectory(String folder, ZipFile zipFile, File destinationFolder)
       throws IOException {
+    unzipDirectory(folder, zipFile, destinationFolder, name -> true);
+  }
+
+  /**
+   * @param entryFilter only extracts entries with names that match this filter
+   */
+  public static void unzipDirectory(String folder, ZipFile zipFile, File destinationFolder,
+      @NotNull Predicate<String> entryFilter) throws IOException {
     int readLen;
     byte readBuffer[] = new byte[10000000];
 
@@ -117,7 +126,7 @@ public class ZipUtils {
       entry = entries.nextElement();
 
       // only extract the given folder
-      if (!entry.getName().startsWith(folder)) {
+      if (!entry.getName().startsWith(folder) || !entryFilter.test(entry.getName())) {
         continue;
       }
 
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.concurrent;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.function.BooleanSupplier;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Runs tasks on an executor and hands their results to a consumer in submission order on the
+ * submitting thread. At most maxPending tasks are queued ahead of the consumer, which bounds the
+ * memory of results waiting to be consumed and the number of executor threads used. The oldest
+ * task is run on the submitting thread if the executor did not start it yet, so that a busy shared
+ * executor does not stall the pipeline.
+ * <p>
+ * Not thread safe: submit, finish and close need to be called from the same thread.
+ *
+ * @param <T> the task result
+ * @param <E> the exception thrown by the consumer
+ */
+public final class OrderedTaskPipeline<T, E extends Exception> implements AutoCloseable {
+
+  private final @Nullable Executor executor;
+  private final int maxPending;
+  private final @NotNull ResultConsumer<? super T, E> consumer;
+  private final ArrayDeque<FutureTask<T>> pending = new ArrayDeque<>();
+
+  /**
+   * @param executor   executes the tasks or null to run each task directly on submit
+   * @param maxPending maximum number of tasks that are queued before submit waits for the oldest
+   * @param consumer   receives the results in submission order
+   */
+  public OrderedTaskPipeline(@Nullable Executor executor, int maxPending,
+      @NotNull ResultConsumer<? super T, E> consumer) {
+    this.executor = executor;
+    this.maxPending = Math.max(1, maxPending);
+    this.consumer = consumer;
+  }
+
+  /**
+   * Submits a task and consumes the results of all finished tasks at the head of the queue. Waits
+   * for the oldest task if maxPending tasks are pending.
+   *
+   * @throws ExecutionException if a consumed task failed
+   */
+  public void submit(@NotNull Callable<T> task)
+      throws E, ExecutionException, InterruptedException {
+    final FutureTask<T> future = new FutureTask<>(task);
+    if (executor == null) {
+      future.run();
+      consumer.accept(future.get());
+      return;
+    }
+    executor.execute(future);
+    pending.add(future);
+    while (!pending.isEmpty() && (pending.size() >= maxPending || pending.peekFirst().isDone())) {
+      consumeNext();
+    }
+  }
+
+  /**
+   * Waits for all pending tasks and consumes their results in order
+   *
+   * @param canceled stops waiting if true. Remaining tasks are cancelled by {@link #close()}
+   * @throws ExecutionException if a consumed task failed
+   */
+  public void finish(@NotNull BooleanSupplier canceled)
+      throws E, ExecutionException, InterruptedException {
+    while (!pending.isEmpty() && !canceled.getAsBoolean()) {
+      consumeNext();
+    }
+  }
+
+  private void consumeNext() throws E, ExecutionException, InterruptedException {
+    final FutureTask<T> next = pending.pollFirst();
+    // no-op if already started
+    next.run();
+    consumer.accept(next.get());
+  }
+
+  /**
+   * @return number of submitted tasks that were not consumed yet
+   */
+  public int getNumPending() {
+    return pending.size();
+  }
+
+  /**
+   * Cancels all tasks that were not consumed yet. Tasks that are already running finish but their
+   * results are not consumed.
+   */
+  @Override
+  public void close() {
+    for (final FutureTask<T> future : pending) {
+      future.cancel(false);
+    }
+    pending.clear();
+  }
+
+  /**
+   * Consumes task results in submission order
+   */
+  @FunctionalInterface
+  public interface ResultConsumer<T, E extends Exception> {
+
+    void accept(T result) throws E;
+  }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.io;
+
+import static io.github.mzmine.util.io.NpzWriter.CODES_SUFFIX;
+import static io.github.mzmine.util.io.NpzWriter.DICTIONARY_OFFSETS_SUFFIX;
+import static io.github.mzmine.util.io.NpzWriter.DICTIONARY_SUFFIX;
+import static io.github.mzmine.util.io.NpzWriter.DICTIONARY_UTF8_SUFFIX;
+import static io.github.mzmine.util.io.NpzWriter.MAGIC;
+import static io.github.mzmine.util.io.NpzWriter.NPY_SUFFIX;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Reads one-dimensional arrays from a NumPy .npz archive written by {@link NpzWriter} or numpy.
+ * Supports little endian float64, float32, int32, uint8 and fixed width unicode arrays.
+ */
+public class NpzReader implements AutoCloseable {
+
+  private static final Pattern DESCR_PATTERN = Pattern.compile("'descr':\\s*'([^']+)'");
+  private static final Pattern SHAPE_PATTERN = Pattern.compile("'shape':\\s*\\((\\d+),?\\)");
+
+  private final ZipFile zip;
+
+  public NpzReader(@NotNull File file) throws IOException {
+    zip = new ZipFile(file);
+  }
+
+  /**
+   * @return true if the archive contains the array or dictionary encoded strings
+   */
+  public boolean contains(@NotNull String name) {
+    return zip.getEntry(name + NPY_SUFFIX) != null
+           || zip.getEntry(name + CODES_SUFFIX + NPY_SUFFIX) != null;
+  }
+
+  public double[] readDoubles(@NotNull String name) throws IOException {
+    final NpyArray array = read(name, "<f8");
+    final double[] values = new double[array.length()];
+    array.data().asDoubleBuffer().get(values);
+    return values;
+  }
+
+  public float[] readFloats(@NotNull String name) throws IOException {
+    final NpyArray array = read(name, "<f4");
+    final float[] values = new float[array.length()];
+    array.data().asFloatBuffer().get(values);
+    return values;
+  }
+
+  public int[] readInts(@NotNull String name) throws IOException {
+    final NpyArray array = read(name, "<i4");
+    final int[] values = new int[array.length()];
+    array.data().asIntBuffer().get(values);
+    return values;
+  }
+
+  public byte[] readBytes(@NotNull String name) throws IOException {
+    final NpyArray array = read(name, "|u1");
+    final byte[] values = new byte[array.length()];
+    array.data().get(values);
+    return values;
+  }
+
+  /**
+   * Reads dictionary encoded strings written by {@link NpzWriter#writeStrings} with a fixed width
+   * or a UTF-8 dictionary
+   *
+   * @return the strings, null for missing values
+   */
+  public @Nullable String[] readStrings(@NotNull String name) throws IOException {
+    final int[] codes = readInts(name + CODES_SUFFIX);
+    final String[] dictionary =
+        zip.getEntry(name + DICTIONARY_SUFFIX + NPY_SUFFIX) != null ? readStringArray(
+            name + DICTIONARY_SUFFIX) : readUtf8Dictionary(name);
+    return Arrays.stream(codes).mapToObj(code -> code < 0 ? null : dictionary[code])
+        .toArray(String[]::new);
+  }
+
+  /**
+   * Reads a fixed width unicode array. Trailing padding is removed.
+   */
+  public String[] readStringArray(@NotNull String name) throws IOException {
+    final NpyArray array = read(name, "<U");
+    final int width = Integer.parseInt(array.descr().substring(2));
+    final ByteBuffer data = array.data();
+    final String[] values = new String[array.length()];
+    final int[] codePoints = new int[width];
+    for (int i = 0; i < values.length; i++) {
+      int length = 0;
+      for (int c = 0; c < width; c++) {
+        final int codePoint = data.getInt();
+        if (codePoint != 0) {
+          codePoints[length++] = codePoint;
+        }
+      }
+      values[i] = new String(codePoints, 0, length);
+    }
+    return values;
+  }
+
+  private String[] readUtf8Dictionary(String name) throws IOException {
+    final byte[] bytes = readBytes(name + DICTIONARY_UTF8_SUFFIX);
+    final int[] offsets = readInts(name + DICTIONARY_OFFSETS_SUFFIX);
+    final String[] values = new String[offsets.length - 1];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = new String(bytes, offsets[i], offsets[i + 1] - offsets[i],
+          StandardCharsets.UTF_8);
+    }
+    return values;
+  }
+
+  /**
+   * @param expectedDescr the expected data type or its prefix
+   */
+  private NpyArray read(String name, String expectedDescr) throws IOException {
+    final ZipEntry entry = zip.getEntry(name + NPY_SUFFIX);
+    if (entry == null) {
+      throw new IOException("Array " + name + " is missing in " + zip.getName());
+    }
+    final byte[] bytes;
+    try (InputStream in = zip.getInputStream(entry)) {
+      bytes = in.readAllBytes();
+    }
+    final ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    for (byte b : MAGIC) {
+      if (buffer.get() != b) {
+        throw new IOException("Array " + name + " is not in npy format");
+      }
+    }
+    final int major = buffer.get();
+    buffer.get(); // minor version
+    final int headerLength = major == 1 ? Short.toUnsignedInt(buffer.getShort()) : buffer.getInt();
+    final String header = new String(bytes, buffer.position(), headerLength,
+        StandardCharsets.ISO_8859_1);
+    buffer.position(buffer.position() + headerLength);
+
+    final Matcher descr = DESCR_PATTERN.matcher(header);
+    final Matcher shape = SHAPE_PATTERN.matcher(header);
+    if (!descr.find() || !shape.find()) {
+      throw new IOException("Array " + name + " is not a one-dimensional array: " + header);
+    }
+    if (!descr.group(1).startsWith(expectedDescr)) {
+      throw new IOException(
+          "Array " + name + " has type " + descr.group(1) + " but " + expectedDescr
+          + " was expected");
+    }
+    return new NpyArray(descr.group(1), Integer.parseInt(shape.group(1)),
+        buffer.slice().order(ByteOrder.LITTLE_ENDIAN));
+  }
+
+  @Override
+  public void close() throws IOException {
+    zip.close();
+  }
+
+  private record NpyArray(String descr, int length, ByteBuffer data) {
+
+  }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.io;
+
+import it.unimi.dsi.fastutil.ints.Int2DoubleFunction;
+import it.unimi.dsi.fastutil.ints.Int2FloatFunction;
+import it.unimi.dsi.fastutil.ints.Int2IntFunction;
+import it.unimi.dsi.fastutil.ints.Int2ObjectFunction;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Writes one-dimensional arrays to a NumPy .npz archive, a zip file of .npy arrays that is read
+ * by numpy.load, pandas and R (reticulate or RcppCNPy) without parsing text. Values are streamed
+ * through a small buffer, so the memory does not depend on the array length. Strings are dictionary
+ * encoded into int32 codes (-1 for null) and a fixed width unicode array of the distinct values,
+ * which maps to pandas.Categorical.from_codes. Fixed width arrays use 4 bytes for each code point
+ * of the longest value, so large dictionaries of long values are written as UTF-8 bytes with
+ * offsets instead.
+ */
+public class NpzWriter implements AutoCloseable {
+
+  public static final String CODES_SUFFIX = ".codes";
+  public static final String DICTIONARY_SUFFIX = ".dictionary";
+  public static final String DICTIONARY_UTF8_SUFFIX = ".dictionary_utf8";
+  public static final String DICTIONARY_OFFSETS_SUFFIX = ".dictionary_offsets";
+  static final String NPY_SUFFIX = ".npy";
+  static final byte[] MAGIC = {(byte) 0x93, 'N', 'U', 'M', 'P', 'Y'};
+  private static final int BUFFER_SIZE = 1 << 16;
+  /**
+   * Fixed width dictionaries up to this size are always written as unicode arrays
+   */
+  static final long MAX_FIXED_WIDTH_DICTIONARY_BYTES = 1 << 20;
+
+  private final ZipOutputStream zos;
+  private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE)
+      .order(ByteOrder.LITTLE_ENDIAN);
+
+  /**
+   * @param compress deflate the arrays. Otherwise, the arrays are stored uncompressed for faster
+   *                 writing and reading.
+   */
+  public NpzWriter(@NotNull File file, boolean compress) throws IOException {
+    zos = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+    zos.setLevel(compress ? Deflater.BEST_SPEED : Deflater.NO_COMPRESSION);
+  }
+
+  public void writeDoubles(@NotNull String name, int length, @NotNull Int2DoubleFunction values)
+      throws IOException {
+    startArray(name, "<f8", length);
+    for (int i = 0; i < length; i++) {
+      ensureRemaining(Double.BYTES);
+      buffer.putDouble(values.get(i));
+    }
+    finishArray();
+  }
+
+  public void writeFloats(@NotNull String name, int length, @NotNull Int2FloatFunction values)
+      throws IOException {
+    startArray(name, "<f4", length);
+    for (int i = 0; i < length; i++) {
+      ensureRemaining(Float.BYTES);
+      buffer.putFloat(values.get(i));
+    }
+    finishArray();
+  }
+
+  public void writeInts(@NotNull String name, int length, @NotNull Int2IntFunction values)
+      throws IOException {
+    startArray(name, "<i4", length);
+    for (int i = 0; i < length; i++) {
+      ensureRemaining(Integer.BYTES);
+      buffer.putInt(values.get(i));
+    }
+    finishArray();
+  }
+
+  /**
+   * Writes dictionary encoded strings as the arrays name{@value #CODES_SUFFIX} and
+   * name{@value #DICTIONARY_SUFFIX}. If the fixed width dictionary is larger than
+   * {@link #MAX_FIXED_WIDTH_DICTIONARY_BYTES} and larger than its UTF-8 encoding, the dictionary is
+   * written as the concatenated UTF-8 bytes name{@value #DICTIONARY_UTF8_SUFFIX} and the int32
+   * start offsets name{@value #DICTIONARY_OFFSETS_SUFFIX} of length distinct values + 1.
+   *
+   * @param values string of each index, may be null
+   */
+  public void writeStrings(@NotNull String name, int length,
+      @NotNull Int2ObjectFunction<String> values) throws IOException {
+    final Object2IntOpenHashMap<String> codes = new Object2IntOpenHashMap<>();
+    codes.defaultReturnValue(-1);
+    final List<String> dictionary = new ArrayList<>();
+    writeInts(name + CODES_SUFFIX, length, i -> {
+      final String value = values.get(i);
+      if (value == null) {
+        return -1;
+      }
+      int code = codes.getInt(value);
+      if (code == -1) {
+        code = dictionary.size();
+        codes.put(value, code);
+        dictionary.add(value);
+      }
+      return code;
+    });
+
+    long utf8Bytes = 0;
+    int width = 1;
+    for (String value : dictionary) {
+      width = Math.max(width, value.codePointCount(0, value.length()));
+      utf8Bytes += value.getBytes(StandardCharsets.UTF_8).length;
+    }
+    final long fixedWidthBytes = (long) width * Integer.BYTES * dictionary.size();
+    final long offsetBytes = (long) Integer.BYTES * (dictionary.size() + 1);
+    // int32 offsets limit the UTF-8 dictionary to 2 GiB
+    if (fixedWidthBytes <= MAX_FIXED_WIDTH_DICTIONARY_BYTES
+        || fixedWidthBytes <= utf8Bytes + offsetBytes || utf8Bytes > Integer.MAX_VALUE) {
+      writeStringArray(name + DICTIONARY_SUFFIX, dictionary);
+    } else {
+      writeUtf8Dictionary(name, dictionary, (int) utf8Bytes);
+    }
+  }
+
+  private void writeUtf8Dictionary(String name, List<String> dictionary, int totalBytes)
+      throws IOException {
+    final int[] offsets = new int[dictionary.size() + 1];
+    startArray(name + DICTIONARY_UTF8_SUFFIX, "|u1", totalBytes);
+    for (int i = 0; i < dictionary.size(); i++) {
+      final byte[] bytes = dictionary.get(i).getBytes(StandardCharsets.UTF_8);
+      for (int offset = 0; offset < bytes.length; ) {
+        ensureRemaining(1);
+        final int n = Math.min(buffer.remaining(), bytes.length - offset);
+        buffer.put(bytes, offset, n);
+        offset += n;
+      }
+      offsets[i + 1] = offsets[i] + bytes.length;
+    }
+    finishArray();
+    writeInts(name + DICTIONARY_OFFSETS_SUFFIX, offsets.length, i -> offsets[i]);
+  }
+
+  /**
+   * Writes a fixed width unicode array (UTF-32). The width is defined by the longest value.
+   */
+  public void writeStringArray(@NotNull String name, @NotNull List<String> values)
+      throws IOException {
+    int width = 1;
+    for (String value : values) {
+      width = Math.max(width, value.codePointCount(0, value.length()));
+    }
+    startArray(name, "<U" + width, values.size());
+    for (String value : values) {
+      int written = 0;
+      for (int offset = 0; offset < value.length(); written++) {
+        final int codePoint = value.codePointAt(offset);
+        ensureRemaining(Integer.BYTES);
+        buffer.putInt(codePoint);
+        offset += Character.charCount(codePoint);
+      }
+      // padding
+      for (; written < width; written++) {
+        ensureRemaining(Integer.BYTES);
+        buffer.putInt(0);
+      }
+    }
+    finishArray();
+  }
+
+  private void startArray(String name, String descr, int length) throws IOException {
+    zos.putNextEntry(new ZipEntry(name + NPY_SUFFIX));
+    // npy version 1.0: magic, version, header length (uint16), header padded to 64 bytes
+    final String dict =
+        "{'descr': '" + descr + "', 'fortran_order': False, 'shape': (" + length + ",), }";
+    final int unpadded = MAGIC.length + 4 + dict.length() + 1;
+    final String header = dict + " ".repeat((64 - unpadded % 64) % 64) + "\n";
+    buffer.put(MAGIC);
+    buffer.put((byte) 1);
+    buffer.put((byte) 0);
+    buffer.putShort((short) header.length());
+    buffer.put(header.getBytes(StandardCharsets.US_ASCII));
+  }
+
+  private void finishArray() throws IOException {
+    flush();
+    zos.closeEntry();
+  }
+
+  private void ensureRemaining(int bytes) throws IOException {
+    if (buffer.remaining() < bytes) {
+      flush();
+    }
+  }
+
+  private void flush() throws IOException {
+    zos.write(buffer.array(), 0, buffer.position());
+    buffer.clear();
+  }
+
+  @Override
+  public void close() throws IOException {
+    zos.close();
+  }
+}
@@ -26,6 +26,9 @@
 package io.github.mzmine.util.maths.similarity;
 
 import io.github.mzmine.util.maths.similarity.Similarity;
+import java.util.Arrays;
+import org.apache.commons.math3.stat.correlation.PearsonsCorrelation;
+import org.apache.commons.math3.stat.correlation.SpearmansCorrelation;
 
 public enum SimilarityMeasure {
         PEARSON, COSINE_SIM, SPEARMAN, //
@@ -57,6 +60,45 @@ public enum SimilarityMeasure {
             }
         }
 
+        /**
+         * Same as {@link #calc(double[][])} without creating the data[dp][x,y] array for the
+         * common measures.
+         *
+         * @param x      the first values
+         * @param y      the second values
+         * @param length the number of values to use, starting at index 0
+         */
+        public double calc(double[] x, double[] y, int length) {
+            switch (this) {
+                case COSINE_SIM: {
+                    // same summation order as Similarity.COSINE
+                    double dot = 0, normX = 0, normY = 0;
+                    for (int i = 0; i < length; i++) {
+                        dot += x[i] * y[i];
+                        normX += x[i] * x[i];
+                        normY += y[i] * y[i];
+                    }
+                    return dot / (Math.sqrt(normX) * Math.sqrt(normY));
+                }
+                case PEARSON:
+                    return new PearsonsCorrelation().correlation(copyOf(x, length),
+                        copyOf(y, length));
+                case SPEARMAN:
+                    return new SpearmansCorrelation().correlation(copyOf(x, length),
+                        copyOf(y, length));
+                default:
+                    double[][] data = new double[length][];
+                    for (int i = 0; i < length; i++) {
+                        data[i] = new double[]{x[i], y[i]};
+                    }
+                    return calc(data);
+            }
+        }
+
+        private static double[] copyOf(double[] values, int length) {
+            return values.length == length ? values : Arrays.copyOf(values, length);
+        }
+
         @Override
         public String toString() {
             return super.toString().replaceAll("_", " ");
@@ -167,8 +167,19 @@ public class ScanAlignment {
    */
   public static Range<Double> getOverlapMZ(MZTolerance mzTol, DataPoint[] a, DataPoint[] b,
       final Double aMz, final double bMz) {
-    Range<Double> ra = getMZRange(a).span(Range.singleton(aMz));
-    Range<Double> rb = getMZRange(b).span(Range.singleton(bMz));
+    return getOverlapMZ(mzTol, getMZRange(a), getMZRange(b), aMz, bMz);
+  }
+
+  /**
+   * get overlapping MZ range (lowerBound - mzTol and upperbound+ mzTol)
+   *
+   * @param aMzRange closed mz range of all data points in a, see {@link #getMZRange(DataPoint[])}
+   * @param bMzRange closed mz range of all data points in b
+   */
+  public static Range<Double> getOverlapMZ(MZTolerance mzTol, Range<Double> aMzRange,
+      Range<Double> bMzRange, final Double aMz, final double bMz) {
+    Range<Double> ra = aMzRange.span(Range.singleton(aMz));
+    Range<Double> rb = bMzRange.span(Range.singleton(bMz));
 
     // no overlap
     if (!ra.isConnected(rb)) {
@@ -200,6 +211,25 @@ public class ScanAlignment {
     return new DataPoint[][]{newa, newb};
   }
 
+  /**
+   * Closed mz range of all values
+   *
+   * @param mzs mz values in any order
+   * @return the range or singleton 0 if empty
+   */
+  public static Range<Double> getMZRange(double[] mzs) {
+    if (mzs == null || mzs.length == 0) {
+      return Range.singleton(0d);
+    }
+    double min = mzs[0];
+    double max = mzs[0];
+    for (int i = 1; i < mzs.length; i++) {
+      min = Math.min(min, mzs[i]);
+      max = Math.max(max, mzs[i]);
+    }
+    return Range.closed(min, max);
+  }
+
   /**
    * Closed mz range of all data points
    *
@@ -0,0 +1,400 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.scans.similarity;
+
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.datamodel.impl.SimpleDataPoint;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.scans.ScanAlignment;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.ints.IntComparator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Alignment and weighted cosine calculation on parallel m/z and intensity arrays. Produces the
+ * same alignment as {@link ScanAlignment#align(MZTolerance, DataPoint[], DataPoint[])} (every
+ * library signal, in descending intensity, is matched to the most intense unmatched query signal
+ * within the m/z tolerance of the library signal) and the same scores as
+ * {@link ScanAlignment#toIntensityMatrixWeighted(List, double, double)} followed by the cosine,
+ * but works on reusable scratch buffers. Data points are only created on request for results that
+ * passed all thresholds.
+ * <p>
+ * Instances are not thread safe, use {@link #get()} for the instance of the current thread. The
+ * results of the last {@link #align} call are kept until the next call.
+ */
+public final class PackedCosineKernel {
+
+  private static final ThreadLocal<PackedCosineKernel> THREAD_KERNEL = ThreadLocal.withInitial(
+      PackedCosineKernel::new);
+
+  // sorted by mz ascending
+  private double[] libMzs = new double[0];
+  private double[] libIntensities = new double[0];
+  private double[] queryMzs = new double[0];
+  private double[] queryIntensities = new double[0];
+  private int libN;
+  private int queryN;
+
+  // descending intensity (and descending mz for equal intensity) like ScanAlignment.sorter
+  private int[] libOrder = new int[0];
+  private int[] queryOrder = new int[0];
+  // index of matched signal in other spectrum or -1
+  private int[] libMatch = new int[0];
+  private int[] queryMatch = new int[0];
+  // matched library signals in alignment order, later sorted for the neighbour factor
+  private int[] pairs = new int[0];
+  private int overlap;
+
+  // temporary for input sorting
+  private int[] sortOrder = new int[0];
+  private double[] sortValues;
+
+  // comparators are fields to not allocate capturing lambdas for every call
+  private final IntComparator libIntensityDescending = (a, b) -> compareIntensityDescending(
+      libIntensities, libMzs, a, b);
+  private final IntComparator queryIntensityDescending = (a, b) -> compareIntensityDescending(
+      queryIntensities, queryMzs, a, b);
+  private final IntComparator sortValuesAscending = (a, b) -> Double.compare(sortValues[a],
+      sortValues[b]);
+  private final IntComparator pairsMinMzAscending = this::comparePairsByMinMz;
+
+  /**
+   * @return the kernel of the current thread
+   */
+  public static @NotNull PackedCosineKernel get() {
+    return THREAD_KERNEL.get();
+  }
+
+  private static int compareIntensityDescending(double[] intensities, double[] mzs, int a, int b) {
+    int result = Double.compare(intensities[b], intensities[a]);
+    return result != 0 ? result : Double.compare(mzs[b], mzs[a]);
+  }
+
+  /**
+   * Align library and query signals. The input arrays are copied into the scratch buffers and
+   * sorted by m/z if needed, the input is never changed.
+   *
+   * @param mzTol              tolerance of the library m/z
+   * @param libraryMzs         library m/z values
+   * @param libraryIntensities library intensities
+   * @param libraryValues      number of library values to use (arrays may be larger)
+   * @param queryMzs           query m/z values
+   * @param queryIntensities   query intensities
+   * @param queryValues        number of query values to use (arrays may be larger)
+   * @return the number of aligned signals
+   */
+  public int align(@NotNull MZTolerance mzTol, double[] libraryMzs, double[] libraryIntensities,
+      int libraryValues, double[] queryMzs, double[] queryIntensities, int queryValues) {
+    ensureCapacity(libraryValues, queryValues);
+    libN = libraryValues;
+    queryN = queryValues;
+    copySorted(libraryMzs, libraryIntensities, libN, libMzs, libIntensities);
+    copySorted(queryMzs, queryIntensities, queryN, this.queryMzs, this.queryIntensities);
+
+    fillIdentity(libOrder, libN);
+    fillIdentity(queryOrder, queryN);
+    IntArrays.quickSort(libOrder, 0, libN, libIntensityDescending);
+    IntArrays.quickSort(queryOrder, 0, queryN, queryIntensityDescending);
+    Arrays.fill(libMatch, 0, libN, -1);
+    Arrays.fill(queryMatch, 0, queryN, -1);
+
+    overlap = 0;
+    for (int o = 0; o < libN; o++) {
+      final int li = libOrder[o];
+      final double mz = libMzs[li];
+      final double tol = mzTol.getMzToleranceForMass(mz);
+      final double lower = mz - tol;
+      final double upper = mz + tol;
+
+      // most intense unmatched query signal in tolerance
+      int best = -1;
+      for (int qi = lowerBound(this.queryMzs, queryN, lower);
+          qi < queryN && this.queryMzs[qi] <= upper; qi++) {
+        if (queryMatch[qi] == -1 && (best == -1
+            || compareIntensityDescending(this.queryIntensities, this.queryMzs, qi, best) < 0)) {
+          best = qi;
+        }
+      }
+      if (best != -1) {
+        libMatch[li] = best;
+        queryMatch[best] = li;
+        pairs[overlap++] = li;
+      }
+    }
+    return overlap;
+  }
+
+  /**
+   * @return number of aligned signals of the last {@link #align} call
+   */
+  public int getOverlap() {
+    return overlap;
+  }
+
+  /**
+   * The weighted cosine of the last alignment. Values are summed in the same order as the aligned
+   * list of {@link ScanAlignment#align(MZTolerance, DataPoint[], DataPoint[])} to produce equal
+   * results.
+   *
+   * @param weights         weights for m/z and intensity
+   * @param handleUnmatched defines which unmatched signals contribute to the norm
+   * @return the weighted cosine
+   */
+  public double weightedCosine(@NotNull Weights weights,
+      @NotNull HandleUnmatchedSignalOptions handleUnmatched) {
+    final double wIntensity = weights.getIntensity();
+    final double wMz = weights.getMz();
+    final boolean keepLib = keepUnmatchedLibrary(handleUnmatched);
+    final boolean keepQuery = keepUnmatchedQuery(handleUnmatched);
+
+    double dot = 0;
+    double normLib = 0;
+    double normQuery = 0;
+    // library signals in intensity order with their matches
+    for (int o = 0; o < libN; o++) {
+      final int li = libOrder[o];
+      final int qi = libMatch[li];
+      if (qi == -1 && !keepLib) {
+        continue;
+      }
+      final double lib = weighted(libMzs[li], libIntensities[li], wIntensity, wMz);
+      normLib += lib * lib;
+      if (qi != -1) {
+        final double query = weighted(queryMzs[qi], queryIntensities[qi], wIntensity, wMz);
+        dot += lib * query;
+        normQuery += query * query;
+      }
+    }
+    // remaining unmatched query signals
+    if (keepQuery) {
+      for (int o = 0; o < queryN; o++) {
+        final int qi = queryOrder[o];
+        if (queryMatch[qi] == -1) {
+          final double query = weighted(queryMzs[qi], queryIntensities[qi], wIntensity, wMz);
+          normQuery += query * query;
+        }
+      }
+    }
+    return dot / (Math.sqrt(normLib) * Math.sqrt(normQuery));
+  }
+
+  private static boolean keepUnmatchedLibrary(HandleUnmatchedSignalOptions handleUnmatched) {
+    return handleUnmatched == HandleUnmatchedSignalOptions.KEEP_ALL_AND_MATCH_TO_ZERO
+        || handleUnmatched == HandleUnmatchedSignalOptions.KEEP_LIBRARY_SIGNALS;
+  }
+
+  private static boolean keepUnmatchedQuery(HandleUnmatchedSignalOptions handleUnmatched) {
+    return handleUnmatched == HandleUnmatchedSignalOptions.KEEP_ALL_AND_MATCH_TO_ZERO
+        || handleUnmatched == HandleUnmatchedSignalOptions.KEEP_EXPERIMENTAL_SIGNALS;
+  }
+
+  private static double weighted(double mz, double intensity, double wIntensity, double wMz) {
+    return Math.pow(intensity, wIntensity) * Math.pow(mz, wMz);
+  }
+
+  /**
+   * Sum of relative intensity ratios of neighbouring aligned signals in both spectra divided by
+   * the overlap. Used by the composite cosine.
+   *
+   * @return factor ranges from 0-1
+   */
+  public double relativeNeighbourFactor() {
+    // sort aligned pairs by their minimum mz, alignment order for equal values
+    for (int k = 0; k < overlap; k++) {
+      sortOrder[k] = k;
+    }
+    IntArrays.quickSort(sortOrder, 0, overlap, pairsMinMzAscending);
+
+    double factor = 0;
+    for (int i = 1; i < overlap; i++) {
+      final int lib1 = pairs[sortOrder[i - 1]];
+      final int lib2 = pairs[sortOrder[i]];
+      // 0 is library
+      // 1 is query
+      double ratioLibrary = libIntensities[lib2] / libIntensities[lib1];
+      double ratioQuery = queryIntensities[libMatch[lib2]] / queryIntensities[libMatch[lib1]];
+      factor += Math.min(ratioLibrary, ratioQuery) / Math.max(ratioLibrary, ratioQuery);
+    }
+    return factor / overlap;
+  }
+
+  private int comparePairsByMinMz(int a, int b) {
+    final int libA = pairs[a];
+    final int libB = pairs[b];
+    final double minA = Math.min(libMzs[libA], queryMzs[libMatch[libA]]);
+    final double minB = Math.min(libMzs[libB], queryMzs[libMatch[libB]]);
+    final int result = Double.compare(minA, minB);
+    return result != 0 ? result : Integer.compare(a, b);
+  }
+
+  /**
+   * Materialize the result of the last alignment. Only call for results that are kept.
+   *
+   * @param name            name of the similarity function
+   * @param score           the similarity score
+   * @param handleUnmatched defines which unmatched signals are kept in the aligned list
+   * @return the similarity with library, query and aligned data points
+   */
+  public @NotNull SpectralSimilarity createSimilarity(@NotNull String name, double score,
+      @NotNull HandleUnmatchedSignalOptions handleUnmatched) {
+    final DataPoint[] library = createLibraryDataPoints();
+    final DataPoint[] query = createQueryDataPoints();
+    return new SpectralSimilarity(name, score, overlap, library, query,
+        createAlignedDataPoints(handleUnmatched, library, query));
+  }
+
+  /**
+   * Materialize the aligned signals of the last alignment in the same order as
+   * {@link ScanAlignment#align(MZTolerance, DataPoint[], DataPoint[])} followed by
+   * {@link HandleUnmatchedSignalOptions#handleUnmatched(List)}: all library signals in descending
+   * intensity with their match or null, then the unmatched query signals in descending intensity.
+   *
+   * @param handleUnmatched defines which unmatched signals are kept
+   * @param library         data points of {@link #createLibraryDataPoints()}
+   * @param query           data points of {@link #createQueryDataPoints()}
+   * @return list of aligned data points [library, query]
+   */
+  public @NotNull List<DataPoint[]> createAlignedDataPoints(
+      @NotNull HandleUnmatchedSignalOptions handleUnmatched, @NotNull DataPoint[] library,
+      @NotNull DataPoint[] query) {
+    final boolean keepLib = keepUnmatchedLibrary(handleUnmatched);
+    final boolean keepQuery = keepUnmatchedQuery(handleUnmatched);
+
+    List<DataPoint[]> aligned = new ArrayList<>(libN + (keepQuery ? queryN : 0));
+    for (int o = 0; o < libN; o++) {
+      final int li = libOrder[o];
+      final int qi = libMatch[li];
+      if (qi != -1) {
+        aligned.add(new DataPoint[]{library[li], query[qi]});
+      } else if (keepLib) {
+        aligned.add(new DataPoint[]{library[li], null});
+      }
+    }
+    if (keepQuery) {
+      for (int o = 0; o < queryN; o++) {
+        final int qi = queryOrder[o];
+        if (queryMatch[qi] == -1) {
+          aligned.add(new DataPoint[]{null, query[qi]});
+        }
+      }
+    }
+    return aligned;
+  }
+
+  /**
+   * @return the library signals of the last alignment sorted by m/z
+   */
+  public @NotNull DataPoint[] createLibraryDataPoints() {
+    return createDataPoints(libMzs, libIntensities, libN);
+  }
+
+  /**
+   * @return the query signals of the last alignment sorted by m/z
+   */
+  public @NotNull DataPoint[] createQueryDataPoints() {
+    return createDataPoints(queryMzs, queryIntensities, queryN);
+  }
+
+  private static DataPoint[] createDataPoints(double[] mzs, double[] intensities, int n) {
+    DataPoint[] dps = new DataPoint[n];
+    for (int i = 0; i < n; i++) {
+      dps[i] = new SimpleDataPoint(mzs[i], intensities[i]);
+    }
+    return dps;
+  }
+
+  /**
+   * Copy values and sort by mz if the source is unsorted
+   */
+  private void copySorted(double[] srcMzs, double[] srcIntensities, int n, double[] dstMzs,
+      double[] dstIntensities) {
+    boolean sorted = true;
+    for (int i = 1; i < n && sorted; i++) {
+      sorted = srcMzs[i - 1] <= srcMzs[i];
+    }
+    if (sorted) {
+      System.arraycopy(srcMzs, 0, dstMzs, 0, n);
+      System.arraycopy(srcIntensities, 0, dstIntensities, 0, n);
+      return;
+    }
+
+    sortValues = srcMzs;
+    fillIdentity(sortOrder, n);
+    IntArrays.quickSort(sortOrder, 0, n, sortValuesAscending);
+    sortValues = null;
+    for (int i = 0; i < n; i++) {
+      dstMzs[i] = srcMzs[sortOrder[i]];
+      dstIntensities[i] = srcIntensities[sortOrder[i]];
+    }
+  }
+
+  private static int lowerBound(double[] values, int n, double value) {
+    int low = 0;
+    int high = n;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (values[mid] < value) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private static void fillIdentity(int[] order, int n) {
+    for (int i = 0; i < n; i++) {
+      order[i] = i;
+    }
+  }
+
+  private void ensureCapacity(int libraryValues, int queryValues) {
+    if (libMzs.length < libraryValues) {
+      int size = Math.max(libraryValues, libMzs.length * 2);
+      libMzs = new double[size];
+      libIntensities = new double[size];
+      libOrder = new int[size];
+      libMatch = new int[size];
+    }
+    if (queryMzs.length < queryValues) {
+      int size = Math.max(queryValues, queryMzs.length * 2);
+      queryMzs = new double[size];
+      queryIntensities = new double[size];
+      queryOrder = new int[size];
+      queryMatch = new int[size];
+    }
+    int maxValues = Math.max(libraryValues, queryValues);
+    if (sortOrder.length < maxValues) {
+      sortOrder = new int[Math.max(maxValues, sortOrder.length * 2)];
+    }
+    if (pairs.length < libraryValues) {
+      pairs = new int[libMzs.length];
+    }
+  }
+}
@@ -33,6 +33,7 @@ import io.github.mzmine.datamodel.DataPoint;
 import io.github.mzmine.modules.MZmineModule;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.DataPointUtils;
 import io.github.mzmine.util.scans.ScanAlignment;
 import io.github.mzmine.util.scans.similarity.impl.composite.CompositeCosineSpectralSimilarity;
 import io.github.mzmine.util.scans.similarity.impl.cosine.WeightedCosineSpectralSimilarity;
@@ -64,6 +65,23 @@ public abstract class SpectralSimilarityFunction implements MZmineModule {
   public abstract SpectralSimilarity getSimilarity(ParameterSet parameters, MZTolerance mzTol,
       int minMatch, DataPoint[] library, DataPoint[] query);
 
+  /**
+   * Similarity of spectra as parallel m/z and intensity arrays. The default implementation creates
+   * data points, the cosine implementations override this to use the {@link PackedCosineKernel} and
+   * only create data points for results that pass all thresholds.
+   *
+   * @param minMatch minimum overlap in signals
+   * @return A spectra similarity if all requirements were met - otherwise null
+   */
+  @Nullable
+  public SpectralSimilarity getSimilarity(ParameterSet parameters, MZTolerance mzTol,
+      int minMatch, double[] libraryMzs, double[] libraryIntensities, double[] queryMzs,
+      double[] queryIntensities) {
+    return getSimilarity(parameters, mzTol, minMatch,
+        DataPointUtils.getDataPoints(libraryMzs, libraryIntensities),
+        DataPointUtils.getDataPoints(queryMzs, queryIntensities));
+  }
+
   /**
    * Align two mass lists. Override if alignement is changed in a specific spectral similarity
    * function.
@@ -31,6 +31,7 @@ import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
 import io.github.mzmine.util.maths.similarity.Similarity;
 import io.github.mzmine.util.scans.ScanAlignment;
 import io.github.mzmine.util.scans.similarity.HandleUnmatchedSignalOptions;
+import io.github.mzmine.util.scans.similarity.PackedCosineKernel;
 import io.github.mzmine.util.scans.similarity.SpectralSimilarity;
 import io.github.mzmine.util.scans.similarity.SpectralSimilarityFunction;
 import io.github.mzmine.util.scans.similarity.Weights;
@@ -98,6 +99,58 @@ public class CompositeCosineSpectralSimilarity extends SpectralSimilarityFunctio
     return null;
   }
 
+  /**
+   * Same as {@link #getSimilarity(ParameterSet, MZTolerance, int, DataPoint[], DataPoint[])} but
+   * uses the {@link PackedCosineKernel} on m/z and intensity arrays
+   */
+  @Override
+  public SpectralSimilarity getSimilarity(ParameterSet parameters, MZTolerance mzTol, int minMatch,
+      double[] libraryMzs, double[] libraryIntensities, double[] queryMzs,
+      double[] queryIntensities) {
+    Weights weights = parameters.getParameter(CompositeCosineSpectralSimilarityParameters.weight)
+        .getValue();
+    double minCos = parameters.getParameter(CompositeCosineSpectralSimilarityParameters.minCosine)
+        .getValue();
+    HandleUnmatchedSignalOptions handleUnmatched = parameters.getParameter(
+        CompositeCosineSpectralSimilarityParameters.handleUnmatched).getValue();
+    if (!parameters.getValue(CompositeCosineSpectralSimilarityParameters.packedArrays)) {
+      return super.getSimilarity(parameters, mzTol, minMatch, libraryMzs, libraryIntensities,
+          queryMzs, queryIntensities);
+    }
+    return getSimilarity(weights, minCos, handleUnmatched, mzTol, minMatch, libraryMzs,
+        libraryIntensities, queryMzs, queryIntensities);
+  }
+
+  public SpectralSimilarity getSimilarity(Weights weights, double minCos,
+      HandleUnmatchedSignalOptions handleUnmatched, MZTolerance mzTol, int minMatch,
+      double[] libraryMzs, double[] libraryIntensities, double[] queryMzs,
+      double[] queryIntensities) {
+    PackedCosineKernel kernel = PackedCosineKernel.get();
+    int overlap = kernel.align(mzTol, libraryMzs, libraryIntensities, libraryMzs.length, queryMzs,
+        queryIntensities, queryMzs.length);
+
+    int queryN = queryMzs.length;
+    if (overlap >= minMatch) {
+      // relative factor ranges from 0-1
+      double relativeFactor = kernel.relativeNeighbourFactor();
+
+      // weighted cosine
+      double diffCosine = kernel.weightedCosine(weights, handleUnmatched);
+
+      // composite dot product identity score
+      // NIST search similar
+      double composite = (queryN * diffCosine + overlap * relativeFactor) / (queryN + overlap);
+
+      if (composite >= minCos) {
+        // only create data points for matches
+        return kernel.createSimilarity(getName(), composite, handleUnmatched);
+      } else {
+        return null;
+      }
+    }
+    return null;
+  }
+
   /**
    * sum of relative ratios of neighbours in both mass lists
    *
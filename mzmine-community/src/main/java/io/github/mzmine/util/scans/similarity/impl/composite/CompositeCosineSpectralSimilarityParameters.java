@@ -53,8 +53,13 @@ public class CompositeCosineSpectralSimilarityParameters extends SimpleParameter
           HandleUnmatchedSignalOptions.values(),
           HandleUnmatchedSignalOptions.KEEP_ALL_AND_MATCH_TO_ZERO);
 
+  public static final BooleanParameter packedArrays = new BooleanParameter("Packed array alignment",
+      "Align spectra on reusable m/z and intensity arrays and only create data points for "
+          + "results that pass the minimum similarity. Produces the same scores as the data "
+          + "point based alignment with less memory allocation.", true);
+
   public CompositeCosineSpectralSimilarityParameters() {
-    super(new Parameter[] {weight, minCosine, handleUnmatched});
+    super(new Parameter[] {weight, minCosine, handleUnmatched, packedArrays});
   }
 
 }
@@ -31,6 +31,7 @@ import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
 import io.github.mzmine.util.maths.similarity.Similarity;
 import io.github.mzmine.util.scans.ScanAlignment;
 import io.github.mzmine.util.scans.similarity.HandleUnmatchedSignalOptions;
+import io.github.mzmine.util.scans.similarity.PackedCosineKernel;
 import io.github.mzmine.util.scans.similarity.SpectralSimilarity;
 import io.github.mzmine.util.scans.similarity.SpectralSimilarityFunction;
 import io.github.mzmine.util.scans.similarity.Weights;
@@ -80,6 +81,39 @@ public class WeightedCosineSpectralSimilarity extends SpectralSimilarityFunction
     return null;
   }
 
+  /**
+   * Same as {@link #getSimilarity(ParameterSet, MZTolerance, int, DataPoint[], DataPoint[])} but
+   * uses the {@link PackedCosineKernel} on m/z and intensity arrays
+   */
+  @Override
+  public SpectralSimilarity getSimilarity(ParameterSet parameters, MZTolerance mzTol, int minMatch,
+      double[] libraryMzs, double[] libraryIntensities, double[] queryMzs,
+      double[] queryIntensities) {
+    Weights weights =
+        parameters.getParameter(WeightedCosineSpectralSimilarityParameters.weight).getValue();
+    double minCos =
+        parameters.getParameter(WeightedCosineSpectralSimilarityParameters.minCosine).getValue();
+    HandleUnmatchedSignalOptions handleUnmatched = parameters
+        .getParameter(WeightedCosineSpectralSimilarityParameters.handleUnmatched).getValue();
+    if (!parameters.getValue(WeightedCosineSpectralSimilarityParameters.packedArrays)) {
+      return super.getSimilarity(parameters, mzTol, minMatch, libraryMzs, libraryIntensities,
+          queryMzs, queryIntensities);
+    }
+
+    PackedCosineKernel kernel = PackedCosineKernel.get();
+    int overlap = kernel.align(mzTol, libraryMzs, libraryIntensities, libraryMzs.length, queryMzs,
+        queryIntensities, queryMzs.length);
+
+    if (overlap >= minMatch) {
+      double diffCosine = kernel.weightedCosine(weights, handleUnmatched);
+      if (diffCosine >= minCos) {
+        // only create data points for matches
+        return kernel.createSimilarity(getName(), diffCosine, handleUnmatched);
+      }
+    }
+    return null;
+  }
+
   @Override
   @NotNull
   public String getName() {
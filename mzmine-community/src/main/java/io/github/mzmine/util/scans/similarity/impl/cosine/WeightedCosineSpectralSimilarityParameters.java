@@ -27,6 +27,7 @@ package io.github.mzmine.util.scans.similarity.impl.cosine;
 
 import io.github.mzmine.parameters.Parameter;
 import io.github.mzmine.parameters.impl.SimpleParameterSet;
+import io.github.mzmine.parameters.parametertypes.BooleanParameter;
 import io.github.mzmine.parameters.parametertypes.ComboParameter;
 import io.github.mzmine.parameters.parametertypes.DoubleParameter;
 import io.github.mzmine.util.scans.similarity.HandleUnmatchedSignalOptions;
@@ -53,8 +54,13 @@ public class WeightedCosineSpectralSimilarityParameters extends SimpleParameterS
           HandleUnmatchedSignalOptions.values(),
           HandleUnmatchedSignalOptions.KEEP_ALL_AND_MATCH_TO_ZERO);
 
+  public static final BooleanParameter packedArrays = new BooleanParameter("Packed array alignment",
+      "Align spectra on reusable m/z and intensity arrays and only create data points for "
+          + "results that pass the minimum similarity. Produces the same scores as the data "
+          + "point based alignment with less memory allocation.", true);
+
   public WeightedCosineSpectralSimilarityParameters() {
-    super(new Parameter[] {weight, minCosine, handleUnmatched});
+    super(new Parameter[] {weight, minCosine, handleUnmatched, packedArrays});
   }
 
 }
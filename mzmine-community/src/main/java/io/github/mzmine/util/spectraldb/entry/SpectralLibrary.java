@@ -54,6 +54,8 @@ public class SpectralLibrary {
   @Nullable
   private final MemoryMapStorage storage;
   private final ObservableSet<DataType> types = FXCollections.observableSet(new LinkedHashSet<>());
+  // lazily built and reset when entries are added
+  private volatile @Nullable SpectralLibraryPrecursorIndex precursorIndex;
 
   public SpectralLibrary(@Nullable MemoryMapStorage storage, @NotNull File path) {
     this(storage, path.getName(), path);
@@ -71,15 +73,58 @@ public class SpectralLibrary {
     return Collections.unmodifiableList(entries);
   }
 
-  public void addEntry(SpectralLibraryEntry entry) {
+  public synchronized void addEntry(SpectralLibraryEntry entry) {
     entry.setLibrary(this);
     entries.add(entry);
+    precursorIndex = null;
   }
 
-  public void addEntries(Collection<SpectralLibraryEntry> entries) {
+  public synchronized void addEntries(Collection<SpectralLibraryEntry> entries) {
     entries.forEach(this::addEntry);
   }
 
+  /**
+   * The index is built once on first access and rebuilt after entries were added.
+   *
+   * @return all entries with precursor m/z sorted by precursor m/z
+   */
+  @NotNull
+  public SpectralLibraryPrecursorIndex getPrecursorIndex() {
+    var index = precursorIndex;
+    if (index == null) {
+      synchronized (this) {
+        index = precursorIndex;
+        if (index == null) {
+          index = SpectralLibraryPrecursorIndex.create(entries);
+          precursorIndex = index;
+        }
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Sets a precomputed index, e.g., loaded from a library cache. The index is only applied if it
+   * was created for the entries of this library (same number of entries with precursor m/z, all
+   * assigned to this library).
+   *
+   * @return true if the index was applied
+   */
+  public synchronized boolean setPrecursorIndex(@NotNull SpectralLibraryPrecursorIndex index) {
+    final long withPrecursor = entries.stream().map(SpectralLibraryEntry::getPrecursorMZ)
+        .filter(mz -> mz != null && !Double.isNaN(mz)).count();
+    if (withPrecursor != index.size()) {
+      return false;
+    }
+    for (int i = 0; i < index.size(); i++) {
+      if (index.getEntry(i).getLibrary() != this) {
+        return false;
+      }
+    }
+    precursorIndex = index;
+    return true;
+  }
+
   @NotNull
   public File getPath() {
     return path;
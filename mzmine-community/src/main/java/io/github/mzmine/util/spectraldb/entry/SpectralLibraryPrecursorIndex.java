@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.spectraldb.entry;
+
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.PercentTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import java.util.ArrayList;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Immutable index of all {@link SpectralLibraryEntry} with a precursor m/z sorted by precursor
+ * m/z. Values are held in primitive arrays so that candidate selection is a binary search followed
+ * by a linear scan over the small tolerance window. Entries without precursor m/z are not
+ * indexed, as they never pass a precursor check. Missing RT or CCS values are stored as
+ * {@link Float#NaN}.
+ */
+public final class SpectralLibraryPrecursorIndex {
+
+  private final double[] precursorMzs;
+  private final float[] rts;
+  private final float[] ccs;
+  private final SpectralLibraryEntry[] entries;
+
+  private SpectralLibraryPrecursorIndex(double[] precursorMzs, float[] rts, float[] ccs,
+      SpectralLibraryEntry[] entries) {
+    this.precursorMzs = precursorMzs;
+    this.rts = rts;
+    this.ccs = ccs;
+    this.entries = entries;
+  }
+
+  /**
+   * Creates a new index of all entries that define a precursor m/z
+   *
+   * @param libraryEntries all library entries
+   * @return the index sorted by precursor m/z
+   */
+  public static @NotNull SpectralLibraryPrecursorIndex create(
+      @NotNull List<SpectralLibraryEntry> libraryEntries) {
+    final int total = libraryEntries.size();
+    final double[] mzs = new double[total];
+    final SpectralLibraryEntry[] withPrecursor = new SpectralLibraryEntry[total];
+    int n = 0;
+    for (final SpectralLibraryEntry entry : libraryEntries) {
+      final Double mz = entry.getPrecursorMZ();
+      if (mz != null && !Double.isNaN(mz)) {
+        mzs[n] = mz;
+        withPrecursor[n] = entry;
+        n++;
+      }
+    }
+
+    // sort a permutation and then apply it to all columns
+    final int[] order = new int[n];
+    for (int i = 0; i < n; i++) {
+      order[i] = i;
+    }
+    IntArrays.parallelQuickSort(order, (a, b) -> Double.compare(mzs[a], mzs[b]));
+
+    final double[] sortedMzs = new double[n];
+    final float[] sortedRts = new float[n];
+    final float[] sortedCcs = new float[n];
+    final SpectralLibraryEntry[] sortedEntries = new SpectralLibraryEntry[n];
+    for (int i = 0; i < n; i++) {
+      final SpectralLibraryEntry entry = withPrecursor[order[i]];
+      sortedMzs[i] = mzs[order[i]];
+      sortedEntries[i] = entry;
+      sortedRts[i] = entry.getAsFloat(DBEntryField.RT).orElse(Float.NaN);
+      sortedCcs[i] = entry.getAsFloat(DBEntryField.CCS).orElse(Float.NaN);
+    }
+    return new SpectralLibraryPrecursorIndex(sortedMzs, sortedRts, sortedCcs, sortedEntries);
+  }
+
+  /**
+   * Creates an index from entries that are already sorted by precursor m/z, e.g., loaded from a
+   * library cache
+   *
+   * @param sortedMzs     precursor m/z values sorted ascending
+   * @param sortedEntries the entries in the same order
+   * @return the index
+   */
+  public static @NotNull SpectralLibraryPrecursorIndex createPresorted(
+      @NotNull double[] sortedMzs, @NotNull SpectralLibraryEntry[] sortedEntries) {
+    if (sortedMzs.length != sortedEntries.length) {
+      throw new IllegalArgumentException("Different number of m/z values and entries");
+    }
+    final int n = sortedEntries.length;
+    final float[] rts = new float[n];
+    final float[] ccs = new float[n];
+    for (int i = 0; i < n; i++) {
+      if (i > 0 && sortedMzs[i - 1] > sortedMzs[i]) {
+        throw new IllegalArgumentException("Precursor m/z values are not sorted");
+      }
+      rts[i] = sortedEntries[i].getAsFloat(DBEntryField.RT).orElse(Float.NaN);
+      ccs[i] = sortedEntries[i].getAsFloat(DBEntryField.CCS).orElse(Float.NaN);
+    }
+    return new SpectralLibraryPrecursorIndex(sortedMzs, rts, ccs, sortedEntries);
+  }
+
+  /**
+   * @return number of indexed entries (entries with precursor m/z)
+   */
+  public int size() {
+    return entries.length;
+  }
+
+  public @NotNull SpectralLibraryEntry getEntry(int index) {
+    return entries[index];
+  }
+
+  public double getPrecursorMz(int index) {
+    return precursorMzs[index];
+  }
+
+  /**
+   * @return the first index with a precursor m/z >= mz or {@link #size()} if there is none
+   */
+  public int lowerBound(double mz) {
+    int low = 0;
+    int high = precursorMzs.length;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (precursorMzs[mid] < mz) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Collects all entries that match the query precursor m/z and optionally the query RT and CCS.
+   * The checks are equal to {@link MZTolerance#checkWithinTolerance(double, double)} with the
+   * library m/z as the base, {@link RTTolerance#checkWithinTolerance(float, float)} with the
+   * library RT as the base (entries without RT pass) and {@link PercentTolerance#matches(Number,
+   * Number)} with the query CCS as the base (entries without CCS fail).
+   *
+   * @param precursorMz  query precursor m/z
+   * @param mzTolerance  precursor tolerance
+   * @param rt           query rt or null to skip the RT filter
+   * @param rtTolerance  rt tolerance or null to skip the RT filter
+   * @param queryCCS     query CCS
+   * @param ccsTolerance ccs tolerance or null to skip the CCS filter
+   * @param results      candidates are added to this list
+   */
+  public void collectCandidates(double precursorMz, @NotNull MZTolerance mzTolerance,
+      @Nullable Float rt, @Nullable RTTolerance rtTolerance, @Nullable Float queryCCS,
+      @Nullable PercentTolerance ccsTolerance, @NotNull List<SpectralLibraryEntry> results) {
+    if (ccsTolerance != null && queryCCS == null) {
+      // CCS check always fails without query CCS
+      return;
+    }
+    // the tolerance is calculated on the library m/z, so widen the search window and check each
+    final double widened = mzTolerance.getMzToleranceForMass(
+        precursorMz + 2 * mzTolerance.getMzToleranceForMass(precursorMz));
+    final boolean checkRT = rt != null && rtTolerance != null;
+
+    for (int i = lowerBound(precursorMz - widened); i < precursorMzs.length; i++) {
+      final double libMz = precursorMzs[i];
+      if (libMz > precursorMz + widened) {
+        break;
+      }
+      if (Math.abs(libMz - precursorMz) > mzTolerance.getMzToleranceForMass(libMz)) {
+        continue;
+      }
+      if (checkRT && !Float.isNaN(rts[i]) && !rtTolerance.checkWithinTolerance(rts[i], rt)) {
+        continue;
+      }
+      if (ccsTolerance != null && (Float.isNaN(ccs[i]) || !ccsTolerance.matches(
+          (double) queryCCS, (double) ccs[i]))) {
+        continue;
+      }
+      results.add(entries[i]);
+    }
+  }
+
+  /**
+   * @return all candidates, see {@link #collectCandidates(double, MZTolerance, Float, RTTolerance,
+   * Float, PercentTolerance, List)}
+   */
+  public @NotNull List<SpectralLibraryEntry> findCandidates(double precursorMz,
+      @NotNull MZTolerance mzTolerance, @Nullable Float rt, @Nullable RTTolerance rtTolerance,
+      @Nullable Float queryCCS, @Nullable PercentTolerance ccsTolerance) {
+    List<SpectralLibraryEntry> results = new ArrayList<>();
+    collectCandidates(precursorMz, mzTolerance, rt, rtTolerance, queryCCS, ccsTolerance, results);
+    return results;
+  }
+}
@@ -25,19 +25,34 @@
 
 package io.github.mzmine.util.spectraldb.parser;
 
+import io.github.mzmine.gui.preferences.MZminePreferences;
+import io.github.mzmine.main.ConfigService;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.util.spectraldb.entry.SpectralLibrary;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibraryEntry;
+import io.github.mzmine.util.spectraldb.parser.SpectralLibraryBinaryCache.CachedLibrary;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
- * Auto detects library format
+ * Auto detects library format. If enabled in the {@link MZminePreferences#spectralLibraryCache},
+ * parsed libraries are written to a binary cache in the temp directory
+ * ({@link SpectralLibraryBinaryCache}) which is loaded instead of the source as long as the source
+ * size and last modified time did not change. Any failure of the cache falls back to parsing.
  *
  * @author Robin Schmid
  */
 public class AutoLibraryParser extends SpectralDBParser {
 
+  private static final Logger logger = Logger.getLogger(AutoLibraryParser.class.getName());
+
   private SpectralDBParser subParser;
+  // only set if loaded from cache
+  private int cachedEntries = -1;
 
   public AutoLibraryParser(int bufferEntries, LibraryEntryProcessor processor) {
     super(bufferEntries, processor);
@@ -46,23 +61,85 @@ public class AutoLibraryParser extends SpectralDBParser {
   @Override
   public boolean parse(AbstractTask mainTask, File dataBaseFile, SpectralLibrary library)
       throws UnsupportedFormatException, IOException {
-    subParser = SpectralLibraryFormatChecker.getParser(dataBaseFile, bufferEntries, processor);
+    final boolean useCache = ConfigService.getPreferences()
+        .getValue(MZminePreferences.spectralLibraryCache);
+    final File cacheFile = SpectralLibraryBinaryCache.getCacheFile(dataBaseFile);
+    if (useCache && SpectralLibraryBinaryCache.matchesSource(cacheFile, dataBaseFile)) {
+      CachedLibrary cached = null;
+      try {
+        cached = SpectralLibraryBinaryCache.read(cacheFile, library);
+      } catch (Exception e) {
+        logger.log(Level.FINE,
+            "Cannot read library cache %s, parsing the library instead".formatted(cacheFile), e);
+      }
+      if (cached != null) {
+        loadFromCache(cacheFile, cached, library);
+        return true;
+      }
+    }
+
+    // values before parsing so that changes during parsing invalidate the cache
+    final long sourceLength = dataBaseFile.length();
+    final long sourceLastModified = dataBaseFile.lastModified();
+    final List<SpectralLibraryEntry> parsed = new ArrayList<>();
+    subParser = SpectralLibraryFormatChecker.getParser(dataBaseFile, bufferEntries,
+        !useCache ? processor : (list, alreadyProcessed) -> {
+          synchronized (parsed) {
+            parsed.addAll(list);
+          }
+          processor.processNextEntries(list, alreadyProcessed);
+        });
     // parse the file
-    return subParser.parse(mainTask, dataBaseFile, library);
+    final boolean result = subParser.parse(mainTask, dataBaseFile, library);
+    if (useCache && result && !parsed.isEmpty() && (mainTask == null || !mainTask.isCanceled())) {
+      try {
+        SpectralLibraryBinaryCache.write(cacheFile, sourceLength, sourceLastModified, parsed);
+        SpectralLibraryBinaryCache.deleteOutdated(cacheFile, dataBaseFile);
+      } catch (Exception e) {
+        // the library was still imported
+        logger.log(Level.FINE, "Cannot write library cache " + cacheFile, e);
+      }
+    }
+    return result;
+  }
+
+  private void loadFromCache(File cacheFile, CachedLibrary cached, SpectralLibrary library) {
+    final List<SpectralLibraryEntry> entries = cached.entries();
+    logger.info("Loading %d library entries from cache %s".formatted(entries.size(), cacheFile));
+
+    final int batch = bufferEntries > 0 ? bufferEntries : Math.max(entries.size(), 1);
+    for (int i = 0; i < entries.size(); i += batch) {
+      processor.processNextEntries(
+          new ArrayList<>(entries.subList(i, Math.min(i + batch, entries.size()))), i);
+    }
+    cachedEntries = entries.size();
+    // only applied if the processor added all entries to the library
+    if (library != null) {
+      library.setPrecursorIndex(cached.precursorIndex());
+    }
   }
 
   @Override
   public int getProcessedEntries() {
+    if (cachedEntries >= 0) {
+      return cachedEntries;
+    }
     return subParser == null ? 0 : subParser.getProcessedEntries();
   }
 
   @Override
   public double getProgress() {
+    if (cachedEntries >= 0) {
+      return 1;
+    }
     return subParser == null ? 0 : subParser.getProgress();
   }
 
   @Override
   public String getDescription() {
+    if (cachedEntries >= 0) {
+      return "Loaded library from cache. Loaded entries:" + cachedEntries;
+    }
     return subParser == null ? "" : subParser.getDescription();
   }
 }
@@ -0,0 +1,477 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.spectraldb.parser;
+
+import io.github.mzmine.util.files.FileAndPathUtil;
+import io.github.mzmine.util.spectraldb.entry.DBEntryField;
+import io.github.mzmine.util.spectraldb.entry.SpectralDBEntry;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibrary;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibraryEntry;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibraryPrecursorIndex;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Binary cache of a parsed spectral library that is written to the {@link #CACHE_FOLDER} in the
+ * mzmine temp directory. The cache file name is keyed by the absolute path, size and last modified
+ * time of the source and the cache is only valid as long as the size and last modified time of the
+ * source match the values stored in the header. Layout (big endian):
+ * <pre>
+ * header:    magic, version, source size, source last modified, number of entries, total peaks
+ * peaks:     m/z column of all entries followed by the intensity column of all entries
+ * metadata:  number of peaks per entry, precursor index (entry index and m/z sorted by m/z),
+ *            one column per {@link DBEntryField} with a typed cell per entry, end magic
+ * </pre>
+ * The peak columns are memory mapped on load and each entry wraps a slice of the mapped buffers,
+ * so no peak data is copied.
+ */
+public final class SpectralLibraryBinaryCache {
+
+  public static final String FILE_SUFFIX = ".mzlibcache";
+  public static final String CACHE_FOLDER = "mzmine_library_cache";
+
+  private static final int MAGIC = 0x4d5a4c43; // MZLC
+  private static final int VERSION = 1;
+  // magic, version, source size, source modified, entries, padding, total peaks
+  private static final int HEADER_BYTES = 4 + 4 + 8 + 8 + 4 + 4 + 8;
+  // a single mapping cannot exceed 2 GB
+  private static final long MAX_SEGMENT_PEAKS = Integer.MAX_VALUE / Double.BYTES;
+
+  // cell types of metadata columns
+  private static final byte NULL = 0;
+  private static final byte DOUBLE = 1;
+  private static final byte FLOAT = 2;
+  private static final byte INTEGER = 3;
+  private static final byte LONG = 4;
+  private static final byte BOOLEAN = 5;
+  private static final byte STRING = 6;
+  private static final byte BIG_DECIMAL = 7;
+  private static final byte STRING_LIST = 8;
+
+  private SpectralLibraryBinaryCache() {
+  }
+
+  /**
+   * @return the cache file of the library source file in the mzmine temp directory
+   */
+  public static @NotNull File getCacheFile(@NotNull File source) {
+    return getCacheFile(new File(FileAndPathUtil.getTempDir(), CACHE_FOLDER), source);
+  }
+
+  /**
+   * @return the cache file of the library source file in the cache directory. A changed source
+   * results in a different file so that caches that are still memory mapped are never replaced.
+   */
+  public static @NotNull File getCacheFile(@NotNull File cacheDir, @NotNull File source) {
+    return new File(cacheDir,
+        getCachePrefix(source) + source.length() + "_" + source.lastModified() + FILE_SUFFIX);
+  }
+
+  private static String getCachePrefix(File source) {
+    final String path = source.getAbsolutePath();
+    return "%s_%08x_".formatted(source.getName(), path.hashCode());
+  }
+
+  /**
+   * Deletes caches of older versions of the source file. Files that cannot be deleted, e.g.,
+   * because they are still memory mapped, are skipped.
+   */
+  public static void deleteOutdated(@NotNull File cacheFile, @NotNull File source) {
+    final String prefix = getCachePrefix(source);
+    final File[] outdated = cacheFile.getParentFile().listFiles(
+        (dir, name) -> name.startsWith(prefix) && name.endsWith(FILE_SUFFIX) && !name.equals(
+            cacheFile.getName()));
+    if (outdated == null) {
+      return;
+    }
+    for (final File file : outdated) {
+      try {
+        Files.deleteIfExists(file.toPath());
+      } catch (IOException e) {
+        // still in use
+      }
+    }
+  }
+
+  /**
+   * @return true if the cache exists and was written for the current version of the source file
+   * (equal size and last modified time)
+   */
+  public static boolean matchesSource(@NotNull File cacheFile, @NotNull File source) {
+    if (!cacheFile.isFile() || !source.isFile() || cacheFile.length() < HEADER_BYTES) {
+      return false;
+    }
+    try (FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ)) {
+      final ByteBuffer header = readHeader(channel);
+      return header.getInt() == MAGIC && header.getInt() == VERSION
+             && header.getLong() == source.length() && header.getLong() == source.lastModified();
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Writes all entries to the cache file. The file is written to a temporary file first and then
+   * moved to the target so that readers never see incomplete caches.
+   *
+   * @param cacheFile          the target file
+   * @param sourceLength       size of the source file when parsing started
+   * @param sourceLastModified last modified time of the source file when parsing started
+   * @param entries            all parsed entries
+   * @throws IOException if the file cannot be written or an entry contains metadata values that
+   *                     cannot be stored
+   */
+  public static void write(@NotNull File cacheFile, long sourceLength, long sourceLastModified,
+      @NotNull List<SpectralLibraryEntry> entries) throws IOException {
+    Files.createDirectories(cacheFile.getParentFile().toPath());
+    final File tmp = new File(cacheFile.getParentFile(), cacheFile.getName() + ".tmp");
+    try {
+      try (var out = new DataOutputStream(
+          new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+        writeTo(out, sourceLength, sourceLastModified, entries);
+      }
+      try {
+        Files.move(tmp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tmp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(tmp.toPath());
+    }
+  }
+
+  private static void writeTo(DataOutputStream out, long sourceLength, long sourceLastModified,
+      List<SpectralLibraryEntry> entries) throws IOException {
+    final int n = entries.size();
+    int maxPeaks = 0;
+    long totalPeaks = 0;
+    for (final SpectralLibraryEntry entry : entries) {
+      maxPeaks = Math.max(maxPeaks, entry.getNumberOfDataPoints());
+      totalPeaks += entry.getNumberOfDataPoints();
+    }
+
+    // header
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeLong(sourceLength);
+    out.writeLong(sourceLastModified);
+    out.writeInt(n);
+    out.writeInt(0);
+    out.writeLong(totalPeaks);
+
+    // peak columns
+    final double[] buffer = new double[maxPeaks];
+    for (final SpectralLibraryEntry entry : entries) {
+      writeDoubles(out, entry.getMzValues(buffer), entry.getNumberOfDataPoints());
+    }
+    for (final SpectralLibraryEntry entry : entries) {
+      writeDoubles(out, entry.getIntensityValues(buffer), entry.getNumberOfDataPoints());
+    }
+
+    // metadata
+    for (final SpectralLibraryEntry entry : entries) {
+      out.writeInt(entry.getNumberOfDataPoints());
+    }
+    writePrecursorIndex(out, entries);
+
+    final List<DBEntryField> columns = new ArrayList<>();
+    for (final DBEntryField field : DBEntryField.values()) {
+      if (entries.stream().anyMatch(e -> e.getFields().get(field) != null)) {
+        columns.add(field);
+      }
+    }
+    out.writeInt(columns.size());
+    for (final DBEntryField field : columns) {
+      out.writeUTF(field.name());
+      for (final SpectralLibraryEntry entry : entries) {
+        writeCell(out, field, entry.getFields().get(field));
+      }
+    }
+    out.writeInt(MAGIC);
+  }
+
+  private static void writeDoubles(DataOutputStream out, double[] values, int n)
+      throws IOException {
+    for (int i = 0; i < n; i++) {
+      out.writeDouble(values[i]);
+    }
+  }
+
+  /**
+   * Stores the entry indices sorted by precursor m/z so that the index does not need to be sorted
+   * on load
+   */
+  private static void writePrecursorIndex(DataOutputStream out, List<SpectralLibraryEntry> entries)
+      throws IOException {
+    final var index = SpectralLibraryPrecursorIndex.create(entries);
+    final Map<SpectralLibraryEntry, Integer> positions = new IdentityHashMap<>(
+        entries.size());
+    for (int i = 0; i < entries.size(); i++) {
+      positions.put(entries.get(i), i);
+    }
+    out.writeInt(index.size());
+    for (int i = 0; i < index.size(); i++) {
+      out.writeInt(positions.get(index.getEntry(i)));
+      out.writeDouble(index.getPrecursorMz(i));
+    }
+  }
+
+  private static void writeCell(DataOutputStream out, DBEntryField field, @Nullable Object value)
+      throws IOException {
+    switch (value) {
+      case null -> out.writeByte(NULL);
+      case Double d -> {
+        out.writeByte(DOUBLE);
+        out.writeDouble(d);
+      }
+      case Float f -> {
+        out.writeByte(FLOAT);
+        out.writeFloat(f);
+      }
+      case Integer i -> {
+        out.writeByte(INTEGER);
+        out.writeInt(i);
+      }
+      case Long l -> {
+        out.writeByte(LONG);
+        out.writeLong(l);
+      }
+      case Boolean b -> {
+        out.writeByte(BOOLEAN);
+        out.writeBoolean(b);
+      }
+      case String s -> {
+        out.writeByte(STRING);
+        writeString(out, s);
+      }
+      case BigDecimal bd -> {
+        out.writeByte(BIG_DECIMAL);
+        writeString(out, bd.toString());
+      }
+      case Collection<?> list when list.stream().allMatch(String.class::isInstance) -> {
+        out.writeByte(STRING_LIST);
+        out.writeInt(list.size());
+        for (final Object s : list) {
+          writeString(out, (String) s);
+        }
+      }
+      default -> throw new IOException(
+          "Cannot cache value of type %s in field %s".formatted(value.getClass().getName(),
+              field));
+    }
+  }
+
+  private static void writeString(DataOutputStream out, String s) throws IOException {
+    // writeUTF is limited to 64k
+    final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Loads all entries from the cache. Peak data is memory mapped and not copied.
+   *
+   * @param cacheFile the cache file
+   * @param library   the library that the entries belong to
+   * @return the entries and the precursor index in the order of the cache
+   * @throws IOException if the cache is corrupt or was written by an incompatible version
+   */
+  public static @NotNull CachedLibrary read(@NotNull File cacheFile,
+      @Nullable SpectralLibrary library) throws IOException {
+    try (FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ)) {
+      final ByteBuffer header = readHeader(channel);
+      if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+        throw new IOException("Not a library cache or incompatible version: " + cacheFile);
+      }
+      header.getLong(); // source size
+      header.getLong(); // source modified
+      final int n = header.getInt();
+      header.getInt(); // padding
+      final long totalPeaks = header.getLong();
+
+      final long mzStart = HEADER_BYTES;
+      final long intensityStart = mzStart + totalPeaks * Double.BYTES;
+      final long metadataStart = intensityStart + totalPeaks * Double.BYTES;
+      if (n < 0 || totalPeaks < 0 || metadataStart > channel.size()) {
+        throw new IOException("Library cache is truncated: " + cacheFile);
+      }
+
+      // closing the stream closes the channel which is done by the outer try
+      final var in = new DataInputStream(
+          new BufferedInputStream(Channels.newInputStream(channel.position(metadataStart)),
+              1 << 16));
+      final int[] numPeaks = new int[n];
+      for (int i = 0; i < n; i++) {
+        numPeaks[i] = in.readInt();
+      }
+      final int indexSize = in.readInt();
+      final int[] indexOrder = new int[indexSize];
+      final double[] indexMzs = new double[indexSize];
+      for (int i = 0; i < indexSize; i++) {
+        indexOrder[i] = in.readInt();
+        indexMzs[i] = in.readDouble();
+      }
+
+      @SuppressWarnings("unchecked") final Map<DBEntryField, Object>[] fields = new Map[n];
+      final int numColumns = in.readInt();
+      for (int c = 0; c < numColumns; c++) {
+        final DBEntryField field = readField(in.readUTF());
+        for (int i = 0; i < n; i++) {
+          final Object value = readCell(in);
+          if (value != null) {
+            if (fields[i] == null) {
+              fields[i] = new EnumMap<>(DBEntryField.class);
+            }
+            fields[i].put(field, value);
+          }
+        }
+      }
+      if (in.readInt() != MAGIC) {
+        throw new IOException("Library cache is corrupt: " + cacheFile);
+      }
+
+      // map peak columns in segments of max 2 GB that do not split entries
+      final SpectralLibraryEntry[] entries = new SpectralLibraryEntry[n];
+      DoubleBuffer mzSegment = null;
+      DoubleBuffer intensitySegment = null;
+      long segmentStart = 0;
+      long segmentEnd = 0;
+      long start = 0;
+      for (int i = 0; i < n; i++) {
+        final long end = start + numPeaks[i];
+        if (mzSegment == null || end > segmentEnd) {
+          segmentStart = start;
+          segmentEnd = Math.min(totalPeaks, start + MAX_SEGMENT_PEAKS);
+          if (end > segmentEnd) {
+            throw new IOException("Library entry is too large or cache is corrupt: " + cacheFile);
+          }
+          mzSegment = map(channel, mzStart, segmentStart, segmentEnd);
+          intensitySegment = map(channel, intensityStart, segmentStart, segmentEnd);
+        }
+        final int offset = (int) (start - segmentStart);
+        entries[i] = new SpectralDBEntry(mzSegment.slice(offset, numPeaks[i]),
+            intensitySegment.slice(offset, numPeaks[i]), fields[i], library);
+        start = end;
+      }
+
+      final SpectralLibraryEntry[] sortedEntries = new SpectralLibraryEntry[indexSize];
+      for (int i = 0; i < indexSize; i++) {
+        sortedEntries[i] = entries[indexOrder[i]];
+      }
+      return new CachedLibrary(List.of(entries),
+          SpectralLibraryPrecursorIndex.createPresorted(indexMzs, sortedEntries));
+    } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+      throw new IOException("Library cache is corrupt: " + cacheFile, e);
+    }
+  }
+
+  private static ByteBuffer readHeader(FileChannel channel) throws IOException {
+    final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+    while (header.hasRemaining()) {
+      if (channel.read(header, header.position()) < 0) {
+        throw new IOException("Library cache header is truncated");
+      }
+    }
+    return header.flip();
+  }
+
+  private static DoubleBuffer map(FileChannel channel, long columnStart, long fromPeak,
+      long toPeak) throws IOException {
+    return channel.map(MapMode.READ_ONLY, columnStart + fromPeak * Double.BYTES,
+        (toPeak - fromPeak) * Double.BYTES).asDoubleBuffer();
+  }
+
+  private static DBEntryField readField(String name) throws IOException {
+    try {
+      return DBEntryField.valueOf(name);
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Library cache contains unknown field " + name, e);
+    }
+  }
+
+  private static @Nullable Object readCell(DataInputStream in) throws IOException {
+    final byte type = in.readByte();
+    return switch (type) {
+      case NULL -> null;
+      case DOUBLE -> in.readDouble();
+      case FLOAT -> in.readFloat();
+      case INTEGER -> in.readInt();
+      case LONG -> in.readLong();
+      case BOOLEAN -> in.readBoolean();
+      case STRING -> readString(in);
+      case BIG_DECIMAL -> new BigDecimal(readString(in));
+      case STRING_LIST -> {
+        final int size = in.readInt();
+        final List<String> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+          list.add(readString(in));
+        }
+        yield list;
+      }
+      default -> throw new IOException("Unknown cell type " + type);
+    };
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    final byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * @param entries        all entries in the order of the source file
+   * @param precursorIndex the stored precursor index
+   */
+  public record CachedLibrary(@NotNull List<SpectralLibraryEntry> entries,
+                              @NotNull SpectralLibraryPrecursorIndex precursorIndex) {
+
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.datamodel.featuredata.impl;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+import io.github.mzmine.datamodel.featuredata.impl.StoredDoubleValues.DoubleValues;
+import io.github.mzmine.datamodel.featuredata.impl.StoredDoubleValues.FloatValues;
+import io.github.mzmine.datamodel.impl.masslist.SimpleMassList;
+import io.github.mzmine.main.StoragePrecision;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class StorageUtilsTest {
+
+  private final double[] mzs = {100.0012345, 524.2654321, 1999.9876543};
+  private final double[] intensities = {1.5E3, 2.25E7, 12.125};
+
+  @AfterEach
+  void resetPrecision() {
+    StorageUtils.setStoragePrecision(StoragePrecision.FULL);
+  }
+
+  @Test
+  void fullPrecision() {
+    final StoredDoubleValues values = StorageUtils.storeMzValues(null, mzs);
+    assertInstanceOf(DoubleValues.class, values);
+    assertEquals(mzs[1], values.get(1));
+  }
+
+  @Test
+  void reducedPrecision() {
+    StorageUtils.setStoragePrecision(StoragePrecision.REDUCED_INTENSITIES);
+    assertInstanceOf(DoubleValues.class, StorageUtils.storeMzValues(null, mzs));
+    assertInstanceOf(FloatValues.class, StorageUtils.storeIntensityValues(null, intensities));
+
+    StorageUtils.setStoragePrecision(StoragePrecision.REDUCED);
+    final StoredDoubleValues values = StorageUtils.storeMzValues(null, mzs);
+    assertInstanceOf(FloatValues.class, values);
+    assertEquals(3, values.size());
+
+    final double[] dst = new double[4];
+    values.get(1, dst, 2, 2);
+    for (int i = 0; i < mzs.length; i++) {
+      // < 0.1 ppm
+      assertEquals(mzs[i], values.get(i), mzs[i] * 1E-7);
+    }
+    assertEquals(values.get(2), dst[3]);
+    assertEquals(0, StorageUtils.storeMzValues(null, new double[0]).size());
+  }
+
+  @Test
+  void reducedPrecisionSpectrum() {
+    StorageUtils.setStoragePrecision(StoragePrecision.REDUCED);
+    final SimpleMassList massList = new SimpleMassList(null, mzs, intensities);
+
+    assertEquals(3, massList.getNumberOfDataPoints());
+    assertEquals(1, massList.getBasePeakIndex());
+    assertEquals(mzs[1], massList.getBasePeakMz(), 1E-4);
+    assertArrayEquals(intensities, massList.getIntensityValues(new double[3]));
+    assertEquals(mzs[0], massList.getDataPointMZRange().lowerEndpoint(), 1E-4);
+  }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.datamodel.features;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.types.DataType;
+import io.github.mzmine.datamodel.features.types.DataTypes;
+import io.github.mzmine.datamodel.features.types.annotations.CommentType;
+import io.github.mzmine.datamodel.features.types.numbers.AreaType;
+import io.github.mzmine.datamodel.features.types.numbers.ChargeType;
+import io.github.mzmine.datamodel.features.types.numbers.HeightType;
+import io.github.mzmine.datamodel.features.types.numbers.MZType;
+import io.github.mzmine.datamodel.features.types.numbers.RTType;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import javafx.collections.MapChangeListener;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class ColumnarDataModelMapTest {
+
+  private final RawDataFile raw = Mockito.mock(RawDataFile.class);
+
+  @Test
+  void storesValuesLikeMap() {
+    var flist = new ModularFeatureList("flist", null, raw);
+    var feature = new ModularFeature(flist);
+    feature.set(MZType.class, 200.5);
+    feature.set(RTType.class, 3.2f);
+    feature.set(HeightType.class, null);
+    feature.set(CommentType.class, "comment");
+
+    assertEquals(200.5, feature.get(MZType.class));
+    assertEquals(3.2f, feature.get(RTType.class));
+    assertNull(feature.get(HeightType.class));
+    assertNull(feature.get(AreaType.class));
+    assertEquals("comment", feature.get(CommentType.class));
+
+    Map<DataType, Object> map = feature.getMap();
+    assertTrue(map.containsKey(DataTypes.get(HeightType.class)));
+    assertFalse(map.containsKey(DataTypes.get(AreaType.class)));
+    assertEquals(4, map.size());
+
+    Map<DataType, Object> expected = new HashMap<>();
+    expected.put(DataTypes.get(MZType.class), 200.5);
+    expected.put(DataTypes.get(RTType.class), 3.2f);
+    expected.put(DataTypes.get(HeightType.class), null);
+    expected.put(DataTypes.get(CommentType.class), "comment");
+    assertEquals(expected, new HashMap<>(map));
+    assertTrue(flist.getFeatureTypes().contains(DataTypes.get(RTType.class)));
+
+    feature.remove(RTType.class);
+    assertFalse(map.containsKey(DataTypes.get(RTType.class)));
+    assertEquals(3, map.size());
+  }
+
+  @Test
+  void keepsValuesOfOtherNumberTypes() {
+    var flist = new ModularFeatureList("flist", null, raw);
+    var feature = new ModularFeature(flist);
+    // raw access with a value that does not fit the float column
+    feature.getMap().put(DataTypes.get(RTType.class), 3.5d);
+    assertEquals(3.5d, feature.getMap().get(DataTypes.get(RTType.class)));
+    feature.set(RTType.class, 2f);
+    assertEquals(2f, feature.get(RTType.class));
+    assertEquals(1, feature.getMap().size());
+  }
+
+  @Test
+  void eventsOnlyForListeners() {
+    var flist = new ModularFeatureList("flist", null, raw);
+    var row = new ModularFeatureListRow(flist, 1);
+    List<String> changes = new ArrayList<>();
+    row.getMap().addListener((MapChangeListener<DataType, Object>) change -> changes.add(
+        change.getKey().getUniqueID() + "=" + change.getValueAdded()));
+
+    row.set(ChargeType.class, 2);
+    row.set(ChargeType.class, 2);
+    row.set(ChargeType.class, 3);
+    assertEquals(List.of("charge=2", "charge=3"), changes);
+    assertTrue(flist.getRowTypes().contains(DataTypes.get(ChargeType.class)));
+  }
+
+  @Test
+  void manyRowsInChunks() {
+    var flist = new ModularFeatureList("flist", null, raw);
+    List<ModularFeatureListRow> rows = new ArrayList<>();
+    for (int i = 0; i < 10_000; i++) {
+      var row = new ModularFeatureListRow(flist, i);
+      row.set(MZType.class, i * 0.5);
+      rows.add(row);
+    }
+    for (int i = 0; i < rows.size(); i++) {
+      assertEquals(i, rows.get(i).getID());
+      assertEquals(i * 0.5, rows.get(i).getAverageMZ());
+    }
+
+    // move to other list
+    var other = new ModularFeatureList("other", null, raw);
+    var row = rows.get(5000);
+    row.setFeatureList(other);
+    assertEquals(2500d, row.getAverageMZ());
+    assertEquals(5000, row.getID());
+  }
+
+  @Test
+  void typesAreNotifiedOnce() {
+    final List<DataType<?>> types = new ArrayList<>();
+    final DataModelColumns columns = new DataModelColumns(types::add);
+    final var first = new ColumnarDataModelMap(columns);
+    final var second = new ColumnarDataModelMap(columns);
+    first.put(DataTypes.get(MZType.class), 100d);
+    first.put(DataTypes.get(MZType.class), 200d);
+    second.put(DataTypes.get(MZType.class), 300d);
+    first.put(DataTypes.get(CommentType.class), "a");
+    second.put(DataTypes.get(CommentType.class), "b");
+    assertEquals(List.of(DataTypes.get(MZType.class), DataTypes.get(CommentType.class)), types);
+  }
+
+  @Test
+  void releasedSlotsAreReused() {
+    final DataModelColumns columns = new DataModelColumns(type -> {
+    });
+    final var released = new ColumnarDataModelMap(columns);
+    released.put(DataTypes.get(MZType.class), 100d);
+    released.put(DataTypes.get(HeightType.class), null);
+    released.put(DataTypes.get(CommentType.class), "a");
+    assertEquals(1, columns.getNumSlots());
+
+    released.release();
+    assertEquals(0, columns.getNumSlots());
+    // values stay readable and writable without a slot
+    assertEquals(100d, released.get(DataTypes.get(MZType.class)));
+    assertTrue(released.containsKey(DataTypes.get(HeightType.class)));
+    assertEquals(3, released.size());
+    released.put(DataTypes.get(RTType.class), 1f);
+    assertEquals(1f, released.get(DataTypes.get(RTType.class)));
+
+    // the new map reuses the slot without the old values
+    final var reused = new ColumnarDataModelMap(columns);
+    assertEquals(1, columns.getNumSlots());
+    assertTrue(reused.isEmpty());
+    assertNull(reused.get(DataTypes.get(MZType.class)));
+    assertEquals(100d, released.get(DataTypes.get(MZType.class)));
+  }
+
+  @Test
+  void removedRowsKeepValues() {
+    var flist = new ModularFeatureList("flist", null, raw);
+    var row = new ModularFeatureListRow(flist, 1);
+    var feature = new ModularFeature(flist);
+    feature.set(AreaType.class, 5f);
+    row.addFeature(raw, feature);
+    row.set(MZType.class, 100d);
+    flist.addRow(row);
+
+    flist.removeRow(row);
+    assertEquals(100d, row.getAverageMZ());
+    assertEquals(1, row.getID());
+    assertEquals(5f, feature.get(AreaType.class));
+
+    // a new row in the released slot does not see the old values
+    var newRow = new ModularFeatureListRow(flist, 2);
+    assertNull(newRow.getAverageMZ());
+    assertEquals(100d, row.getAverageMZ());
+  }
+
+  @Test
+  void concurrentRowsInChunks() {
+    var flist = new ModularFeatureList("flist", null, raw);
+    flist.addRowType(DataTypes.get(MZType.class), DataTypes.get(HeightType.class));
+    // rows are created and written by different threads while new chunks are added
+    final List<ModularFeatureListRow> rows = IntStream.range(0, 20_000).parallel().mapToObj(i -> {
+      var row = new ModularFeatureListRow(flist, i);
+      row.set(MZType.class, i * 0.5);
+      row.set(HeightType.class, (float) i);
+      return row;
+    }).toList();
+    rows.parallelStream().forEach(row -> {
+      assertEquals(row.getID() * 0.5, row.getAverageMZ());
+      assertEquals((float) row.getID(), row.get(HeightType.class));
+    });
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.datamodel.features.correlation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+class R2RMapTest {
+
+  @Test
+  void graphIsRebuiltAfterEveryModification() {
+    final R2RMap<String> map = new R2RMap<>();
+    map.put(R2RMap.toKey(1, 2), "a");
+    final R2RGraph<String> graph = map.getGraph();
+    assertSame(graph, map.getGraph());
+
+    // same size overwrites
+    map.put(R2RMap.toKey(2, 1), "b");
+    assertEquals("b", map.getGraph().get(1, 2));
+    map.replace(R2RMap.toKey(1, 2), "c");
+    assertEquals("c", map.getGraph().get(1, 2));
+    map.compute(R2RMap.toKey(1, 2), (key, value) -> "d");
+    assertEquals("d", map.getGraph().get(1, 2));
+    map.merge(R2RMap.toKey(1, 2), "e", (oldValue, value) -> value);
+    assertEquals("e", map.getGraph().get(1, 2));
+
+    map.putIfAbsent(R2RMap.toKey(3, 4), "f");
+    assertEquals("f", map.getGraph().get(4, 3));
+    map.keySet().remove(R2RMap.toKey(3, 4));
+    assertNull(map.getGraph().get(3, 4));
+    assertEquals(1, map.getGraph().getNumberOfEdges());
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.gui.chartbasics.simplechart.datasets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.mzmine.gui.chartbasics.simplechart.providers.impl.AnyXYProvider;
+import java.awt.Color;
+import java.awt.geom.Rectangle2D;
+import java.util.BitSet;
+import java.util.Random;
+import java.util.function.IntFunction;
+import org.jfree.chart.axis.NumberAxis;
+import org.jfree.chart.plot.XYPlot;
+import org.jfree.data.xy.XYDataset;
+import org.jfree.data.xy.XYSeries;
+import org.jfree.data.xy.XYSeriesCollection;
+import org.junit.jupiter.api.Test;
+
+class XYLevelOfDetailTest {
+
+  private static final int NUM_ITEMS = 100_000;
+  private static final Rectangle2D DATA_AREA = new Rectangle2D.Double(0, 0, 500, 300);
+
+  private final double[] intensities = new double[NUM_ITEMS];
+
+  XYLevelOfDetailTest() {
+    final Random random = new Random(42);
+    for (int i = 0; i < NUM_ITEMS; i++) {
+      intensities[i] = random.nextDouble() * 100 + (i % 5000 == 0 ? 1000 : 0);
+    }
+  }
+
+  private static ColoredXYDataset createDataset(int numItems, IntFunction<Double> domain,
+      IntFunction<Double> range) {
+    var dataset = new ColoredXYDataset(
+        new AnyXYProvider(Color.BLACK, "test", numItems, domain, range), RunOption.DO_NOT_RUN);
+    dataset.run();
+    return dataset;
+  }
+
+  private static BitSet findItemsToDraw(XYDataset dataset, double lower, double upper) {
+    final NumberAxis domainAxis = new NumberAxis();
+    final XYPlot plot = new XYPlot(dataset, domainAxis, new NumberAxis(), null);
+    domainAxis.setRange(lower, upper);
+    return XYLevelOfDetail.findItemsToDraw(plot, dataset, DATA_AREA);
+  }
+
+  @Test
+  void drawsAllItemsOfSmallOrUnsortedDatasets() {
+    var small = createDataset(XYLevelOfDetail.MIN_ITEMS - 1, i -> (double) i, i -> 1d);
+    assertNull(small.getLevelOfDetail());
+    assertNull(findItemsToDraw(small, 0, 100));
+
+    var unsorted = createDataset(NUM_ITEMS, i -> (double) (i % 2 == 0 ? i : -i), i -> 1d);
+    assertNull(unsorted.getLevelOfDetail());
+    assertNull(findItemsToDraw(unsorted, 0, 100));
+
+    var series = new XYSeries("test");
+    series.add(1, 1);
+    assertNull(findItemsToDraw(new XYSeriesCollection(series), 0, 100));
+  }
+
+  @Test
+  void keepsMinAndMaxPerPixel() {
+    var dataset = createDataset(NUM_ITEMS, i -> (double) i, i -> intensities[i]);
+    assertNotNull(dataset.getLevelOfDetail());
+    final BitSet items = findItemsToDraw(dataset, 0, NUM_ITEMS - 1);
+    assertNotNull(items);
+    // blocks are smaller than one pixel, two items per block
+    final int pixels = (int) DATA_AREA.getWidth();
+    final int itemsPerPixel = NUM_ITEMS / pixels;
+    assertTrue(items.cardinality() <= 4 * pixels + 2, "drew " + items.cardinality());
+    assertTrue(items.get(0));
+    assertTrue(items.get(NUM_ITEMS - 1));
+
+    // the max and min of each pixel are drawn within one pixel distance
+    for (int p = 0; p < pixels; p++) {
+      final int start = p * itemsPerPixel;
+      final int end = Math.min(NUM_ITEMS, start + itemsPerPixel);
+      double max = Double.NEGATIVE_INFINITY;
+      double min = Double.POSITIVE_INFINITY;
+      for (int i = start; i < end; i++) {
+        max = Math.max(max, intensities[i]);
+        min = Math.min(min, intensities[i]);
+      }
+      double drawnMax = Double.NEGATIVE_INFINITY;
+      double drawnMin = Double.POSITIVE_INFINITY;
+      final int windowEnd = Math.min(NUM_ITEMS, end + itemsPerPixel);
+      for (int i = items.nextSetBit(Math.max(0, start - itemsPerPixel));
+          i >= 0 && i < windowEnd; i = items.nextSetBit(i + 1)) {
+        drawnMax = Math.max(drawnMax, intensities[i]);
+        drawnMin = Math.min(drawnMin, intensities[i]);
+      }
+      assertTrue(drawnMax >= max, "pixel " + p);
+      assertTrue(drawnMin <= min, "pixel " + p);
+    }
+  }
+
+  @Test
+  void drawsVisibleItemsWhenZoomedIn() {
+    var dataset = createDataset(NUM_ITEMS, i -> (double) i, i -> intensities[i]);
+    final BitSet items = findItemsToDraw(dataset, 1000, 1100);
+    assertNotNull(items);
+    // one item outside of each side
+    assertEquals(103, items.cardinality());
+    assertEquals(999, items.nextSetBit(0));
+    assertEquals(1101, items.length() - 1);
+    assertFalse(items.get(998));
+
+    // same selection is cached
+    assertSame(items, findItemsToDraw(dataset, 1000, 1100));
+  }
+}
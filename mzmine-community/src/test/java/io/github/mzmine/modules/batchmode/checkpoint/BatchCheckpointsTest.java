@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.batchmode.checkpoint;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.modules.MZmineProcessingModule;
+import io.github.mzmine.modules.batchmode.BatchQueue;
+import io.github.mzmine.modules.batchmode.checkpoint.StepCheckpoint.DataFileId;
+import io.github.mzmine.modules.batchmode.checkpoint.StepCheckpoint.FeatureListId;
+import io.github.mzmine.modules.dataprocessing.id_gnpsresultsimport.GNPSResultsImportModule;
+import io.github.mzmine.modules.dataprocessing.id_gnpsresultsimport.GNPSResultsImportParameters;
+import io.github.mzmine.modules.dataprocessing.id_precursordbsearch.PrecursorDBSearchModule;
+import io.github.mzmine.modules.dataprocessing.id_precursordbsearch.PrecursorDBSearchParameters;
+import io.github.mzmine.modules.impl.MZmineProcessingStepImpl;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.parameters.parametertypes.selectors.FeatureListsSelection;
+import io.github.mzmine.parameters.parametertypes.selectors.FeatureListsSelectionType;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.project.impl.MZmineProjectImpl;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BatchCheckpointsTest {
+
+  @TempDir
+  Path tempDir;
+
+  private File database;
+  private File graphml;
+  private ParameterSet dbSearch;
+  private ParameterSet gnpsImport;
+  private BatchQueue queue;
+
+  @BeforeEach
+  void init() throws IOException {
+    database = Files.writeString(tempDir.resolve("database.csv"), "mz,name").toFile();
+    graphml = Files.writeString(tempDir.resolve("network.graphml"), "<graphml/>").toFile();
+
+    dbSearch = new PrecursorDBSearchParameters().cloneParameterSet();
+    dbSearch.setParameter(PrecursorDBSearchParameters.peakLists,
+        new FeatureListsSelection(FeatureListsSelectionType.BATCH_LAST_FEATURELISTS));
+    dbSearch.setParameter(PrecursorDBSearchParameters.dataBaseFile, database);
+    dbSearch.setParameter(PrecursorDBSearchParameters.mzTolerancePrecursor,
+        new MZTolerance(0.005, 10));
+    dbSearch.setParameter(PrecursorDBSearchParameters.rtTolerance, false);
+
+    gnpsImport = new GNPSResultsImportParameters().cloneParameterSet();
+    gnpsImport.setParameter(GNPSResultsImportParameters.FEATURE_LIST,
+        new FeatureListsSelection(FeatureListsSelectionType.BATCH_LAST_FEATURELISTS));
+    gnpsImport.setParameter(GNPSResultsImportParameters.FILE, graphml);
+
+    queue = new BatchQueue();
+    queue.add(new MZmineProcessingStepImpl<MZmineProcessingModule>(new PrecursorDBSearchModule(),
+        dbSearch));
+    queue.add(new MZmineProcessingStepImpl<MZmineProcessingModule>(new GNPSResultsImportModule(),
+        gnpsImport));
+  }
+
+  @Test
+  void stepHashesAreStable() throws IOException {
+    final MZmineProject project = new MZmineProjectImpl();
+    assertEquals(BatchCheckpoints.computeStepHashes(queue, project),
+        BatchCheckpoints.computeStepHashes(queue, project));
+  }
+
+  @Test
+  void changedParameterInvalidatesFollowingSteps() throws IOException {
+    final MZmineProject project = new MZmineProjectImpl();
+    final List<String> before = BatchCheckpoints.computeStepHashes(queue, project);
+
+    gnpsImport.setParameter(GNPSResultsImportParameters.FILE,
+        tempDir.resolve("other.graphml").toFile());
+    final List<String> lastChanged = BatchCheckpoints.computeStepHashes(queue, project);
+    assertEquals(before.get(0), lastChanged.get(0));
+    assertNotEquals(before.get(1), lastChanged.get(1));
+
+    dbSearch.setParameter(PrecursorDBSearchParameters.mzTolerancePrecursor,
+        new MZTolerance(0.01, 10));
+    final List<String> firstChanged = BatchCheckpoints.computeStepHashes(queue, project);
+    assertNotEquals(lastChanged.get(0), firstChanged.get(0));
+    assertNotEquals(lastChanged.get(1), firstChanged.get(1));
+  }
+
+  @Test
+  void changedInputFileInvalidatesStep() throws IOException {
+    final MZmineProject project = new MZmineProjectImpl();
+    final List<String> before = BatchCheckpoints.computeStepHashes(queue, project);
+
+    // same path, different content of a single file parameter
+    Files.writeString(database.toPath(), "mz,name,formula");
+    final List<String> after = BatchCheckpoints.computeStepHashes(queue, project);
+    assertNotEquals(before.get(0), after.get(0));
+    assertNotEquals(before.get(1), after.get(1));
+  }
+
+  @Test
+  void changedProjectInvalidatesAllSteps() throws IOException {
+    final MZmineProject project = new MZmineProjectImpl();
+    final List<String> empty = BatchCheckpoints.computeStepHashes(queue, project);
+
+    final RawDataFile raw = new RawDataFileImpl("a.mzML", null, null);
+    project.addFile(raw);
+    final List<String> withFile = BatchCheckpoints.computeStepHashes(queue, project);
+    assertNotEquals(empty.get(0), withFile.get(0));
+
+    project.addFeatureList(new ModularFeatureList("flist", null, raw));
+    final List<String> withFlist = BatchCheckpoints.computeStepHashes(queue, project);
+    assertNotEquals(withFile.get(0), withFlist.get(0));
+    assertNotEquals(withFile.get(1), withFlist.get(1));
+  }
+
+  @Test
+  void resumesAfterLastUnchangedStep() throws IOException {
+    final MZmineProject project = new MZmineProjectImpl();
+    writeManifest(BatchCheckpoints.computeStepHashes(queue, project));
+
+    assertEquals(2, create(project).getResumeStep());
+
+    // changing the last step keeps the checkpoint of the first step
+    gnpsImport.setParameter(GNPSResultsImportParameters.FILE,
+        tempDir.resolve("other.graphml").toFile());
+    final BatchCheckpoints checkpoints = create(project);
+    assertEquals(1, checkpoints.getResumeStep());
+    assertEquals(0, checkpoints.getResumeCheckpoint().step());
+
+    // another initial project invalidates all checkpoints
+    project.addFile(new RawDataFileImpl("a.mzML", null, null));
+    assertEquals(0, create(project).getResumeStep());
+    assertNull(create(project).getResumeCheckpoint());
+  }
+
+  @Test
+  void resumeStopsAtMissingProjectFile() throws IOException {
+    final MZmineProject project = new MZmineProjectImpl();
+    writeManifest(BatchCheckpoints.computeStepHashes(queue, project));
+
+    Files.delete(checkpointDirectory().resolve("step_002.mzmine"));
+    assertEquals(1, create(project).getResumeStep());
+    Files.delete(checkpointDirectory().resolve("step_001.mzmine"));
+    assertEquals(0, create(project).getResumeStep());
+  }
+
+  @Test
+  void unreadableManifestProcessesAllSteps() throws IOException {
+    Files.createDirectories(checkpointDirectory());
+    Files.writeString(checkpointDirectory().resolve(BatchCheckpoints.MANIFEST_FILENAME),
+        "[{\"step\": 0, \"dataFiles\": [\"name only\"]}]");
+    assertEquals(0, create(new MZmineProjectImpl()).getResumeStep());
+  }
+
+  @Test
+  void restoresDataFilesAndFeatureListsByIdentity() throws IOException {
+    final MZmineProject project = new MZmineProjectImpl();
+    final RawDataFile a = new RawDataFileImpl("a.mzML", "/data/a.mzML", null);
+    final RawDataFile b = new RawDataFileImpl("b.mzML", "/data/b.mzML", null);
+    project.addFile(a);
+    project.addFile(b);
+    final FeatureList flistA = new ModularFeatureList("flist", null, a);
+    final FeatureList flistB = new ModularFeatureList("flist processed", null, b);
+    project.addFeatureList(flistA);
+    project.addFeatureList(flistB);
+
+    final StepCheckpoint checkpoint = new StepCheckpoint(0, "module", "hash", "step_001.mzmine",
+        List.of(DataFileId.of(project, b), DataFileId.of(project, a)),
+        List.of(FeatureListId.of(flistB)));
+    assertEquals(List.of(b, a), BatchCheckpoints.getDataFiles(project, checkpoint));
+    assertEquals(List.of(flistB), BatchCheckpoints.getFeatureLists(project, checkpoint));
+
+    // a file at another index is found by its name and path
+    final StepCheckpoint moved = new StepCheckpoint(0, "module", "hash", "step_001.mzmine",
+        List.of(new DataFileId(0, b.getName(), b.getAbsolutePath())), List.of());
+    assertEquals(List.of(b), BatchCheckpoints.getDataFiles(project, moved));
+
+    // the same name with another path or another feature list content is not restored
+    final StepCheckpoint otherPath = new StepCheckpoint(0, "module", "hash", "step_001.mzmine",
+        List.of(new DataFileId(1, b.getName(), "/other/b.mzML")), List.of());
+    assertThrows(IOException.class, () -> BatchCheckpoints.getDataFiles(project, otherPath));
+    final FeatureListId changedFlist = new FeatureListId(flistB.getName(),
+        flistB.getDateCreated(), flistB.getNumberOfRows() + 1, List.of(b.getName()));
+    final StepCheckpoint otherRows = new StepCheckpoint(0, "module", "hash", "step_001.mzmine",
+        List.of(), List.of(changedFlist));
+    assertThrows(IOException.class, () -> BatchCheckpoints.getFeatureLists(project, otherRows));
+  }
+
+  private Path checkpointDirectory() {
+    return tempDir.resolve("checkpoints");
+  }
+
+  private BatchCheckpoints create(MZmineProject project) throws IOException {
+    final ParameterSet parameters = new BatchCheckpointParameters().cloneParameterSet();
+    parameters.setParameter(BatchCheckpointParameters.directory,
+        checkpointDirectory().toFile());
+    parameters.setParameter(BatchCheckpointParameters.storeProcessedData, false);
+    return BatchCheckpoints.create(queue, project, parameters);
+  }
+
+  /**
+   * Writes the manifest and empty project files of a previous run with these step hashes
+   */
+  private void writeManifest(List<String> hashes) throws IOException {
+    final Path directory = Files.createDirectories(checkpointDirectory());
+    final List<StepCheckpoint> checkpoints = new ArrayList<>();
+    for (int step = 0; step < hashes.size(); step++) {
+      final String projectFile = "step_%03d.mzmine".formatted(step + 1);
+      Files.createFile(directory.resolve(projectFile));
+      checkpoints.add(new StepCheckpoint(step, queue.get(step).getModule().getClass().getName(),
+          hashes.get(step), projectFile, List.of(), List.of()));
+    }
+    new ObjectMapper().writeValue(directory.resolve(BatchCheckpoints.MANIFEST_FILENAME).toFile(),
+        checkpoints);
+  }
+}
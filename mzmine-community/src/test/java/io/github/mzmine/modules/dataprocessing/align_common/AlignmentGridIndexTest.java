@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.align_common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance.Unit;
+import io.github.mzmine.util.FeatureListRowSorter;
+import io.github.mzmine.util.FeatureListUtils;
+import io.github.mzmine.util.RangeUtils;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class AlignmentGridIndexTest {
+
+  private static FeatureListRow row(Double mz, Float rt, Float mobility) {
+    FeatureListRow row = mock(FeatureListRow.class);
+    when(row.getAverageMZ()).thenReturn(mz);
+    when(row.getAverageRT()).thenReturn(rt);
+    when(row.getAverageMobility()).thenReturn(mobility);
+    return row;
+  }
+
+  @Test
+  void sameCandidatesAsSortedSearch() {
+    final Random rand = new Random(3);
+    final List<FeatureListRow> rows = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) {
+      // some rows without RT or mobility are always candidates
+      rows.add(row(100 + rand.nextDouble() * 900,
+          rand.nextInt(30) == 0 ? null : (float) (rand.nextDouble() * 20),
+          rand.nextInt(5) == 0 ? null : (float) (0.5 + rand.nextDouble())));
+    }
+    rows.sort(FeatureListRowSorter.MZ_ASCENDING);
+
+    final MZTolerance mzTol = new MZTolerance(0.005, 20);
+    final RTTolerance rtTol = new RTTolerance(0.1f, Unit.MINUTES);
+    var index = new AlignmentGridIndex(rows,
+        mz -> RangeUtils.rangeLength(mzTol.getToleranceRange(mz)),
+        rt -> RangeUtils.rangeLength(rtTol.getToleranceRange((float) rt)), mobility -> 0.04);
+
+    int found = 0;
+    for (int q = 0; q < 500; q++) {
+      final FeatureListRow query = rows.get(rand.nextInt(rows.size()));
+      final Range<Double> mzRange = mzTol.getToleranceRange(query.getAverageMZ());
+      final Range<Float> rtRange = query.getAverageRT() == null ? Range.all()
+          : rtTol.getToleranceRange(query.getAverageRT());
+      final Range<Float> mobRange = query.getAverageMobility() == null ? Range.all()
+          : Range.closed(query.getAverageMobility() - 0.02f, query.getAverageMobility() + 0.02f);
+
+      final List<FeatureListRow> expected = FeatureListUtils.getCandidatesWithinRanges(mzRange,
+          rtRange, mobRange, rows, true);
+      final List<FeatureListRow> actual = new ArrayList<>();
+      for (int i : index.findCandidates(mzRange, rtRange, mobRange)) {
+        final FeatureListRow candidate = index.getRow(i);
+        if (expected.contains(candidate)) {
+          actual.add(candidate);
+        }
+      }
+      assertEquals(expected, actual);
+      found += expected.size();
+    }
+    assertTrue(found >= 500);
+  }
+
+  @Test
+  void heapPollsBestScoreFirst() {
+    final Random rand = new Random(5);
+    final List<double[]> all = new ArrayList<>();
+    final List<AlignmentScoreHeap> parts = new ArrayList<>();
+    for (int p = 0; p < 4; p++) {
+      final AlignmentScoreHeap part = new AlignmentScoreHeap();
+      for (int i = 0; i < 300; i++) {
+        final double score = rand.nextInt(40) / 40d;
+        final int row = rand.nextInt(100);
+        final int baseRow = rand.nextInt(100);
+        part.add(score, row, baseRow);
+        all.add(new double[]{score, row, baseRow});
+      }
+      parts.add(part);
+    }
+    all.sort(Comparator.<double[]>comparingDouble(e -> -e[0]).thenComparingDouble(e -> e[1])
+        .thenComparingDouble(e -> e[2]));
+
+    final AlignmentScoreHeap heap = AlignmentScoreHeap.merge(parts);
+    assertEquals(all.size(), heap.size());
+    for (double[] e : all) {
+      assertEquals(e[0], heap.peekScore());
+      assertEquals((int) e[1], heap.peekRow());
+      assertEquals((int) e[2], heap.peekBaseRow());
+      heap.removeFirst();
+    }
+    assertTrue(heap.isEmpty());
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import com.google.common.collect.Range;
+import com.google.common.collect.RangeMap;
+import com.google.common.collect.TreeRangeMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares the map with the Guava {@link TreeRangeMap} that it replaced in
+ * {@link ModularADAPChromatogramBuilderTask}
+ */
+class ChromatogramMzRangeMapTest {
+
+  private final ChromatogramMzRangeMap map = new ChromatogramMzRangeMap();
+  private final RangeMap<Double, ADAPChromatogram> expected = TreeRangeMap.create();
+
+  /**
+   * Starts a new chromatogram like the builder task: the tolerance range is limited to the bounds
+   * of the neighbouring ranges, so ranges are adjacent but never overlap.
+   */
+  private void startChromatogram(double mz, double tolerance) {
+    final ADAPChromatogram existing = map.get(mz);
+    final Entry<Range<Double>, ADAPChromatogram> expectedExisting = expected.getEntry(mz);
+    assertSame(expectedExisting == null ? null : expectedExisting.getValue(), existing);
+    if (existing != null) {
+      return;
+    }
+
+    final double lower = mz - tolerance;
+    final double upper = mz + tolerance;
+    final Entry<Range<Double>, ADAPChromatogram> minus = expected.getEntry(lower);
+    final Entry<Range<Double>, ADAPChromatogram> plus = expected.getEntry(upper);
+    assertEquals(minus == null ? Double.NaN : minus.getKey().upperEndpoint(),
+        map.getUpperBound(lower));
+    assertEquals(plus == null ? Double.NaN : plus.getKey().lowerEndpoint(),
+        map.getLowerBound(upper));
+
+    final double newLower = minus == null ? lower : minus.getKey().upperEndpoint();
+    final double newUpper = plus == null ? upper : plus.getKey().lowerEndpoint();
+    if (newLower < newUpper) {
+      final ADAPChromatogram chromatogram = new ADAPChromatogram();
+      map.put(newLower, newUpper, chromatogram);
+      expected.put(Range.closedOpen(newLower, newUpper), chromatogram);
+    }
+  }
+
+  private void assertSameRanges() {
+    final List<ADAPChromatogram> values = new ArrayList<>();
+    map.forEach(values::add);
+    final List<ADAPChromatogram> expectedValues = List.copyOf(
+        expected.asMapOfRanges().values());
+    assertEquals(expectedValues.size(), map.size());
+    assertEquals(expectedValues.size(), values.size());
+    for (int i = 0; i < values.size(); i++) {
+      assertSame(expectedValues.get(i), values.get(i));
+    }
+
+    for (Range<Double> range : expected.asMapOfRanges().keySet()) {
+      final double lower = range.lowerEndpoint();
+      final double upper = range.upperEndpoint();
+      for (double mz : new double[]{lower, (lower + upper) / 2, upper, Math.nextDown(lower),
+          Math.nextDown(upper)}) {
+        assertSame(expected.get(mz), map.get(mz), "m/z " + mz);
+        final Entry<Range<Double>, ADAPChromatogram> entry = expected.getEntry(mz);
+        assertEquals(entry == null ? Double.NaN : entry.getKey().lowerEndpoint(),
+            map.getLowerBound(mz));
+        assertEquals(entry == null ? Double.NaN : entry.getKey().upperEndpoint(),
+            map.getUpperBound(mz));
+      }
+    }
+  }
+
+  @Test
+  void adjacentAndOverlappingToleranceRanges() {
+    final Random random = new Random(42);
+    // m/z on a grid of the tolerance creates adjacent ranges, random m/z overlapping ranges
+    for (int i = 0; i < 6000; i++) {
+      final double mz = i % 2 == 0 ? 100 + random.nextInt(4000) * 0.005
+          : 100 + random.nextDouble() * 20;
+      startChromatogram(mz, 0.005);
+      if (i % 500 == 0) {
+        assertSameRanges();
+      }
+    }
+    // more ranges than fit into a single block
+    assertSameRanges();
+    assertEquals(expected.asMapOfRanges().size(), map.size());
+  }
+
+  @Test
+  void putRemovesContainedRanges() {
+    for (int i = 0; i < 2000; i++) {
+      startChromatogram(100 + i * 0.01, 0.005);
+    }
+    assertSameRanges();
+
+    final Random random = new Random(42);
+    for (int i = 0; i < 50 && map.size() > 2; i++) {
+      final List<Range<Double>> ranges = List.copyOf(expected.asMapOfRanges().keySet());
+      // cover whole ranges across block borders
+      final int first = random.nextInt(ranges.size() - 1);
+      final int last = Math.min(ranges.size() - 1, first + random.nextInt(600));
+      final double lower = ranges.get(first).lowerEndpoint();
+      final double upper = ranges.get(last).upperEndpoint();
+      final ADAPChromatogram chromatogram = new ADAPChromatogram();
+      map.put(lower, upper, chromatogram);
+      expected.put(Range.closedOpen(lower, upper), chromatogram);
+      assertSameRanges();
+    }
+  }
+
+  @Test
+  void emptyMap() {
+    assertNull(map.get(100));
+    assertEquals(Double.NaN, map.getLowerBound(100));
+    assertEquals(Double.NaN, map.getUpperBound(100));
+    assertEquals(0, map.size());
+  }
+}
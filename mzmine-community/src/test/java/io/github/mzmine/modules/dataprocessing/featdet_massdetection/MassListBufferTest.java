@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.featdet_massdetection;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.centroid.CentroidMassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.factor_of_lowest.FactorOfLowestMassDetector;
+import org.junit.jupiter.api.Test;
+
+class MassListBufferTest {
+
+  @Test
+  void growAndCopy() {
+    MassListBuffer buffer = new MassListBuffer(2);
+    for (int i = 0; i < 100; i++) {
+      buffer.add(i, i * 10);
+    }
+    assertEquals(100, buffer.size());
+    assertEquals(99d, buffer.getMzValue(99));
+    assertEquals(990d, buffer.getIntensityValue(99));
+    assertEquals(100, buffer.toMzArray().length);
+
+    buffer.clear();
+    assertEquals(0, buffer.size());
+    assertEquals(0, buffer.toArrays()[1].length);
+  }
+
+  @Test
+  void scans() {
+    MassListBuffer buffer = new MassListBuffer();
+    buffer.startScan();
+    buffer.addAll(new double[]{1, 2, 3}, new double[]{5, 50, 10});
+    buffer.startScan();
+    buffer.startScan();
+    buffer.addAll(new double[]{4, 5}, new double[]{20, 10});
+
+    assertEquals(3, buffer.getNumberOfScans());
+    assertEquals(3, buffer.getScanSize(0));
+    assertEquals(0, buffer.getScanSize(1));
+    assertEquals(3, buffer.getScanOffset(2));
+    assertEquals(2, buffer.getScanSize(2));
+    assertEquals(1, buffer.getScanBasePeakIndex(0));
+    assertEquals(-1, buffer.getScanBasePeakIndex(1));
+    assertEquals(0, buffer.getScanBasePeakIndex(2));
+  }
+
+  @Test
+  void removeBelowAndMultiply() {
+    MassListBuffer buffer = new MassListBuffer();
+    buffer.addAll(new double[]{1, 2, 3, 4}, new double[]{1, 5, 2, 8});
+    buffer.removeBelow(1, 5);
+    assertArrayEquals(new double[]{1, 2, 4}, buffer.toMzArray());
+
+    buffer.multiplyIntensities(1, 2);
+    assertArrayEquals(new double[]{1, 10, 16}, buffer.toIntensityArray());
+  }
+
+  @Test
+  void detectorsAppendToBuffer() {
+    double[] mzs = {100, 200, 300, 400};
+    double[] intensities = {3, 5, 10, 100};
+
+    MassListBuffer buffer = new MassListBuffer();
+    buffer.add(50, 1);
+    new CentroidMassDetector(5).detectMasses(mzs, intensities, MassSpectrumType.CENTROIDED,
+        buffer);
+    assertArrayEquals(new double[]{50, 200, 300, 400}, buffer.toMzArray());
+
+    // factor of lowest only uses the appended data for the noise level
+    int start = buffer.size();
+    new FactorOfLowestMassDetector(3).detectMasses(mzs, intensities, MassSpectrumType.CENTROIDED,
+        buffer);
+    assertEquals(2, buffer.size() - start);
+    assertArrayEquals(new double[]{300, 400},
+        new FactorOfLowestMassDetector(3).getMassValues(mzs, intensities,
+            MassSpectrumType.CENTROIDED)[0]);
+  }
+}
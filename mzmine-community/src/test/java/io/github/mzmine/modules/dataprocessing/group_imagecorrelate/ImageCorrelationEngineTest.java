@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.group_imagecorrelate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import io.github.mzmine.modules.dataprocessing.group_imagecorrelate.ImageCorrelationEngine.PixelVector;
+import io.github.mzmine.util.maths.similarity.SimilarityMeasure;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class ImageCorrelationEngineTest {
+
+  @Test
+  void noiseAndMinimumPixels() {
+    final double[] a = {0, 2, 4, 6, 0};
+    final double[] b = {1, 2, 4, 6, 8};
+    final ImageCorrelationEngine engine = new ImageCorrelationEngine(1, 3, false, 0, false, 0,
+        false, 0, SimilarityMeasure.COSINE_SIM);
+    final PixelVector imageA = engine.createPixelVector(a);
+    assertEquals(3, imageA.size());
+    assertEquals(1d, engine.calculateSimilarity(imageA, engine.createPixelVector(b)), 1E-12);
+
+    final ImageCorrelationEngine minPixels = new ImageCorrelationEngine(1, 4, false, 0, false, 0,
+        false, 0, SimilarityMeasure.COSINE_SIM);
+    assertEquals(0d,
+        minPixels.calculateSimilarity(minPixels.createPixelVector(a),
+            minPixels.createPixelVector(b)));
+  }
+
+  @Test
+  void identicalToPairList() {
+    final Random random = new Random(42);
+    for (SimilarityMeasure measure : new SimilarityMeasure[]{SimilarityMeasure.COSINE_SIM,
+        SimilarityMeasure.PEARSON, SimilarityMeasure.SPEARMAN}) {
+      final ImageCorrelationEngine engine = new ImageCorrelationEngine(5, 10, true, 3, true, 0.2,
+          true, 0.95, measure);
+      for (int n = 0; n < 20; n++) {
+        final double[] a = randomImage(random, 500);
+        final double[] b = randomImage(random, 500);
+        assertEquals(reference(a, b, measure),
+            engine.calculateSimilarity(engine.createPixelVector(a), engine.createPixelVector(b)));
+      }
+    }
+  }
+
+  private static double[] randomImage(Random random, int pixels) {
+    final double[] image = new double[pixels];
+    for (int i = 0; i < pixels; i++) {
+      image[i] = random.nextDouble() < 0.3 ? 0 : random.nextDouble() * 100;
+    }
+    return image;
+  }
+
+  /**
+   * Filters a list of pairs with noise 5, median window 3, 20 % quantile and 95 % hotspot
+   * threshold and min 10 pixels.
+   */
+  private static double reference(double[] a, double[] b, SimilarityMeasure measure) {
+    List<double[]> pairs = new ArrayList<>();
+    for (int i = 0; i < a.length; i++) {
+      if (a[i] >= 5 && b[i] >= 5) {
+        pairs.add(new double[]{a[i], b[i]});
+      }
+    }
+    List<double[]> filtered = new ArrayList<>();
+    for (int i = 0; i < pairs.size(); i++) {
+      List<double[]> window = pairs.subList(Math.max(0, i - 1),
+          Math.min(pairs.size() - 1, i + 1) + 1);
+      filtered.add(new double[]{median(window, 0), median(window, 1)});
+    }
+    if (filtered.size() >= 10) {
+      final double qa = quantile(filtered, 0, 0.2);
+      final double qb = quantile(filtered, 1, 0.2);
+      filtered.removeIf(p -> p[0] < qa || p[1] < qb);
+    }
+    if (filtered.size() >= 10) {
+      final double ha = quantile(filtered, 0, 0.95);
+      final double hb = quantile(filtered, 1, 0.95);
+      filtered.removeIf(p -> p[0] > ha || p[1] > hb);
+    }
+    return filtered.size() >= 10 ? measure.calc(filtered.toArray(double[][]::new)) : 0;
+  }
+
+  private static double median(List<double[]> pairs, int dim) {
+    final double[] values = pairs.stream().mapToDouble(p -> p[dim]).sorted().toArray();
+    final int middle = values.length / 2;
+    return values.length % 2 == 0 ? (values[middle - 1] + values[middle]) / 2.0 : values[middle];
+  }
+
+  private static double quantile(List<double[]> pairs, int dim, double quantile) {
+    final double[] values = pairs.stream().mapToDouble(p -> p[dim]).toArray();
+    Arrays.sort(values);
+    return values[(int) Math.ceil(quantile * values.length) - 1];
+  }
+}
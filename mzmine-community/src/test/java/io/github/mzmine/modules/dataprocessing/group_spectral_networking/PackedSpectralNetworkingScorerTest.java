@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.group_spectral_networking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.datamodel.features.correlation.SpectralSimilarity;
+import io.github.mzmine.datamodel.impl.SimpleDataPoint;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.DataPointSorter;
+import io.github.mzmine.util.scans.similarity.Weights;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class PackedSpectralNetworkingScorerTest {
+
+  private final MZTolerance mzTol = new MZTolerance(0.01, 10);
+
+  private double[] precursorMzs;
+  private List<DataPoint[]> spectra;
+
+  /**
+   * Spectra with shared fragments and shifted fragments to create direct and modified matches
+   */
+  private void createSpectra(int numSpectra) {
+    final Random rand = new Random(7);
+    final double[] shared = new double[25];
+    for (int k = 0; k < shared.length; k++) {
+      shared[k] = 50 + rand.nextDouble() * 300;
+    }
+    precursorMzs = new double[numSpectra];
+    spectra = new ArrayList<>(numSpectra);
+    for (int i = 0; i < numSpectra; i++) {
+      precursorMzs[i] = 400 + i * 0.5 + rand.nextDouble() * 0.4;
+      final double shift = precursorMzs[i] - 400;
+      List<DataPoint> dps = new ArrayList<>();
+      for (double mz : shared) {
+        if (rand.nextDouble() < 0.6) {
+          dps.add(new SimpleDataPoint(
+              (rand.nextBoolean() ? mz : mz + shift) + rand.nextGaussian() * 0.003,
+              1 + rand.nextInt(1000)));
+        }
+      }
+      DataPoint[] data = dps.toArray(DataPoint[]::new);
+      Arrays.sort(data, DataPointSorter.DEFAULT_INTENSITY);
+      spectra.add(data);
+    }
+  }
+
+  @Test
+  void scoresEqualDataPointAlignment() {
+    createSpectra(60);
+    var scorer = new PackedSpectralNetworkingScorer(precursorMzs, spectra, mzTol, Weights.SQRT, 3,
+        0, Double.MAX_VALUE);
+    int found = 0;
+    for (int a = 0; a < precursorMzs.length; a++) {
+      for (int b = a + 1; b < precursorMzs.length; b++) {
+        SpectralSimilarity expected = SpectralNetworkingTask.createMS2SimModificationAware(mzTol,
+            spectra.get(a), spectra.get(b), 3, SpectralNetworkingTask.SIZE_OVERLAP,
+            precursorMzs[a], precursorMzs[b]);
+        assertEquals(expected, scorer.score(a, b), "pair %d, %d".formatted(a, b));
+        if (expected != null) {
+          found++;
+        }
+      }
+    }
+    assertTrue(found > 100);
+  }
+
+  @Test
+  void blocksProduceAllEdgesWithinDelta() {
+    createSpectra(90);
+    final double maxDelta = 12;
+    final double minCosine = 0.3;
+    // small blocks to cover block borders
+    var scorer = new PackedSpectralNetworkingScorer(precursorMzs, spectra, mzTol, Weights.SQRT, 3,
+        minCosine, maxDelta, 7);
+
+    Map<Integer, SpectralSimilarity> edges = new ConcurrentHashMap<>();
+    AtomicLong progress = new AtomicLong();
+    long pairs = scorer.scoreAll(() -> false, progress::addAndGet,
+        (a, b, sim) -> edges.put(a * 1000 + b, sim));
+
+    Map<Integer, SpectralSimilarity> expected = new ConcurrentHashMap<>();
+    long expectedPairs = 0;
+    for (int a = 0; a < precursorMzs.length; a++) {
+      for (int b = a + 1; b < precursorMzs.length; b++) {
+        if (maxDelta < precursorMzs[b] - precursorMzs[a]) {
+          break;
+        }
+        expectedPairs++;
+        SpectralSimilarity sim = SpectralNetworkingTask.createMS2SimModificationAware(mzTol,
+            spectra.get(a), spectra.get(b), 3, SpectralNetworkingTask.SIZE_OVERLAP,
+            precursorMzs[a], precursorMzs[b]);
+        if (sim != null && sim.cosine() >= minCosine) {
+          expected.put(a * 1000 + b, sim);
+        }
+      }
+    }
+    assertEquals(expectedPairs, pairs);
+    assertEquals(expectedPairs, scorer.getNumPairs());
+    assertEquals(expectedPairs, progress.get());
+    assertTrue(expected.size() > 10);
+    assertEquals(expected, edges);
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.id_formulaprediction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.modules.dataprocessing.id_formulaprediction.restrictions.elements.ElementalHeuristicChecker;
+import io.github.mzmine.modules.dataprocessing.id_formulaprediction.restrictions.rdbe.RDBERestrictionChecker;
+import java.io.IOException;
+import java.util.Set;
+import java.util.TreeSet;
+import org.junit.jupiter.api.Test;
+import org.openscience.cdk.config.IsotopeFactory;
+import org.openscience.cdk.config.Isotopes;
+import org.openscience.cdk.formula.MolecularFormulaGenerator;
+import org.openscience.cdk.formula.MolecularFormulaRange;
+import org.openscience.cdk.interfaces.IMolecularFormula;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.tools.manipulator.MolecularFormulaManipulator;
+
+class FormulaEnumeratorTest {
+
+  private static MolecularFormulaRange createElements() throws IOException {
+    final IsotopeFactory iFac = Isotopes.getInstance();
+    final MolecularFormulaRange elements = new MolecularFormulaRange();
+    elements.addIsotope(iFac.getMajorIsotope("C"), 0, 40);
+    elements.addIsotope(iFac.getMajorIsotope("H"), 0, 80);
+    elements.addIsotope(iFac.getMajorIsotope("N"), 0, 8);
+    elements.addIsotope(iFac.getMajorIsotope("O"), 0, 12);
+    elements.addIsotope(iFac.getMajorIsotope("P"), 0, 2);
+    elements.addIsotope(iFac.getMajorIsotope("S"), 0, 2);
+    // no valence defined, RDBE is not checked for formulas with Fe
+    elements.addIsotope(iFac.getMajorIsotope("Fe"), 0, 1);
+    return elements;
+  }
+
+  @Test
+  void sameFormulasAsCdkGenerator() throws IOException {
+    final MolecularFormulaRange elements = createElements();
+    final Range<Double> rdbeRange = Range.closed(-0.5, 12d);
+
+    for (double mass : new double[]{180.0634, 255.2324, 342.1162, 449.1084}) {
+      final Range<Double> massRange = Range.closed(mass - 0.002, mass + 0.002);
+      final Set<String> expected = new TreeSet<>();
+      final MolecularFormulaGenerator generator = new MolecularFormulaGenerator(
+          SilentChemObjectBuilder.getInstance(), massRange.lowerEndpoint(),
+          massRange.upperEndpoint(), elements);
+      IMolecularFormula formula;
+      while ((formula = generator.getNextFormula()) != null) {
+        final Double rdbe = RDBERestrictionChecker.calculateRDBE(formula);
+        if (ElementalHeuristicChecker.checkFormula(formula, true, true, true) && (rdbe == null
+            || RDBERestrictionChecker.checkRDBE(rdbe, rdbeRange, true))) {
+          expected.add(MolecularFormulaManipulator.getString(formula));
+        }
+      }
+
+      final FormulaEnumerator enumerator = new FormulaEnumerator(elements, rdbeRange, true, true,
+          true, true);
+      final Set<String> actual = new TreeSet<>();
+      enumerator.forEachCandidate(massRange, () -> false, (counts, exactMass) -> {
+        final IMolecularFormula f = enumerator.toFormula(counts);
+        assertEquals(MolecularFormulaManipulator.getTotalExactMass(f), exactMass, 1E-9);
+        actual.add(MolecularFormulaManipulator.getString(f));
+      });
+
+      assertTrue(!expected.isEmpty());
+      assertEquals(expected, actual);
+    }
+  }
+
+  @Test
+  void cancel() throws IOException {
+    final FormulaEnumerator enumerator = new FormulaEnumerator(createElements(), null, false,
+        false, false, false);
+    final Range<Double> massRange = Range.closed(400d, 500d);
+    final int[] all = new int[1];
+    enumerator.forEachCandidate(massRange, () -> false, (counts, mass) -> all[0]++);
+
+    final int[] found = new int[1];
+    enumerator.forEachCandidate(massRange, () -> found[0] > 0, (counts, mass) -> found[0]++);
+    assertTrue(found[0] > 0);
+    assertTrue(found[0] < all[0] / 100);
+  }
+}
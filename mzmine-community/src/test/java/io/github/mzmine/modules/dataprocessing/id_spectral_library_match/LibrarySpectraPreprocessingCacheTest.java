@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.id_spectral_library_match;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.modules.dataprocessing.id_spectral_library_match.LibrarySpectraPreprocessingCache.PreprocessedSpectrum;
+import io.github.mzmine.modules.dataprocessing.id_spectral_library_match.LibrarySpectraPreprocessingCache.Preprocessing;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.project.impl.MZmineProjectImpl;
+import io.github.mzmine.project.impl.ProjectManagerImpl;
+import io.github.mzmine.util.spectraldb.entry.DBEntryField;
+import io.github.mzmine.util.spectraldb.entry.SpectralDBEntry;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibrary;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibraryEntry;
+import java.io.File;
+import org.junit.jupiter.api.Test;
+
+class LibrarySpectraPreprocessingCacheTest {
+
+  private final Preprocessing removePrecursor = new Preprocessing(new MZTolerance(4d, 0d), null,
+      false, 0);
+
+  private SpectralLibraryEntry createEntry(double precursorMz) {
+    var entry = new SpectralDBEntry(null, new double[]{50, 100, 198, 200, 203, 205},
+        new double[]{10, 20, 30, 40, 50, 60});
+    entry.putIfNotNull(DBEntryField.PRECURSOR_MZ, precursorMz);
+    return entry;
+  }
+
+  @Test
+  void removesPrecursorAndKeepsRange() {
+    final PreprocessedSpectrum spectrum = removePrecursor.apply(createEntry(200));
+    assertArrayEquals(new double[]{50, 100, 205}, spectrum.mzs());
+    assertArrayEquals(new double[]{10, 20, 60}, spectrum.intensities());
+    // range before precursor removal
+    assertEquals(Range.closed(50d, 205d), spectrum.mzRange());
+  }
+
+  @Test
+  void cachesPerEntryAndParameters() {
+    var cache = new LibrarySpectraPreprocessingCache(Long.MAX_VALUE, 8);
+    var entry = createEntry(200);
+    var first = cache.getOrCompute(removePrecursor, entry);
+    assertSame(first, cache.getOrCompute(new Preprocessing(new MZTolerance(4d, 0d), null, false, 0),
+        entry));
+    // equal but different entry
+    assertNotSame(first, cache.getOrCompute(removePrecursor, createEntry(200)));
+    // different parameters
+    var deisotope = new Preprocessing(null, new MZTolerance(0.001, 5d), false, 1);
+    cache.getOrCompute(deisotope, entry);
+    assertEquals(3, cache.size());
+
+    SpectralLibrary library = new SpectralLibrary(null, new File("lib.json"));
+    library.addEntry(entry);
+    cache.invalidate(library);
+    assertEquals(1, cache.size());
+  }
+
+  @Test
+  void keepsOnlyLibrariesOfTheNewProject() {
+    final var cache = LibrarySpectraPreprocessingCache.getInstance();
+    final SpectralLibrary kept = new SpectralLibrary(null, new File("kept.json"));
+    final SpectralLibrary closed = new SpectralLibrary(null, new File("closed.json"));
+    final var keptEntry = createEntry(200);
+    final var closedEntry = createEntry(200);
+    kept.addEntry(keptEntry);
+    closed.addEntry(closedEntry);
+
+    final ProjectManagerImpl manager = ProjectManagerImpl.getInstance();
+    manager.setCurrentProject(new MZmineProjectImpl());
+    manager.getCurrentProject().addSpectralLibrary(kept, closed);
+    cache.clear();
+    final var cachedKept = cache.getOrCompute(removePrecursor, keptEntry);
+    final var cachedClosed = cache.getOrCompute(removePrecursor, closedEntry);
+
+    // clearing the project keeps its libraries
+    manager.clearProject();
+    assertEquals(2, cache.size());
+    assertSame(cachedKept, cache.getOrCompute(removePrecursor, keptEntry));
+
+    final MZmineProject project = new MZmineProjectImpl();
+    project.addSpectralLibrary(kept);
+    manager.setCurrentProject(project);
+    assertEquals(1, cache.size());
+    assertSame(cachedKept, cache.getOrCompute(removePrecursor, keptEntry));
+    assertNotSame(cachedClosed, cache.getOrCompute(removePrecursor, closedEntry));
+
+    manager.setCurrentProject(new MZmineProjectImpl());
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  void skipsCacheWithoutPreprocessing() {
+    var cache = new LibrarySpectraPreprocessingCache(Long.MAX_VALUE, 8);
+    var noFilter = cache.getOrCompute(new Preprocessing(null, null, false, 0), createEntry(200));
+    assertArrayEquals(new double[]{50, 100, 198, 200, 203, 205}, noFilter.mzs());
+    // entry without precursor
+    var entry = new SpectralDBEntry(null, new double[]{50, 100}, new double[]{10, 20});
+    assertEquals(2, cache.getOrCompute(removePrecursor, entry).mzs().length);
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  void evictsLeastRecentlyUsed() {
+    // budget for about two entries
+    var cache = new LibrarySpectraPreprocessingCache(2 * (128 + 3 * 16) + 10, 1);
+    var a = createEntry(200);
+    var b = createEntry(200);
+    var c = createEntry(200);
+    var cachedA = cache.getOrCompute(removePrecursor, a);
+    cache.getOrCompute(removePrecursor, b);
+    // access a so that b is the eldest
+    cache.getOrCompute(removePrecursor, a);
+    cache.getOrCompute(removePrecursor, c);
+    assertEquals(2, cache.size());
+    assertSame(cachedA, cache.getOrCompute(removePrecursor, a));
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.export_features_csv;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.ModularFeature;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import io.github.mzmine.datamodel.features.types.DataTypes;
+import io.github.mzmine.datamodel.features.types.annotations.CommentType;
+import io.github.mzmine.datamodel.features.types.numbers.HeightType;
+import io.github.mzmine.datamodel.features.types.numbers.IDType;
+import io.github.mzmine.datamodel.features.types.numbers.MZType;
+import io.github.mzmine.datamodel.features.types.numbers.RTRangeType;
+import io.github.mzmine.datamodel.features.types.numbers.RTType;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+import testutils.MZmineTestUtil;
+
+@TestInstance(Lifecycle.PER_CLASS)
+class ParallelCSVRowWriterTest {
+
+  private static final String SEPARATOR = ",";
+
+  private List<FeatureListRow> rows;
+  private List<CSVExportColumn> columns;
+
+  @BeforeAll
+  void initialise() {
+    // parallel formatting runs on the task controller executor
+    MZmineTestUtil.startMzmineCore();
+
+    final RawDataFile raw = new RawDataFileImpl("raw", null, null, Color.BLACK);
+    final ModularFeatureList flist = new ModularFeatureList("flist", null, raw);
+    // not a multiple of the chunk size
+    final int numRows = ParallelCSVRowWriter.ROWS_PER_CHUNK * 7 + 13;
+    for (int i = 0; i < numRows; i++) {
+      final ModularFeatureListRow row = new ModularFeatureListRow(flist, i + 1);
+      row.set(MZType.class, 100 + i * 0.0137);
+      final float rt = 0.5f + i * 0.003f;
+      row.set(RTType.class, rt);
+      row.set(RTRangeType.class, Range.closed(rt - 0.05f, rt + 0.05f));
+      // values that need escaping
+      row.set(CommentType.class, i % 3 == 0 ? "comment, " + i : "\"quoted\" " + i);
+      if (i % 2 == 0) {
+        final ModularFeature feature = new ModularFeature(flist, raw, null, null);
+        feature.set(HeightType.class, 1e4f * (i + 1));
+        row.addFeature(raw, feature);
+      }
+      flist.addRow(row);
+    }
+    rows = flist.getRows();
+
+    columns = new ArrayList<>();
+    columns.add(new CSVExportColumn(DataTypes.get(IDType.class), null, -1));
+    columns.add(new CSVExportColumn(DataTypes.get(MZType.class), null, -1));
+    columns.add(new CSVExportColumn(DataTypes.get(RTType.class), null, -1));
+    columns.add(new CSVExportColumn(DataTypes.get(RTRangeType.class), null, 0));
+    columns.add(new CSVExportColumn(DataTypes.get(RTRangeType.class), null, 1));
+    columns.add(new CSVExportColumn(DataTypes.get(CommentType.class), null, -1));
+    columns.add(new CSVExportColumn(DataTypes.get(HeightType.class), raw, -1));
+  }
+
+  private byte[] export(int formattingThreads, CSVExportCompression compression)
+      throws IOException {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final AtomicInteger written = new AtomicInteger();
+    try (OutputStream out = compression.wrap(bytes)) {
+      new ParallelCSVRowWriter(columns, SEPARATOR, formattingThreads).writeRows(rows, out,
+          written::addAndGet, () -> false);
+    }
+    assertEquals(rows.size(), written.get());
+    return bytes.toByteArray();
+  }
+
+  @Test
+  void parallelExportEqualsSequentialExport() throws IOException {
+    final byte[] sequential = export(1, CSVExportCompression.NONE);
+    assertEquals(rows.size(), new String(sequential).lines().count());
+
+    assertArrayEquals(sequential, export(4, CSVExportCompression.NONE));
+    assertArrayEquals(sequential, export(16, CSVExportCompression.NONE));
+  }
+
+  @Test
+  void parallelGzipExportEqualsSequentialExport() throws IOException {
+    final byte[] sequential = export(1, CSVExportCompression.NONE);
+    final byte[] sequentialGzip = export(1, CSVExportCompression.GZIP);
+    final byte[] parallelGzip = export(4, CSVExportCompression.GZIP);
+
+    assertArrayEquals(sequentialGzip, parallelGzip);
+    try (var in = new GZIPInputStream(new ByteArrayInputStream(parallelGzip))) {
+      assertArrayEquals(sequential, in.readAllBytes());
+    }
+  }
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.import_rawdata_imzml;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.mzmine.modules.io.import_rawdata_imzml.ImzMLBinaryReader.BinaryDataType;
+import io.github.mzmine.modules.io.import_rawdata_imzml.ImzMLBinaryReader.BinaryLocation;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ImzMLBinaryReaderTest {
+
+  @TempDir
+  Path tempDir;
+
+  private File imzml;
+  private final Random random = new Random(42);
+
+  @BeforeEach
+  void init() throws IOException {
+    imzml = Files.createFile(tempDir.resolve("image.imzML")).toFile();
+  }
+
+  @Test
+  void processedLayout() throws IOException {
+    final int n = 300;
+    // m/z arrays followed by the intensity arrays like in the import
+    final BinaryLocation[] locations = new BinaryLocation[2 * n];
+    final double[][] expected = new double[2 * n][];
+    try (FileChannel channel = openIbd()) {
+      // uuid in the first 16 bytes
+      long offset = 16;
+      for (int i = 0; i < n; i++) {
+        // include empty spectra
+        final int length = i % 50 == 0 ? 0 : random.nextInt(200);
+        final BinaryDataType intensityType = BinaryDataType.values()[i % 4];
+        locations[i] = new BinaryLocation(offset, length, BinaryDataType.FLOAT64);
+        expected[i] = write(channel, locations[i]);
+        offset = locations[i].end();
+        locations[n + i] = new BinaryLocation(offset, length, intensityType);
+        expected[n + i] = write(channel, locations[n + i]);
+        offset = locations[n + i].end();
+      }
+    }
+    // spectra without external arrays are decoded by the imzML parser
+    locations[7] = null;
+    locations[n + 7] = null;
+    expected[7] = null;
+    expected[n + 7] = null;
+
+    try (ImzMLBinaryReader reader = ImzMLBinaryReader.open(imzml)) {
+      assertNotNull(reader);
+      final double[][] batch = reader.readBatch(locations);
+      assertBatchEquals(expected, batch);
+      assertBatchEquals(readSequential(reader, locations), batch);
+    }
+  }
+
+  @Test
+  void continuousLayout() throws IOException {
+    final int n = 250;
+    final BinaryLocation mzLocation = new BinaryLocation(16, 1000, BinaryDataType.FLOAT32);
+    final BinaryLocation[] locations = new BinaryLocation[2 * n];
+    final double[][] expected = new double[2 * n][];
+    try (FileChannel channel = openIbd()) {
+      final double[] mzs = write(channel, mzLocation);
+      long offset = mzLocation.end();
+      for (int i = 0; i < n; i++) {
+        locations[i] = mzLocation;
+        expected[i] = mzs;
+        locations[n + i] = new BinaryLocation(offset, mzLocation.length(),
+            i % 2 == 0 ? BinaryDataType.FLOAT32 : BinaryDataType.INT32);
+        expected[n + i] = write(channel, locations[n + i]);
+        offset = locations[n + i].end();
+      }
+    }
+
+    try (ImzMLBinaryReader reader = ImzMLBinaryReader.open(imzml)) {
+      // the import decodes in multiple batches, the shared array is kept in between
+      final int split = 100;
+      final double[][] first = reader.readBatch(batchOf(locations, n, 0, split));
+      final double[][] second = reader.readBatch(batchOf(locations, n, split, n));
+      final double[][] batch = new double[2 * n][];
+      for (int i = 0; i < n; i++) {
+        batch[i] = i < split ? first[i] : second[i - split];
+        batch[n + i] = i < split ? first[split + i] : second[n - split + i - split];
+      }
+      assertBatchEquals(expected, batch);
+      assertBatchEquals(readSequential(reader, locations), batch);
+
+      // the m/z array is only decoded once for all following spectra
+      for (int i = 2; i < n; i++) {
+        assertSame(batch[1], batch[i]);
+      }
+    }
+  }
+
+  @Test
+  void offsetsPast2GB() throws IOException {
+    final int n = 40;
+    final long largeOffset = (3L << 30) + 3;
+    final BinaryLocation[] locations = new BinaryLocation[2 * n];
+    final double[][] expected = new double[2 * n][];
+    try (FileChannel channel = openIbd()) {
+      // the first spectra at the start and the others after 3 GB (sparse file), so the batch is
+      // split into multiple windows
+      long offset = 16;
+      for (int i = 0; i < n; i++) {
+        if (i == 5) {
+          offset = largeOffset;
+        }
+        final int length = 1 + random.nextInt(500);
+        locations[i] = new BinaryLocation(offset, length, BinaryDataType.FLOAT64);
+        expected[i] = write(channel, locations[i]);
+        offset = locations[i].end();
+        locations[n + i] = new BinaryLocation(offset, length, BinaryDataType.INT64);
+        expected[n + i] = write(channel, locations[n + i]);
+        offset = locations[n + i].end();
+      }
+      assertTrue(channel.size() > Integer.MAX_VALUE);
+      assertTrue(locations[2 * n - 1].end() - locations[0].offset()
+                 > ImzMLBinaryReader.MAX_WINDOW_BYTES);
+    }
+
+    try (ImzMLBinaryReader reader = ImzMLBinaryReader.open(imzml)) {
+      final double[][] batch = reader.readBatch(locations);
+      assertBatchEquals(expected, batch);
+      assertBatchEquals(readSequential(reader, locations), batch);
+
+      // a batch completely after 2 GB in one window
+      final BinaryLocation[] large = Arrays.copyOfRange(locations, 5, n);
+      final double[][] largeBatch = reader.readBatch(large);
+      for (int i = 0; i < large.length; i++) {
+        assertArrayEquals(expected[i + 5], largeBatch[i]);
+      }
+    }
+  }
+
+  private FileChannel openIbd() throws IOException {
+    return FileChannel.open(tempDir.resolve("image.ibd"), StandardOpenOption.CREATE_NEW,
+        StandardOpenOption.WRITE);
+  }
+
+  /**
+   * Writes random values at the location
+   *
+   * @return the values as they are decoded
+   */
+  private double[] write(FileChannel channel, BinaryLocation location) throws IOException {
+    final ByteBuffer buffer = ByteBuffer.allocate(
+        location.length() * location.type().getBytes()).order(ByteOrder.LITTLE_ENDIAN);
+    final double[] values = new double[location.length()];
+    for (int i = 0; i < values.length; i++) {
+      switch (location.type()) {
+        case FLOAT32 -> {
+          final float value = random.nextFloat() * 2000;
+          buffer.putFloat(value);
+          values[i] = value;
+        }
+        case FLOAT64 -> {
+          final double value = random.nextDouble() * 2000;
+          buffer.putDouble(value);
+          values[i] = value;
+        }
+        case INT32 -> {
+          final int value = random.nextInt();
+          buffer.putInt(value);
+          values[i] = value;
+        }
+        case INT64 -> {
+          final long value = random.nextLong(1L << 40);
+          buffer.putLong(value);
+          values[i] = value;
+        }
+      }
+    }
+    buffer.flip();
+    long position = location.offset();
+    while (buffer.hasRemaining()) {
+      position += channel.write(buffer, position);
+    }
+    return values;
+  }
+
+  /**
+   * Decodes each array separately
+   */
+  private static double[][] readSequential(ImzMLBinaryReader reader, BinaryLocation[] locations)
+      throws IOException {
+    final double[][] values = new double[locations.length][];
+    for (int i = 0; i < locations.length; i++) {
+      final BinaryLocation location = locations[i];
+      if (location != null) {
+        values[i] = reader.map(location.offset(), location.end()).decode(location);
+      }
+    }
+    return values;
+  }
+
+  /**
+   * @return the m/z and intensity locations of the spectra from (inclusive) to (exclusive)
+   */
+  private static BinaryLocation[] batchOf(BinaryLocation[] locations, int n, int from, int to) {
+    final BinaryLocation[] batch = new BinaryLocation[2 * (to - from)];
+    System.arraycopy(locations, from, batch, 0, to - from);
+    System.arraycopy(locations, n + from, batch, to - from, to - from);
+    return batch;
+  }
+
+  private static void assertBatchEquals(double[][] expected, double[][] actual) {
+    assertEquals(expected.length, actual.length);
+    for (int i = 0; i < expected.length; i++) {
+      if (expected[i] == null) {
+        assertNull(actual[i]);
+      } else {
+        assertArrayEquals(expected[i], actual[i], "array " + i);
+      }
+    }
+  }
+}
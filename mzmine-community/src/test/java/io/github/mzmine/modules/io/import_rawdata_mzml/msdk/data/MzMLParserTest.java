@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.import_rawdata_mzml.msdk.data;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import io.github.mzmine.modules.io.import_rawdata_all.spectral_processor.ScanImportProcessorConfig;
+import io.github.mzmine.modules.io.import_rawdata_mzml.MSDKmzMLImportTask;
+import java.io.InputStream;
+import java.nio.DoubleBuffer;
+import java.util.List;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import testutils.MZmineTestUtil;
+
+class MzMLParserTest {
+
+  private static final String FILE = "rawdatafiles/additional/gc_orbi_profile_21scans.mzML";
+
+  @BeforeAll
+  static void init() {
+    MZmineTestUtil.startMzmineCore();
+  }
+
+  private static List<BuildingMzMLMsScan> parse(int decodingThreads) throws Exception {
+    final MSDKmzMLImportTask importer = Mockito.mock(MSDKmzMLImportTask.class);
+    final MzMLParser parser = new MzMLParser(importer, null,
+        ScanImportProcessorConfig.createDefault(), decodingThreads);
+    try (InputStream in = MzMLParserTest.class.getClassLoader().getResourceAsStream(FILE)) {
+      final XMLStreamReader reader = XMLInputFactory.newFactory().createXMLStreamReader(in);
+      while (reader.hasNext()) {
+        switch (reader.next()) {
+          case XMLStreamConstants.START_ELEMENT ->
+              parser.processOpeningTag(reader, reader.getLocalName());
+          case XMLStreamConstants.END_ELEMENT ->
+              parser.processClosingTag(reader, reader.getLocalName());
+          default -> {
+          }
+        }
+      }
+    } finally {
+      parser.close();
+    }
+    return parser.getMzMLRawFile().getScans();
+  }
+
+  private static double[] toArray(DoubleBuffer buffer) {
+    final double[] values = new double[buffer.limit()];
+    buffer.get(0, values);
+    return values;
+  }
+
+  @Test
+  void parallelDecodingKeepsFileOrder() throws Exception {
+    final List<BuildingMzMLMsScan> sequential = parse(0);
+    // fewer pending spectra than scans to wait for the oldest spectra while parsing
+    final List<BuildingMzMLMsScan> parallel = parse(2);
+
+    assertEquals(21, sequential.size());
+    assertEquals(sequential.size(), parallel.size());
+    for (int i = 0; i < sequential.size(); i++) {
+      final BuildingMzMLMsScan expected = sequential.get(i);
+      final BuildingMzMLMsScan actual = parallel.get(i);
+      assertEquals(expected.getScanNumber(), actual.getScanNumber());
+      assertEquals(expected.getNumberOfDataPoints(), actual.getNumberOfDataPoints());
+      assertArrayEquals(toArray(expected.getDoubleBufferMzValues()),
+          toArray(actual.getDoubleBufferMzValues()));
+      assertArrayEquals(toArray(expected.getDoubleBufferIntensityValues()),
+          toArray(actual.getDoubleBufferIntensityValues()));
+    }
+  }
+}
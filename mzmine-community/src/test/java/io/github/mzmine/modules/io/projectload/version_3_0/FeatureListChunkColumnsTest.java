@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.projectload.version_3_0;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.ModularFeature;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import io.github.mzmine.datamodel.features.types.DataTypes;
+import io.github.mzmine.datamodel.features.types.annotations.CommentType;
+import io.github.mzmine.datamodel.features.types.numbers.ChargeType;
+import io.github.mzmine.datamodel.features.types.numbers.HeightType;
+import io.github.mzmine.datamodel.features.types.numbers.MZType;
+import io.github.mzmine.datamodel.features.types.numbers.RTType;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class FeatureListChunkColumnsTest {
+
+  private final RawDataFile raw = Mockito.mock(RawDataFile.class);
+
+  @Test
+  void savedValuesAreLoaded() throws IOException {
+    Mockito.when(raw.getName()).thenReturn("sample.mzML");
+    final var flist = new ModularFeatureList("flist", null, raw);
+    // chunk of rows 10 to 12 in the feature list
+    final var builder = new FeatureListChunkColumns.Builder(10, 3);
+    for (int i = 0; i < 3; i++) {
+      final var row = new ModularFeatureListRow(flist, i);
+      row.set(MZType.class, 100d + i);
+      if (i != 1) {
+        row.set(ChargeType.class, i);
+      }
+      row.set(CommentType.class, "comment");
+      final var feature = new ModularFeature(flist);
+      feature.set(RTType.class, 1f + i);
+      feature.set(HeightType.class, 1000f * i);
+      builder.add(row, null, 10 + i);
+      builder.add(feature, raw, 10 + i);
+    }
+    final byte[] xml = "<rows></rows>".getBytes(StandardCharsets.UTF_8);
+    final var columns = FeatureListChunkColumns.decode(ByteBuffer.wrap(builder.build(xml)));
+
+    assertEquals(10, columns.getFirstRow());
+    assertEquals(3, columns.getNumRows());
+    final ByteBuffer loadedXml = columns.getXml();
+    final byte[] loadedXmlBytes = new byte[loadedXml.remaining()];
+    loadedXml.get(loadedXmlBytes);
+    assertArrayEquals(xml, loadedXmlBytes);
+
+    final var loaded = new ModularFeatureList("loaded", null, raw);
+    for (int i = 0; i < 3; i++) {
+      final var row = new ModularFeatureListRow(loaded, i);
+      columns.applyToRow(row, 10 + i);
+      assertEquals(100d + i, row.get(MZType.class));
+      assertEquals(i == 1 ? null : i, row.get(ChargeType.class));
+      // not a column value, part of the xml
+      assertNull(row.get(CommentType.class));
+
+      final var feature = new ModularFeature(loaded);
+      columns.applyToFeature(feature, "sample.mzML", 10 + i);
+      assertEquals(1f + i, feature.get(RTType.class));
+      assertEquals(1000f * i, feature.get(HeightType.class));
+
+      final var otherFile = new ModularFeature(loaded);
+      columns.applyToFeature(otherFile, "other.mzML", 10 + i);
+      assertNull(otherFile.get(RTType.class));
+    }
+  }
+
+  @Test
+  void onlyDefaultNumberValuesAreColumns() {
+    assertTrue(FeatureListChunkColumns.isColumnValue(DataTypes.get(MZType.class), 1d));
+    assertTrue(FeatureListChunkColumns.isColumnValue(DataTypes.get(ChargeType.class), null));
+    // values of another class are written as xml
+    assertFalse(FeatureListChunkColumns.isColumnValue(DataTypes.get(RTType.class), 1d));
+    assertFalse(FeatureListChunkColumns.isColumnValue(DataTypes.get(CommentType.class), "text"));
+  }
+
+  @Test
+  void rejectsInvalidChunks() {
+    assertThrows(IOException.class,
+        () -> FeatureListChunkColumns.decode(ByteBuffer.wrap(new byte[16])));
+  }
+}
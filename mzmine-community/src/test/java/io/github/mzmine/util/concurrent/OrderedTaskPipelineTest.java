@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.concurrent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class OrderedTaskPipelineTest {
+
+  // never starts a task, all tasks need to run on the consuming thread
+  private static final Executor NEVER_RUNS = task -> {
+  };
+
+  @Test
+  void consumesInSubmissionOrder() throws Exception {
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final Random random = new Random(42);
+      final List<Integer> results = new ArrayList<>();
+      try (var pipeline = new OrderedTaskPipeline<Integer, RuntimeException>(executor, 6,
+          results::add)) {
+        for (int i = 0; i < 200; i++) {
+          final int value = i;
+          final int sleep = random.nextInt(3);
+          pipeline.submit(() -> {
+            Thread.sleep(sleep);
+            return value;
+          });
+          assertTrue(pipeline.getNumPending() < 6);
+        }
+        pipeline.finish(() -> false);
+        assertEquals(0, pipeline.getNumPending());
+      }
+      assertEquals(200, results.size());
+      for (int i = 0; i < results.size(); i++) {
+        assertEquals(i, results.get(i));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void runsDirectlyWithoutExecutor() throws Exception {
+    final List<Integer> results = new ArrayList<>();
+    try (var pipeline = new OrderedTaskPipeline<Integer, RuntimeException>(null, 0,
+        results::add)) {
+      pipeline.submit(() -> 1);
+      assertEquals(List.of(1), results);
+      pipeline.submit(() -> 2);
+      assertEquals(List.of(1, 2), results);
+      assertEquals(0, pipeline.getNumPending());
+    }
+  }
+
+  @Test
+  void runsTasksOnConsumingThreadIfNotStarted() throws Exception {
+    final List<Integer> results = new ArrayList<>();
+    try (var pipeline = new OrderedTaskPipeline<Integer, RuntimeException>(NEVER_RUNS, 3,
+        results::add)) {
+      for (int i = 0; i < 5; i++) {
+        final int value = i;
+        pipeline.submit(() -> value);
+      }
+      // the oldest tasks were run to keep 2 pending tasks
+      assertEquals(List.of(0, 1, 2), results);
+      pipeline.finish(() -> false);
+      assertEquals(List.of(0, 1, 2, 3, 4), results);
+    }
+  }
+
+  @Test
+  void closeCancelsPendingTasks() throws Exception {
+    final AtomicInteger executed = new AtomicInteger();
+    final var pipeline = new OrderedTaskPipeline<Integer, RuntimeException>(NEVER_RUNS, 10,
+        result -> executed.incrementAndGet());
+    pipeline.submit(executed::incrementAndGet);
+    pipeline.submit(executed::incrementAndGet);
+    // stops waiting if canceled
+    pipeline.finish(() -> true);
+    assertEquals(2, pipeline.getNumPending());
+    pipeline.close();
+    assertEquals(0, pipeline.getNumPending());
+    assertEquals(0, executed.get());
+  }
+
+  @Test
+  void throwsTaskFailure() {
+    final IllegalStateException failure = new IllegalStateException("failed");
+    final var pipeline = new OrderedTaskPipeline<Integer, RuntimeException>(NEVER_RUNS, 10,
+        result -> {
+        });
+    final ExecutionException ex = assertThrows(ExecutionException.class, () -> {
+      pipeline.submit(() -> {
+        throw failure;
+      });
+      pipeline.finish(() -> false);
+    });
+    assertSame(failure, ex.getCause());
+  }
+}
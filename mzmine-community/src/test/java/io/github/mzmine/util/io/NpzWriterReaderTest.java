@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.io;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class NpzWriterReaderTest {
+
+  // larger than the 64 KiB write buffer to cover flushing within an array
+  private static final int LENGTH = 20_000;
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  void roundTripCompressed() throws IOException {
+    roundTrip(true);
+  }
+
+  @Test
+  void roundTripUncompressed() throws IOException {
+    roundTrip(false);
+  }
+
+  private void roundTrip(boolean compress) throws IOException {
+    final double[] doubles = new double[LENGTH];
+    final float[] floats = new float[LENGTH];
+    final int[] ints = new int[LENGTH];
+    final String[] strings = new String[LENGTH];
+    for (int i = 0; i < LENGTH; i++) {
+      doubles[i] = i % 7 == 0 ? Double.NaN : i * 1.5;
+      floats[i] = i % 5 == 0 ? Float.NaN : i * 0.25f;
+      ints[i] = i % 3 == 0 ? Integer.MIN_VALUE : i - LENGTH / 2;
+      strings[i] = i % 4 == 0 ? null : "sample ü \uD83E\uDDEA " + (i % 11);
+    }
+    doubles[1] = Double.POSITIVE_INFINITY;
+    doubles[2] = -0d;
+
+    final File file = tempDir.resolve("arrays.npz").toFile();
+    try (var writer = new NpzWriter(file, compress)) {
+      writer.writeDoubles("doubles", LENGTH, i -> doubles[i]);
+      writer.writeFloats("floats", LENGTH, i -> floats[i]);
+      writer.writeInts("ints", LENGTH, i -> ints[i]);
+      writer.writeStrings("strings", LENGTH, i -> strings[i]);
+      writer.writeStrings("missing", 3, i -> null);
+      writer.writeDoubles("empty", 0, i -> 0d);
+    }
+
+    try (var reader = new NpzReader(file)) {
+      assertTrue(reader.contains("doubles"));
+      assertTrue(reader.contains("strings"));
+      assertFalse(reader.contains("other"));
+
+      // bitwise comparison keeps NaN and -0 distinct
+      assertArrayEquals(doubles, reader.readDoubles("doubles"));
+      assertEquals(Double.doubleToRawLongBits(-0d),
+          Double.doubleToRawLongBits(reader.readDoubles("doubles")[2]));
+      assertArrayEquals(floats, reader.readFloats("floats"));
+      assertArrayEquals(ints, reader.readInts("ints"));
+      assertArrayEquals(strings, reader.readStrings("strings"));
+      assertArrayEquals(new String[3], reader.readStrings("missing"));
+      assertEquals(0, reader.readDoubles("empty").length);
+
+      // codes are -1 for missing values and index the dictionary in order of appearance
+      final int[] codes = reader.readInts("strings" + NpzWriter.CODES_SUFFIX);
+      final String[] dictionary = reader.readStringArray("strings" + NpzWriter.DICTIONARY_SUFFIX);
+      assertEquals(11, dictionary.length);
+      assertEquals(-1, codes[0]);
+      assertEquals(0, codes[1]);
+      assertEquals(strings[1], dictionary[0]);
+      assertEquals(0, reader.readStringArray("missing" + NpzWriter.DICTIONARY_SUFFIX).length);
+
+      // wrong data type is reported instead of reinterpreting the bytes
+      assertThrows(IOException.class, () -> reader.readInts("doubles"));
+      assertThrows(IOException.class, () -> reader.readDoubles("other"));
+    }
+  }
+
+  @Test
+  void longHighCardinalityStringsUseUtf8Dictionary() throws IOException {
+    // one long value would inflate the fixed width dictionary to length * width * 4 bytes
+    final String[] strings = new String[LENGTH];
+    for (int i = 0; i < LENGTH; i++) {
+      strings[i] = i % 9 == 0 ? null : "compound \uD83E\uDDEA ü " + i;
+    }
+    strings[1] = "x".repeat(5_000);
+
+    final File file = tempDir.resolve("strings.npz").toFile();
+    try (var writer = new NpzWriter(file, true)) {
+      writer.writeStrings("long", LENGTH, i -> strings[i]);
+      writer.writeStrings("short", LENGTH, i -> i % 2 == 0 ? "a" : "b");
+    }
+
+    try (var zip = new ZipFile(file)) {
+      assertNull(zip.getEntry("long" + NpzWriter.DICTIONARY_SUFFIX + NpzWriter.NPY_SUFFIX));
+      assertNotNull(
+          zip.getEntry("long" + NpzWriter.DICTIONARY_UTF8_SUFFIX + NpzWriter.NPY_SUFFIX));
+      // small dictionaries stay fixed width unicode arrays
+      assertNotNull(zip.getEntry("short" + NpzWriter.DICTIONARY_SUFFIX + NpzWriter.NPY_SUFFIX));
+    }
+
+    try (var reader = new NpzReader(file)) {
+      assertTrue(reader.contains("long"));
+      assertArrayEquals(strings, reader.readStrings("long"));
+
+      final int[] offsets = reader.readInts("long" + NpzWriter.DICTIONARY_OFFSETS_SUFFIX);
+      final byte[] utf8 = reader.readBytes("long" + NpzWriter.DICTIONARY_UTF8_SUFFIX);
+      final int distinct = LENGTH - (LENGTH + 8) / 9;
+      assertEquals(distinct + 1, offsets.length);
+      assertEquals(0, offsets[0]);
+      assertEquals(utf8.length, offsets[distinct]);
+      assertEquals(strings[1], new String(utf8, 0, offsets[1], StandardCharsets.UTF_8));
+    }
+  }
+
+  @Test
+  void npyHeader() throws IOException {
+    final File file = tempDir.resolve("header.npz").toFile();
+    final List<String> values = List.of("a", "\uD83E\uDDEAbc", "");
+    try (var writer = new NpzWriter(file, false)) {
+      writer.writeDoubles("d", 3, i -> i);
+      writer.writeFloats("f", 12345, i -> i);
+      writer.writeInts("i", 0, i -> i);
+      writer.writeStringArray("u", values);
+    }
+
+    try (var zip = new ZipFile(file)) {
+      assertEquals(4, zip.size());
+      assertHeader(zip, "d", "<f8", 3, 3 * Double.BYTES);
+      assertHeader(zip, "f", "<f4", 12345, 12345 * Float.BYTES);
+      assertHeader(zip, "i", "<i4", 0, 0);
+      // width is the longest value in code points, not in UTF-16 chars
+      assertHeader(zip, "u", "<U3", 3, 3 * 3 * Integer.BYTES);
+    }
+
+    try (var reader = new NpzReader(file)) {
+      assertArrayEquals(values.toArray(String[]::new), reader.readStringArray("u"));
+    }
+  }
+
+  private static void assertHeader(ZipFile zip, String name, String descr, int length,
+      int dataBytes) throws IOException {
+    final ZipEntry entry = zip.getEntry(name + NpzWriter.NPY_SUFFIX);
+    final byte[] bytes;
+    try (InputStream in = zip.getInputStream(entry)) {
+      bytes = in.readAllBytes();
+    }
+    final ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    final byte[] magic = new byte[NpzWriter.MAGIC.length];
+    buffer.get(magic);
+    assertArrayEquals(NpzWriter.MAGIC, magic);
+    assertEquals(1, buffer.get());
+    assertEquals(0, buffer.get());
+
+    final int headerLength = Short.toUnsignedInt(buffer.getShort());
+    // data starts 64 byte aligned, header is terminated by a newline
+    assertEquals(0, (buffer.position() + headerLength) % 64);
+    assertEquals(buffer.position() + headerLength + dataBytes, bytes.length);
+    final String header = new String(bytes, buffer.position(), headerLength,
+        StandardCharsets.US_ASCII);
+    assertTrue(header.endsWith("\n"));
+    assertEquals(
+        "{'descr': '" + descr + "', 'fortran_order': False, 'shape': (" + length + ",), }",
+        header.strip());
+  }
+}
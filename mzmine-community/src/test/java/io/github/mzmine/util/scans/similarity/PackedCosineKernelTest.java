@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.scans.similarity;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.DataPointUtils;
+import io.github.mzmine.util.maths.similarity.Similarity;
+import io.github.mzmine.util.scans.ScanAlignment;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class PackedCosineKernelTest {
+
+  private final MZTolerance mzTol = new MZTolerance(0.005, 15);
+
+  @Test
+  void weightedCosineEqualsDataPointAlignment() {
+    Random rand = new Random(42);
+    PackedCosineKernel kernel = PackedCosineKernel.get();
+    for (int i = 0; i < 200; i++) {
+      double[][] library = randomSpectrum(rand, 5 + rand.nextInt(60));
+      double[][] query = randomSpectrum(rand, 5 + rand.nextInt(60));
+      // unsorted input is sorted by the kernel
+      if (i % 3 == 0) {
+        shuffle(rand, library);
+      }
+
+      for (HandleUnmatchedSignalOptions handle : HandleUnmatchedSignalOptions.values()) {
+        for (Weights weights : Weights.VALUES) {
+          List<DataPoint[]> aligned = ScanAlignment.align(mzTol,
+              DataPointUtils.getDataPoints(library[0], library[1]),
+              DataPointUtils.getDataPoints(query[0], query[1]));
+          int overlap = ScanAlignment.removeUnaligned(aligned).size();
+          aligned = handle.handleUnmatched(aligned);
+          double expected = Similarity.COSINE.calc(
+              ScanAlignment.toIntensityMatrixWeighted(aligned, weights.getIntensity(),
+                  weights.getMz()));
+
+          assertEquals(overlap,
+              kernel.align(mzTol, library[0], library[1], library[0].length, query[0], query[1],
+                  query[0].length));
+          assertEquals(expected, kernel.weightedCosine(weights, handle));
+          assertAligned(aligned, kernel.createAlignedDataPoints(handle,
+              kernel.createLibraryDataPoints(), kernel.createQueryDataPoints()));
+        }
+      }
+    }
+  }
+
+  private static void assertAligned(List<DataPoint[]> expected, List<DataPoint[]> actual) {
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      for (int side = 0; side < 2; side++) {
+        final DataPoint e = expected.get(i)[side];
+        final DataPoint a = actual.get(i)[side];
+        if (e == null || a == null) {
+          assertSame(e, a);
+        } else {
+          assertEquals(e.getMZ(), a.getMZ());
+          assertEquals(e.getIntensity(), a.getIntensity());
+        }
+      }
+    }
+  }
+
+  private double[][] randomSpectrum(Random rand, int n) {
+    double[][] data = new double[2][n];
+    double mz = 50;
+    for (int i = 0; i < n; i++) {
+      // many close signals to test the matching order
+      mz += rand.nextDouble() * (rand.nextBoolean() ? 0.01 : 5);
+      data[0][i] = Math.round(mz * 1000) / 1000d;
+      // duplicate intensities
+      data[1][i] = 1 + rand.nextInt(50) * 100;
+    }
+    return data;
+  }
+
+  private void shuffle(Random rand, double[][] data) {
+    for (int i = data[0].length - 1; i > 0; i--) {
+      int j = rand.nextInt(i + 1);
+      for (double[] values : data) {
+        double tmp = values[i];
+        values[i] = values[j];
+        values[j] = tmp;
+      }
+    }
+  }
+}
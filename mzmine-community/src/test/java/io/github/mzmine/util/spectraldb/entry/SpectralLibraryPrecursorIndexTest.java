@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.spectraldb.entry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.datamodel.impl.SimpleDataPoint;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance;
+import java.io.File;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SpectralLibraryPrecursorIndexTest {
+
+  private final MZTolerance mzTol = new MZTolerance(0.005, 10);
+  private final RTTolerance rtTol = new RTTolerance(true, 0.2f);
+  private SpectralLibrary library;
+
+  @BeforeEach
+  void setUp() {
+    Random rand = new Random(42);
+    library = new SpectralLibrary(null, new File("test_library.json"));
+    DataPoint[] dps = new DataPoint[]{new SimpleDataPoint(50, 100), new SimpleDataPoint(60, 10)};
+    for (int i = 0; i < 5000; i++) {
+      // duplicated precursor m/z values are common in libraries
+      double mz = 100 + rand.nextInt(20000) * 0.05;
+      var entry = SpectralLibraryEntry.create(null, mz, dps);
+      if (rand.nextBoolean()) {
+        entry.putIfNotNull(DBEntryField.RT, rand.nextFloat() * 10f);
+      }
+      library.addEntry(entry);
+    }
+    // no precursor - never a candidate
+    library.addEntry(SpectralLibraryEntry.create(null, Double.NaN, dps));
+  }
+
+  @Test
+  void findCandidatesEqualsLinearSearch() {
+    Random rand = new Random(7);
+    for (int i = 0; i < 500; i++) {
+      double mz = 100 + rand.nextDouble() * 1000;
+      float rt = rand.nextFloat() * 10f;
+      var indexed = new HashSet<>(
+          library.getPrecursorIndex().findCandidates(mz, mzTol, rt, rtTol, null, null));
+      assertEquals(linearSearch(mz, rt), indexed);
+    }
+  }
+
+  @Test
+  void indexIsRefreshedOnAdd() {
+    var index = library.getPrecursorIndex();
+    assertEquals(library.size() - 1, index.size());
+
+    DataPoint[] dps = new DataPoint[]{new SimpleDataPoint(50, 100)};
+    var entry = SpectralLibraryEntry.create(null, 5000d, dps);
+    library.addEntry(entry);
+    var candidates = library.getPrecursorIndex().findCandidates(5000d, mzTol, null, null, null,
+        null);
+    assertEquals(List.of(entry), candidates);
+
+    for (int i = 1; i < library.getPrecursorIndex().size(); i++) {
+      assertTrue(library.getPrecursorIndex().getPrecursorMz(i - 1) <= library.getPrecursorIndex()
+          .getPrecursorMz(i));
+    }
+  }
+
+  private Set<SpectralLibraryEntry> linearSearch(double mz, float rt) {
+    return library.stream().filter(e -> e.getPrecursorMZ() != null && !Double.isNaN(
+            e.getPrecursorMZ()) && mzTol.checkWithinTolerance(e.getPrecursorMZ(), mz))
+        .filter(e -> {
+          Float libRt = e.getAsFloat(DBEntryField.RT).orElse(null);
+          return libRt == null || rtTol.checkWithinTolerance(libRt, rt);
+        }).collect(Collectors.toSet());
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.spectraldb.parser;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.mzmine.util.spectraldb.entry.DBEntryField;
+import io.github.mzmine.util.spectraldb.entry.SpectralDBEntry;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibrary;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibraryEntry;
+import io.github.mzmine.util.spectraldb.parser.SpectralLibraryBinaryCache.CachedLibrary;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SpectralLibraryBinaryCacheTest {
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  void writeAndRead() throws IOException {
+    final File source = tempDir.resolve("library.mgf").toFile();
+    Files.writeString(source.toPath(), "source content");
+
+    Random rand = new Random(42);
+    List<SpectralLibraryEntry> entries = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      final int n = rand.nextInt(30);
+      double[] mzs = new double[n];
+      double[] intensities = new double[n];
+      for (int j = 0; j < n; j++) {
+        mzs[j] = 50 + j * 10 + rand.nextDouble();
+        intensities[j] = 1 + rand.nextDouble() * 1000;
+      }
+      var entry = new SpectralDBEntry(null, mzs, intensities);
+      entry.putIfNotNull(DBEntryField.NAME, "Compound ü " + i);
+      entry.putIfNotNull(DBEntryField.SYNONYMS, List.of("a" + i, "b"));
+      entry.putIfNotNull(DBEntryField.MS_LEVEL, 2);
+      if (i % 3 != 0) {
+        entry.putIfNotNull(DBEntryField.PRECURSOR_MZ, 100 + rand.nextDouble() * 900);
+        entry.putIfNotNull(DBEntryField.RT, rand.nextFloat() * 10);
+      }
+      entries.add(entry);
+    }
+
+    final File cacheFile = SpectralLibraryBinaryCache.getCacheFile(tempDir.toFile(), source);
+    assertFalse(SpectralLibraryBinaryCache.matchesSource(cacheFile, source));
+    SpectralLibraryBinaryCache.write(cacheFile, source.length(), source.lastModified(), entries);
+    assertTrue(SpectralLibraryBinaryCache.matchesSource(cacheFile, source));
+
+    SpectralLibrary library = new SpectralLibrary(null, source);
+    final CachedLibrary cached = SpectralLibraryBinaryCache.read(cacheFile, library);
+    assertEquals(entries.size(), cached.entries().size());
+    for (int i = 0; i < entries.size(); i++) {
+      final SpectralLibraryEntry expected = entries.get(i);
+      final SpectralLibraryEntry actual = cached.entries().get(i);
+      assertEquals(expected.getFields(), actual.getFields());
+      assertArrayEquals(expected.getMzValues(new double[0]), actual.getMzValues(new double[0]));
+      assertArrayEquals(expected.getIntensityValues(new double[0]),
+          actual.getIntensityValues(new double[0]));
+      assertEquals(expected.getTIC(), actual.getTIC());
+    }
+
+    library.addEntries(cached.entries());
+    assertTrue(library.setPrecursorIndex(cached.precursorIndex()));
+    final var index = library.getPrecursorIndex();
+    assertEquals(entries.stream().filter(e -> e.getPrecursorMZ() != null).count(), index.size());
+    for (int i = 1; i < index.size(); i++) {
+      assertTrue(index.getPrecursorMz(i - 1) <= index.getPrecursorMz(i));
+      assertEquals(index.getPrecursorMz(i), index.getEntry(i).getPrecursorMZ());
+    }
+
+    // changed source invalidates the cache
+    Files.writeString(source.toPath(), "changed source content");
+    assertFalse(SpectralLibraryBinaryCache.matchesSource(cacheFile, source));
+  }
+}